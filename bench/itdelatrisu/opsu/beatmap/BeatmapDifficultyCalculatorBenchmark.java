@@ -0,0 +1,96 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package itdelatrisu.opsu.beatmap;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Throughput of {@link BeatmapDifficultyCalculator} on synthetic beatmaps. The
+ * star ratings are checked against reference values in
+ * {@code BeatmapDifficultyCalculatorTests}.
+ * <p>
+ * Compile with {@code ant bench}, then run with
+ * {@code java -cp <classpath> itdelatrisu.opsu.beatmap.BeatmapDifficultyCalculatorBenchmark [maps] [objects]}
+ */
+public class BeatmapDifficultyCalculatorBenchmark
+{
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args)
+	{
+		final int mapCount = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		final int objects = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		HitObject.init(640, 480);
+
+		final Random rand = new Random(72);
+		final Beatmap[] maps = new Beatmap[mapCount];
+		for (int i = 0; i < mapCount; i++) {
+			maps[i] = generate(rand, objects);
+		}
+		System.out.printf("corpus: %d maps, %d objects each%n", mapCount, objects);
+
+		for (int round = 0; round < ROUNDS; round++) {
+			final long time = System.nanoTime();
+			double stars = 0;
+			for (int i = 0; i < mapCount; i++) {
+				final Beatmap map = maps[i];
+				final BeatmapDifficultyCalculator calc;
+				calc = new BeatmapDifficultyCalculator(map, map.objects, map.timingPoints);
+				calc.calculate();
+				stars += calc.getStarRating();
+			}
+			System.out.printf(
+				"round %d: %6.2f ms/map, average %.2f stars%n",
+				round + 1,
+				(System.nanoTime() - time) / 1e6 / mapCount,
+				stars / mapCount
+			);
+		}
+	}
+
+	private static Beatmap generate(Random rand, int objects)
+	{
+		final Beatmap map = new Beatmap(null);
+		map.circleSize = 2 + rand.nextInt(50) / 10f;
+		map.sliderMultiplier = 1 + rand.nextInt(10) / 10f;
+		map.timingPoints = new ArrayList<>();
+		int time = rand.nextInt(2000);
+		for (int i = 0; i < objects / 50 + 1; i++) {
+			if (i % 4 == 0) {
+				map.timingPoints.add(new TimingPoint(time + "," + 60000f / (120 + rand.nextInt(120)) + ",4,2,1,60,1,0"));
+			} else {
+				map.timingPoints.add(new TimingPoint(time + "," + -25 * (1 + rand.nextInt(8)) + ",4,2,1,60,0,0"));
+			}
+			time += 1000 + rand.nextInt(10000);
+		}
+
+		map.objects = new HitObject[objects];
+		time = rand.nextInt(2000);
+		for (int i = 0; i < objects; i++) {
+			final int x = rand.nextInt(512), y = rand.nextInt(384);
+			final String line;
+			final int kind = rand.nextInt(100);
+			if (kind < 60) {
+				line = x + "," + y + "," + time + ",1,0";
+				time += 80 + rand.nextInt(300);
+			} else if (kind < 98) {
+				final StringBuilder sb = new StringBuilder();
+				sb.append(x).append(',').append(y).append(',').append(time).append(",2,0,");
+				sb.append("BLP".charAt(rand.nextInt(3)));
+				final int points = 2 + rand.nextInt(4);
+				for (int p = 0; p < points; p++) {
+					sb.append('|').append(rand.nextInt(512)).append(':').append(rand.nextInt(384));
+				}
+				sb.append(',').append(1 + rand.nextInt(3)).append(',').append(50 + rand.nextInt(250));
+				line = sb.toString();
+				time += 300 + rand.nextInt(1500);
+			} else {
+				line = "256,192," + time + ",8,0," + (time + 1500);
+				time += 2000;
+			}
+			map.objects[i] = new HitObject(line);
+		}
+		return map;
+	}
+}
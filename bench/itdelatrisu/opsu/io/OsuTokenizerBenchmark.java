@@ -0,0 +1,162 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package itdelatrisu.opsu.io;
+
+import itdelatrisu.opsu.beatmap.HitObject;
+import itdelatrisu.opsu.beatmap.TimingPoint;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.Random;
+
+/**
+ * Parse throughput of the timing point and hit object sections of a synthetic corpus,
+ * comparing {@link OsuTokenizer} with the old {@code readLine()}/{@code split()} approach.
+ * <p>
+ * Compile with {@code ant bench}, then run with
+ * {@code java -cp <classpath> itdelatrisu.opsu.io.OsuTokenizerBenchmark [maps] [objects]}
+ */
+public class OsuTokenizerBenchmark
+{
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws Exception
+	{
+		final int maps = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		final int objects = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		final String[] corpus = new String[maps];
+		final Random rand = new Random(72);
+		long totalChars = 0;
+		for (int i = 0; i < maps; i++) {
+			corpus[i] = generate(rand, objects);
+			totalChars += corpus[i].length();
+		}
+		System.out.printf("corpus: %d maps, %d objects each, %.1f MB%n", maps, objects, totalChars / 1e6);
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long time = System.nanoTime();
+			long parsed = 0;
+			for (String map : corpus) {
+				parsed += parseSplit(map);
+			}
+			final long splitTime = System.nanoTime() - time;
+
+			time = System.nanoTime();
+			final OsuTokenizer t = new OsuTokenizer();
+			for (String map : corpus) {
+				parsed -= parseTokenizer(t, map);
+			}
+			final long tokenizerTime = System.nanoTime() - time;
+
+			if (parsed != 0) {
+				throw new IllegalStateException("parsers disagree on line count");
+			}
+			System.out.printf(
+				"round %d: split %6.1f MB/s, tokenizer %6.1f MB/s%n",
+				round + 1,
+				totalChars / (splitTime / 1e3),
+				totalChars / (tokenizerTime / 1e3)
+			);
+		}
+	}
+
+	private static String generate(Random rand, int objects)
+	{
+		final StringBuilder sb = new StringBuilder(objects * 48);
+		sb.append("osu file format v14\r\n\r\n[TimingPoints]\r\n");
+		int time = rand.nextInt(2000);
+		for (int i = 0; i < objects / 50 + 1; i++) {
+			if (i % 4 == 0) {
+				sb.append(time).append(',').append(60000f / (120 + rand.nextInt(120)));
+			} else {
+				sb.append(time).append(',').append(-25 * (1 + rand.nextInt(8)));
+			}
+			sb.append(",4,2,1,").append(40 + rand.nextInt(60)).append(",1,0\r\n");
+			time += 1000 + rand.nextInt(10000);
+		}
+		sb.append("\r\n[HitObjects]\r\n");
+		time = rand.nextInt(2000);
+		for (int i = 0; i < objects; i++) {
+			final int x = rand.nextInt(512), y = rand.nextInt(384);
+			sb.append(x).append(',').append(y).append(',').append(time).append(',');
+			switch (rand.nextInt(10)) {
+			case 0:
+				sb.append("12,0,").append(time + 2000).append(",0:0:0:0:");
+				time += 2000;
+				break;
+			case 1: case 2: case 3: case 4:
+				sb.append("2,0,B");
+				final int points = 1 + rand.nextInt(5);
+				for (int p = 0; p < points; p++) {
+					sb.append('|').append(rand.nextInt(512)).append(':').append(rand.nextInt(384));
+				}
+				sb.append(",1,").append(rand.nextInt(300)).append(".5,2|0,0:0|0:0,0:0:0:0:");
+				break;
+			default:
+				sb.append(rand.nextBoolean() ? 1 : 5).append(",0,0:0:0:0:");
+				break;
+			}
+			sb.append("\r\n");
+			time += 50 + rand.nextInt(300);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Tokenizes the same way the parser did before {@link OsuTokenizer}.
+	 */
+	private static int parseSplit(String map) throws Exception
+	{
+		final BufferedReader in = new BufferedReader(new StringReader(map));
+		int count = 0;
+		float sink = 0;
+		String line;
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+			if (line.length() < 2 || line.charAt(0) == '[' || !Character.isDigit(line.charAt(0))) {
+				continue;
+			}
+			final String[] tokens = line.split(",");
+			for (String token : tokens) {
+				for (String sub : token.split("\\|")) {
+					for (String value : sub.split(":")) {
+						if (!value.isEmpty() && Character.isDigit(value.charAt(0))) {
+							sink += Float.parseFloat(value);
+						}
+					}
+				}
+			}
+			count++;
+		}
+		if (sink == -1) {
+			System.out.print("");
+		}
+		return count;
+	}
+
+	private static int parseTokenizer(OsuTokenizer t, String map) throws Exception
+	{
+		t.load(new StringReader(map));
+		int count = 0;
+		boolean objects = false;
+		while (t.nextLine()) {
+			if (!t.isValidLine()) {
+				continue;
+			}
+			if (t.charAt(0) == '[') {
+				objects = t.lineEquals("[HitObjects]");
+				continue;
+			}
+			if (!Character.isDigit(t.charAt(0))) {
+				continue;
+			}
+			if (objects) {
+				new HitObject(t);
+			} else {
+				new TimingPoint(t);
+			}
+			count++;
+		}
+		return count;
+	}
+}
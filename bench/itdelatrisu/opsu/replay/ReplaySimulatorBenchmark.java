@@ -0,0 +1,203 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package itdelatrisu.opsu.replay;
+
+import itdelatrisu.opsu.ScoreData;
+import itdelatrisu.opsu.beatmap.Beatmap;
+import itdelatrisu.opsu.beatmap.HitObject;
+import itdelatrisu.opsu.beatmap.TimingPoint;
+import itdelatrisu.opsu.objects.curves.Curve;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Throughput of {@link ReplaySimulator} on synthetic beatmaps, with replays at
+ * 60 frames per second that hit every object perfectly. Every object must be
+ * a 300 with a full combo, and every object must be missed by a replay
+ * that doesn't press any keys. The judgements themselves are tested in
+ * {@code ReplaySimulatorTests}.
+ * <p>
+ * Compile with {@code ant bench}, then run with
+ * {@code java -cp <classpath> itdelatrisu.opsu.replay.ReplaySimulatorBenchmark [maps] [objects]}
+ */
+public class ReplaySimulatorBenchmark
+{
+	private static final int ROUNDS = 5;
+
+	/** Time between replay frames, in milliseconds. */
+	private static final int FRAME_TIME = 16;
+
+	private static final float BEAT_LENGTH = 400f;
+
+	public static void main(String[] args)
+	{
+		final int mapCount = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		final int objects = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		HitObject.init(640, 480);
+
+		final Random rand = new Random(72);
+		final Beatmap[] maps = new Beatmap[mapCount];
+		final ReplayFrame[][] replays = new ReplayFrame[mapCount][];
+		int frameCount = 0;
+		for (int i = 0; i < mapCount; i++) {
+			maps[i] = generate(rand, objects);
+			replays[i] = perfectReplay(maps[i]);
+			frameCount += replays[i].length;
+		}
+		System.out.printf("corpus: %d maps, %d objects and %d frames each on average%n",
+			mapCount, objects, frameCount / mapCount);
+
+		for (int i = 0; i < mapCount; i++) {
+			final ReplaySimulator simulator = new ReplaySimulator(maps[i], new ReplayFrame[0], 0);
+			final ScoreData score = simulator.run().score;
+			if (score.miss != objects) {
+				throw new IllegalStateException(String.format("map %d: %d misses without input", i, score.miss));
+			}
+		}
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long time = System.nanoTime();
+			for (int i = 0; i < mapCount; i++) {
+				check(i, new ReplaySimulator(maps[i], replays[i], 0).run(), objects);
+			}
+			final long replayTime = System.nanoTime() - time;
+
+			time = System.nanoTime();
+			for (int i = 0; i < mapCount; i++) {
+				final ReplaySimulator simulator = new ReplaySimulator(maps[i], replays[i], 0);
+				simulator.setTimestep(1);
+				check(i, simulator.run(), objects);
+			}
+			final long fixedTime = System.nanoTime() - time;
+
+			System.out.printf(
+				"round %d: replay-driven %6.2f ms/map (%5.0f frames/ms), 1 ms timestep %6.2f ms/map%n",
+				round + 1,
+				replayTime / 1e6 / mapCount,
+				frameCount / (replayTime / 1e6),
+				fixedTime / 1e6 / mapCount
+			);
+		}
+	}
+
+	private static void check(int map, ReplaySimulator.Result result, int objects)
+	{
+		final ScoreData score = result.score;
+		if (score.hit300 != objects || !score.perfect || result.failTime != -1) {
+			throw new IllegalStateException(String.format(
+				"map %d: %d/%d/%d/%d (300/100/50/miss), perfect %b, fail time %d",
+				map, score.hit300, score.hit100, score.hit50, score.miss, score.perfect, result.failTime
+			));
+		}
+	}
+
+	private static Beatmap generate(Random rand, int objects)
+	{
+		final Beatmap map = new Beatmap(null);
+		map.circleSize = 2 + rand.nextInt(50) / 10f;
+		map.overallDifficulty = 2 + rand.nextInt(70) / 10f;
+		map.approachRate = 9f;
+		map.sliderMultiplier = 1 + rand.nextInt(10) / 10f;
+		map.sliderTickRate = 1 + rand.nextInt(2);
+		map.timingPoints = new ArrayList<>();
+		map.timingPoints.add(new TimingPoint("0," + BEAT_LENGTH + ",4,2,1,60,1,0"));
+
+		map.objects = new HitObject[objects];
+		int time = 1000 + rand.nextInt(2000);
+		for (int i = 0; i < objects; i++) {
+			final int x = rand.nextInt(512), y = rand.nextInt(384);
+			final int kind = rand.nextInt(100);
+			if (kind < 60) {
+				map.objects[i] = new HitObject(x + "," + y + "," + time + ",1,0");
+				time += 120 + rand.nextInt(300);
+			} else if (kind < 98) {
+				final StringBuilder sb = new StringBuilder();
+				sb.append(x).append(',').append(y).append(',').append(time).append(",2,0,");
+				sb.append("BLP".charAt(rand.nextInt(3)));
+				final int points = 2 + rand.nextInt(4);
+				for (int p = 0; p < points; p++) {
+					sb.append('|').append(rand.nextInt(512)).append(':').append(rand.nextInt(384));
+				}
+				final int repeats = 1 + rand.nextInt(3);
+				final int pixelLength = 50 + rand.nextInt(250);
+				sb.append(',').append(repeats).append(',').append(pixelLength);
+				map.objects[i] = new HitObject(sb.toString());
+				final float sliderTime = map.objects[i].getSliderTime(map.sliderMultiplier, BEAT_LENGTH);
+				time += (int) (sliderTime * repeats) + 120 + rand.nextInt(300);
+			} else {
+				map.objects[i] = new HitObject("256,192," + time + ",8,0," + (time + 1500));
+				time += 1700 + rand.nextInt(300);
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Returns frames that follow and hit every object of a beatmap perfectly,
+	 * using unscaled coordinates like recorded replays.
+	 */
+	private static ReplayFrame[] perfectReplay(Beatmap map)
+	{
+		final Frames frames = new Frames();
+		final float[] point = new float[2];
+		int key = ReplayFrame.KEY_K1;
+		for (HitObject hitObject : map.objects) {
+			final int start = hitObject.getTime();
+			frames.idleUntil(start);
+			if (hitObject.isCircle()) {
+				frames.add(start, hitObject.getX(), hitObject.getY(), key);
+				frames.add(start + FRAME_TIME, hitObject.getX(), hitObject.getY(), ReplayFrame.KEY_NONE);
+			} else if (hitObject.isSlider()) {
+				final Curve curve = hitObject.getSliderCurve(true);
+				final float sliderTime = hitObject.getSliderTime(map.sliderMultiplier, BEAT_LENGTH);
+				final int end = start + (int) (sliderTime * hitObject.getRepeatCount());
+				frames.add(start, hitObject.getX(), hitObject.getY(), key);
+				for (int time = start + FRAME_TIME; time <= end + FRAME_TIME; time += FRAME_TIME) {
+					float t = (time - start) / sliderTime;
+					final float floor = (float) Math.floor(t);
+					t = (floor % 2 == 0) ? t - floor : floor + 1 - t;
+					curve.pointAt(Math.min(t, 1f), point);
+					frames.add(time, HitObject.unscaleX(point[0]), HitObject.unscaleY(point[1]), key);
+				}
+				frames.add(frames.time + FRAME_TIME, frames.x, frames.y, ReplayFrame.KEY_NONE);
+			} else {
+				double angle = 0;
+				for (int time = start; time <= hitObject.getEndTime() + FRAME_TIME; time += FRAME_TIME) {
+					final float x = 256 + (float) Math.cos(angle) * 50;
+					final float y = 192 + (float) Math.sin(angle) * 50;
+					frames.add(time, x, y, key);
+					angle += 0.6;
+				}
+				frames.add(frames.time + FRAME_TIME, frames.x, frames.y, ReplayFrame.KEY_NONE);
+			}
+			key = key == ReplayFrame.KEY_K1 ? ReplayFrame.KEY_K2 : ReplayFrame.KEY_K1;
+		}
+		return frames.list.toArray(new ReplayFrame[frames.list.size()]);
+	}
+
+	private static class Frames
+	{
+		final ArrayList<ReplayFrame> list = new ArrayList<>();
+		int time;
+		float x = 256, y = 192;
+
+		void add(int time, float x, float y, int keys)
+		{
+			this.list.add(new ReplayFrame(time - this.time, time, x, y, keys));
+			this.time = time;
+			this.x = x;
+			this.y = y;
+		}
+
+		/**
+		 * Adds frames without keys up to a time.
+		 */
+		void idleUntil(int time)
+		{
+			while (this.time + FRAME_TIME < time) {
+				this.add(this.time + FRAME_TIME, this.x, this.y, ReplayFrame.KEY_NONE);
+			}
+		}
+	}
+}
@@ -0,0 +1,152 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package yugecin.opsudance.beatmap;
+
+import itdelatrisu.opsu.beatmap.Beatmap;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Heap used by the search/sort metadata of a synthetic library, comparing
+ * {@link BeatmapMetadata} with the seven lowercase {@code search*} strings that
+ * every {@link Beatmap} used to carry, and the time it takes to sort by title.
+ * The trigram index is measured separately, it's only built by the first text
+ * search. The first sort also calculates the dictionary ranks.
+ * <p>
+ * Compile with {@code ant bench}, then run with
+ * {@code java -Xmx2g -cp <classpath> yugecin.opsudance.beatmap.BeatmapMetadataBenchmark [maps...]}
+ */
+public class BeatmapMetadataBenchmark
+{
+	private static final int SORT_ROUNDS = 10;
+
+	public static void main(String[] args)
+	{
+		int[] sizes = { 10000, 50000, 100000 };
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+		for (int size : sizes) {
+			run(size);
+		}
+	}
+
+	private static void run(int size)
+	{
+		final Random rand = new Random(72);
+		final ArrayList<Beatmap> maps = generate(rand, size);
+
+		final long base = usedHeap();
+		final String[] search = new String[maps.size() * 7];
+		for (int i = 0, j = 0; i < maps.size(); i++) {
+			final Beatmap map = maps.get(i);
+			search[j++] = map.title.toLowerCase();
+			search[j++] = map.titleUnicode.toLowerCase();
+			search[j++] = map.artist.toLowerCase();
+			search[j++] = map.artistUnicode.toLowerCase();
+			search[j++] = map.creator.toLowerCase();
+			search[j++] = map.version.toLowerCase();
+			search[j++] = map.source.toLowerCase();
+		}
+		final long strings = usedHeap() - base;
+
+		final BeatmapMetadata md = new BeatmapMetadata();
+		for (Beatmap map : maps) {
+			md.add(map);
+		}
+		final long columnar = usedHeap() - base - strings;
+		md.findMaps("abc");
+		final long index = usedHeap() - base - strings - columnar;
+
+		final ArrayList<Beatmap> a = new ArrayList<>(maps), b = new ArrayList<>(maps);
+		long stringSort = 0, columnarSort = 0;
+		for (int round = 0; round < SORT_ROUNDS; round++) {
+			Collections.shuffle(a, rand);
+			Collections.shuffle(b, rand);
+			long time = System.nanoTime();
+			a.sort((v, w) -> search[v.metadataSlot * 7].compareTo(search[w.metadataSlot * 7]));
+			stringSort += System.nanoTime() - time;
+			time = System.nanoTime();
+			b.sort((v, w) -> md.compare(BeatmapMetadata.TITLE, v, w));
+			columnarSort += System.nanoTime() - time;
+		}
+		stringSort /= SORT_ROUNDS;
+		columnarSort /= SORT_ROUNDS;
+
+		System.out.printf(
+			"%6d maps: search strings %6.2f MB, metadata store %6.2f MB (incl. numeric columns) "
+				+ "+ %6.2f MB trigram index, title sort %4dms -> %4dms (average of %d shuffled sorts)%n",
+			size,
+			strings / 1e6,
+			columnar / 1e6,
+			index / 1e6,
+			stringSort / 1000000,
+			columnarSort / 1000000,
+			SORT_ROUNDS
+		);
+		if (a.size() != b.size() || md.slotCount() != size) {
+			throw new IllegalStateException();
+		}
+	}
+
+	static ArrayList<Beatmap> generate(Random rand, int size)
+	{
+		final ArrayList<Beatmap> maps = new ArrayList<>(size);
+		final File dir = new File("Songs");
+		while (maps.size() < size) {
+			// one set, every difficulty shares the set metadata like the string db in the parser does
+			final String title = words(rand, 1 + rand.nextInt(5));
+			final String artist = words(rand, 1 + rand.nextInt(3));
+			final String creator = words(rand, 1);
+			final String source = rand.nextInt(3) == 0 ? words(rand, 2) : "";
+			final String tags = words(rand, rand.nextInt(12)).toLowerCase();
+			final int diffs = 1 + rand.nextInt(6);
+			for (int d = 0; d < diffs && maps.size() < size; d++) {
+				final Beatmap map = new Beatmap(new File(dir, title + d + ".osu"));
+				map.title = map.titleUnicode = title;
+				map.artist = map.artistUnicode = artist;
+				map.creator = creator;
+				map.source = source;
+				map.tags = tags;
+				map.version = words(rand, 1);
+				map.approachRate = rand.nextInt(100) / 10f;
+				map.circleSize = rand.nextInt(70) / 10f;
+				map.bpmMax = 100 + rand.nextInt(150);
+				map.endTime = 60000 + rand.nextInt(300000);
+				map.starRating = rand.nextInt(800) / 100d;
+				maps.add(map);
+			}
+		}
+		return maps;
+	}
+
+	private static String words(Random rand, int count)
+	{
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				sb.append(' ');
+			}
+			sb.append((char) ('A' + rand.nextInt(26)));
+			for (int j = 2 + rand.nextInt(7); j > 0; j--) {
+				sb.append((char) ('a' + rand.nextInt(26)));
+			}
+		}
+		return sb.toString();
+	}
+
+	private static long usedHeap()
+	{
+		final Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+}
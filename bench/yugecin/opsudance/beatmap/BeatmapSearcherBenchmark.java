@@ -0,0 +1,147 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package yugecin.opsudance.beatmap;
+
+import itdelatrisu.opsu.beatmap.Beatmap;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static yugecin.opsudance.beatmap.BeatmapMetadata.*;
+
+/**
+ * Latency of typing (and backspacing) queries in the song menu on a synthetic
+ * library, comparing {@link BeatmapSearcher} with testing every string column
+ * of every map, and
+ * the latency of filter-only queries compared to testing the value of every map.
+ * <p>
+ * Compile with {@code ant bench}, then run with
+ * {@code java -cp <classpath> yugecin.opsudance.beatmap.BeatmapSearcherBenchmark [maps]}
+ */
+public class BeatmapSearcherBenchmark
+{
+	private static final int QUERIES = 20;
+	private static final int ROUNDS = 10;
+
+	/**
+	 * Filter-only queries, with the equivalent test on a single map. The numbers
+	 * get more zeros after the decimal point every round, so the searcher can't
+	 * answer them from its cache of recent results.
+	 */
+	private static final String[] FILTERS = {
+		"stars>5%s", "bpm>=200%s length<3:00", "ar=9%s", "cs<3%s od>=5%s", "ar>2%s hp>2%s",
+	};
+	private static final Predicate[] FILTER_TESTS = {
+		(md, i) -> md.stars[i] > 500,
+		(md, i) -> md.bpmMax[i] >= 200 && md.endTime[i] < 180000,
+		(md, i) -> md.approachRate[i] == 9f,
+		(md, i) -> md.circleSize[i] < 3 && md.overallDifficulty[i] >= 5,
+		(md, i) -> md.approachRate[i] > 2 && md.HPDrainRate[i] > 2,
+	};
+
+	public static void main(String[] args)
+	{
+		final int size = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		final Random rand = new Random(72);
+		final ArrayList<Beatmap> maps = BeatmapMetadataBenchmark.generate(rand, size);
+		final BeatmapMetadata md = new BeatmapMetadata();
+		for (Beatmap map : maps) {
+			md.add(map);
+		}
+
+		// simulate typing the first few characters of existing titles and artists,
+		// adding a filter and backspacing again
+		final ArrayList<String> queries = new ArrayList<>();
+		for (int i = 0; i < QUERIES; i++) {
+			final Beatmap map = maps.get(rand.nextInt(size));
+			final String word = (i % 2 == 0 ? map.title : map.artist).toLowerCase();
+			final int length = Math.min(6, word.length());
+			for (int len = 1; len <= length; len++) {
+				queries.add(word.substring(0, len));
+			}
+			queries.add(word.substring(0, length) + " ar>5");
+			for (int len = length; len > 0; len--) {
+				queries.add(word.substring(0, len));
+			}
+		}
+
+		for (int round = 0; round < ROUNDS; round++) {
+			final BeatmapSearcher searcher = new BeatmapSearcher(md);
+			long scanTime = 0, searchTime = 0, worst = 0;
+			for (String query : queries) {
+				final String term = query.split(" ")[0];
+				long time = System.nanoTime();
+				final int scanned = scan(md, maps, term);
+				scanTime += System.nanoTime() - time;
+				time = System.nanoTime();
+				final int found = searcher.search(maps, query).size();
+				time = System.nanoTime() - time;
+				searchTime += time;
+				worst = Math.max(worst, time);
+				if (term.equals(query) && found != scanned) {
+					throw new IllegalStateException("index and full scan disagree for " + query);
+				}
+			}
+			System.out.printf(
+				"round %d: %d queries on %d maps, full scan %.2fms/query, indexed %.2fms/query (worst %.2fms)%n",
+				round + 1,
+				queries.size(),
+				size,
+				scanTime / 1e6 / queries.size(),
+				searchTime / 1e6 / queries.size(),
+				worst / 1e6
+			);
+		}
+
+		final BeatmapSearcher searcher = new BeatmapSearcher(md);
+		for (int round = 0; round < ROUNDS; round++) {
+			final String decimals = round == 0 ? "" : "." + new String(new char[round]).replace('\0', '0');
+			for (int f = 0; f < FILTERS.length; f++) {
+				final String query = FILTERS[f].replace("%s", decimals);
+				long time = System.nanoTime();
+				// collect the maps like a search does, so both include building the result
+				final ArrayList<Beatmap> scanned = new ArrayList<>(maps.size());
+				for (Beatmap map : maps) {
+					if (FILTER_TESTS[f].test(md, map.metadataSlot)) {
+						scanned.add(map);
+					}
+				}
+				final long scanTime = System.nanoTime() - time;
+				time = System.nanoTime();
+				final int found = searcher.search(maps, query).size();
+				final long searchTime = System.nanoTime() - time;
+				if (found != scanned.size()) {
+					throw new IllegalStateException("index and full scan disagree for " + query);
+				}
+				System.out.printf(
+					"round %d: %-26s %6d maps, full scan %.2fms, indexed %.2fms%n",
+					round + 1,
+					query,
+					found,
+					scanTime / 1e6,
+					searchTime / 1e6
+				);
+			}
+		}
+	}
+
+	private static int scan(BeatmapMetadata md, ArrayList<Beatmap> maps, String term)
+	{
+		int count = 0;
+		for (Beatmap map : maps) {
+			final int slot = map.metadataSlot;
+			for (int column = 0; column < STRING_COLUMNS; column++) {
+				if (md.string(slot, column).contains(term)) {
+					count++;
+					break;
+				}
+			}
+		}
+		return count;
+	}
+
+	private interface Predicate
+	{
+		boolean test(BeatmapMetadata md, int slot);
+	}
+}
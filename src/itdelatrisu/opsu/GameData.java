@@ -345,6 +345,9 @@ public class GameData {
 	/** Whether this object is used for gameplay (true) or score viewing (false). */
 	private boolean isGameplay;
 
+	/** Whether only the score is kept, without sounds or animations. */
+	private boolean headless;
+
 	/**
 	 * Constructor for gameplay.
 	 */
@@ -957,14 +960,14 @@ public class GameData {
 	private void drawHitAnimations(HitObjectResult hitResult, int trackPosition) {
 		// fade out slider curve
 		if (hitResult.result != HIT_SLIDER_REPEAT && hitResult.result != HIT_SLIDER_REPEAT_M && hitResult.curve != null) {
-			if (!OPTION_SHRINKING_SLIDERS.state && hitResult.curve.getCurvePoints().length > 0) {
+			if (!OPTION_SHRINKING_SLIDERS.state && hitResult.curve.getPointCount() > 0) {
 				float progress = AnimationEquation.OUT_CUBIC.calc(
 					(float) Utils.clamp(trackPosition - hitResult.time, 0, HITCIRCLE_FADE_TIME) / HITCIRCLE_FADE_TIME);
 				float alpha = 1f - progress;
 				float oldWhiteAlpha = Colors.WHITE_FADE.a;
 				float oldColorAlpha = hitResult.color.a;
 				Colors.WHITE_FADE.a = hitResult.color.a = alpha;
-				hitResult.curve.draw(hitResult.color, (!OPTION_FALLBACK_SLIDERS.state && OPTION_MERGING_SLIDERS.state) ? 1 : 0, hitResult.curve.getCurvePoints().length);
+				hitResult.curve.draw(hitResult.color, (!OPTION_FALLBACK_SLIDERS.state && OPTION_MERGING_SLIDERS.state) ? 1 : 0, hitResult.curve.getPointCount());
 				Colors.WHITE_FADE.a = oldWhiteAlpha;
 				hitResult.color.a = oldColorAlpha;
 			}
@@ -1241,7 +1244,7 @@ public class GameData {
 			comboMax = combo;
 
 		// combo bursts (at 30, 60, 100+50x)
-		if (OPTION_SHOW_COMBO_BURSTS.state && (combo == 30 || combo == 60 || (combo >= 100 && combo % 50 == 0))) {
+		if (!headless && OPTION_SHOW_COMBO_BURSTS.state && (combo == 30 || combo == 60 || (combo >= 100 && combo % 50 == 0))) {
 			if (SkinService.skin.isComboBurstRandom()) {
 				comboBurstIndex = (int) (Math.random() * comboBurstImages.length);
 			} else {
@@ -1264,7 +1267,7 @@ public class GameData {
 	 * Resets the combo streak to zero.
 	 */
 	private void resetComboStreak() {
-		if (combo >= 20 && !(GameMod.RELAX.isActive() || GameMod.AUTOPILOT.isActive()))
+		if (!headless && combo >= 20 && !(GameMod.RELAX.isActive() || GameMod.AUTOPILOT.isActive()))
 			SoundController.playSound(SoundEffect.COMBOBREAK);
 		combo = 0;
 		if (GameMod.SUDDEN_DEATH.isActive())
@@ -1281,6 +1284,8 @@ public class GameData {
 	 * @param type the hit object type
 	 */
 	public void sendSliderRepeatResult(int time, float x, float y, Color color, Curve curve, HitObjectType type) {
+		if (headless)
+			return;
 		hitResultList.add(new HitObjectResult(time, HIT_SLIDER_REPEAT, x, y, color, type, curve, true, true));
 		if (!OPTION_DANCE_MIRROR.state) {
 			return;
@@ -1298,6 +1303,8 @@ public class GameData {
 	 * @param expand whether or not the hit result animation should expand
 	 */
 	public void sendSliderStartResult(int time, float x, float y, Color color, Color mirrorColor, boolean expand) {
+		if (headless)
+			return;
 		hitResultList.add(new HitObjectResult(time, HIT_ANIMATION_RESULT, x, y, color, HitObjectType.CIRCLE, null, expand, true));
 		if (!OPTION_DANCE_MIRROR.state) {
 			return;
@@ -1321,15 +1328,17 @@ public class GameData {
 		case HIT_SLIDER30:
 			hitValue = 30;
 			changeHealth(2f);
-			SoundController.playHitSound(
-					hitObject.getEdgeHitSoundType(repeat),
-					hitObject.getSampleSet(repeat),
-					hitObject.getAdditionSampleSet(repeat));
+			if (!headless)
+				SoundController.playHitSound(
+						hitObject.getEdgeHitSoundType(repeat),
+						hitObject.getSampleSet(repeat),
+						hitObject.getAdditionSampleSet(repeat));
 			break;
 		case HIT_SLIDER10:
 			hitValue = 10;
 			changeHealth(1f);
-			SoundController.playHitSound(HitSound.SLIDERTICK);
+			if (!headless)
+				SoundController.playHitSound(HitSound.SLIDERTICK);
 			break;
 		case HIT_MISS:
 			resetComboStreak();
@@ -1343,7 +1352,7 @@ public class GameData {
 			score += hitValue;
 			incrementComboStreak();
 
-			if (OPTION_SHOW_PERFECT_HIT.state) {
+			if (!headless && OPTION_SHOW_PERFECT_HIT.state) {
 				hitResultList.add(new HitObjectResult(time, result, x, y, null, HitObjectType.SLIDERTICK, null, false, false));
 			}
 		}
@@ -1444,10 +1453,11 @@ public class GameData {
 			return HIT_MISS;
 		}
 		if (hitValue > 0) {
-			SoundController.playHitSound(
-					hitObject.getEdgeHitSoundType(repeat),
-					hitObject.getSampleSet(repeat),
-					hitObject.getAdditionSampleSet(repeat));
+			if (!headless)
+				SoundController.playHitSound(
+						hitObject.getEdgeHitSoundType(repeat),
+						hitObject.getSampleSet(repeat),
+						hitObject.getAdditionSampleSet(repeat));
 
 			// calculate score and increment combo streak
 			changeScore(getScoreForHit(hitValue, hitObject));
@@ -1528,6 +1538,9 @@ public class GameData {
 			hitResult = HIT_300;
 		}
 
+		if (headless)
+			return;
+
 		if (hitResult == HIT_MISS && (GameMod.RELAX.isActive() || GameMod.AUTOPILOT.isActive()))
 			return;  // "relax" and "autopilot" mods: hide misses
 
@@ -1637,6 +1650,13 @@ public class GameData {
 	 */
 	public void setGameplay(boolean gameplay) { this.isGameplay = gameplay; }
 
+	/**
+	 * Sets whether only the score should be kept, without playing sounds or
+	 * keeping hit result animations, for simulations without a game container.
+	 * @param headless true to only keep the score
+	 */
+	public void setHeadless(boolean headless) { this.headless = headless; }
+
 	/**
 	 * Adds the hit into the list of hit error information.
 	 * @param time the correct hit time
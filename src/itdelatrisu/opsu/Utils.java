@@ -286,7 +286,6 @@ public class Utils {
 
 	/**
 	 * Returns the md5 hash of a file in hex form.
-	 * TODO: this is unused?
 	 * @param file the file to hash
 	 * @return the md5 hash
 	 */
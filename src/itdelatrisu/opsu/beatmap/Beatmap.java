@@ -18,19 +18,28 @@
 
 package itdelatrisu.opsu.beatmap;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.newdawn.slick.Color;
 import org.newdawn.slick.Image;
 import org.newdawn.slick.util.Log;
+import yugecin.opsudance.core.Nullable;
+import yugecin.opsudance.utils.WeightedCache;
 
 import itdelatrisu.opsu.GameData.Grade;
 import itdelatrisu.opsu.GameMod;
+import itdelatrisu.opsu.objects.curves.CurveCache;
 
 import static yugecin.opsudance.options.Options.*;
 
@@ -41,37 +50,61 @@ public class Beatmap implements Comparable<Beatmap>
 {
 	public static final Beatmap[] EMPTY_ARRAY = new Beatmap[0];
 
+	/** Format version of {@link #objectsToBytes(int)}, change this whenever the format changes. */
+	private static final int OBJECTS_FORMAT_VERSION = 1;
+
 	/** Game modes. */
 	public static final byte MODE_OSU = 0, MODE_TAIKO = 1, MODE_CTB = 2, MODE_MANIA = 3;
 
-	/** Background image cache. */
-	@SuppressWarnings("serial")
-	private static final LRUCache<File, ImageLoader> bgImageCache = new LRUCache<File, ImageLoader>(10) {
-		@Override
-		public void eldestRemoved(Map.Entry<File, ImageLoader> eldest) {
-			if (eldest.getKey() == lastBG)
-				lastBG = null;
-			ImageLoader imageLoader = eldest.getValue();
-			imageLoader.destroy();
-		}
-	};
+	/** Time after which background images that weren't drawn are released, in milliseconds. */
+	private static final long BG_IMAGE_EXPIRE_TIME = 5 * 60 * 1000;
 
-	/** The last background image loaded. */
-	private static File lastBG;
+	/**
+	 * Background image cache, weighted by the size of the decoded images.
+	 * The maximum weight is applied from the options when loading backgrounds.
+	 */
+	private static final WeightedCache<File, ImageLoader> bgImageCache =
+		new WeightedCache<File, ImageLoader>(Long.MAX_VALUE, BG_IMAGE_EXPIRE_TIME) {
+			@Override
+			protected long weigh(File file, ImageLoader imageLoader) {
+				return imageLoader.getSize();
+			}
+
+			@Override
+			protected void removed(File file, ImageLoader imageLoader) {
+				imageLoader.destroy();
+			}
+		};
 
 	/**
-	 * Clears the background image cache.
-	 * <p>
-	 * NOTE: This does NOT destroy the images in the cache, and will cause
-	 * memory leaks if all images have not been destroyed.
+	 * Background images that were decoded since their weight in the cache was
+	 * last updated, added by the decoding threads.
 	 */
-	public static void clearBackgroundImageCache() { bgImageCache.clear(); }
+	private static final ConcurrentLinkedQueue<File> decodedBackgrounds = new ConcurrentLinkedQueue<File>();
+
+	/**
+	 * Updates the weight of the background images that were decoded, evicting
+	 * images if they don't fit anymore. Called from the main thread, since
+	 * evicted images are destroyed.
+	 */
+	private static void reweighDecodedBackgrounds() {
+		File file;
+		while ((file = decodedBackgrounds.poll()) != null)
+			bgImageCache.reweigh(file);
+	}
 
+	/**
+	 * Returns the maximum amount of memory used by the background image cache, in bytes.
+	 */
+	private static long getBackgroundImageCacheSize() {
+		return OPTION_BACKGROUND_CACHE_SIZE.val * 1024L * 1024L;
+	}
+
+	/**
+	 * Destroys all images in the background image cache.
+	 */
 	public static void destroyBackgroundImageCache() {
-		Collection<ImageLoader> values = bgImageCache.values();
-		for (ImageLoader value : values) {
-			value.destroy();
-		}
+		Log.info(String.format("Background image cache: %s", bgImageCache));
 		bgImageCache.clear();
 	}
 
@@ -81,8 +114,18 @@ public class Beatmap implements Comparable<Beatmap>
 	/** MD5 hash of this file. */
 	public String md5Hash;
 
-	/** The star rating. */
-	public double starRating = -1;
+	/**
+	 * The star rating, or -1 if not calculated yet.
+	 * Set by the star rating workers while the main thread reads it.
+	 */
+	public volatile double starRating = -1;
+
+	/**
+	 * The difficulty values for every combination of game mods, indexed by
+	 * {@link DifficultyAttributes#indexOf(int)}, or null if not loaded yet.
+	 * Replaced as a whole when values are added, the array is never modified.
+	 */
+	public volatile DifficultyAttributes[] difficultyAttributes;
 
 	/** The timestamp this beatmap was first loaded. */
 	public long dateAdded = 0;
@@ -101,6 +144,12 @@ public class Beatmap implements Comparable<Beatmap>
 
 	public BeatmapSet beatmapSet;
 
+	/**
+	 * Slot in {@link yugecin.opsudance.beatmap.BeatmapMetadata}, which has the lowercase
+	 * variants used for searching and sorting, or -1 if this map is not in a list.
+	 */
+	public int metadataSlot = -1;
+
 	/**
 	 * [General]
 	 */
@@ -176,14 +225,6 @@ public class Beatmap implements Comparable<Beatmap>
 	/** Song source. */
 	public String source = "";
 
-	/**
-	 * Lowercase variants used for searching
-	 */
-	public String
-		searchTitle = "", searchTitleUnicode = "",
-		searchArtist = "", searchArtistUnicode = "",
-		searchCreator = "", searchVersion = "", searchSource = "";
-
 	/** Song tags (for searching). */
 	public String tags = "";
 
@@ -255,6 +296,24 @@ public class Beatmap implements Comparable<Beatmap>
 	/** All hit objects. */
 	public HitObject[] objects;
 
+	/** Whether {@link #objects} are stored in the hit object cache in the database. */
+	public boolean objectsCached;
+
+	/**
+	 * The MD5 hash of the file contents that {@link #objects} were parsed from,
+	 * which the hit object cache is keyed on.
+	 */
+	public String objectsMD5Hash;
+
+	/**
+	 * Whether the stack indices of {@link #objects} are calculated. They're stored
+	 * in the hit object cache along with the objects.
+	 */
+	public boolean stacksCalculated;
+
+	/** The slider curves of {@link #objects}, or null if not created. */
+	private volatile CurveCache curveCache;
+
 	/** Number of individual objects. */
 	public int
 		hitObjectCircle = 0,
@@ -319,20 +378,54 @@ public class Beatmap implements Comparable<Beatmap>
 	 * Loads the beatmap background image.
 	 */
 	public void loadBackground() {
-		if (bg == null || bgImageCache.containsKey(bg) || !bg.isFile())
-			return;
+		loadBackgrounds(this, null);
+	}
 
-		if (lastBG != null) {
-			ImageLoader lastImageLoader = bgImageCache.get(lastBG);
-			if (lastImageLoader != null && lastImageLoader.isLoading()) {
-				lastImageLoader.interrupt();  // only allow loading one image at a time
-				bgImageCache.remove(lastBG);
+	/**
+	 * Loads the background image of a beatmap, and prefetches the background
+	 * images of the given beatmaps after it. Loads of any other images that are
+	 * still in progress are cancelled.
+	 * @param beatmap the beatmap to load the background image of
+	 * @param prefetch the beatmaps to prefetch the background images of, or null
+	 */
+	public static void loadBackgrounds(Beatmap beatmap, @Nullable Beatmap[] prefetch) {
+		Set<File> wanted = new HashSet<File>();
+		if (beatmap.bg != null)
+			wanted.add(beatmap.bg);
+		if (prefetch != null) {
+			for (Beatmap map : prefetch) {
+				if (map.bg != null)
+					wanted.add(map.bg);
 			}
 		}
-		ImageLoader imageLoader = new ImageLoader(bg);
-		bgImageCache.put(bg, imageLoader);
+
+		// only keep loading images that are still wanted
+		bgImageCache.removeIf((file, imageLoader) -> imageLoader.isLoading() && !wanted.contains(file));
+
+		// prefetched images first, so the wanted image is the most recently used one
+		if (prefetch != null) {
+			for (Beatmap map : prefetch)
+				map.startLoadingBackground();
+		}
+		beatmap.startLoadingBackground();
+
+		// account for images that were turned into textures, and apply option changes
+		decodedBackgrounds.clear();
+		bgImageCache.setMaxWeight(getBackgroundImageCacheSize());
+		bgImageCache.reweigh();
+	}
+
+	/**
+	 * Starts loading the background image, if it's not cached.
+	 */
+	private void startLoadingBackground() {
+		if (bg == null || bgImageCache.get(bg) != null || !bg.isFile())
+			return;
+
+		final File file = bg;
+		ImageLoader imageLoader = new ImageLoader(file, () -> decodedBackgrounds.add(file));
+		bgImageCache.put(file, imageLoader);
 		imageLoader.load(true);
-		lastBG = bg;
 	}
 
 	/**
@@ -355,6 +448,7 @@ public class Beatmap implements Comparable<Beatmap>
 	 * @return true if successful, false if any errors were produced
 	 */
 	public boolean drawBackground(int width, int height, float alpha, boolean stretch) {
+		reweighDecodedBackgrounds();
 		if (bg == null) {
 			return false;
 		}
@@ -481,6 +575,50 @@ public class Beatmap implements Comparable<Beatmap>
 		timingPoints.trimToSize();
 	}
 
+	/**
+	 * Returns the {@link #objects} field in a compact binary format,
+	 * or null if the field is null.
+	 * @param comboColorCount the amount of combo colors the combo indices were assigned with
+	 */
+	public byte[] objectsToBytes(int comboColorCount) {
+		if (objects == null)
+			return null;
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(objects.length * 40);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(OBJECTS_FORMAT_VERSION);
+			out.writeInt(comboColorCount);
+			out.writeInt(objects.length);
+			for (HitObject hitObject : objects)
+				hitObject.write(out);
+		} catch (IOException e) {
+			// not thrown by in-memory streams
+			throw new RuntimeException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Sets the {@link #objects} field from data created by {@link #objectsToBytes(int)}.
+	 * @param data the data
+	 * @param comboColorCount the amount of combo colors in use
+	 * @return false if the data is in an older format or was created with another
+	 *         amount of combo colors, in which case the field is not changed
+	 * @throws IOException if the data is corrupt
+	 */
+	public boolean objectsFromBytes(byte[] data, int comboColorCount) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+			if (in.readInt() != OBJECTS_FORMAT_VERSION || in.readInt() != comboColorCount)
+				return false;
+
+			HitObject[] objects = new HitObject[in.readInt()];
+			for (int i = 0; i < objects.length; i++)
+				objects[i] = new HitObject(in);
+			this.objects = objects;
+			return true;
+		}
+	}
+
 	/**
 	 * Returns the {@link #combo} field formatted as a string,
 	 * or null if the field is null or the default combo.
@@ -553,6 +691,47 @@ public class Beatmap implements Comparable<Beatmap>
 		this.lastPlayed = System.currentTimeMillis();
 	}
 
+	/**
+	 * Returns the cache of slider curves of this beatmap, creating it if needed.
+	 * It's kept until {@link #clearCurveCache()} is called.
+	 */
+	public CurveCache getCurveCache() {
+		CurveCache cache = curveCache;
+		if (cache == null) {
+			synchronized (this) {
+				cache = curveCache;
+				if (cache == null)
+					curveCache = cache = new CurveCache();
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Releases the cached slider curves of this beatmap.
+	 */
+	public void clearCurveCache() {
+		curveCache = null;
+	}
+
+	/**
+	 * Returns the star rating for the active game mods. This is the star rating
+	 * without mods if the difficulty for the active mods isn't calculated yet.
+	 * @return the star rating, or a negative value if not calculated
+	 */
+	public double getStarRating()
+	{
+		final DifficultyAttributes[] attributes = this.difficultyAttributes;
+		final int mods = DifficultyAttributes.getActiveMods();
+		if (mods != 0 && attributes != null) {
+			final DifficultyAttributes attr = attributes[DifficultyAttributes.indexOf(mods)];
+			if (attr != null) {
+				return attr.starRating;
+			}
+		}
+		return this.starRating;
+	}
+
 	/**
 	 * Returns an array of strings containing beatmap information.
 	 * <ul>
@@ -573,9 +752,10 @@ public class Beatmap implements Comparable<Beatmap>
 		final DecimalFormat nf = new DecimalFormat("##.#");
 		final int minutes = (int) (endTime / 60000);
 		final String bpm;
+		final double stars = this.getStarRating();
 		final String starRating;
-		if (this.starRating >= 0) {
-			starRating = String.format(" Stars:%.2f", this.starRating);
+		if (stars >= 0) {
+			starRating = String.format(" Stars:%.2f", stars);
 		} else {
 			starRating = "";
 		}
@@ -20,16 +20,18 @@ package itdelatrisu.opsu.beatmap;
 
 import itdelatrisu.opsu.db.BeatmapDB;
 import itdelatrisu.opsu.objects.curves.Curve;
-import itdelatrisu.opsu.objects.curves.Vec2f;
+import itdelatrisu.opsu.objects.curves.CurveCache;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 import org.newdawn.slick.util.Log;
 
 /**
  * osu!tp's beatmap difficulty algorithm.
+ * <p>
+ * The hit objects are kept in primitive arrays, indexed by hit object index, so
+ * the strain and difficulty calculations don't allocate.
  *
  * @author Tom94 (https://github.com/Tom94/AiModtpDifficultyCalculator)
  */
@@ -57,11 +59,70 @@ public class BeatmapDifficultyCalculator {
 	/** The weighting of each strain value decays to 0.9 * its previous value. */
 	private static final double DECAY_WEIGHT = 0.9;
 
+	/**
+	 * Factor by how much speed / aim strain decays per second. Those values are results
+	 * of tweaking a lot and taking into account general feedback.
+	 * Opinionated observation: Speed is easier to maintain than accurate jumps.
+	 */
+	private static final double[] DECAY_BASE = { 0.3, 0.15 };
+
+	/** Almost the normed diameter of a circle (104 osu pixel). That is -after- position transforming. */
+	private static final double ALMOST_DIAMETER = 90;
+
+	/**
+	 * Pseudo threshold values to distinguish between "singles" and "streams".
+	 * Of course the border can not be defined clearly, therefore the algorithm
+	 * has a smooth transition between those values. They also are based on tweaking
+	 * and general feedback.
+	 */
+	private static final double STREAM_SPACING_TRESHOLD = 110, SINGLE_SPACING_TRESHOLD = 125;
+
+	/**
+	 * Scaling values for weightings to keep aim and speed difficulty in balance.
+	 * Found from testing a very large map pool (containing all ranked maps) and
+	 * keeping the average values the same.
+	 */
+	private static final double[] SPACING_WEIGHT_SCALING = { 1400, 26.25 };
+
 	/** The beatmap. */
 	private final Beatmap beatmap;
 
-	/** The beatmap's hit objects. */
-	private tpHitObject[] tpHitObjects;
+	/** The beatmap's hit objects and timing points. */
+	private final HitObject[] hitObjects;
+	private final List<TimingPoint> timingPoints;
+
+	/** The game mods to calculate the difficulty for (bitmask of {@link DifficultyAttributes#MODS}). */
+	private final int mods;
+
+	/** The cache to get the slider curves from, or null to always calculate them. */
+	private final CurveCache curveCache;
+
+	/** The number of hit objects in the arrays below. */
+	private int count;
+
+	/** The hit object times, in milliseconds. */
+	private int[] times;
+
+	/** The hit object types ({@code HitObject.TYPE_*} constants) and repeat counts. */
+	private int[] types, repeats;
+
+	/** The normalized start and end positions. */
+	private float[] startX, startY, endX, endY;
+
+	/** The slider lengths. */
+	private float[] lazySliderLengthFirst, lazySliderLengthSubsequent;
+
+	/** The strain values, indexed by the {@code DIFFICULTY_*} constants and hit object index. */
+	private double[][] strains;
+
+	/** The highest strain value in each strain step, for sorting. */
+	private double[] highestStrains;
+
+	/** The lazy cursor position while traversing a slider. */
+	private final float[] cursor = new float[2];
+
+	/** A point on the slider curve. */
+	private final float[] point = new float[2];
 
 	/** The computed star rating. */
 	private double starRating = -1;
@@ -72,6 +133,9 @@ public class BeatmapDifficultyCalculator {
 	/** The computed stars, indexed by the {@code DIFFICULTY_*} constants. */
 	private double[] stars = { -1, -1 };
 
+	/** The computed maximum combo. */
+	private int maxCombo;
+
 	/**
 	 * Constructor. Call {@link #calculate()} to run all computations.
 	 * <p>
@@ -84,6 +148,51 @@ public class BeatmapDifficultyCalculator {
 		if (beatmap.breaks == null)
 			BeatmapDB.load(beatmap, BeatmapDB.LOAD_ARRAY);
 		BeatmapParser.parseHitObjects(beatmap);
+		this.hitObjects = beatmap.objects;
+		this.timingPoints = beatmap.timingPoints;
+		this.mods = 0;
+		this.curveCache = null;
+	}
+
+	/**
+	 * Constructor for hit objects and timing points that are not stored in the
+	 * beatmap, nothing is loaded. Call {@link #calculate()} to run all computations.
+	 * @param beatmap the beatmap
+	 * @param hitObjects the beatmap's hit objects
+	 * @param timingPoints the beatmap's timing points
+	 */
+	public BeatmapDifficultyCalculator(Beatmap beatmap, HitObject[] hitObjects, List<TimingPoint> timingPoints) {
+		this(beatmap, hitObjects, timingPoints, 0);
+	}
+
+	/**
+	 * Constructor for hit objects and timing points that are not stored in the
+	 * beatmap, nothing is loaded. Call {@link #calculate()} to run all computations.
+	 * @param beatmap the beatmap
+	 * @param hitObjects the beatmap's hit objects
+	 * @param timingPoints the beatmap's timing points
+	 * @param mods the game mods to calculate the difficulty for, only {@link DifficultyAttributes#MODS} are used
+	 */
+	public BeatmapDifficultyCalculator(Beatmap beatmap, HitObject[] hitObjects, List<TimingPoint> timingPoints, int mods) {
+		this(beatmap, hitObjects, timingPoints, mods, null);
+	}
+
+	/**
+	 * Constructor for hit objects and timing points that are not stored in the
+	 * beatmap, nothing is loaded. Call {@link #calculate()} to run all computations.
+	 * @param beatmap the beatmap
+	 * @param hitObjects the beatmap's hit objects
+	 * @param timingPoints the beatmap's timing points
+	 * @param mods the game mods to calculate the difficulty for, only {@link DifficultyAttributes#MODS} are used
+	 * @param curveCache the cache to get the slider curves from, for calculations
+	 *                   with different mods, or null to calculate them
+	 */
+	public BeatmapDifficultyCalculator(Beatmap beatmap, HitObject[] hitObjects, List<TimingPoint> timingPoints, int mods, CurveCache curveCache) {
+		this.beatmap = beatmap;
+		this.hitObjects = hitObjects;
+		this.timingPoints = timingPoints;
+		this.mods = mods & DifficultyAttributes.MODS;
+		this.curveCache = curveCache;
 	}
 
 	/**
@@ -103,37 +212,67 @@ public class BeatmapDifficultyCalculator {
 	 */
 	public double getStars(int type) { return stars[type]; }
 
+	/**
+	 * Returns the maximum combo.
+	 */
+	public int getMaxCombo() { return maxCombo; }
+
+	/**
+	 * Returns all computed difficulty values, or null if the calculations failed.
+	 */
+	public DifficultyAttributes getAttributes() {
+		if (starRating < 0)
+			return null;
+		return new DifficultyAttributes(mods, stars[DIFFICULTY_AIM], stars[DIFFICULTY_SPEED], starRating, maxCombo);
+	}
+
 	/**
 	 * Calculates the difficulty values and star ratings for the beatmap.
 	 */
 	public void calculate() {
-		if (beatmap.objects == null || beatmap.timingPoints == null) {
+		if (hitObjects == null || timingPoints == null) {
 			Log.error(String.format("Trying to calculate difficulty values for beatmap '%s' with %s not yet loaded.",
-					beatmap.toString(), (beatmap.objects == null) ? "hit objects" : "timing points"));
+					beatmap.toString(), (hitObjects == null) ? "hit objects" : "timing points"));
 			return;
 		}
 
-		// Fill our custom tpHitObject class, that carries additional information
+		// Fill the arrays with the additional information of every hit object
 		// TODO: apply hit object stacking algorithm?
-		HitObject[] hitObjects = beatmap.objects;
-		this.tpHitObjects = new tpHitObject[hitObjects.length];
-		float circleRadius = (PLAYFIELD_WIDTH / 16.0f) * (1.0f - 0.7f * (beatmap.circleSize - 5.0f) / 5.0f);
+		int n = hitObjects.length;
+		this.times = new int[n];
+		this.types = new int[n];
+		this.repeats = new int[n];
+		this.startX = new float[n];
+		this.startY = new float[n];
+		this.endX = new float[n];
+		this.endY = new float[n];
+		this.lazySliderLengthFirst = new float[n];
+		this.lazySliderLengthSubsequent = new float[n];
+		this.count = 0;
+		this.maxCombo = 0;
+		float speed = DifficultyAttributes.getSpeedMultiplier(mods);
+		float circleSize = beatmap.circleSize;
+		if (mods != 0)
+			circleSize = Math.min(circleSize * DifficultyAttributes.getDifficultyMultiplier(mods), 10f);
+		float circleRadius = (PLAYFIELD_WIDTH / 16.0f) * (1.0f - 0.7f * (circleSize - 5.0f) / 5.0f);
 		int timingPointIndex = 0;
 		float beatLengthBase = 1, beatLength = 1;
-		if (!beatmap.timingPoints.isEmpty()) {
-			TimingPoint timingPoint = beatmap.timingPoints.get(0);
+		if (!timingPoints.isEmpty()) {
+			TimingPoint timingPoint = timingPoints.get(0);
 			if (!timingPoint.isInherited()) {
 				beatLengthBase = beatLength = timingPoint.getBeatLength();
 				timingPointIndex++;
 			}
 		}
-		for (int i = 0; i < hitObjects.length; i++) {
+		for (int i = 0; i < n; i++) {
 			HitObject hitObject = hitObjects[i];
+			if (hitObject == null)  // failed to parse
+				continue;
 
 			// pass beatLength to hit objects
 			int hitObjectTime = hitObject.getTime();
-			while (timingPointIndex < beatmap.timingPoints.size()) {
-				TimingPoint timingPoint = beatmap.timingPoints.get(timingPointIndex);
+			while (timingPointIndex < timingPoints.size()) {
+				TimingPoint timingPoint = timingPoints.get(timingPointIndex);
 				if (timingPoint.getTime() > hitObjectTime)
 					break;
 				if (!timingPoint.isInherited())
@@ -143,7 +282,8 @@ public class BeatmapDifficultyCalculator {
 				timingPointIndex++;
 			}
 
-			tpHitObjects[i] = new tpHitObject(hitObject, circleRadius, beatmap, beatLength);
+			addHitObject(hitObject, circleRadius, beatLength, speed);
+			maxCombo += getCombo(hitObject, beatLength / beatLengthBase);
 		}
 
 		if (!calculateStrainValues()) {
@@ -192,229 +332,198 @@ public class BeatmapDifficultyCalculator {
 	}
 
 	/**
-	 * Computes the strain values for the beatmap.
-	 * @return true if successful, false otherwise
+	 * Returns the combo a hit object gives: one for circles and spinners, and
+	 * one for the head, every tick and every end of a slider.
+	 * @param hitObject the hit object
+	 * @param timingPointMultiplier the slider velocity multiplier of the current timing point
 	 */
-	private boolean calculateStrainValues() {
-		// Traverse hitObjects in pairs to calculate the strain value of NextHitObject from
-		// the strain value of CurrentHitObject and environment.
-		if (tpHitObjects.length == 0) {
-			Log.warn("Can not compute difficulty of empty beatmap.");
-			return false;
-		}
-
-		tpHitObject currentHitObject = tpHitObjects[0];
-		tpHitObject nextHitObject;
-		int index = 0;
-
-		// First hitObject starts at strain 1. 1 is the default for strain values,
-		// so we don't need to set it here. See tpHitObject.
-		while (++index < tpHitObjects.length) {
-			nextHitObject = tpHitObjects[index];
-			nextHitObject.calculateStrains(currentHitObject);
-			currentHitObject = nextHitObject;
-		}
-
-		return true;
+	private int getCombo(HitObject hitObject, float timingPointMultiplier) {
+		if (!hitObject.isSlider())
+			return 1;
+
+		// same tick placement as Slider
+		float tickLengthDiv = 100f * beatmap.sliderMultiplier / beatmap.sliderTickRate / timingPointMultiplier;
+		int tickCount = Math.max(0, (int) Math.ceil(hitObject.getPixelLength() / tickLengthDiv) - 1);
+		int repeats = Math.max(hitObject.getRepeatCount(), 1);
+		return 1 + repeats * (tickCount + 1);
 	}
 
 	/**
-	 * Calculates the difficulty value for a difficulty type.
-	 * @param type the difficulty type ({@code DIFFICULTY_* constant})
-	 * @return the difficulty value
+	 * Adds a hit object to the arrays.
+	 * @param hitObject the hit object
+	 * @param circleRadius the circle radius
+	 * @param beatLength the current beat length
+	 * @param speed the track speed multiplier
 	 */
-	private double calculateDifficulty(int type) {
-		// Find the highest strain value within each strain step
-		List<Double> highestStrains = new ArrayList<Double>();
-		double intervalEndTime = STRAIN_STEP;
-		double maximumStrain = 0; // We need to keep track of the maximum strain in the current interval
-
-		tpHitObject previousHitObject = null;
-		for (int i = 0; i < tpHitObjects.length; i++) {
-			tpHitObject hitObject = tpHitObjects[i];
-
-			// While we are beyond the current interval push the currently available maximum to our strain list
-			while (hitObject.baseHitObject.getTime() > intervalEndTime) {
-				highestStrains.add(maximumStrain);
-
-				// The maximum strain of the next interval is not zero by default! We need to take the last
-				// hitObject we encountered, take its strain and apply the decay until the beginning of the next interval.
-				if (previousHitObject == null)
-					maximumStrain = 0;
-				else {
-					double decay = Math.pow(tpHitObject.DECAY_BASE[type], (intervalEndTime - previousHitObject.baseHitObject.getTime()) / 1000);
-					maximumStrain = previousHitObject.getStrain(type) * decay;
-				}
+	private void addHitObject(HitObject hitObject, float circleRadius, float beatLength, float speed) {
+		int i = count++;
+		times[i] = (speed == 1f) ? hitObject.getTime() : (int) (hitObject.getTime() / speed);
+		types[i] = hitObject.getType();
+		repeats[i] = hitObject.getRepeatCount();
 
-				// Go to the next time interval
-				intervalEndTime += STRAIN_STEP;
-			}
+		// We will scale everything by this factor, so we can assume a uniform CircleSize among beatmaps.
+		float scalingFactor = (52.0f / circleRadius);
+		startX[i] = hitObject.getX() * scalingFactor;
+		startY[i] = hitObject.getY() * scalingFactor;
 
-			// Obtain maximum strain
-			if (hitObject.getStrain(type) > maximumStrain)
-				maximumStrain = hitObject.getStrain(type);
+		if (!hitObject.isSlider()) {
+			// We have a normal HitCircle or a spinner
+			endX[i] = startX[i];
+			endY[i] = startY[i];
+			return;
+		}
 
-			previousHitObject = hitObject;
+		// Calculate approximation of lazy movement on the slider
+		int segmentLength = (int) (hitObject.getSliderTime(beatmap.sliderMultiplier, beatLength) / speed);
+
+		// Not sure if this is correct, but here we do not need 100% exact values. This comes pretty darn close in my tests.
+		float sliderFollowCircleRadius = circleRadius * 3;
+
+		// For simplifying this step we use actual osu! coordinates and simply scale the length,
+		// that we obtain by the ScalingFactor later
+		cursor[0] = hitObject.getX();
+		cursor[1] = hitObject.getY();
+
+		// The slider progress was sampled every millisecond of a segment, using the integer
+		// (time - startTime) / segmentLength. That's 0 on the whole first segment and 1 on the
+		// whole second segment, so the lazy cursor follows a fixed point on each segment and
+		// moves at most once, which is calculated directly instead of stepping.
+		// Only the first segment starts at the start of the slider; the subsequent ones
+		// start where the previous one ended, which makes their lazy curves different.
+		Curve curve = null;
+		if (segmentLength > 1) {
+			curve = (curveCache != null) ? curveCache.get(hitObject, false) : hitObject.getSliderCurve(false);
+			curve.pointAt(0f, point);
+			lazySliderLengthFirst[i] = follow(point[0], point[1], sliderFollowCircleRadius) * scalingFactor;
 		}
 
-		// Build the weighted sum over the highest strains for each interval
-		double difficulty = 0;
-		double weight = 1;
-		Collections.sort(highestStrains, Collections.reverseOrder()); // Sort from highest to lowest strain.
-		for (double strain : highestStrains) {
-			difficulty += weight * strain;
-			weight *= DECAY_WEIGHT;
+		// If we have an odd amount of repetitions the current position will be the end of the slider.
+		// Note that this will -always- be triggered if the repeat count <= 1, because it can not be
+		// smaller than 1. Therefore the end position will always be initialized
+		if (repeats[i] % 2 == 1) {
+			endX[i] = cursor[0] * scalingFactor;
+			endY[i] = cursor[1] * scalingFactor;
 		}
 
-		return difficulty;
+		// If we have more than one segment, then we also need to compute the length of subsequent
+		// lazy curves. They are different from the first one, since the first one starts right
+		// at the beginning of the slider.
+		if (repeats[i] > 1) {
+			if (curve != null) {
+				curve.pointAt(1f, point);
+				lazySliderLengthSubsequent[i] = follow(point[0], point[1], sliderFollowCircleRadius) * scalingFactor;
+			}
+
+			// If we have an even amount of repetitions the current position will be the end of the slider
+			if (repeats[i] % 2 == 0) {
+				endX[i] = cursor[0] * scalingFactor;
+				endY[i] = cursor[1] * scalingFactor;
+			}
+		}
 	}
-}
 
-/**
- * Hit object helper class for calculating strains.
- */
-class tpHitObject {
 	/**
-	 * Factor by how much speed / aim strain decays per second. Those values are results
-	 * of tweaking a lot and taking into account general feedback.
-	 * Opinionated observation: Speed is easier to maintain than accurate jumps.
+	 * Moves the lazy cursor towards a point until the point is within its follow circle.
+	 * @param x the x coordinate of the point
+	 * @param y the y coordinate of the point
+	 * @param radius the follow circle radius
+	 * @return the distance the cursor moved
 	 */
-	public static final double[] DECAY_BASE = { 0.3, 0.15 };
+	private float follow(float x, float y, float radius) {
+		float dx = x - cursor[0], dy = y - cursor[1];
+		float distance = (float) Math.sqrt(dx * dx + dy * dy);
 
-	/** Almost the normed diameter of a circle (104 osu pixel). That is -after- position transforming. */
-	private static final double ALMOST_DIAMETER = 90;
-
-	/**
-	 * Pseudo threshold values to distinguish between "singles" and "streams".
-	 * Of course the border can not be defined clearly, therefore the algorithm
-	 * has a smooth transition between those values. They also are based on tweaking
-	 * and general feedback.
-	 */
-	private static final double STREAM_SPACING_TRESHOLD = 110, SINGLE_SPACING_TRESHOLD = 125;
+		// Did we move away too far?
+		if (distance <= radius)
+			return 0;
 
-	/**
-	 * Scaling values for weightings to keep aim and speed difficulty in balance.
-	 * Found from testing a very large map pool (containing all ranked maps) and
-	 * keeping the average values the same.
-	 */
-	private static final double[] SPACING_WEIGHT_SCALING = { 1400, 26.25 };
+		// Yep, we need to move the cursor just as far as needed to stay in the follow circle
+		float length = distance;
+		distance -= radius;
+		cursor[0] += dx / length * distance;
+		cursor[1] += dy / length * distance;
+		return distance;
+	}
 
 	/**
-	 * In milliseconds. The smaller the value, the more accurate sliders are approximated.
-	 * 0 leads to an infinite loop, so use something bigger.
+	 * Computes the strain values for the beatmap.
+	 * @return true if successful, false otherwise
 	 */
-	private static final int LAZY_SLIDER_STEP_LENGTH = 1;
-
-	/** The base hit object. */
-	public final HitObject baseHitObject;
-
-	/** The strain values, indexed by the {@code DIFFICULTY_*} constants. */
-	private double[] strains = { 1, 1 };
+	private boolean calculateStrainValues() {
+		// Traverse hitObjects in pairs to calculate the strain value of NextHitObject from
+		// the strain value of CurrentHitObject and environment.
+		if (count == 0) {
+			Log.warn("Can not compute difficulty of empty beatmap.");
+			return false;
+		}
 
-	/** The normalized start and end positions. */
-	private Vec2f normalizedStartPosition, normalizedEndPosition;
+		// First hitObject starts at strain 1. 1 is the default for strain values.
+		strains = new double[2][count];
+		strains[DIFFICULTY_SPEED][0] = strains[DIFFICULTY_AIM][0] = 1;
+		for (int i = 1; i < count; i++) {
+			calculateSpecificStrain(i, DIFFICULTY_SPEED);
+			calculateSpecificStrain(i, DIFFICULTY_AIM);
+		}
 
-	/** The slider lengths. */
-	private float lazySliderLengthFirst = 0, lazySliderLengthSubsequent = 0;
+		return true;
+	}
 
 	/**
-	 * Constructor.
-	 * @param baseHitObject the base hit object
-	 * @param circleRadius the circle radius
-	 * @param beatmap the beatmap that contains the hit object
-	 * @param beatLength the current beat length
+	 * Calculates the strain value for a difficulty type given the previous hit object.
+	 * @param i the index of the hit object, the previous hit object is at {@code i - 1}
+	 * @param type the difficulty type ({@code DIFFICULTY_* constant})
 	 */
-	public tpHitObject(HitObject baseHitObject, float circleRadius, Beatmap beatmap, float beatLength) {
-		this.baseHitObject = baseHitObject;
+	private void calculateSpecificStrain(int i, int type) {
+		int prev = i - 1;
+		double addition = 0;
+		double timeElapsed = times[i] - times[prev];
+		double decay = Math.pow(DECAY_BASE[type], timeElapsed / 1000);
 
-		// We will scale everything by this factor, so we can assume a uniform CircleSize among beatmaps.
-		float scalingFactor = (52.0f / circleRadius);
-		normalizedStartPosition = new Vec2f(baseHitObject.getX(), baseHitObject.getY()).scale(scalingFactor);
+		if ((types[i] & HitObject.TYPE_SPINNER) > 0) {
+			// Do nothing for spinners
+		} else if ((types[i] & HitObject.TYPE_SLIDER) > 0) {
+			int subsequentSegments = Math.max(repeats[prev], 1) - 1;
+			switch (type) {
+			case DIFFICULTY_SPEED:
+				// For speed strain we treat the whole slider as a single spacing entity,
+				// since "Speed" is about how hard it is to click buttons fast.
+				// The spacing weight exists to differentiate between being able to easily
+				// alternate or having to single.
+				addition = spacingWeight(lazySliderLengthFirst[prev] +
+						lazySliderLengthSubsequent[prev] * subsequentSegments +
+						distance(i, prev), type) * SPACING_WEIGHT_SCALING[type];
+				break;
 
-		// Calculate approximation of lazy movement on the slider
-		if (baseHitObject.isSlider()) {
-			tpSlider slider = new tpSlider(baseHitObject, beatmap.sliderMultiplier, beatLength);
-
-			// Not sure if this is correct, but here we do not need 100% exact values. This comes pretty darn close in my tests.
-			float sliderFollowCircleRadius = circleRadius * 3;
-
-			int segmentLength = slider.getSegmentLength(); // baseHitObject.Length / baseHitObject.SegmentCount;
-			int segmentEndTime = baseHitObject.getTime() + segmentLength;
-
-			// For simplifying this step we use actual osu! coordinates and simply scale the length,
-			// that we obtain by the ScalingFactor later
-			Vec2f cursorPos = new Vec2f(baseHitObject.getX(), baseHitObject.getY());
-
-			// Actual computation of the first lazy curve
-			for (int time = baseHitObject.getTime() + LAZY_SLIDER_STEP_LENGTH; time < segmentEndTime; time += LAZY_SLIDER_STEP_LENGTH) {
-				Vec2f difference = slider.getPositionAtTime(time).sub(cursorPos);
-				float distance = difference.len();
-
-				// Did we move away too far?
-				if (distance > sliderFollowCircleRadius) {
-					// Yep, we need to move the cursor
-					difference.normalize(); // Obtain the direction of difference. We do no longer need the actual difference
-					distance -= sliderFollowCircleRadius;
-					cursorPos.add(difference.cpy().scale(distance)); // We move the cursor just as far as needed to stay in the follow circle
-					lazySliderLengthFirst += distance;
-				}
+			case DIFFICULTY_AIM:
+				// For Aim strain we treat each slider segment and the jump after the end of
+				// the slider as separate jumps, since movement-wise there is no difference
+				// to multiple jumps.
+				addition = (spacingWeight(lazySliderLengthFirst[prev], type) +
+						spacingWeight(lazySliderLengthSubsequent[prev], type) * subsequentSegments +
+						spacingWeight(distance(i, prev), type)) * SPACING_WEIGHT_SCALING[type];
+				break;
 			}
+		} else if ((types[i] & HitObject.TYPE_CIRCLE) > 0) {
+			addition = spacingWeight(distance(i, prev), type) * SPACING_WEIGHT_SCALING[type];
+		}
 
-			lazySliderLengthFirst *= scalingFactor;
-
-			// If we have an odd amount of repetitions the current position will be the end of the slider.
-			// Note that this will -always- be triggered if baseHitObject.SegmentCount <= 1, because
-			// baseHitObject.SegmentCount can not be smaller than 1. Therefore normalizedEndPosition will
-			// always be initialized
-			if (baseHitObject.getRepeatCount() % 2 == 1)
-				normalizedEndPosition = cursorPos.cpy().scale(scalingFactor);
-
-			// If we have more than one segment, then we also need to compute the length of subsequent
-			// lazy curves. They are different from the first one, since the first one starts right
-			// at the beginning of the slider.
-			if (baseHitObject.getRepeatCount() > 1) {
-				// Use the next segment
-				segmentEndTime += segmentLength;
-
-				for (int time = segmentEndTime - segmentLength + LAZY_SLIDER_STEP_LENGTH; time < segmentEndTime; time += LAZY_SLIDER_STEP_LENGTH) {
-					Vec2f difference = slider.getPositionAtTime(time).sub(cursorPos);
-					float distance = difference.len();
-
-					// Did we move away too far?
-					if (distance > sliderFollowCircleRadius) {
-						// Yep, we need to move the cursor
-						difference.normalize(); // Obtain the direction of difference. We do no longer need the actual difference
-						distance -= sliderFollowCircleRadius;
-						cursorPos.add(difference.cpy().scale(distance)); // We move the cursor just as far as needed to stay in the follow circle
-						lazySliderLengthSubsequent += distance;
-					}
-				}
-
-				lazySliderLengthSubsequent *= scalingFactor;
+		// Scale addition by the time, that elapsed. Filter out HitObjects that are too
+		// close to be played anyway to avoid crazy values by division through close to zero.
+		// You will never find maps that require this amongst ranked maps.
+		addition /= Math.max(timeElapsed, 50);
 
-				// If we have an even amount of repetitions the current position will be the end of the slider
-				if (baseHitObject.getRepeatCount() % 2 == 0) // == 1)
-					normalizedEndPosition = cursorPos.cpy().scale(scalingFactor);
-			}
-		} else {
-			// We have a normal HitCircle or a spinner
-			normalizedEndPosition = normalizedStartPosition.cpy(); //baseHitObject.EndPosition * ScalingFactor;
-		}
+		strains[type][i] = strains[type][prev] * decay + addition;
 	}
 
 	/**
-	 * Returns the strain value for a difficulty type.
-	 * @param type the difficulty type ({@code DIFFICULTY_* constant})
+	 * Returns the distance from the end of a hit object to the start of another.
+	 * @param i the index of the hit object
+	 * @param other the index of the other hit object
 	 */
-	public double getStrain(int type) { return strains[type]; }
-
-	/**
-	 * Calculates the strain values given the previous hit object.
-	 * @param previousHitObject the previous hit object
-	 */
-	public void calculateStrains(tpHitObject previousHitObject) {
-		calculateSpecificStrain(previousHitObject, BeatmapDifficultyCalculator.DIFFICULTY_SPEED);
-		calculateSpecificStrain(previousHitObject, BeatmapDifficultyCalculator.DIFFICULTY_AIM);
+	private double distance(int i, int other) {
+		// Scale the distance by circle size.
+		float dx = startX[i] - endX[other], dy = startY[i] - endY[other];
+		return (float) Math.sqrt(dx * dx + dy * dy);
 	}
 
 	/**
@@ -425,7 +534,7 @@ class tpHitObject {
 	private static double spacingWeight(double distance, int type) {
 		// Caution: The subjective values are strong with this one
 		switch (type) {
-		case BeatmapDifficultyCalculator.DIFFICULTY_SPEED:
+		case DIFFICULTY_SPEED:
 			double weight;
 			if (distance > SINGLE_SPACING_TRESHOLD)
 				weight = 2.5;
@@ -438,7 +547,7 @@ class tpHitObject {
 			else
 				weight = 0.95;
 			return weight;
-		case BeatmapDifficultyCalculator.DIFFICULTY_AIM:
+		case DIFFICULTY_AIM:
 			return Math.pow(distance, 0.99);
 		default:
 			// Should never happen.
@@ -447,98 +556,55 @@ class tpHitObject {
 	}
 
 	/**
-	 * Calculates the strain value for a difficulty type given the previous hit object.
-	 * @param previousHitObject the previous hit object
+	 * Calculates the difficulty value for a difficulty type.
 	 * @param type the difficulty type ({@code DIFFICULTY_* constant})
+	 * @return the difficulty value
 	 */
-	private void calculateSpecificStrain(tpHitObject previousHitObject, int type) {
-		double addition = 0;
-		double timeElapsed = baseHitObject.getTime() - previousHitObject.baseHitObject.getTime();
-		double decay = Math.pow(DECAY_BASE[type], timeElapsed / 1000);
-
-		if (baseHitObject.isSpinner()) {
-			// Do nothing for spinners
-		} else if (baseHitObject.isSlider()) {
-			switch (type) {
-			case BeatmapDifficultyCalculator.DIFFICULTY_SPEED:
-				// For speed strain we treat the whole slider as a single spacing entity,
-				// since "Speed" is about how hard it is to click buttons fast.
-				// The spacing weight exists to differentiate between being able to easily
-				// alternate or having to single.
-				addition = spacingWeight(previousHitObject.lazySliderLengthFirst +
-						previousHitObject.lazySliderLengthSubsequent * (Math.max(previousHitObject.baseHitObject.getRepeatCount(), 1) - 1) +
-						distanceTo(previousHitObject), type) * SPACING_WEIGHT_SCALING[type];
-				break;
-
-			case BeatmapDifficultyCalculator.DIFFICULTY_AIM:
-				// For Aim strain we treat each slider segment and the jump after the end of
-				// the slider as separate jumps, since movement-wise there is no difference
-				// to multiple jumps.
-				addition = (spacingWeight(previousHitObject.lazySliderLengthFirst, type) +
-						spacingWeight(previousHitObject.lazySliderLengthSubsequent, type) * (Math.max(previousHitObject.baseHitObject.getRepeatCount(), 1) - 1) +
-						spacingWeight(distanceTo(previousHitObject), type)) * SPACING_WEIGHT_SCALING[type];
-				break;
-			}
-		} else if (baseHitObject.isCircle()) {
-			addition = spacingWeight(distanceTo(previousHitObject), type) * SPACING_WEIGHT_SCALING[type];
-		}
-
-		// Scale addition by the time, that elapsed. Filter out HitObjects that are too
-		// close to be played anyway to avoid crazy values by division through close to zero.
-		// You will never find maps that require this amongst ranked maps.
-		addition /= Math.max(timeElapsed, 50);
-
-		strains[type] = previousHitObject.strains[type] * decay + addition;
-	}
+	private double calculateDifficulty(int type) {
+		// Find the highest strain value within each strain step
+		double[] strain = strains[type];
+		int intervals = 0;
+		double intervalEndTime = STRAIN_STEP;
+		double maximumStrain = 0; // We need to keep track of the maximum strain in the current interval
 
-	/**
-	 * Returns the distance to another hit object.
-	 * @param other the other hit object
-	 */
-	public double distanceTo(tpHitObject other) {
-		// Scale the distance by circle size.
-		return (normalizedStartPosition.cpy().sub(other.normalizedEndPosition)).len();
-	}
-}
+		int previous = -1;
+		for (int i = 0; i < count; i++) {
+			// While we are beyond the current interval push the currently available maximum to our strain list
+			while (times[i] > intervalEndTime) {
+				if (highestStrains == null || intervals == highestStrains.length)
+					highestStrains = Arrays.copyOf(highestStrains == null ? new double[0] : highestStrains, Math.max(64, intervals * 2));
+				highestStrains[intervals++] = maximumStrain;
 
-/**
- * Slider helper class to fill in some missing pieces needed in the strain calculations.
- */
-class tpSlider {
-	/** The slider start time. */
-	private final int startTime;
+				// The maximum strain of the next interval is not zero by default! We need to take the last
+				// hitObject we encountered, take its strain and apply the decay until the beginning of the next interval.
+				if (previous == -1)
+					maximumStrain = 0;
+				else {
+					double decay = Math.pow(DECAY_BASE[type], (intervalEndTime - times[previous]) / 1000);
+					maximumStrain = strain[previous] * decay;
+				}
 
-	/** The time duration of the slider, in milliseconds. */
-	private final int sliderTime;
+				// Go to the next time interval
+				intervalEndTime += STRAIN_STEP;
+			}
 
-	/** The slider Curve. */
-	private final Curve curve;
+			// Obtain maximum strain
+			if (strain[i] > maximumStrain)
+				maximumStrain = strain[i];
 
-	/**
-	 * Constructor.
-	 * @param hitObject the hit object
-	 * @param sliderMultiplier the slider movement speed multiplier
-	 * @param beatLength the beat length
-	 */
-	public tpSlider(HitObject hitObject, float sliderMultiplier, float beatLength) {
-		this.startTime = hitObject.getTime();
-		this.sliderTime = (int) hitObject.getSliderTime(sliderMultiplier, beatLength);
-		this.curve = hitObject.getSliderCurve(false);
-	}
+			previous = i;
+		}
 
-	/**
-	 * Returns the time duration of a slider segment, in milliseconds.
-	 */
-	public int getSegmentLength() { return sliderTime; }
+		// Build the weighted sum over the highest strains for each interval, from highest to lowest strain
+		double difficulty = 0;
+		double weight = 1;
+		if (intervals > 0)
+			Arrays.sort(highestStrains, 0, intervals);
+		for (int i = intervals - 1; i >= 0; i--) {
+			difficulty += weight * highestStrains[i];
+			weight *= DECAY_WEIGHT;
+		}
 
-	/**
-	 * Returns the coordinates of the slider at a given track position.
-	 * @param time the track position
-	 */
-	public Vec2f getPositionAtTime(int time) {
-		float t = (time - startTime) / sliderTime;
-		float floor = (float) Math.floor(t);
-		t = (floor % 2 == 0) ? t - floor : floor + 1 - t;
-		return curve.pointAt(t);
+		return difficulty;
 	}
 }
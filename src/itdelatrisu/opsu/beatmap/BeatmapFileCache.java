@@ -0,0 +1,115 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package itdelatrisu.opsu.beatmap;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps the raw contents of recently read OSU files in memory, so the different
+ * parsing passes over a beatmap (metadata, timing points, hit objects) share
+ * a single read from disk.
+ * <p>
+ * Entries are keyed by path and invalidated when the last modified time of the
+ * file changes. The total size of the cached files is bounded.
+ */
+public class BeatmapFileCache
+{
+	/** Maximum total size of all cached files, in bytes. */
+	private static final int MAX_TOTAL_SIZE = 16 * 1024 * 1024;
+
+	/** Files bigger than this are never cached. */
+	private static final int MAX_FILE_SIZE = MAX_TOTAL_SIZE / 4;
+
+	private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private static int totalSize;
+
+	/**
+	 * Returns the contents of the file, reading it from disk only if it's not cached
+	 * or has been modified since it was cached. The returned array must not be modified.
+	 * @param file the file to read
+	 * @param cache whether to keep the contents cached when they had to be read from disk
+	 */
+	public static byte[] read(File file, boolean cache) throws IOException
+	{
+		final String path = file.getPath();
+		final long lastModified = file.lastModified();
+		synchronized (entries) {
+			final Entry entry = entries.get(path);
+			if (entry != null) {
+				if (entry.lastModified == lastModified) {
+					return entry.data;
+				}
+				remove(path);
+			}
+		}
+
+		final byte[] data = Files.readAllBytes(file.toPath());
+		if (cache) {
+			put(path, lastModified, data);
+		}
+		return data;
+	}
+
+	/**
+	 * Caches the contents of a file that were just written to disk, so they
+	 * don't need to be read back when the file is parsed.
+	 * @param file the written file
+	 * @param data the contents of the file, must not be modified afterwards
+	 */
+	public static void put(File file, byte[] data)
+	{
+		put(file.getPath(), file.lastModified(), data);
+	}
+
+	private static void put(String path, long lastModified, byte[] data)
+	{
+		if (data.length > MAX_FILE_SIZE) {
+			return;
+		}
+		synchronized (entries) {
+			remove(path);
+			entries.put(path, new Entry(lastModified, data));
+			totalSize += data.length;
+			final Iterator<Entry> iter = entries.values().iterator();
+			while (totalSize > MAX_TOTAL_SIZE && iter.hasNext()) {
+				totalSize -= iter.next().data.length;
+				iter.remove();
+			}
+		}
+	}
+
+	/**
+	 * Clears the cache.
+	 */
+	public static void clear()
+	{
+		synchronized (entries) {
+			entries.clear();
+			totalSize = 0;
+		}
+	}
+
+	private static void remove(String path)
+	{
+		final Entry old = entries.remove(path);
+		if (old != null) {
+			totalSize -= old.data.length;
+		}
+	}
+
+	private static class Entry
+	{
+		final long lastModified;
+		final byte[] data;
+
+		Entry(long lastModified, byte[] data)
+		{
+			this.lastModified = lastModified;
+			this.data = data;
+		}
+	}
+}
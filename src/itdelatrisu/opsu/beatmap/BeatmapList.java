@@ -21,14 +21,19 @@ package itdelatrisu.opsu.beatmap;
 import itdelatrisu.opsu.Utils;
 import itdelatrisu.opsu.audio.MusicController;
 import itdelatrisu.opsu.db.BeatmapDB;
+import yugecin.opsudance.beatmap.BeatmapMetadata;
 import yugecin.opsudance.beatmap.BeatmapSearcher;
 import yugecin.opsudance.core.Nullable;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 import static itdelatrisu.opsu.ui.Colors.*;
 import static yugecin.opsudance.core.InstanceContainer.*;
@@ -46,6 +51,11 @@ public class BeatmapList
 	 * public read access only
 	 */
 	public final ArrayList<Beatmap> maps;
+	/**
+	 * search and sort values of {@link #maps}
+	 */
+	public final BeatmapMetadata metadata;
+	private final BeatmapSearcher searcher;
 
 	/**
 	 * nodes in the current group (see {@link BeatmapGroup#current})
@@ -59,6 +69,10 @@ public class BeatmapList
 
 	private final HashMap<String, Beatmap> beatmapHashDB;
 	private final HashSet<Integer> beatmapSetDb;
+	/**
+	 * sets by the name of the directory they were loaded from
+	 */
+	private final HashMap<String, BeatmapSet> setsByDir;
 
 	private String lastSearchQuery = "";
 
@@ -66,9 +80,12 @@ public class BeatmapList
 	{
 		this.sets = new ArrayList<>();
 		this.maps = new ArrayList<>();
+		this.metadata = new BeatmapMetadata();
+		this.searcher = new BeatmapSearcher(this.metadata);
 		this.visibleNodes = this.nodesInGroup = new ArrayList<>();
 		this.beatmapHashDB = new HashMap<>();
 		this.beatmapSetDb = new HashSet<>();
+		this.setsByDir = new HashMap<>();
 	}
 
 	public void activeGroupChanged()
@@ -103,21 +120,22 @@ public class BeatmapList
 		return this.sets.size();
 	}
 
+	/**
+	 * Adds a song group to the list. It's not added to the visible nodes, call
+	 * {@link #activeGroupChanged()} after adding sets to filter them with the
+	 * current group and search query. Only call this from the thread that uses
+	 * the list, or before the list is in use.
+	 */
 	void addBeatmapSet(Beatmap[] beatmaps)
 	{
 		final BeatmapSet set = new BeatmapSet(beatmaps);
 		this.sets.add(set);
+		this.setsByDir.put(beatmaps[0].getFile().getParentFile().getName(), set);
 
 		this.maps.ensureCapacity(this.maps.size() + beatmaps.length);
 		for (Beatmap beatmap : beatmaps) {
 			this.maps.add(beatmap);
-
-			// TODO this will only work when this method was called in splash,
-			//      since at any later point visibleNodes might not point to
-			//      nodesInGroup
-			// TODO check search condition here then, too
-			this.visibleNodes.add(beatmap);
-
+			this.metadata.add(beatmap);
 			beatmap.beatmapSet = set;
 			if (beatmap.md5Hash != null) {
 				beatmapHashDB.put(beatmap.md5Hash, beatmap);
@@ -125,6 +143,52 @@ public class BeatmapList
 		}
 	}
 
+	/**
+	 * Returns the set that was loaded from the given directory.
+	 * @param dirName the name of the beatmap set directory
+	 * @return the set, or {@code null} if there is none
+	 */
+	@Nullable
+	BeatmapSet getBeatmapSet(String dirName)
+	{
+		return this.setsByDir.get(dirName);
+	}
+
+	/**
+	 * Removes song groups from the list, without deleting their files or
+	 * database entries. Used when their directories are being reloaded.
+	 * Only call this from the thread that uses the list.
+	 */
+	void removeBeatmapSets(Collection<BeatmapSet> removedSets)
+	{
+		if (removedSets.isEmpty()) {
+			return;
+		}
+		final Set<BeatmapSet> sets = Collections.newSetFromMap(new IdentityHashMap<>());
+		final Set<Beatmap> maps = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (BeatmapSet set : removedSets) {
+			sets.add(set);
+			this.setsByDir.remove(set.beatmaps[0].getFile().getParentFile().getName());
+			if (set.setId > 0) {
+				this.beatmapSetDb.remove(set.setId);
+			}
+			for (Beatmap bm : set.beatmaps) {
+				maps.add(bm);
+				this.metadata.remove(bm);
+				if (bm.md5Hash != null) {
+					this.beatmapHashDB.remove(bm.md5Hash);
+				}
+			}
+		}
+		// single pass over the lists, instead of a search for every removed element
+		this.sets.removeIf(sets::contains);
+		this.maps.removeIf(maps::contains);
+		this.nodesInGroup.removeIf(maps::contains);
+		if (this.visibleNodes != this.nodesInGroup) {
+			this.visibleNodes.removeIf(maps::contains);
+		}
+	}
+
 	/**
 	 * Deletes a song group from the list, and also deletes the beatmap
 	 * directory associated with the node.
@@ -137,6 +201,7 @@ public class BeatmapList
 		}
 		for (Beatmap bm : set.beatmaps) {
 			this.maps.remove(bm);
+			this.metadata.remove(bm);
 			if (bm.md5Hash != null) {
 				this.beatmapHashDB.remove(bm.md5Hash);
 			}
@@ -158,6 +223,7 @@ public class BeatmapList
 		}
 
 		final File dir = set.beatmaps[0].getFile().getParentFile();
+		this.setsByDir.remove(dir.getName());
 
 		// remove entry from cache
 		BeatmapDB.delete(dir.getName());
@@ -203,6 +269,7 @@ public class BeatmapList
 		}
 		set.beatmaps = newBeatmapsInSet;
 		this.maps.remove(beatmap);
+		this.metadata.remove(beatmap);
 
 		if (beatmap.md5Hash != null) {
 			beatmapHashDB.remove(beatmap.md5Hash);
@@ -256,7 +323,7 @@ public class BeatmapList
 
 		this.lastSearchQuery = query;
 
-		this.visibleNodes = BeatmapSearcher.search(this.nodesInGroup, query);
+		this.visibleNodes = this.searcher.search(this.nodesInGroup, query);
 		return true;
 	}
 
@@ -20,16 +20,26 @@ package itdelatrisu.opsu.beatmap;
 
 import itdelatrisu.opsu.Utils;
 import itdelatrisu.opsu.db.BeatmapDB;
-import itdelatrisu.opsu.io.MD5InputStreamWrapper;
+import itdelatrisu.opsu.io.OsuTokenizer;
 
 import java.io.*;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.newdawn.slick.Color;
 import org.newdawn.slick.util.Log;
@@ -45,29 +55,38 @@ import static yugecin.opsudance.options.Options.*;
  */
 public class BeatmapParser {
 
+	/** Maximum number of threads used when parsing directories in parallel. */
+	private static final int PARSER_THREADS = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+
+	/** Tokenizers used for reading files, one per thread. */
+	private static final ThreadLocal<OsuTokenizer> tokenizer = ThreadLocal.withInitial(OsuTokenizer::new);
+
 	/** The string lookup database. */
-	private static HashMap<String, String> stringdb = new HashMap<String, String>();
+	private static volatile ConcurrentHashMap<String, String> stringdb = new ConcurrentHashMap<String, String>();
 
 	/** The expected pattern for beatmap directories, used to find beatmap set IDs. */
 	private final String DIR_MSID_PATTERN = "^\\d+ .*";
 
 	/** The current file being parsed. */
-	private File currentFile;
+	private volatile File currentFile;
 
 	/** The current directory number while parsing. */
-	private int currentDirectoryIndex = -1;
+	private final AtomicInteger currentDirectoryIndex = new AtomicInteger(-1);
 
 	/** The total number of directories to parse. */
-	private int totalDirectories = -1;
+	private volatile int totalDirectories = -1;
 
 	/** Parser statuses. */
 	public enum Status { NONE, PARSING, CACHE, INSERTING };
 
 	/** The current status. */
-	private Status status = Status.NONE;
+	private volatile Status status = Status.NONE;
+
+	/** Lowercase hexadecimal digits, used for MD5 hashes. */
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
 	/** If no Provider supports a MessageDigestSpi implementation for the MD5 algorithm. */
-	private boolean hasNoMD5Algorithm = false;
+	private volatile boolean hasNoMD5Algorithm = false;
 
 	/**
 	 * Invokes parser for each OSU file in a root directory and
@@ -99,119 +118,229 @@ public class BeatmapParser {
 
 		// progress tracking
 		status = Status.PARSING;
-		currentDirectoryIndex = 0;
+		currentDirectoryIndex.set(0);
 		totalDirectories = dirs.length;
 
 		// get last modified map from database
 		Map<String, Long> map = BeatmapDB.getLastModifiedMap();
 
 		// beatmap lists
-		List<Beatmap[]> allBeatmaps = new ArrayList<>();
+		final Beatmap[][] allBeatmaps = new Beatmap[dirs.length][];
 		List<Beatmap> cachedBeatmaps = new LinkedList<Beatmap>();  // loaded from database
 		List<Beatmap> parsedBeatmaps = new LinkedList<Beatmap>();  // loaded from parser
-
-		// watch service
-		BeatmapWatchService ws = BeatmapWatchService.get();
+		List<File> staleFiles = new LinkedList<File>();            // outdated database entries
 
 		// parse directories
 		long timestamp = System.currentTimeMillis();
-		for (File dir : dirs) {
-			currentDirectoryIndex++;
-			if (!dir.isDirectory())
-				continue;
+		if (OPTION_PARALLEL_BEATMAP_PARSING.state && dirs.length > 1) {
+			cachedBeatmaps = Collections.synchronizedList(cachedBeatmaps);
+			parsedBeatmaps = Collections.synchronizedList(parsedBeatmaps);
+			staleFiles = Collections.synchronizedList(staleFiles);
+			DirectoryParseTask task = new DirectoryParseTask(
+				dirs, 0, dirs.length, allBeatmaps,
+				map, timestamp, cachedBeatmaps, parsedBeatmaps, staleFiles
+			);
+			ForkJoinPool pool = new ForkJoinPool(PARSER_THREADS);
+			try {
+				pool.submit(task).get();
+			} catch (InterruptedException e) {
+				// stop parsing files (interrupted), keep what was parsed so far
+				task.cancelled = true;
+			} catch (ExecutionException e) {
+				softErr(e.getCause(), "Failed to parse beatmap directories");
+			} finally {
+				pool.shutdown();
+			}
+			if (task.cancelled) {
+				try {
+					pool.awaitTermination(1, TimeUnit.MINUTES);
+				} catch (InterruptedException e) {}
+			}
+		} else {
+			for (int i = 0; i < dirs.length; i++) {
+				allBeatmaps[i] = parseDirectory(
+					dirs[i], map, timestamp,
+					cachedBeatmaps, parsedBeatmaps, staleFiles
+				);
+				currentDirectoryIndex.incrementAndGet();
 
-			// find all OSU files
-			File[] files = dir.listFiles(new FilenameFilter() {
-				@Override
-				public boolean accept(File dir, String name) {
-					return name.toLowerCase().endsWith(".osu");
-				}
-			});
-			if (files == null || files.length < 1)
-				continue;
+				// stop parsing files (interrupted)
+				if (Thread.interrupted())
+					break;
+			}
+		}
 
-			// create a new group entry
-			final Beatmap[] beatmaps = new Beatmap[files.length];
-			int beatmapc = 0;
-			for (File file : files) {
-				currentFile = file;
-
-				// check if beatmap is cached
-				String path = String.format("%s/%s", dir.getName(), file.getName());
-				if (map != null) {
-					Long lastModified = map.get(path);
-					if (lastModified != null) {
-						// check last modified times
-						if (lastModified == file.lastModified()) {
-							// add to cached beatmap list
-							Beatmap beatmap = new Beatmap(file);
-							beatmaps[beatmapc++] = beatmap;
-							cachedBeatmaps.add(beatmap);
-							continue;
-						} else
-							BeatmapDB.delete(dir.getName(), file.getName());
-					}
-				}
+		return addParsed(allBeatmaps, cachedBeatmaps, parsedBeatmaps, staleFiles);
+	}
 
-				// Parse hit objects only when needed to save time/memory.
-				// Change boolean to 'true' to parse them immediately.
-				Beatmap beatmap = null;
-				try {
-					beatmap = parseFile(file, dir, false);
-				} catch(Exception e) {
-					softErr(
-						e,
-						"Could not parse beatmap %s: %s",
-						file.getName(),
-						e.getMessage()
-					);
-				}
+	/**
+	 * Reparses the given beatmap set directories, the returned update replaces
+	 * their sets in the existing BeatmapSetList and leaves all other sets untouched.
+	 * Only OSU files that are new or modified since they were cached are parsed.
+	 * Database entries of files that no longer exist are removed.
+	 * <p>
+	 * This doesn't change the BeatmapSetList, so it can be called from another
+	 * thread while the list is in use, as long as the update is applied on the
+	 * main thread.
+	 * @param dirs the changed directories, which don't need to exist anymore
+	 * @return the update to apply, or null if no directories were given
+	 */
+	@Nullable
+	public DirectoryUpdate updateDirectories(Collection<File> dirs)
+	{
+		if (dirs.isEmpty())
+			return null;
 
-				// add to parsed beatmap list
-				if (beatmap != null) {
-					beatmap.dateAdded = timestamp;
-					beatmaps[beatmapc++] = beatmap;
-					parsedBeatmaps.add(beatmap);
-				}
-			}
+		// progress tracking
+		status = Status.PARSING;
+		currentDirectoryIndex.set(0);
+		totalDirectories = dirs.size();
+
+		final DirectoryUpdate update = new DirectoryUpdate();
+		final List<Beatmap> parsedBeatmaps = new LinkedList<Beatmap>();
+		final List<File> staleFiles = new LinkedList<File>();
 
-			// add group entry if non-empty
-			if (beatmapc > 0) {
-				if (beatmapc == beatmaps.length) {
-					allBeatmaps.add(beatmaps);
-				} else {
-					final Beatmap[] bms = new Beatmap[beatmapc];
-					System.arraycopy(beatmaps, 0, bms, 0, beatmapc);
-					allBeatmaps.add(bms);
+		long timestamp = System.currentTimeMillis();
+		for (File dir : dirs) {
+			final String dirName = dir.getName();
+			final Map<String, Long> map = BeatmapDB.getLastModifiedMap(dirName);
+			final Beatmap[] beatmaps = parseDirectory(
+				dir, map, timestamp,
+				update.cachedBeatmaps, parsedBeatmaps, staleFiles
+			);
+			update.dirNames.add(dirName);
+			if (beatmaps != null)
+				update.sets.add(beatmaps);
+
+			// forget files that were removed from the directory
+			if (map != null) {
+				for (String path : map.keySet()) {
+					File file = new File(dir, path.substring(dirName.length() + 1));
+					if (!file.isFile())
+						staleFiles.add(file);
 				}
-				if (ws != null)
-					ws.registerAll(dir.toPath());
 			}
 
+			currentDirectoryIndex.incrementAndGet();
+
 			// stop parsing files (interrupted)
 			if (Thread.interrupted())
 				break;
 		}
 
-		// load cached entries from database
-		if (!cachedBeatmaps.isEmpty()) {
-			status = Status.CACHE;
+		updateDatabase(update.cachedBeatmaps, parsedBeatmaps, staleFiles);
+		return update;
+	}
 
-			// Load array fields only when needed to save time/memory.
-			// Change flag to 'LOAD_ALL' to load them immediately.
-			BeatmapDB.load(cachedBeatmaps, BeatmapDB.LOAD_NONARRAY);
+	/**
+	 * Sets of reparsed directories, returned by {@link #updateDirectories}.
+	 */
+	public static class DirectoryUpdate {
+		/** The names of the reparsed directories. */
+		private final List<String> dirNames = new ArrayList<String>();
+
+		/** The beatmaps of each reparsed directory that still has beatmaps. */
+		private final List<Beatmap[]> sets = new ArrayList<Beatmap[]>();
+
+		/** The beatmaps of files that didn't change, loaded from the database. */
+		private final List<Beatmap> cachedBeatmaps = new ArrayList<Beatmap>();
+
+		private DirectoryUpdate() {}
+
+		/**
+		 * Replaces the sets of the reparsed directories in the BeatmapSetList.
+		 * Must be called on the main thread, the active group needs to be
+		 * refreshed afterwards (see {@link BeatmapList#activeGroupChanged()}).
+		 * @return the last Beatmap parsed, or null if none
+		 */
+		public Beatmap apply() {
+			final List<BeatmapSet> oldSets = new ArrayList<BeatmapSet>();
+			for (String dirName : dirNames) {
+				final BeatmapSet oldSet = beatmapList.getBeatmapSet(dirName);
+				if (oldSet != null)
+					oldSets.add(oldSet);
+			}
+
+			// keep the loaded beatmaps of files that didn't change
+			final Set<Beatmap> cached = Collections.newSetFromMap(new IdentityHashMap<Beatmap, Boolean>());
+			cached.addAll(cachedBeatmaps);
+			for (Beatmap[] beatmaps : sets) {
+				final BeatmapSet oldSet = beatmapList.getBeatmapSet(beatmaps[0].getFile().getParentFile().getName());
+				if (oldSet != null) {
+					for (int j = 0; j < beatmaps.length; j++) {
+						if (!cached.contains(beatmaps[j]))
+							continue;
+						for (Beatmap old : oldSet.beatmaps) {
+							if (old.getFile().equals(beatmaps[j].getFile())) {
+								beatmaps[j] = old;
+								break;
+							}
+						}
+					}
+				}
+			}
+
+			beatmapList.removeBeatmapSets(oldSets);
+			Beatmap lastBeatmap = null;
+			for (Beatmap[] beatmaps : sets) {
+				Arrays.sort(beatmaps);
+				beatmapList.addBeatmapSet(beatmaps);
+				lastBeatmap = beatmaps[beatmaps.length - 1];
+			}
+			return lastBeatmap;
 		}
+	}
+
+	/**
+	 * Updates the database with the results of parsing directories and adds the
+	 * parsed sets to the BeatmapSetList.
+	 * @param allBeatmaps the beatmaps of each parsed directory, entries may be null
+	 * @return the last Beatmap parsed, or null if none
+	 */
+	private Beatmap addParsed(
+		Beatmap[][] allBeatmaps,
+		List<Beatmap> cachedBeatmaps,
+		List<Beatmap> parsedBeatmaps,
+		List<File> staleFiles)
+	{
+		updateDatabase(cachedBeatmaps, parsedBeatmaps, staleFiles);
 
 		Beatmap lastBeatmap = null;
 		// add group entries to BeatmapSetList
 		for (Beatmap[] beatmaps : allBeatmaps) {
+			if (beatmaps == null)
+				continue;
 			Arrays.sort(beatmaps);
 			beatmapList.addBeatmapSet(beatmaps);
 			lastBeatmap = beatmaps[beatmaps.length - 1];
 		}
+		return lastBeatmap;
+	}
+
+	/**
+	 * Updates the database with the results of parsing directories, loads the
+	 * cached beatmaps from it and resets the progress tracking.
+	 */
+	private void updateDatabase(
+		List<Beatmap> cachedBeatmaps,
+		List<Beatmap> parsedBeatmaps,
+		List<File> staleFiles)
+	{
+		// remove outdated entries from database
+		for (File file : staleFiles)
+			BeatmapDB.delete(file.getParentFile().getName(), file.getName());
+
+		// load cached entries from database
+		if (!cachedBeatmaps.isEmpty()) {
+			status = Status.CACHE;
+
+			// Load array fields only when needed to save time/memory.
+			// Change flag to 'LOAD_ALL' to load them immediately.
+			BeatmapDB.load(cachedBeatmaps, BeatmapDB.LOAD_NONARRAY);
+		}
 
 		// clear string DB
-		stringdb = new HashMap<String, String>();
+		stringdb = new ConcurrentHashMap<String, String>();
 
 		// add beatmap entries to database
 		if (!parsedBeatmaps.isEmpty()) {
@@ -221,9 +350,195 @@ public class BeatmapParser {
 
 		status = Status.NONE;
 		currentFile = null;
-		currentDirectoryIndex = -1;
+		currentDirectoryIndex.set(-1);
 		totalDirectories = -1;
-		return lastBeatmap;
+	}
+
+	/**
+	 * Parses all OSU files in a single beatmap set directory.
+	 * Beatmaps whose cached entry is up to date are added to {@code cachedBeatmaps}
+	 * and will still need to be loaded from the database, newly parsed beatmaps
+	 * are added to {@code parsedBeatmaps}. Files with an outdated database entry
+	 * are added to {@code staleFiles}.
+	 * <p>
+	 * This may be called from multiple threads at once, so given lists must be
+	 * safe for concurrent use if that is the case.
+	 * @param dir the directory to parse
+	 * @param map the last modified map from the database, or null
+	 * @param timestamp the time to use as date added for newly parsed beatmaps
+	 * @return the beatmaps in this directory, or null if there are none
+	 */
+	@Nullable
+	private Beatmap[] parseDirectory(
+		File dir,
+		@Nullable Map<String, Long> map,
+		long timestamp,
+		List<Beatmap> cachedBeatmaps,
+		List<Beatmap> parsedBeatmaps,
+		List<File> staleFiles)
+	{
+		if (!dir.isDirectory())
+			return null;
+
+		// find all OSU files
+		File[] files = dir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.toLowerCase().endsWith(".osu");
+			}
+		});
+		if (files == null || files.length < 1)
+			return null;
+
+		// create a new group entry
+		final Beatmap[] beatmaps = new Beatmap[files.length];
+		int beatmapc = 0;
+		for (File file : files) {
+			currentFile = file;
+
+			// check if beatmap is cached
+			String path = String.format("%s/%s", dir.getName(), file.getName());
+			if (map != null) {
+				Long lastModified = map.get(path);
+				if (lastModified != null) {
+					// check last modified times
+					if (lastModified == file.lastModified()) {
+						// add to cached beatmap list
+						Beatmap beatmap = new Beatmap(file);
+						beatmaps[beatmapc++] = beatmap;
+						cachedBeatmaps.add(beatmap);
+						continue;
+					} else
+						staleFiles.add(file);
+				}
+			}
+
+			// Parse hit objects only when needed to save time/memory.
+			// Change boolean to 'true' to parse them immediately.
+			Beatmap beatmap = null;
+			try {
+				beatmap = parseFile(file, dir, false);
+			} catch(Exception e) {
+				softErr(
+					e,
+					"Could not parse beatmap %s: %s",
+					file.getName(),
+					e.getMessage()
+				);
+			}
+
+			// add to parsed beatmap list
+			if (beatmap != null) {
+				beatmap.dateAdded = timestamp;
+				beatmaps[beatmapc++] = beatmap;
+				parsedBeatmaps.add(beatmap);
+			}
+		}
+
+		if (beatmapc == 0)
+			return null;
+
+		BeatmapWatchService ws = BeatmapWatchService.get();
+		if (ws != null)
+			ws.registerAll(dir.toPath());
+
+		if (beatmapc == beatmaps.length)
+			return beatmaps;
+		final Beatmap[] bms = new Beatmap[beatmapc];
+		System.arraycopy(beatmaps, 0, bms, 0, beatmapc);
+		return bms;
+	}
+
+	/**
+	 * Parses all OSU files in a newly unpacked beatmap set directory.
+	 * This may be called from multiple threads at once, so the given list must be
+	 * safe for concurrent use if that is the case. The parsed beatmaps still
+	 * need to be inserted in the database.
+	 * @param dir the directory to parse
+	 * @param timestamp the time to use as date added
+	 * @param parsedBeatmaps the list to add the parsed beatmaps to
+	 */
+	public void parseUnpackedDirectory(File dir, long timestamp, List<Beatmap> parsedBeatmaps)
+	{
+		// nothing is cached or stale without a last modified map
+		parseDirectory(
+			dir, null, timestamp,
+			Collections.<Beatmap>emptyList(), parsedBeatmaps, Collections.<File>emptyList()
+		);
+	}
+
+	/**
+	 * Fork/join task that parses a range of beatmap directories,
+	 * splitting the range until it's small enough to parse directly.
+	 */
+	@SuppressWarnings("serial")
+	private class DirectoryParseTask extends RecursiveAction
+	{
+		/** Maximum amount of directories a task will parse without splitting. */
+		private static final int THRESHOLD = 8;
+
+		private final File[] dirs;
+		private final int from, to;
+		private final Beatmap[][] results;
+		private final Map<String, Long> map;
+		private final long timestamp;
+		private final List<Beatmap> cachedBeatmaps, parsedBeatmaps;
+		private final List<File> staleFiles;
+
+		/** Whether parsing was interrupted, shared by all subtasks through the root task. */
+		volatile boolean cancelled;
+		private final DirectoryParseTask root;
+
+		DirectoryParseTask(
+			File[] dirs, int from, int to, Beatmap[][] results,
+			Map<String, Long> map, long timestamp,
+			List<Beatmap> cachedBeatmaps, List<Beatmap> parsedBeatmaps, List<File> staleFiles)
+		{
+			this(null, dirs, from, to, results, map, timestamp, cachedBeatmaps, parsedBeatmaps, staleFiles);
+		}
+
+		private DirectoryParseTask(
+			DirectoryParseTask root,
+			File[] dirs, int from, int to, Beatmap[][] results,
+			Map<String, Long> map, long timestamp,
+			List<Beatmap> cachedBeatmaps, List<Beatmap> parsedBeatmaps, List<File> staleFiles)
+		{
+			this.root = (root == null) ? this : root;
+			this.dirs = dirs;
+			this.from = from;
+			this.to = to;
+			this.results = results;
+			this.map = map;
+			this.timestamp = timestamp;
+			this.cachedBeatmaps = cachedBeatmaps;
+			this.parsedBeatmaps = parsedBeatmaps;
+			this.staleFiles = staleFiles;
+		}
+
+		private DirectoryParseTask subtask(int from, int to)
+		{
+			return new DirectoryParseTask(
+				root, dirs, from, to, results,
+				map, timestamp, cachedBeatmaps, parsedBeatmaps, staleFiles
+			);
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from > THRESHOLD) {
+				int mid = (from + to) >>> 1;
+				invokeAll(subtask(from, mid), subtask(mid, to));
+				return;
+			}
+			for (int i = from; i < to && !root.cancelled; i++) {
+				results[i] = parseDirectory(
+					dirs[i], map, timestamp,
+					cachedBeatmaps, parsedBeatmaps, staleFiles
+				);
+				currentDirectoryIndex.incrementAndGet();
+			}
+		}
 	}
 
 	public void parseOnlyTimingPoints(Beatmap map) {
@@ -233,56 +548,27 @@ public class BeatmapParser {
 		if (map.timingPoints == null) {
 			map.timingPoints = new ArrayList<TimingPoint>();
 		}
-		try (
-			InputStream bis = new BufferedInputStream(new FileInputStream(map.getFile()));
-			MD5InputStreamWrapper md5stream = (!hasNoMD5Algorithm) ? new MD5InputStreamWrapper(bis) : null;
-			BufferedReader in = new BufferedReader(new InputStreamReader((md5stream != null) ? md5stream : bis, "UTF-8"));
-		) {
-			String line;
-			boolean found = false;
-			while((line = in.readLine()) != null) {
-				line = line.trim();
-				if(!isValidLine(line)) {
-					continue;
-				}
-				if ("[TimingPoints]".equals(line)) {
-					found = true;
+		try {
+			OsuTokenizer t = tokenizer.get();
+			load(t, map.getFile());
+			if (!t.findSection("[TimingPoints]")) {
+				return;
+			}
+			while (t.nextLine()) {
+				if (!t.isValidLine()) {
 					continue;
 				}
-				if (found) {
-					if (line.startsWith("[")) {
-						break;
-					}
-					parseSectionTimingPoints(map, line);
+				if (t.charAt(0) == '[') {
+					break;
 				}
+				parseTimingPoint(map, t);
 			}
 			map.timingPoints.trimToSize();
 		} catch (IOException e) {
 			softErr(e, "Failed to read file %s", map.getFile().getAbsolutePath());
-		} catch (NoSuchAlgorithmException e) {
-			softErr(e, "Failed to get MD5 hash stream");
-
-			// retry without MD5
-			hasNoMD5Algorithm = true;
-			parseOnlyTimingPoints(map);
 		}
 	}
 
-	private void parseSectionTimingPoints(Beatmap beatmap, String line) {
-		TimingPoint timingPoint = new TimingPoint(line);
-		if(!timingPoint.isInherited()) {
-			int bpm = Math.round(60000 / timingPoint.getBeatLength());
-			if( beatmap.bpmMin == 0 ) {
-				beatmap.bpmMin = beatmap.bpmMax = bpm;
-			} else if( bpm < beatmap.bpmMin ) {
-				beatmap.bpmMin = bpm;
-			} else if( bpm > beatmap.bpmMax ) {
-				beatmap.bpmMax = bpm;
-			}
-		}
-		beatmap.timingPoints.add(timingPoint);
-	}
-
 	/**
 	 * Parses a beatmap.
 	 * @param file the file to parse
@@ -295,384 +581,346 @@ public class BeatmapParser {
 		Beatmap beatmap = new Beatmap(file);
 		beatmap.timingPoints = new ArrayList<TimingPoint>();
 
-		try (
-			InputStream bis = new BufferedInputStream(new FileInputStream(file));
-			MD5InputStreamWrapper md5stream = (!hasNoMD5Algorithm) ? new MD5InputStreamWrapper(bis) : null;
-			BufferedReader in = new BufferedReader(new InputStreamReader((md5stream != null) ? md5stream : bis, "UTF-8"));
-		) {
-			String line = in.readLine();
-			String tokens[] = null;
-			while (line != null) {
-				line = line.trim();
-				if (!isValidLine(line)) {
-					line = in.readLine();
-					continue;
-				}
-				switch (line) {
-				case "[General]":
-					while ((line = in.readLine()) != null) {
-						line = line.trim();
-						if (!isValidLine(line))
-							continue;
-						if (line.charAt(0) == '[')
-							break;
-						if ((tokens = tokenize(line)) == null)
-							continue;
-						try {
-							switch (tokens[0]) {
-							case "AudioFilename":
-								File audioFileName = new File(dir, tokens[1]);
-								if (!audioFileName.isFile()) {
-									if ("virtual".equals(audioFileName.getName())) {
-										// beatmap without sound
-										// TODO: these can be legal (circusgallop)
-										return null;
-									}
-									// try to find the file with a case-insensitive match
-									boolean match = false;
-									for (String s : dir.list()) {
-										if (s.equalsIgnoreCase(tokens[1])) {
-											audioFileName = new File(dir, s);
-											match = true;
-											break;
-										}
-									}
-									if (!match) {
-										Log.error(String.format("Audio file '%s' not found in directory '%s'.", tokens[1], dir.getName()));
-										return null;
+		OsuTokenizer t = tokenizer.get();
+		try {
+			byte[] data = BeatmapFileCache.read(file, true);
+			beatmap.md5Hash = getMD5(data);
+			t.load(data, 0, data.length);
+		} catch (IOException e) {
+			softErr(e, "Failed to read file'%s", file.getAbsolutePath());
+			return null;
+		}
+
+		boolean hasLine = t.nextLine();
+		while (hasLine) {
+			if (!t.isValidLine() || t.charAt(0) != '[') {
+				hasLine = t.nextLine();
+				continue;
+			}
+			switch (t.line()) {
+			case "[General]":
+				while ((hasLine = t.nextLine())) {
+					if (!t.isValidLine())
+						continue;
+					if (t.charAt(0) == '[')
+						break;
+					if (!splitKeyValue(t))
+						continue;
+					try {
+						switch (t.key()) {
+						case "AudioFilename":
+							String audioName = t.value();
+							File audioFileName = new File(dir, audioName);
+							if (!audioFileName.isFile()) {
+								if ("virtual".equals(audioFileName.getName())) {
+									// beatmap without sound
+									// TODO: these can be legal (circusgallop)
+									return null;
+								}
+								// try to find the file with a case-insensitive match
+								boolean match = false;
+								for (String s : dir.list()) {
+									if (s.equalsIgnoreCase(audioName)) {
+										audioFileName = new File(dir, s);
+										match = true;
+										break;
 									}
 								}
-								beatmap.audioFilename = audioFileName;
-								break;
-							case "AudioLeadIn":
-								beatmap.audioLeadIn = Integer.parseInt(tokens[1]);
-								break;
-//							case "AudioHash":  // deprecated
-//								beatmap.audioHash = tokens[1];
-//								break;
-							case "PreviewTime":
-								beatmap.previewTime = Integer.parseInt(tokens[1]);
-								break;
-							case "Countdown":
-								beatmap.countdown = Byte.parseByte(tokens[1]);
-								break;
-							case "SampleSet":
-								beatmap.sampleSet = getDBString(tokens[1]);
-								break;
-							case "StackLeniency":
-								beatmap.stackLeniency = Float.parseFloat(tokens[1]);
-								break;
-							case "Mode":
-								beatmap.mode = Byte.parseByte(tokens[1]);
-
-								/* Non-Opsu! standard files not implemented (obviously). */
-								if (beatmap.mode != Beatmap.MODE_OSU)
+								if (!match) {
+									Log.error(String.format("Audio file '%s' not found in directory '%s'.", audioName, dir.getName()));
 									return null;
-
-								break;
-							case "LetterboxInBreaks":
-								beatmap.letterboxInBreaks = Utils.parseBoolean(tokens[1]);
-								break;
-							case "WidescreenStoryboard":
-								beatmap.widescreenStoryboard = Utils.parseBoolean(tokens[1]);
-								break;
-							case "EpilepsyWarning":
-								beatmap.epilepsyWarning = Utils.parseBoolean(tokens[1]);
-							default:
-								break;
+								}
 							}
-						} catch (Exception e) {
-							Log.warn(String.format("Failed to read line '%s' for file '%s'.",
-									line, file.getAbsolutePath()), e);
-						}
-					}
-					break;
-				case "[Editor]":
-					while ((line = in.readLine()) != null) {
-						line = line.trim();
-						if (!isValidLine(line))
-							continue;
-						if (line.charAt(0) == '[')
+							beatmap.audioFilename = audioFileName;
 							break;
-						/* Not implemented. */
-//						if ((tokens = tokenize(line)) == null)
-//							continue;
-//						try {
-//							switch (tokens[0]) {
-//							case "Bookmarks":
-//								String[] bookmarks = tokens[1].split(",");
-//								beatmap.bookmarks = new int[bookmarks.length];
-//								for (int i = 0; i < bookmarks.length; i++)
-//									osu.bookmarks[i] = Integer.parseInt(bookmarks[i]);
-//								break;
-//							case "DistanceSpacing":
-//								beatmap.distanceSpacing = Float.parseFloat(tokens[1]);
-//								break;
-//							case "BeatDivisor":
-//								beatmap.beatDivisor = Byte.parseByte(tokens[1]);
-//								break;
-//							case "GridSize":
-//								beatmap.gridSize = Integer.parseInt(tokens[1]);
-//								break;
-//							case "TimelineZoom":
-//								beatmap.timelineZoom = Integer.parseInt(tokens[1]);
-//								break;
-//							default:
-//								break;
-//							}
-//						} catch (Exception e) {
-//							Log.warn(String.format("Failed to read editor line '%s' for file '%s'.",
-//									line, file.getAbsolutePath()), e);
-//						}
-					}
-					break;
-				case "[Metadata]":
-					while ((line = in.readLine()) != null) {
-						line = line.trim();
-						if (!isValidLine(line))
-							continue;
-						if (line.charAt(0) == '[')
+						case "AudioLeadIn":
+							beatmap.audioLeadIn = t.readInt();
+							break;
+//						case "AudioHash":  // deprecated
+//							beatmap.audioHash = t.value();
+//							break;
+						case "PreviewTime":
+							beatmap.previewTime = t.readInt();
+							break;
+						case "Countdown":
+							beatmap.countdown = Byte.parseByte(t.value());
+							break;
+						case "SampleSet":
+							beatmap.sampleSet = getDBString(t.value());
+							break;
+						case "StackLeniency":
+							beatmap.stackLeniency = t.readFloat();
+							break;
+						case "Mode":
+							beatmap.mode = Byte.parseByte(t.value());
+
+							/* Non-Opsu! standard files not implemented (obviously). */
+							if (beatmap.mode != Beatmap.MODE_OSU)
+								return null;
+
+							break;
+						case "LetterboxInBreaks":
+							beatmap.letterboxInBreaks = (t.readInt() == 1);
+							break;
+						case "WidescreenStoryboard":
+							beatmap.widescreenStoryboard = (t.readInt() == 1);
+							break;
+						case "EpilepsyWarning":
+							beatmap.epilepsyWarning = (t.readInt() == 1);
+						default:
 							break;
-						if ((tokens = tokenize(line)) == null)
-							continue;
-						try {
-							switch (tokens[0]) {
-							case "Title":
-								beatmap.title = getDBString(tokens[1]);
-								beatmap.searchTitle = beatmap.title.toLowerCase();
-								break;
-							case "TitleUnicode":
-								beatmap.titleUnicode = getDBString(tokens[1]);
-								beatmap.searchTitleUnicode = beatmap.titleUnicode.toLowerCase();
-								break;
-							case "Artist":
-								beatmap.artist = getDBString(tokens[1]);
-								beatmap.searchArtist = beatmap.artist.toLowerCase();
-								break;
-							case "ArtistUnicode":
-								beatmap.artistUnicode = getDBString(tokens[1]);
-								beatmap.searchArtistUnicode = beatmap.artistUnicode.toLowerCase();
-								break;
-							case "Creator":
-								beatmap.creator = getDBString(tokens[1]);
-								beatmap.searchCreator = beatmap.creator.toLowerCase();
-								break;
-							case "Version":
-								beatmap.version = getDBString(tokens[1]);
-								beatmap.searchVersion = beatmap.version.toLowerCase();
-								break;
-							case "Source":
-								beatmap.source = getDBString(tokens[1]);
-								beatmap.searchSource = beatmap.source.toLowerCase();
-								break;
-							case "Tags":
-								beatmap.tags = getDBString(tokens[1].toLowerCase());
-								break;
-							case "BeatmapID":
-								beatmap.beatmapID = Integer.parseInt(tokens[1]);
-								break;
-							case "BeatmapSetID":
-								beatmap.beatmapSetID = Integer.parseInt(tokens[1]);
-								break;
-							}
-						} catch (Exception e) {
-							Log.warn(String.format("Failed to read metadata '%s' for file '%s'.",
-									line, file.getAbsolutePath()), e);
-						}
-						if (beatmap.beatmapSetID <= 0) {  // try to determine MSID from directory name
-							if (dir != null && dir.isDirectory()) {
-								String dirName = dir.getName();
-								if (!dirName.isEmpty() && dirName.matches(DIR_MSID_PATTERN))
-									beatmap.beatmapSetID = Integer.parseInt(dirName.substring(0, dirName.indexOf(' ')));
-							}
 						}
+					} catch (Exception e) {
+						Log.warn(String.format("Failed to read line '%s' for file '%s'.",
+								t.line(), file.getAbsolutePath()), e);
 					}
-					break;
-				case "[Difficulty]":
-					while ((line = in.readLine()) != null) {
-						line = line.trim();
-						if (!isValidLine(line))
-							continue;
-						if (line.charAt(0) == '[')
+				}
+				break;
+			case "[Editor]":
+				while ((hasLine = t.nextLine())) {
+					if (!t.isValidLine())
+						continue;
+					if (t.charAt(0) == '[')
+						break;
+					/* Not implemented. */
+				}
+				break;
+			case "[Metadata]":
+				while ((hasLine = t.nextLine())) {
+					if (!t.isValidLine())
+						continue;
+					if (t.charAt(0) == '[')
+						break;
+					if (!splitKeyValue(t))
+						continue;
+					try {
+						switch (t.key()) {
+						case "Title":
+							beatmap.title = getDBString(t.value());
+							break;
+						case "TitleUnicode":
+							beatmap.titleUnicode = getDBString(t.value());
+							break;
+						case "Artist":
+							beatmap.artist = getDBString(t.value());
+							break;
+						case "ArtistUnicode":
+							beatmap.artistUnicode = getDBString(t.value());
+							break;
+						case "Creator":
+							beatmap.creator = getDBString(t.value());
+							break;
+						case "Version":
+							beatmap.version = getDBString(t.value());
+							break;
+						case "Source":
+							beatmap.source = getDBString(t.value());
+							break;
+						case "Tags":
+							beatmap.tags = getDBString(t.value().toLowerCase());
+							break;
+						case "BeatmapID":
+							beatmap.beatmapID = t.readInt();
+							break;
+						case "BeatmapSetID":
+							beatmap.beatmapSetID = t.readInt();
 							break;
-						if ((tokens = tokenize(line)) == null)
-							continue;
-						try {
-							switch (tokens[0]) {
-							case "HPDrainRate":
-								beatmap.HPDrainRate = Float.parseFloat(tokens[1]);
-								break;
-							case "CircleSize":
-								beatmap.circleSize = Float.parseFloat(tokens[1]);
-								break;
-							case "OverallDifficulty":
-								beatmap.overallDifficulty = Float.parseFloat(tokens[1]);
-								break;
-							case "ApproachRate":
-								beatmap.approachRate = Float.parseFloat(tokens[1]);
-								break;
-							case "SliderMultiplier":
-								beatmap.sliderMultiplier = Float.parseFloat(tokens[1]);
-								break;
-							case "SliderTickRate":
-								beatmap.sliderTickRate = Float.parseFloat(tokens[1]);
-								break;
-							}
-						} catch (Exception e) {
-							Log.warn(String.format("Failed to read difficulty '%s' for file '%s'.",
-									line, file.getAbsolutePath()), e);
 						}
+					} catch (Exception e) {
+						Log.warn(String.format("Failed to read metadata '%s' for file '%s'.",
+								t.line(), file.getAbsolutePath()), e);
 					}
-					if (beatmap.approachRate == -1f)  // not in old format
-						beatmap.approachRate = beatmap.overallDifficulty;
-					break;
-				case "[Events]":
-					while ((line = in.readLine()) != null) {
-						line = line.trim();
-						if (!isValidLine(line))
-							continue;
-						if (line.charAt(0) == '[')
+				}
+				if (beatmap.beatmapSetID <= 0) {  // try to determine MSID from directory name
+					if (dir != null && dir.isDirectory()) {
+						String dirName = dir.getName();
+						if (!dirName.isEmpty() && dirName.matches(DIR_MSID_PATTERN))
+							beatmap.beatmapSetID = Integer.parseInt(dirName.substring(0, dirName.indexOf(' ')));
+					}
+				}
+				break;
+			case "[Difficulty]":
+				while ((hasLine = t.nextLine())) {
+					if (!t.isValidLine())
+						continue;
+					if (t.charAt(0) == '[')
+						break;
+					if (!splitKeyValue(t))
+						continue;
+					try {
+						switch (t.key()) {
+						case "HPDrainRate":
+							beatmap.HPDrainRate = t.readFloat();
 							break;
-						tokens = line.split(",");
-						switch (tokens[0]) {
-						case "0":  // background
-							tokens[2] = tokens[2].replaceAll("^\"|\"$", "");
-							String ext = Utils.getFileExtension(tokens[2]);
-							if (ext.equals("jpg") || ext.equals("png"))
-								beatmap.bg = new File(dir, getDBString(tokens[2]));
+						case "CircleSize":
+							beatmap.circleSize = t.readFloat();
 							break;
-						case "2":  // break periods
-							try {
-								if (beatmap.breaks == null)  // optional, create if needed
-									beatmap.breaks = new ArrayList<Integer>();
-								beatmap.breaks.add(Integer.parseInt(tokens[1]));
-								beatmap.breaks.add(Integer.parseInt(tokens[2]));
-							} catch (Exception e) {
-								Log.warn(String.format("Failed to read break period '%s' for file '%s'.",
-										line, file.getAbsolutePath()), e);
-							}
+						case "OverallDifficulty":
+							beatmap.overallDifficulty = t.readFloat();
 							break;
-						default:
-							/* Not implemented. */
+						case "ApproachRate":
+							beatmap.approachRate = t.readFloat();
+							break;
+						case "SliderMultiplier":
+							beatmap.sliderMultiplier = t.readFloat();
+							break;
+						case "SliderTickRate":
+							beatmap.sliderTickRate = t.readFloat();
 							break;
 						}
+					} catch (Exception e) {
+						Log.warn(String.format("Failed to read difficulty '%s' for file '%s'.",
+								t.line(), file.getAbsolutePath()), e);
 					}
-					if (beatmap.breaks != null)
-						beatmap.breaks.trimToSize();
-					break;
-				case "[TimingPoints]":
-					while ((line = in.readLine()) != null) {
-						line = line.trim();
-						if (!isValidLine(line))
-							continue;
-						if (line.charAt(0) == '[')
-							break;
-
+				}
+				if (beatmap.approachRate == -1f)  // not in old format
+					beatmap.approachRate = beatmap.overallDifficulty;
+				break;
+			case "[Events]":
+				while ((hasLine = t.nextLine())) {
+					if (!t.isValidLine())
+						continue;
+					if (t.charAt(0) == '[')
+						break;
+					if (t.lineStartsWith("0,")) {  // background
 						try {
-							parseTimingPoint(beatmap, line);
+							t.skipPast(',');
+							t.skipPast(',');
+							String bg = t.readString(',').replaceAll("^\"|\"$", "");
+							String ext = Utils.getFileExtension(bg);
+							if (ext.equals("jpg") || ext.equals("png"))
+								beatmap.bg = new File(dir, getDBString(bg));
 						} catch (Exception e) {
-							Log.warn(String.format("Failed to read timing point '%s' for file '%s'.",
-									line, file.getAbsolutePath()), e);
+							Log.warn(String.format("Failed to read background '%s' for file '%s'.",
+									t.line(), file.getAbsolutePath()), e);
 						}
-					}
-					beatmap.timingPoints.trimToSize();
-					break;
-				case "[Colours]":
-					LinkedList<Color> colors = new LinkedList<Color>();
-					while ((line = in.readLine()) != null) {
-						line = line.trim();
-						if (!isValidLine(line))
-							continue;
-						if (line.charAt(0) == '[')
-							break;
-						if ((tokens = tokenize(line)) == null)
-							continue;
+					} else if (t.lineStartsWith("2,")) {  // break periods
 						try {
-							String[] rgb = tokens[1].split(",");
-							Color color = new Color(
-								Integer.parseInt(rgb[0]),
-								Integer.parseInt(rgb[1]),
-								Integer.parseInt(rgb[2])
-							);
-							switch (tokens[0]) {
-							case "Combo1":
-							case "Combo2":
-							case "Combo3":
-							case "Combo4":
-							case "Combo5":
-							case "Combo6":
-							case "Combo7":
-							case "Combo8":
-								colors.add(color);
-								break;
-							case "SliderBorder":
-								beatmap.sliderBorder = color;
-								break;
-							default:
-								break;
-							}
+							t.skipPast(',');
+							int start = t.readInt();
+							int end = t.nextInt(',');
+							if (beatmap.breaks == null)  // optional, create if needed
+								beatmap.breaks = new ArrayList<Integer>();
+							beatmap.breaks.add(start);
+							beatmap.breaks.add(end);
 						} catch (Exception e) {
-							Log.warn(String.format("Failed to read color '%s' for file '%s'.",
-									line, file.getAbsolutePath()), e);
+							Log.warn(String.format("Failed to read break period '%s' for file '%s'.",
+									t.line(), file.getAbsolutePath()), e);
 						}
 					}
-					if (!colors.isEmpty())
-						beatmap.combo = colors.toArray(new Color[colors.size()]);
-					break;
-				case "[HitObjects]":
-					int type = 0;
-					while ((line = in.readLine()) != null) {
-						line = line.trim();
-						if (!isValidLine(line))
-							continue;
-						if (line.charAt(0) == '[')
+					/* Others not implemented. */
+				}
+				if (beatmap.breaks != null)
+					beatmap.breaks.trimToSize();
+				break;
+			case "[TimingPoints]":
+				while ((hasLine = t.nextLine())) {
+					if (!t.isValidLine())
+						continue;
+					if (t.charAt(0) == '[')
+						break;
+
+					try {
+						parseTimingPoint(beatmap, t);
+					} catch (Exception e) {
+						Log.warn(String.format("Failed to read timing point '%s' for file '%s'.",
+								t.line(), file.getAbsolutePath()), e);
+					}
+				}
+				beatmap.timingPoints.trimToSize();
+				break;
+			case "[Colours]":
+				LinkedList<Color> colors = new LinkedList<Color>();
+				while ((hasLine = t.nextLine())) {
+					if (!t.isValidLine())
+						continue;
+					if (t.charAt(0) == '[')
+						break;
+					if (!splitKeyValue(t))
+						continue;
+					try {
+						String key = t.key();
+						Color color = new Color(t.readInt(), t.nextInt(','), t.nextInt(','));
+						switch (key) {
+						case "Combo1":
+						case "Combo2":
+						case "Combo3":
+						case "Combo4":
+						case "Combo5":
+						case "Combo6":
+						case "Combo7":
+						case "Combo8":
+							colors.add(color);
+							break;
+						case "SliderBorder":
+							beatmap.sliderBorder = color;
+							break;
+						default:
 							break;
-						/* Only type counts parsed at this time. */
-						tokens = line.split(",");
-						try {
-							type = Integer.parseInt(tokens[3]);
-							if ((type & HitObject.TYPE_CIRCLE) > 0)
-								beatmap.hitObjectCircle++;
-							else if ((type & HitObject.TYPE_SLIDER) > 0)
-								beatmap.hitObjectSlider++;
-							else //if ((type & HitObject.TYPE_SPINNER) > 0)
-								beatmap.hitObjectSpinner++;
-						} catch (Exception e) {
-							Log.warn(String.format("Failed to read hit object '%s' for file '%s'.",
-									line, file.getAbsolutePath()), e);
 						}
+					} catch (Exception e) {
+						Log.warn(String.format("Failed to read color '%s' for file '%s'.",
+								t.line(), file.getAbsolutePath()), e);
 					}
+				}
+				if (!colors.isEmpty())
+					beatmap.combo = colors.toArray(new Color[colors.size()]);
+				break;
+			case "[HitObjects]":
+				int type = 0;
+				int lastObject = -1;
+				while ((hasLine = t.nextLine())) {
+					if (!t.isValidLine())
+						continue;
+					if (t.charAt(0) == '[')
+						break;
+					/* Only type counts parsed at this time. */
+					lastObject = t.markLine();
+					try {
+						t.skipPast(',');
+						t.skipPast(',');
+						t.skipPast(',');
+						type = t.readInt();
+						if ((type & HitObject.TYPE_CIRCLE) > 0)
+							beatmap.hitObjectCircle++;
+						else if ((type & HitObject.TYPE_SLIDER) > 0)
+							beatmap.hitObjectSlider++;
+						else //if ((type & HitObject.TYPE_SPINNER) > 0)
+							beatmap.hitObjectSpinner++;
+					} catch (Exception e) {
+						Log.warn(String.format("Failed to read hit object '%s' for file '%s'.",
+								t.line(), file.getAbsolutePath()), e);
+					}
+				}
 
+				if (lastObject != -1) {
+					// go back to the last object, but remember where to continue afterwards
+					int sectionEnd = t.markLine();
+					t.resetToLine(lastObject);
 					try {
 						// map length = last object end time (TODO: end on slider?)
+						t.skipPast(',');
+						t.skipPast(',');
 						if ((type & HitObject.TYPE_SPINNER) > 0) {
 							// some 'endTime' fields contain a ':' character (?)
-							int index = tokens[5].indexOf(':');
-							if (index != -1)
-								tokens[5] = tokens[5].substring(0, index);
-							beatmap.endTime = Integer.parseInt(tokens[5]);
+							t.skipPast(',');
+							t.skipPast(',');
+							t.skipPast(',');
+							beatmap.endTime = t.readInt();
 						} else if (type != 0)
-							beatmap.endTime = Integer.parseInt(tokens[2]);
+							beatmap.endTime = t.readInt();
 					} catch (Exception e) {
 						Log.warn(String.format("Failed to read hit object end time '%s' for file '%s'.",
-								line, file.getAbsolutePath()), e);
+								t.line(), file.getAbsolutePath()), e);
 					}
-					break;
-				default:
-					line = in.readLine();
-					break;
+					if (hasLine)
+						t.resetToLine(sectionEnd);
 				}
+				break;
+			default:
+				hasLine = t.nextLine();
+				break;
 			}
-			if (md5stream != null)
-				beatmap.md5Hash = md5stream.getMD5();
-		} catch (IOException e) {
-			softErr(e, "Failed to read file'%s", file.getAbsolutePath());
-		} catch (NoSuchAlgorithmException e) {
-			softErr(e, "Failed to get MD5 hash stream");
-
-			// retry without MD5
-			hasNoMD5Algorithm = true;
-			return parseFile(file, dir, parseObjects);
 		}
 
 		// no associated audio file?
@@ -689,13 +937,21 @@ public class BeatmapParser {
 	/**
 	 * Parses a timing point and adds it to the beatmap.
 	 * @param beatmap the beatmap
-	 * @param line the line containing the unparsed timing point
+	 * @param t the tokenizer positioned on the line containing the unparsed timing point
 	 */
-	private static void parseTimingPoint(Beatmap beatmap, String line) {
+	private static void parseTimingPoint(Beatmap beatmap, OsuTokenizer t) {
 		// parse timing point
-		TimingPoint timingPoint = new TimingPoint(line);
+		TimingPoint timingPoint = new TimingPoint(t);
 		beatmap.timingPoints.add(timingPoint);
+		updateBPM(beatmap, timingPoint);
+	}
 
+	/**
+	 * Updates the BPM range of a beatmap with a timing point.
+	 * @param beatmap the beatmap
+	 * @param timingPoint the timing point
+	 */
+	private static void updateBPM(Beatmap beatmap, TimingPoint timingPoint) {
 		// calculate BPM
 		if (!timingPoint.isInherited()) {
 			int bpm = Math.round(60000 / timingPoint.getBeatLength());
@@ -717,38 +973,45 @@ public class BeatmapParser {
 		if (beatmap.timingPoints != null)  // already parsed
 			return;
 
-		beatmap.timingPoints = new ArrayList<TimingPoint>();
+		beatmap.timingPoints = readTimingPoints(beatmap, true);
+		for (TimingPoint timingPoint : beatmap.timingPoints)
+			updateBPM(beatmap, timingPoint);
+	}
 
-		try (BufferedReader in = new BufferedReader(new FileReader(beatmap.getFile()))) {
-			String line = in.readLine();
-			while (line != null) {
-				line = line.trim();
-				if (!line.equals("[TimingPoints]"))
-					line = in.readLine();
-				else
-					break;
-			}
-			if (line == null)  // no timing points
-				return;
+	/**
+	 * Reads all timing points in a beatmap file, without storing them in the beatmap.
+	 * Safe to call from any thread.
+	 * @param beatmap the beatmap to read
+	 * @param keepCached whether to keep the file contents cached for later passes
+	 * @return the timing points
+	 */
+	public static ArrayList<TimingPoint> readTimingPoints(Beatmap beatmap, boolean keepCached) {
+		ArrayList<TimingPoint> timingPoints = new ArrayList<TimingPoint>();
+
+		try {
+			OsuTokenizer t = tokenizer.get();
+			load(t, beatmap.getFile(), keepCached);
+			if (!t.findSection("[TimingPoints]"))  // no timing points
+				return timingPoints;
 
-			while ((line = in.readLine()) != null) {
-				line = line.trim();
-				if (!isValidLine(line))
+			while (t.nextLine()) {
+				if (!t.isValidLine())
 					continue;
-				if (line.charAt(0) == '[')
+				if (t.charAt(0) == '[')
 					break;
 
 				try {
-					parseTimingPoint(beatmap, line);
+					timingPoints.add(new TimingPoint(t));
 				} catch (Exception e) {
 					Log.warn(String.format("Failed to read timing point '%s' for file '%s'.",
-							line, beatmap.getFile().getAbsolutePath()), e);
+							t.line(), beatmap.getFile().getAbsolutePath()), e);
 				}
 			}
-			beatmap.timingPoints.trimToSize();
+			timingPoints.trimToSize();
 		} catch (IOException e) {
 			softErr(e, "Failed to read file %s", beatmap.getFile().getAbsolutePath());
 		}
+		return timingPoints;
 	}
 
 	/**
@@ -759,47 +1022,60 @@ public class BeatmapParser {
 		if (beatmap.objects != null)  // already parsed
 			return;
 
-		beatmap.objects = new HitObject[(beatmap.hitObjectCircle + beatmap.hitObjectSlider + beatmap.hitObjectSpinner)];
+		// combo info
+		Color[] combo = beatmap.getComboColors();
+		if (combo == null) {
+			combo = SkinService.skin.getComboColors();
+		}
 
-		try (BufferedReader in = new BufferedReader(new FileReader(beatmap.getFile()))) {
-			String line = in.readLine();
-			while (line != null) {
-				line = line.trim();
-				if (!line.equals("[HitObjects]"))
-					line = in.readLine();
-				else
-					break;
-			}
-			if (line == null) {
+		// use the cached hit objects if they were parsed from the same file contents
+		// (the hash in the beatmap table is only updated when the file is modified)
+		beatmap.objectsMD5Hash = Utils.getMD5(beatmap.getFile());
+		if (BeatmapDB.loadHitObjects(beatmap, combo.length))
+			return;
+
+		beatmap.objectsCached = false;
+		beatmap.stacksCalculated = false;
+		beatmap.objects = readHitObjects(beatmap, combo.length, true);
+	}
+
+	/**
+	 * Reads all hit objects in a beatmap file, without storing them in the beatmap.
+	 * Safe to call from any thread.
+	 * @param beatmap the beatmap to read
+	 * @param comboColorCount the amount of combo colors to assign combo indices for
+	 * @param keepCached whether to keep the file contents cached for later passes
+	 * @return the hit objects, with {@code null} elements for objects that failed to parse
+	 */
+	public static HitObject[] readHitObjects(Beatmap beatmap, int comboColorCount, boolean keepCached) {
+		HitObject[] objects = new HitObject[(beatmap.hitObjectCircle + beatmap.hitObjectSlider + beatmap.hitObjectSpinner)];
+
+		try {
+			OsuTokenizer t = tokenizer.get();
+			load(t, beatmap.getFile(), keepCached);
+			if (!t.findSection("[HitObjects]")) {
 				Log.warn(String.format("No hit objects found in Beatmap '%s'.", beatmap.toString()));
-				return;
+				return objects;
 			}
 
-			// combo info
-			Color[] combo = beatmap.getComboColors();
-			if (combo == null) {
-				combo = SkinService.skin.getComboColors();
-			}
 			int comboIndex = 0;   // color index
 			int comboNumber = 1;  // combo number
 
 			int objectIndex = 0;
 			boolean first = true;
-			while ((line = in.readLine()) != null && objectIndex < beatmap.objects.length) {
-				line = line.trim();
-				if (!isValidLine(line))
+			while (t.nextLine() && objectIndex < objects.length) {
+				if (!t.isValidLine())
 					continue;
-				if (line.charAt(0) == '[')
+				if (t.charAt(0) == '[')
 					break;
 
 				// lines must have at minimum 5 parameters
-				int tokenCount = line.length() - line.replace(",", "").length();
-				if (tokenCount < 4)
+				if (t.count(',') < 4)
 					continue;
 
 				try {
 					// create a new HitObject for each line
-					HitObject hitObject = new HitObject(line);
+					HitObject hitObject = new HitObject(t);
 
 					// set combo info
 					// - new combo: get next combo index, reset combo number
@@ -807,7 +1083,7 @@ public class BeatmapParser {
 					if (hitObject.isNewCombo() || first) {
 						int skip = (hitObject.isSpinner() ? 0 : 1) + hitObject.getComboSkip();
 						for (int i = 0; i < skip; i++) {
-							comboIndex = (comboIndex + 1) % combo.length;
+							comboIndex = (comboIndex + 1) % comboColorCount;
 							comboNumber = 1;
 						}
 						first = false;
@@ -816,48 +1092,77 @@ public class BeatmapParser {
 					hitObject.setComboIndex(comboIndex);
 					hitObject.setComboNumber(comboNumber++);
 
-					beatmap.objects[objectIndex++] = hitObject;
+					objects[objectIndex++] = hitObject;
 				} catch (Exception e) {
 					Log.warn(String.format("Failed to read hit object '%s' for beatmap '%s'.",
-							line, beatmap.toString()), e);
+							t.line(), beatmap.toString()), e);
 				}
 			}
 
 			// check that all objects were parsed
-			if (objectIndex != beatmap.objects.length)
+			if (objectIndex != objects.length)
 				softWarn(
 					"Expected %d objects for beatmap '%s', but parsed %d",
-					beatmap.objects.length,
+					objects.length,
 					beatmap.toString(),
 					objectIndex
 				);
 		} catch (IOException e) {
 			softErr(e, "Failed to read file %s", beatmap.getFile().getAbsolutePath());
 		}
+		return objects;
+	}
+
+	/**
+	 * Loads the contents of a beatmap file into the tokenizer, keeping them
+	 * cached for the other parsing passes.
+	 */
+	private static void load(OsuTokenizer t, File file) throws IOException {
+		load(t, file, true);
 	}
 
 	/**
-	 * Returns false if the line is too short or commented.
+	 * Loads the contents of a beatmap file into the tokenizer.
+	 * @param keepCached whether to keep the contents cached for the other parsing passes
 	 */
-	private static boolean isValidLine(String line) {
-		return (line.length() > 1 && !line.startsWith("//"));
+	private static void load(OsuTokenizer t, File file, boolean keepCached) throws IOException {
+		byte[] data = BeatmapFileCache.read(file, keepCached);
+		t.load(data, 0, data.length);
 	}
 
 	/**
-	 * Splits line into two strings: tag, value.
-	 * If no ':' character is present, null will be returned.
+	 * Returns the MD5 hash of the data in hex form, or null if
+	 * the MD5 algorithm is not available.
 	 */
-	private String[] tokenize(String line) {
-		int index = line.indexOf(':');
-		if (index == -1) {
-			Log.debug(String.format("Failed to tokenize line: '%s'.", line));
+	private String getMD5(byte[] data) {
+		if (hasNoMD5Algorithm)
+			return null;
+
+		try {
+			byte[] md5byte = MessageDigest.getInstance("MD5").digest(data);
+			StringBuilder result = new StringBuilder(md5byte.length * 2);
+			for (byte b : md5byte) {
+				result.append(HEX_DIGITS[(b >> 4) & 0xF]);
+				result.append(HEX_DIGITS[b & 0xF]);
+			}
+			return result.toString();
+		} catch (NoSuchAlgorithmException e) {
+			softErr(e, "Failed to get MD5 hash");
+			hasNoMD5Algorithm = true;
 			return null;
 		}
+	}
 
-		String[] tokens = new String[2];
-		tokens[0] = line.substring(0, index).trim();
-		tokens[1] = line.substring(index + 1).trim();
-		return tokens;
+	/**
+	 * Splits the current line into tag and value, see {@link OsuTokenizer#splitKeyValue()}.
+	 * If no ':' character is present, false will be returned.
+	 */
+	private static boolean splitKeyValue(OsuTokenizer t) {
+		if (!t.splitKeyValue()) {
+			Log.debug(String.format("Failed to tokenize line: '%s'.", t.line()));
+			return false;
+		}
+		return true;
 	}
 
 	/**
@@ -875,10 +1180,12 @@ public class BeatmapParser {
 	 * @return the completion percent [0, 100] or -1
 	 */
 	public int getParserProgress() {
-		if (currentDirectoryIndex == -1 || totalDirectories == -1)
+		int index = currentDirectoryIndex.get();
+		int total = totalDirectories;
+		if (index == -1 || total == -1)
 			return -1;
 
-		return currentDirectoryIndex * 100 / totalDirectories;
+		return index * 100 / total;
 	}
 
 	/**
@@ -895,11 +1202,9 @@ public class BeatmapParser {
 	 * @return the string object
 	 */
 	public static String getDBString(String s) {
-		String DBString = stringdb.get(s);
-		if (DBString == null) {
-			stringdb.put(s, s);
-			return s;
-		} else
-			return DBString;
+		if (s == null)
+			return null;
+		String DBString = stringdb.putIfAbsent(s, s);
+		return (DBString == null) ? s : DBString;
 	}
 }
\ No newline at end of file
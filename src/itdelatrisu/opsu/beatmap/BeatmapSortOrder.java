@@ -20,6 +20,10 @@ package itdelatrisu.opsu.beatmap;
 
 import java.util.Comparator;
 
+import yugecin.opsudance.beatmap.BeatmapMetadata;
+
+import static yugecin.opsudance.core.InstanceContainer.*;
+
 /**
  * Beatmap sorting orders.
  */
@@ -30,7 +34,7 @@ public abstract class BeatmapSortOrder implements Comparator<Beatmap>
 		@Override
 		public int compare(Beatmap v, Beatmap w)
 		{
-			return v.searchTitle.compareTo(w.searchTitle);
+			return beatmapList.metadata.compare(BeatmapMetadata.TITLE, v, w);
 		}
 	};
 
@@ -39,7 +43,7 @@ public abstract class BeatmapSortOrder implements Comparator<Beatmap>
 		@Override
 		public int compare(Beatmap v, Beatmap w)
 		{
-			return v.searchArtist.compareTo(w.searchArtist);
+			return beatmapList.metadata.compare(BeatmapMetadata.ARTIST, v, w);
 		}
 	};
 
@@ -47,7 +51,7 @@ public abstract class BeatmapSortOrder implements Comparator<Beatmap>
 	{
 		@Override
 		public int compare(Beatmap v, Beatmap w) {
-			return v.searchCreator.compareTo(w.searchCreator);
+			return beatmapList.metadata.compare(BeatmapMetadata.CREATOR, v, w);
 		}
 	};
 
@@ -56,7 +60,8 @@ public abstract class BeatmapSortOrder implements Comparator<Beatmap>
 		@Override
 		public int compare(Beatmap v, Beatmap w)
 		{
-			return Integer.compare(v.bpmMax, w.bpmMax);
+			final int[] bpm = beatmapList.metadata.bpmMax;
+			return Integer.compare(bpm[v.metadataSlot], bpm[w.metadataSlot]);
 		}
 	};
 
@@ -65,7 +70,8 @@ public abstract class BeatmapSortOrder implements Comparator<Beatmap>
 		@Override
 		public int compare(Beatmap v, Beatmap w)
 		{
-			return Integer.compare(v.endTime, w.endTime);
+			final int[] endTime = beatmapList.metadata.endTime;
+			return Integer.compare(endTime[v.metadataSlot], endTime[w.metadataSlot]);
 		}
 	};
 
@@ -73,7 +79,8 @@ public abstract class BeatmapSortOrder implements Comparator<Beatmap>
 	{
 		@Override
 		public int compare(Beatmap v, Beatmap w) {
-			return Long.compare(v.dateAdded, w.dateAdded);
+			final long[] dateAdded = beatmapList.metadata.dateAdded;
+			return Long.compare(dateAdded[v.metadataSlot], dateAdded[w.metadataSlot]);
 		}
 	};
 
@@ -82,7 +89,8 @@ public abstract class BeatmapSortOrder implements Comparator<Beatmap>
 		@Override
 		public int compare(Beatmap v, Beatmap w)
 		{
-			return Integer.compare(v.playCount, w.playCount);
+			final int[] playCount = beatmapList.metadata.playCount;
+			return Integer.compare(playCount[v.metadataSlot], playCount[w.metadataSlot]);
 		}
 	};
 
@@ -91,17 +99,18 @@ public abstract class BeatmapSortOrder implements Comparator<Beatmap>
 		@Override
 		public int compare(Beatmap v, Beatmap w)
 		{
+			final BeatmapMetadata md = beatmapList.metadata;
 			int r;
 			if ((r = w.topGrade.compareTo(v.topGrade)) != 0) {
 				return r;
 			}
-			if ((r = v.searchTitle.compareTo(w.searchTitle)) != 0) {
+			if ((r = md.compare(BeatmapMetadata.TITLE, v, w)) != 0) {
 				return r;
 			}
-			if ((r = v.searchArtist.compareTo(w.searchArtist)) != 0) {
+			if ((r = md.compare(BeatmapMetadata.ARTIST, v, w)) != 0) {
 				return r;
 			}
-			if ((r = v.searchCreator.compareTo(w.searchCreator)) != 0) {
+			if ((r = md.compare(BeatmapMetadata.CREATOR, v, w)) != 0) {
 				return r;
 			}
 			return v.compareTo(w);
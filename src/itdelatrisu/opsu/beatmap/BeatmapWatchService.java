@@ -18,6 +18,7 @@
 
 package itdelatrisu.opsu.beatmap;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.FileSystems;
@@ -32,11 +33,14 @@ import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.newdawn.slick.util.Log;
 
@@ -95,8 +99,8 @@ public class BeatmapWatchService {
 
 		// create a new watch service
 		try {
-			ws = new BeatmapWatchService();
-			ws.register(config.beatmapDir.toPath());
+			ws = new BeatmapWatchService(config.beatmapDir.toPath());
+			ws.register(ws.root);
 		} catch (IOException e) {
 			Log.error("Could not create watch service", e);
 			bubNotifs.send(BUB_RED, "Could not create watch service");
@@ -143,13 +147,17 @@ public class BeatmapWatchService {
 	*/
 	public interface BeatmapWatchServiceListener {
 		/**
-		 * Indication that an event was received.
-		 * @param kind the event kind
-		 * @param child the child directory
+		 * Indication that beatmap set directories changed. Events are coalesced
+		 * per set directory, and only reported once no more events were received
+		 * for it during {@link #SETTLE_TIME}. Called from the watch service thread.
+		 * @param dirs the changed set directories, which may no longer exist
 		 */
-		public void eventReceived(WatchEvent.Kind<?> kind, Path child);
+		public void directoriesChanged(List<File> dirs);
 	}
 
+	/** Time without events after which a changed set directory is reported, in milliseconds. */
+	public static final long SETTLE_TIME = 1000;
+
 	/** The list of listeners. */
 	private static final List<BeatmapWatchServiceListener> listeners = new ArrayList<BeatmapWatchServiceListener>();
 
@@ -180,13 +188,24 @@ public class BeatmapWatchService {
 	private ExecutorService service;
 
 	/** Whether the watch service is paused (i.e. does not fire events). */
-	private boolean paused = false;
+	private volatile boolean paused = false;
+
+	/** The beatmap directory. */
+	private final Path root;
+
+	/**
+	 * Changed set directories that are waiting for their events to settle,
+	 * with the time of their last event, oldest first.
+	 * Only accessed from the watch service thread.
+	 */
+	private final LinkedHashMap<Path, Long> pendingDirs = new LinkedHashMap<Path, Long>();
 
 	/**
 	 * Creates the WatchService.
 	 * @throws IOException if an I/O error occurs
 	 */
-	private BeatmapWatchService() throws IOException {
+	private BeatmapWatchService(Path root) throws IOException {
+		this.root = root;
 		this.watcher = FileSystems.getDefault().newWatchService();
 		this.keys = new ConcurrentHashMap<WatchKey, Path>();
 	}
@@ -250,18 +269,50 @@ public class BeatmapWatchService {
 	 */
 	private void processEvents() {
 		while (true) {
-			// wait for key to be signaled
+			// wait for key to be signaled, or until the oldest pending directory settles
 			WatchKey key;
 			try {
-				key = watcher.take();
+				if (pendingDirs.isEmpty())
+					key = watcher.take();
+				else {
+					long wait = pendingDirs.values().iterator().next() + SETTLE_TIME - System.currentTimeMillis();
+					key = watcher.poll(Math.max(wait, 1), TimeUnit.MILLISECONDS);
+				}
 			} catch (InterruptedException | ClosedWatchServiceException e) {
 				return;
 			}
 
-			Path dir = keys.get(key);
-			if (dir == null)
-				continue;
+			if (key != null && !processKey(key))
+				break;  // all directories are inaccessible
+
+			// fire listeners for directories that settled
+			long now = System.currentTimeMillis();
+			List<File> settled = null;
+			Iterator<Map.Entry<Path, Long>> iter = pendingDirs.entrySet().iterator();
+			while (iter.hasNext()) {
+				Map.Entry<Path, Long> entry = iter.next();
+				if (now - entry.getValue() < SETTLE_TIME)
+					break;
+				if (settled == null)
+					settled = new ArrayList<File>();
+				settled.add(entry.getKey().toFile());
+				iter.remove();
+			}
+			if (settled != null && !paused) {
+				for (BeatmapWatchServiceListener listener : listeners)
+					listener.directoriesChanged(settled);
+			}
+		}
+	}
 
+	/**
+	 * Processes the events of a signaled key, marking the set directories they
+	 * occurred in as pending.
+	 * @return false if no directories are accessible anymore
+	 */
+	private boolean processKey(WatchKey key) {
+		Path dir = keys.get(key);
+		if (dir != null) {
 			boolean isPaused = paused;
 			for (WatchEvent<?> event : key.pollEvents()) {
 				WatchEvent.Kind<?> kind = event.kind();
@@ -274,10 +325,13 @@ public class BeatmapWatchService {
 				Path child = dir.resolve(name);
 				//System.out.printf("%s: %s\n", kind.name(), child);
 
-				// fire listeners
+				// restart the settle time of the set directory
 				if (!isPaused) {
-					for (BeatmapWatchServiceListener listener : listeners)
-						listener.eventReceived(kind, child);
+					Path setDir = getSetDirectory(kind, child);
+					if (setDir != null) {
+						pendingDirs.remove(setDir);
+						pendingDirs.put(setDir, System.currentTimeMillis());
+					}
 				}
 
 				// if directory is created, then register it and its sub-directories
@@ -286,14 +340,36 @@ public class BeatmapWatchService {
 						registerAll(child);
 				}
 			}
+		}
 
-			// reset key and remove from set if directory no longer accessible
-			if (!key.reset()) {
-				keys.remove(key);
-				if (keys.isEmpty())
-					break;  // all directories are inaccessible
-			}
+		// reset key and remove from set if directory no longer accessible
+		if (!key.reset()) {
+			keys.remove(key);
+			return !keys.isEmpty();
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the beatmap set directory affected by an event, or null if the
+	 * event can't change any beatmaps.
+	 * @param kind the event kind
+	 * @param child the path the event occurred on
+	 */
+	private Path getSetDirectory(WatchEvent.Kind<?> kind, Path child) {
+		Path relative = root.relativize(child);
+		if (relative.getNameCount() == 0 || relative.toString().isEmpty())
+			return null;
+		if (relative.getNameCount() == 1) {
+			// files in the root directory aren't beatmap sets
+			if (kind != StandardWatchEventKinds.ENTRY_DELETE && !Files.isDirectory(child))
+				return null;
+		} else if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+			// only modified beatmap files need to be parsed again
+			if (!child.getFileName().toString().toLowerCase().endsWith(".osu"))
+				return null;
 		}
+		return root.resolve(relative.getName(0));
 	}
 
 	/**
@@ -0,0 +1,128 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package itdelatrisu.opsu.beatmap;
+
+import itdelatrisu.opsu.GameMod;
+
+/**
+ * Difficulty values of a beatmap for a combination of the game mods that
+ * change its difficulty, as calculated by {@link BeatmapDifficultyCalculator}.
+ * <p>
+ * Only {@link #MODS} change the difficulty: the speed mods change the time
+ * between the hit objects, and the difficulty mods change the circle size.
+ * Every combination of them has an index in {@code [0, COMBINATIONS)}.
+ */
+public class DifficultyAttributes
+{
+	/**
+	 * Version of the values calculated by {@link BeatmapDifficultyCalculator}.
+	 * Increase it whenever the calculation changes, so cached values are recalculated.
+	 */
+	public static final int VERSION = 1;
+
+	/** Bitmask of the game mods that change the difficulty. */
+	public static final int MODS =
+		GameMod.EASY.getBit() | GameMod.HARD_ROCK.getBit() |
+		GameMod.HALF_TIME.getBit() | GameMod.DOUBLE_TIME.getBit();
+
+	/** Number of possible combinations of {@link #MODS}, including no mods. */
+	public static final int COMBINATIONS = 9;
+
+	/** The game mods (bitmask of {@link #MODS}). */
+	public final int mods;
+
+	/** The aim and speed star values. */
+	public final double aimStars, speedStars;
+
+	/** The star rating. */
+	public final double starRating;
+
+	/** The maximum combo. */
+	public final int maxCombo;
+
+	public DifficultyAttributes(int mods, double aimStars, double speedStars, double starRating, int maxCombo)
+	{
+		this.mods = mods;
+		this.aimStars = aimStars;
+		this.speedStars = speedStars;
+		this.starRating = starRating;
+		this.maxCombo = maxCombo;
+	}
+
+	/**
+	 * Returns the active game mods that change the difficulty.
+	 */
+	public static int getActiveMods()
+	{
+		int mods = 0;
+		if (GameMod.EASY.isActive())
+			mods |= GameMod.EASY.getBit();
+		else if (GameMod.HARD_ROCK.isActive())
+			mods |= GameMod.HARD_ROCK.getBit();
+		if (GameMod.HALF_TIME.isActive())
+			mods |= GameMod.HALF_TIME.getBit();
+		else if (GameMod.DOUBLE_TIME.isActive())
+			mods |= GameMod.DOUBLE_TIME.getBit();
+		return mods;
+	}
+
+	/**
+	 * Returns the index of a combination of game mods.
+	 * @param mods the game mods, other than {@link #MODS} are ignored
+	 * @return the index, in {@code [0, COMBINATIONS)}
+	 */
+	public static int indexOf(int mods)
+	{
+		int index = 0;
+		if ((mods & GameMod.EASY.getBit()) != 0)
+			index = 1;
+		else if ((mods & GameMod.HARD_ROCK.getBit()) != 0)
+			index = 2;
+		if ((mods & GameMod.HALF_TIME.getBit()) != 0)
+			index += 3;
+		else if ((mods & GameMod.DOUBLE_TIME.getBit()) != 0)
+			index += 6;
+		return index;
+	}
+
+	/**
+	 * Returns the game mods of a combination index, the inverse of {@link #indexOf(int)}.
+	 */
+	public static int modsOf(int index)
+	{
+		int mods = 0;
+		switch (index % 3) {
+		case 1: mods |= GameMod.EASY.getBit(); break;
+		case 2: mods |= GameMod.HARD_ROCK.getBit(); break;
+		}
+		switch (index / 3) {
+		case 1: mods |= GameMod.HALF_TIME.getBit(); break;
+		case 2: mods |= GameMod.DOUBLE_TIME.getBit(); break;
+		}
+		return mods;
+	}
+
+	/**
+	 * Returns the track speed multiplier of the game mods, like {@link GameMod#getSpeedMultiplier()}.
+	 */
+	public static float getSpeedMultiplier(int mods)
+	{
+		if ((mods & GameMod.DOUBLE_TIME.getBit()) != 0)
+			return 1.5f;
+		if ((mods & GameMod.HALF_TIME.getBit()) != 0)
+			return 0.75f;
+		return 1f;
+	}
+
+	/**
+	 * Returns the difficulty multiplier of the game mods, like {@link GameMod#getDifficultyMultiplier()}.
+	 */
+	public static float getDifficultyMultiplier(int mods)
+	{
+		if ((mods & GameMod.HARD_ROCK.getBit()) != 0)
+			return 1.4f;
+		if ((mods & GameMod.EASY.getBit()) != 0)
+			return 0.5f;
+		return 1f;
+	}
+}
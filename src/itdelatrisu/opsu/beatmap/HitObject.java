@@ -19,12 +19,16 @@
 package itdelatrisu.opsu.beatmap;
 
 import itdelatrisu.opsu.GameMod;
+import itdelatrisu.opsu.io.OsuTokenizer;
 import itdelatrisu.opsu.objects.curves.CatmullCurve;
 import itdelatrisu.opsu.objects.curves.CircumscribedCircle;
 import itdelatrisu.opsu.objects.curves.Curve;
 import itdelatrisu.opsu.objects.curves.LinearBezier;
 import itdelatrisu.opsu.objects.curves.Vec2f;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 
@@ -192,6 +196,14 @@ public class HitObject {
 	 * @param line the line to be parsed
 	 */
 	public HitObject(String line) {
+		this(OsuTokenizer.forLine(line));
+	}
+
+	/**
+	 * Constructor.
+	 * @param t the tokenizer positioned on the line to be parsed
+	 */
+	public HitObject(OsuTokenizer t) {
 		/**
 		 * [OBJECT FORMATS]
 		 * Circles:
@@ -208,74 +220,192 @@ public class HitObject {
 		 *
 		 * NOTE: 'addition' -> sampl:add:cust:vol:hitsound (optional, defaults to "0:0:0:0:")
 		 */
-		String tokens[] = line.split(",");
+		t.rewindLine();
 
 		// common fields
-		this.x = Float.parseFloat(tokens[0]);
-		this.y = Float.parseFloat(tokens[1]);
-		this.time = Integer.parseInt(tokens[2]);
-		this.type = Integer.parseInt(tokens[3]);
-		this.hitSound = Byte.parseByte(tokens[4]);
+		this.x = t.readFloat();
+		this.y = t.nextFloat(',');
+		this.time = t.nextInt(',');
+		this.type = t.nextInt(',');
+		this.hitSound = t.nextByte(',');
 
 		// type-specific fields
-		int additionIndex;
+		boolean hasAddition;
 		if ((type & HitObject.TYPE_CIRCLE) > 0)
-			additionIndex = 5;
+			hasAddition = t.skip(',');
 		else if ((type & HitObject.TYPE_SLIDER) > 0) {
-			additionIndex = 10;
-
 			// slider curve type and coordinates
-			String[] sliderTokens = tokens[5].split("\\|");
-			this.sliderType = sliderTokens[0].charAt(0);
-			this.sliderX = new float[sliderTokens.length - 1];
-			this.sliderY = new float[sliderTokens.length - 1];
-			for (int j = 1; j < sliderTokens.length; j++) {
-				String[] sliderXY = sliderTokens[j].split(":");
-				this.sliderX[j - 1] = Integer.parseInt(sliderXY[0]);
-				this.sliderY[j - 1] = Integer.parseInt(sliderXY[1]);
+			t.expect(',');
+			this.sliderType = t.readChar();
+			int points = t.countParts('|', ',') - 1;
+			this.sliderX = new float[points];
+			this.sliderY = new float[points];
+			for (int j = 0; j < points; j++) {
+				this.sliderX[j] = t.nextInt('|');
+				this.sliderY[j] = t.nextInt(':');
 			}
-			this.repeat = Integer.parseInt(tokens[6]);
-			this.pixelLength = Float.parseFloat(tokens[7]);
-			if (tokens.length > 8) {
-				String[] edgeHitSoundTokens = tokens[8].split("\\|");
-				this.edgeHitSound = new byte[edgeHitSoundTokens.length];
-				for (int j = 0; j < edgeHitSoundTokens.length; j++)
-					edgeHitSound[j] = (byte) Short.parseShort(edgeHitSoundTokens[j]);
+			t.skipTrailing('|');
+			this.repeat = t.nextInt(',');
+			this.pixelLength = t.nextFloat(',');
+			if (t.skip(',') && t.hasNext() && t.peek() != ',') {
+				int edges = t.countParts('|', ',');
+				this.edgeHitSound = new byte[edges];
+				for (int j = 0; j < edges; j++) {
+					if (j > 0)
+						t.expect('|');
+					edgeHitSound[j] = (byte) t.readShort();
+				}
+				t.skipTrailing('|');
 			}
-			if (tokens.length > 9) {
-				String[] edgeAdditionTokens = tokens[9].split("\\|");
-				this.edgeAddition = new byte[edgeAdditionTokens.length][2];
-				for (int j = 0; j < edgeAdditionTokens.length; j++) {
-					String[] tedgeAddition = edgeAdditionTokens[j].split(":");
-					edgeAddition[j][0] = Byte.parseByte(tedgeAddition[0]);
-					edgeAddition[j][1] = Byte.parseByte(tedgeAddition[1]);
+			if (t.skip(',') && t.hasNext() && t.peek() != ',') {
+				int edges = t.countParts('|', ',');
+				this.edgeAddition = new byte[edges][2];
+				for (int j = 0; j < edges; j++) {
+					if (j > 0)
+						t.expect('|');
+					edgeAddition[j][0] = t.readByte();
+					edgeAddition[j][1] = t.nextByte(':');
 				}
+				t.skipTrailing('|');
 			}
+			hasAddition = t.skip(',');
 		} else { //if ((type & HitObject.TYPE_SPINNER) > 0) {
-			additionIndex = 6;
-
 			// some 'endTime' fields contain a ':' character (?)
-			int index = tokens[5].indexOf(':');
-			if (index != -1)
-				tokens[5] = tokens[5].substring(0, index);
-			this.endTime = Integer.parseInt(tokens[5]);
+			this.endTime = t.nextInt(',');
+			hasAddition = t.skipPast(',');
 		}
 
 		// addition
-		if (tokens.length > additionIndex) {
-			String[] additionTokens = tokens[additionIndex].split(":");
-			if (additionTokens.length > 1) {
+		if (hasAddition && t.hasNext()) {
+			byte sampleSet = t.readByte();
+			if (t.skip(':') && t.hasNext()) {
 				this.addition = new byte[2];
-				addition[0] = Byte.parseByte(additionTokens[0]);
-				addition[1] = Byte.parseByte(additionTokens[1]);
+				addition[0] = sampleSet;
+				addition[1] = t.readByte();
+				if (t.skip(':') && t.hasNext()) {
+					this.additionCustomSampleIndex = t.readByte();
+					if (t.skip(':') && t.hasNext()) {
+						this.additionHitSoundVolume = t.readInt();
+						if (t.skip(':') && t.hasNext())
+							this.additionHitSound = t.readString(',');
+					}
+				}
+			}
+		}
+	}
+
+	/** Flags for the optional fields in {@link #write(DataOutput)}. */
+	private static final int
+		HAS_ADDITION       = 1,
+		HAS_HIT_SOUND_FILE = 2,
+		HAS_SLIDER         = 4,
+		HAS_EDGE_HIT_SOUND = 8,
+		HAS_EDGE_ADDITION  = 16;
+
+	/**
+	 * Constructor, reading a hit object in the format written by {@link #write(DataOutput)}.
+	 * @param in the input to read from
+	 * @throws IOException if an I/O error occurs
+	 */
+	public HitObject(DataInput in) throws IOException {
+		int flags = in.readUnsignedByte();
+		this.x = in.readFloat();
+		this.y = in.readFloat();
+		this.time = in.readInt();
+		this.type = in.readInt();
+		this.hitSound = in.readByte();
+		if ((flags & HAS_ADDITION) != 0) {
+			this.addition = new byte[2];
+			addition[0] = in.readByte();
+			addition[1] = in.readByte();
+		}
+		this.additionCustomSampleIndex = in.readByte();
+		this.additionHitSoundVolume = in.readInt();
+		if ((flags & HAS_HIT_SOUND_FILE) != 0)
+			this.additionHitSound = in.readUTF();
+		if ((flags & HAS_SLIDER) != 0) {
+			this.sliderType = in.readChar();
+			int points = in.readInt();
+			this.sliderX = new float[points];
+			this.sliderY = new float[points];
+			for (int i = 0; i < points; i++) {
+				sliderX[i] = in.readFloat();
+				sliderY[i] = in.readFloat();
 			}
-			if (additionTokens.length > 2)
-				this.additionCustomSampleIndex = Byte.parseByte(additionTokens[2]);
-			if (additionTokens.length > 3)
-				this.additionHitSoundVolume = Integer.parseInt(additionTokens[3]);
-			if (additionTokens.length > 4)
-				this.additionHitSound = additionTokens[4];
+			this.repeat = in.readInt();
+			this.pixelLength = in.readFloat();
+		}
+		this.endTime = in.readInt();
+		if ((flags & HAS_EDGE_HIT_SOUND) != 0) {
+			this.edgeHitSound = new byte[in.readInt()];
+			in.readFully(edgeHitSound);
+		}
+		if ((flags & HAS_EDGE_ADDITION) != 0) {
+			this.edgeAddition = new byte[in.readInt()][2];
+			for (int i = 0; i < edgeAddition.length; i++)
+				in.readFully(edgeAddition[i]);
+		}
+		this.comboIndex = in.readInt();
+		this.comboNumber = in.readInt();
+		this.stack = in.readInt();
+	}
+
+	/**
+	 * Writes this hit object in a compact binary format, including the
+	 * combo and stack information.
+	 * @param out the output to write to
+	 * @throws IOException if an I/O error occurs
+	 * @see #HitObject(DataInput)
+	 */
+	public void write(DataOutput out) throws IOException {
+		int flags = 0;
+		if (addition != null)
+			flags |= HAS_ADDITION;
+		if (additionHitSound != null)
+			flags |= HAS_HIT_SOUND_FILE;
+		if (sliderX != null)
+			flags |= HAS_SLIDER;
+		if (edgeHitSound != null)
+			flags |= HAS_EDGE_HIT_SOUND;
+		if (edgeAddition != null)
+			flags |= HAS_EDGE_ADDITION;
+		out.writeByte(flags);
+		out.writeFloat(x);
+		out.writeFloat(y);
+		out.writeInt(time);
+		out.writeInt(type);
+		out.writeByte(hitSound);
+		if (addition != null) {
+			out.writeByte(addition[0]);
+			out.writeByte(addition[1]);
+		}
+		out.writeByte(additionCustomSampleIndex);
+		out.writeInt(additionHitSoundVolume);
+		if (additionHitSound != null)
+			out.writeUTF(additionHitSound);
+		if (sliderX != null) {
+			out.writeChar(sliderType);
+			out.writeInt(sliderX.length);
+			for (int i = 0; i < sliderX.length; i++) {
+				out.writeFloat(sliderX[i]);
+				out.writeFloat(sliderY[i]);
+			}
+			out.writeInt(repeat);
+			out.writeFloat(pixelLength);
+		}
+		out.writeInt(endTime);
+		if (edgeHitSound != null) {
+			out.writeInt(edgeHitSound.length);
+			out.write(edgeHitSound);
+		}
+		if (edgeAddition != null) {
+			out.writeInt(edgeAddition.length);
+			for (byte[] a : edgeAddition)
+				out.write(a, 0, 2);
 		}
+		out.writeInt(comboIndex);
+		out.writeInt(comboNumber);
+		out.writeInt(stack);
 	}
 
 	/**
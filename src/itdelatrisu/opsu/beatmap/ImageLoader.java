@@ -23,34 +23,79 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.newdawn.slick.Image;
 import org.newdawn.slick.SlickException;
 import org.newdawn.slick.opengl.ImageData;
 import org.newdawn.slick.opengl.ImageDataFactory;
+import org.newdawn.slick.opengl.InternalTextureLoader;
 import org.newdawn.slick.opengl.LoadableImageData;
+import org.newdawn.slick.opengl.Texture;
 import org.newdawn.slick.util.Log;
 
+import static yugecin.opsudance.core.InstanceContainer.*;
+import static yugecin.opsudance.options.Options.*;
+
 /**
- * Simple threaded image loader for a single image file.
+ * Threaded image loader for a single image file.
+ * Image data of all loaders is decoded by a shared, bounded executor.
  */
 public class ImageLoader {
+	/** Maximum number of images that are decoded at the same time. */
+	private static final int DECODE_THREADS = 2;
+
+	/** The executor decoding the images, its threads stop when idle. */
+	private static final ThreadPoolExecutor executor;
+	static {
+		executor = new ThreadPoolExecutor(
+			DECODE_THREADS, DECODE_THREADS, 10, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(),
+			new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "ImageLoader");
+					thread.setDaemon(true);
+					return thread;
+				}
+			}
+		);
+		executor.allowCoreThreadTimeOut(true);
+	}
+
 	/** The image file. */
 	private final File file;
 
+	/** Called from the executor when the image data is decoded, or null. */
+	private final Runnable decodedListener;
+
 	/** The loaded image. */
 	private Image image;
 
-	/** The image data. */
-	private LoadedImageData data;
+	/** The image data, set by the executor. */
+	private volatile ImageData data;
+
+	/** The display size when loading started, the size to scale thumbnails for, or 0 if not cached. */
+	private int thumbnailWidth, thumbnailHeight;
 
-	/** The image loader thread. */
-	private Thread loaderThread;
+	/** The decode task, or null if not loading threaded. */
+	private Future<?> task;
 
-	/** ImageData wrapper, needed because {@code ImageIOImageData} doesn't implement {@code getImageBufferData()}. */
-	private class LoadedImageData implements ImageData {
-		/** The image data implementation. */
-		private final ImageData imageData;
+	/** Whether loading was cancelled. */
+	private volatile boolean cancelled;
+
+	/** The image file input stream while decoding, closed to interrupt I/O. */
+	private volatile BufferedInputStream in;
+
+	/** ImageData holder, needed because {@code ImageIOImageData} doesn't implement {@code getImageBufferData()}. */
+	static class LoadedImageData implements ImageData {
+		/** The image properties. */
+		private final int depth, width, height, texWidth, texHeight;
 
 		/** The stored image. */
 		private final ByteBuffer buffer;
@@ -61,47 +106,35 @@ public class ImageLoader {
 		 * @param buffer the stored image
 		 */
 		public LoadedImageData(ImageData imageData, ByteBuffer buffer) {
-			this.imageData = imageData;
+			this.depth = imageData.getDepth();
+			this.width = imageData.getWidth();
+			this.height = imageData.getHeight();
+			this.texWidth = imageData.getTexWidth();
+			this.texHeight = imageData.getTexHeight();
 			this.buffer = buffer;
 		}
 
-		@Override public int getDepth() { return imageData.getDepth(); }
-		@Override public int getWidth() { return imageData.getWidth(); }
-		@Override public int getHeight() { return imageData.getHeight();}
-		@Override public int getTexWidth() { return imageData.getTexWidth(); }
-		@Override public int getTexHeight() { return imageData.getTexHeight(); }
-		@Override public ByteBuffer getImageBufferData() { return buffer; }
-	}
-
-	/** Image loading thread. */
-	private class ImageLoaderThread extends Thread {
-		/** The image file input stream. */
-		private BufferedInputStream in;
-
-		@Override
-		public void interrupt() {
-			super.interrupt();
-			if (in != null) {
-				try {
-					in.close();  // interrupt I/O
-				} catch (IOException e) {}
-			}
+		/**
+		 * Constructor for an empty image, with power of two texture dimensions.
+		 * @param depth the bits per pixel
+		 * @param width the image width
+		 * @param height the image height
+		 */
+		public LoadedImageData(int depth, int width, int height) {
+			this.depth = depth;
+			this.width = width;
+			this.height = height;
+			this.texWidth = InternalTextureLoader.get2Fold(width);
+			this.texHeight = InternalTextureLoader.get2Fold(height);
+			this.buffer = ByteBuffer.allocateDirect(texWidth * texHeight * depth / 8).order(ByteOrder.nativeOrder());
 		}
 
-		@Override
-		public void run() {
-			// load image data into a ByteBuffer to use constructor Image(ImageData)
-			LoadableImageData imageData = ImageDataFactory.getImageDataFor(file.getAbsolutePath());
-			try (BufferedInputStream in = this.in = new BufferedInputStream(new FileInputStream(file))) {
-				ByteBuffer textureBuffer = imageData.loadImage(in, false, null);
-				if (!isInterrupted())
-					data = new LoadedImageData(imageData, textureBuffer);
-			} catch (IOException e) {
-				if (!isInterrupted())
-					Log.warn(String.format("Failed to load background image '%s'.", file), e);
-			}
-			this.in = null;
-		}
+		@Override public int getDepth() { return depth; }
+		@Override public int getWidth() { return width; }
+		@Override public int getHeight() { return height;}
+		@Override public int getTexWidth() { return texWidth; }
+		@Override public int getTexHeight() { return texHeight; }
+		@Override public ByteBuffer getImageBufferData() { return buffer; }
 	}
 
 	/**
@@ -109,22 +142,41 @@ public class ImageLoader {
 	 * @param file the image file
 	 */
 	public ImageLoader(File file) {
+		this(file, null);
+	}
+
+	/**
+	 * Constructor. Call {@link ImageLoader#load(boolean)} to load the image.
+	 * @param file the image file
+	 * @param decodedListener called from the executor when the image data is
+	 *        decoded in a threaded load, so {@link #getSize()} changed
+	 */
+	public ImageLoader(File file, Runnable decodedListener) {
 		this.file = file;
+		this.decodedListener = decodedListener;
 	}
 
 	/**
 	 * Loads the image.
-	 * @param threaded true to load the image data in a new thread
+	 * @param threaded true to decode the image data on the shared executor
 	 */
 	public void load(boolean threaded) {
 		if (!file.isFile())
 			return;
 
 		if (threaded) {
-			if (loaderThread != null && loaderThread.isAlive())
-				loaderThread.interrupt();
-			loaderThread = new ImageLoaderThread();
-			loaderThread.start();
+			if (isLoading())
+				return;
+			cancelled = false;
+			if (OPTION_BACKGROUND_THUMBNAILS.state) {
+				thumbnailWidth = width;
+				thumbnailHeight = height;
+			} else
+				thumbnailWidth = thumbnailHeight = 0;
+			task = executor.submit(new Runnable() {
+				@Override
+				public void run() { decode(); }
+			});
 		} else {
 			try {
 				image = new Image(file.getAbsolutePath());
@@ -134,30 +186,103 @@ public class ImageLoader {
 		}
 	}
 
+	/**
+	 * Decodes the image data into a ByteBuffer, to use constructor Image(ImageData).
+	 * Called from the executor.
+	 */
+	private void decode() {
+		if (cancelled)
+			return;
+
+		// use the cached thumbnail if there is one
+		long lastModified = file.lastModified();
+		boolean useThumbnail = (thumbnailWidth > 0 && thumbnailHeight > 0);
+		if (useThumbnail) {
+			ImageData thumbnail = ThumbnailCache.read(file, lastModified, thumbnailWidth, thumbnailHeight);
+			if (thumbnail != null) {
+				if (!cancelled)
+					decoded(thumbnail);
+				return;
+			}
+		}
+
+		LoadableImageData imageData = ImageDataFactory.getImageDataFor(file.getAbsolutePath());
+		try (BufferedInputStream in = this.in = new BufferedInputStream(new FileInputStream(file))) {
+			ByteBuffer textureBuffer = imageData.loadImage(in, false, null);
+			if (cancelled)
+				return;
+			ImageData loaded = new LoadedImageData(imageData, textureBuffer);
+			if (useThumbnail) {
+				loaded = ThumbnailCache.scale(loaded, thumbnailWidth, thumbnailHeight);
+				ThumbnailCache.write(file, lastModified, thumbnailWidth, thumbnailHeight, loaded);
+			}
+			if (!cancelled)
+				decoded(loaded);
+		} catch (IOException e) {
+			if (!cancelled)
+				Log.warn(String.format("Failed to load background image '%s'.", file), e);
+		}
+		this.in = null;
+	}
+
+	/**
+	 * Stores the decoded image data and notifies the listener.
+	 * Called from the executor.
+	 */
+	private void decoded(ImageData data) {
+		this.data = data;
+		if (decodedListener != null)
+			decodedListener.run();
+	}
+
 	/**
 	 * Returns the image.
 	 * @return the loaded image, or null if not loaded
 	 */
 	public Image getImage() {
+		ImageData data = this.data;
 		if (image == null && data != null) {
 			image = new Image(data);
-			data = null;
+			this.data = null;
 		}
 		return image;
 	}
 
 	/**
-	 * Returns whether an image is currently loading in another thread.
+	 * Returns the amount of memory used by the decoded image data or texture.
+	 * @return the size in bytes, or 0 if nothing is loaded yet
+	 */
+	public int getSize() {
+		if (image != null) {
+			Texture texture = image.getTexture();
+			return (texture == null) ? 0 : texture.getTextureWidth() * texture.getTextureHeight() * 4;
+		}
+		ImageData data = this.data;
+		return (data == null) ? 0 : data.getImageBufferData().capacity();
+	}
+
+	/**
+	 * Returns whether the image is currently being decoded or waiting to be decoded.
 	 * @return true if loading, false otherwise
 	 */
-	public boolean isLoading() { return (loaderThread != null && loaderThread.isAlive()); }
+	public boolean isLoading() { return (task != null && !task.isDone()); }
 
 	/**
-	 * Interrupts the image loader, if running.
+	 * Cancels the image loader, if loading.
 	 */
 	public void interrupt() {
-		if (isLoading())
-			loaderThread.interrupt();
+		if (!isLoading())
+			return;
+
+		cancelled = true;
+		task.cancel(false);
+		executor.remove((Runnable) task);  // drop it from the queue if it didn't start yet
+		BufferedInputStream in = this.in;
+		if (in != null) {
+			try {
+				in.close();  // interrupt I/O
+			} catch (IOException e) {}
+		}
 	}
 
 	/**
@@ -165,7 +290,7 @@ public class ImageLoader {
 	 */
 	public void destroy() {
 		interrupt();
-		loaderThread = null;
+		task = null;
 		if (image != null && !image.isDestroyed()) {
 			try {
 				image.destroy();
@@ -18,107 +18,273 @@
 
 package itdelatrisu.opsu.beatmap;
 
+import itdelatrisu.opsu.Utils;
+import itdelatrisu.opsu.db.BeatmapDB;
+
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.lingala.zip4j.core.ZipFile;
 import net.lingala.zip4j.exception.ZipException;
+import net.lingala.zip4j.io.ZipInputStream;
+import net.lingala.zip4j.model.FileHeader;
 import org.newdawn.slick.util.Log;
 
 import static itdelatrisu.opsu.ui.Colors.*;
 import static yugecin.opsudance.core.InstanceContainer.*;
+import static yugecin.opsudance.options.Options.*;
 
 /**
  * Unpacker for OSZ (ZIP) archives.
+ * <p>
+ * Archives are unpacked concurrently, and the beatmaps of each archive are
+ * parsed as soon as it's unpacked, from the OSU file contents that were kept
+ * in memory while extracting.
  */
 public class OszUnpacker {
 
-	/** The index of the current file being unpacked. */
-	private int fileIndex = -1;
+	/** Maximum number of archives that are unpacked at the same time. */
+	private static final int UNPACKER_THREADS = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+
+	/** Size of the buffer used to extract archive entries. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** The name of the archive that was started last, or null if not unpacking. */
+	private volatile String currentFileName;
+
+	/** The number of archives that are done. */
+	private final AtomicInteger unpackedArchives = new AtomicInteger();
+
+	/** The total number of archives to unpack, or -1 if not unpacking. */
+	private volatile int totalArchives = -1;
 
-	/** The total number of files to unpack. */
-	private File[] files;
+	/** The number of archive bytes that are done. */
+	private final AtomicLong unpackedBytes = new AtomicLong();
+
+	/** The total size of the archives to unpack. */
+	private volatile long totalBytes;
+
+	/** Whether unpacking was interrupted, checked by the worker threads. */
+	private volatile boolean cancelled;
 
 	/**
 	 * Invokes the unpacker for each OSZ archive in a root directory.
-	 * @return an array containing the new (unpacked) directories, or null
-	 *         if no OSZs found
+	 * The beatmaps of the new directories are parsed and inserted in the
+	 * database, so they'll be loaded from the cache by the beatmap parser.
+	 * @return an array containing the new (unpacked) directories
 	 */
 	public File[] unpackAll() {
-		List<File> dirs = new ArrayList<File>();
-
 		// find all OSZ files
-		files = config.oszDir.listFiles(new FilenameFilter() {
+		File[] files = config.oszDir.listFiles(new FilenameFilter() {
 			@Override
 			public boolean accept(File dir, String name) {
 				return name.toLowerCase().endsWith(".osz");
 			}
 		});
-		if (files == null || files.length < 1) {
-			files = null;
+		if (files == null || files.length < 1)
 			return new File[0];
-		}
+
+		// progress tracking
+		long size = 0;
+		for (File file : files)
+			size += file.length();
+		unpackedArchives.set(0);
+		unpackedBytes.set(0);
+		cancelled = false;
+		totalBytes = size;
+		totalArchives = files.length;
 
 		// unpack OSZs
 		BeatmapWatchService ws = BeatmapWatchService.get();
 		if (ws != null)
 			ws.pause();
-		for (File file : files) {
-			fileIndex++;
-			String dirName = file.getName().substring(0, file.getName().lastIndexOf('.'));
-			File songDir = new File(config.beatmapDir, dirName);
-			if (!songDir.isDirectory()) {
-				songDir.mkdir();
-				unzip(file, songDir);
-				file.delete();  // delete the OSZ when finished
-				dirs.add(songDir);
-			}
+		final long timestamp = System.currentTimeMillis();
+		final List<File> dirs = Collections.synchronizedList(new ArrayList<File>());
+		final List<Beatmap> parsedBeatmaps = Collections.synchronizedList(new ArrayList<Beatmap>());
+		int threads = OPTION_PARALLEL_BEATMAP_PARSING.state ? UNPACKER_THREADS : 1;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		for (final File file : files) {
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					// stop unpacking archives (interrupted)
+					if (cancelled)
+						return;
+					unpack(file, timestamp, dirs, parsedBeatmaps);
+				}
+			});
+		}
+		pool.shutdown();
+		try {
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			cancelled = true;
+			pool.shutdownNow();
+			try {
+				pool.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e2) {}
+			Thread.currentThread().interrupt();
 		}
 		if (ws != null)
 			ws.resume();
 
-		fileIndex = -1;
-		files = null;
+		// add beatmap entries to database
+		if (!parsedBeatmaps.isEmpty())
+			BeatmapDB.insert(parsedBeatmaps);
+
+		currentFileName = null;
+		totalArchives = -1;
 		return dirs.toArray(new File[dirs.size()]);
 	}
 
 	/**
-	 * Extracts the contents of a ZIP archive to a destination.
+	 * Unpacks an archive to a new directory in the beatmap directory,
+	 * and parses the beatmaps in it. Called from the worker threads.
+	 * @param file the OSZ archive
+	 * @param timestamp the time to use as date added for the parsed beatmaps
+	 * @param dirs the list to add the new directory to
+	 * @param parsedBeatmaps the list to add the parsed beatmaps to
+	 */
+	private void unpack(File file, long timestamp, List<File> dirs, List<Beatmap> parsedBeatmaps) {
+		currentFileName = file.getName();
+		long size = file.length();
+		String dirName = file.getName().substring(0, file.getName().lastIndexOf('.'));
+		File songDir = new File(config.beatmapDir, dirName);
+		if (!songDir.isDirectory()) {
+			songDir.mkdir();
+			size -= unzip(file, songDir);
+			if (cancelled) {
+				// remove the partially extracted directory, the OSZ is unpacked again next time
+				Utils.deleteDirectory(songDir);
+				return;
+			}
+			file.delete();  // delete the OSZ when finished
+			dirs.add(songDir);
+			beatmapParser.parseUnpackedDirectory(songDir, timestamp, parsedBeatmaps);
+		}
+		unpackedBytes.addAndGet(size);
+		unpackedArchives.incrementAndGet();
+	}
+
+	/**
+	 * Extracts the contents of a ZIP archive to a destination, entry by entry.
+	 * The contents of OSU files are also put in the {@link BeatmapFileCache}.
+	 * Stops early if unpacking is cancelled.
 	 * @param file the ZIP archive
 	 * @param dest the destination directory
+	 * @return the number of archive bytes added to the progress
 	 */
-	private void unzip(File file, File dest) {
+	private long unzip(File file, File dest) {
+		long counted = 0;
 		try {
+			String destPath = dest.getCanonicalPath() + File.separator;
 			ZipFile zipFile = new ZipFile(file);
-			zipFile.extractAll(dest.getAbsolutePath());
-		} catch (ZipException e) {
+			byte[] buf = new byte[BUFFER_SIZE];
+			for (Object o : zipFile.getFileHeaders()) {
+				if (cancelled)
+					break;
+				FileHeader header = (FileHeader) o;
+				File out = new File(dest, header.getFileName());
+				if (!out.getCanonicalPath().startsWith(destPath)) {
+					Log.warn(String.format("Skipping entry '%s' outside of the destination in %s.",
+							header.getFileName(), file.getAbsolutePath()));
+					continue;
+				}
+				if (header.isDirectory()) {
+					out.mkdirs();
+					continue;
+				}
+				out.getParentFile().mkdirs();
+
+				// count compressed bytes, in proportion to the extracted bytes
+				long compressedSize = header.getCompressedSize();
+				long uncompressedSize = header.getUncompressedSize();
+				long extracted = 0, reported = 0;
+				ByteArrayOutputStream osuData = null;
+				if (header.getFileName().toLowerCase().endsWith(".osu"))
+					osuData = new ByteArrayOutputStream((int) Math.min(Math.max(uncompressedSize, 32), BUFFER_SIZE));
+				ZipInputStream in = zipFile.getInputStream(header);
+				try (OutputStream os = new FileOutputStream(out)) {
+					int n;
+					while ((n = in.read(buf)) != -1 && !cancelled) {
+						os.write(buf, 0, n);
+						if (osuData != null)
+							osuData.write(buf, 0, n);
+						extracted += n;
+						if (uncompressedSize > 0) {
+							long progress = Math.min(compressedSize * extracted / uncompressedSize, compressedSize);
+							unpackedBytes.addAndGet(progress - reported);
+							reported = progress;
+						}
+					}
+				} finally {
+					in.close();
+				}
+				unpackedBytes.addAndGet(compressedSize - reported);
+				counted += compressedSize;
+
+				if (osuData != null && !cancelled)
+					BeatmapFileCache.put(out, osuData.toByteArray());
+			}
+		} catch (ZipException | IOException e) {
 			String err = String.format("Failed to unzip file %s to dest %s.", file.getAbsolutePath(), dest.getAbsolutePath());
 			Log.error(err, e);
 			bubNotifs.send(BUB_RED, err);
 		}
+		return counted;
 	}
 
 	/**
 	 * Returns the name of the current file being unpacked, or null if none.
 	 */
 	public String getCurrentFileName() {
-		if (files == null || fileIndex == -1)
+		if (totalArchives == -1)
 			return null;
 
-		return files[fileIndex].getName();
+		return currentFileName;
+	}
+
+	/**
+	 * Returns the number of archives that are done, or -1 if not unpacking.
+	 */
+	public int getUnpackedArchiveCount() {
+		if (totalArchives == -1)
+			return -1;
+
+		return unpackedArchives.get();
+	}
+
+	/**
+	 * Returns the total number of archives being unpacked, or -1 if not unpacking.
+	 */
+	public int getArchiveCount() {
+		return totalArchives;
 	}
 
 	/**
-	 * Returns the progress of file unpacking, or -1 if not unpacking.
+	 * Returns the progress of file unpacking by archive size, or -1 if not unpacking.
 	 * @return the completion percent [0, 100] or -1
 	 */
 	public int getUnpackerProgress() {
-		if (files == null || fileIndex == -1)
+		if (totalArchives == -1)
 			return -1;
 
-		return (fileIndex + 1) * 100 / files.length;
+		long total = totalBytes;
+		if (total <= 0)
+			return unpackedArchives.get() * 100 / totalArchives;
+		return (int) (Math.min(unpackedBytes.get(), total) * 100 / total);
 	}
 
-}
\ No newline at end of file
+}
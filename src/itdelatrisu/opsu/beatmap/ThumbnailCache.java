@@ -0,0 +1,299 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package itdelatrisu.opsu.beatmap;
+
+import itdelatrisu.opsu.beatmap.ImageLoader.LoadedImageData;
+import org.newdawn.slick.opengl.ImageData;
+import org.newdawn.slick.util.Log;
+import yugecin.opsudance.core.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import static yugecin.opsudance.core.InstanceContainer.*;
+
+/**
+ * Disk cache of background images scaled to the display size, stored as raw
+ * pixel data so they can be loaded without decoding a PNG or JPEG file.
+ * <p>
+ * Thumbnails are keyed by the path and last modified time of the image and the
+ * size they were scaled for, and their rows are read straight into a texture
+ * buffer. The total size of the cache directory is bounded, the least
+ * recently used thumbnails are removed first.
+ */
+public class ThumbnailCache
+{
+	private static final int MAGIC = 0x6F74686D;
+	private static final int VERSION = 1;
+
+	/** Maximum total size of the cache directory, in bytes. */
+	private static final long MAX_TOTAL_SIZE = 1024L * 1024 * 1024;
+
+	/** Size to prune the cache directory to when it's full. */
+	private static final long PRUNED_TOTAL_SIZE = MAX_TOTAL_SIZE * 3 / 4;
+
+	/** Current total size of the cache directory, or -1 if unknown. */
+	private static long totalSize = -1;
+
+	/**
+	 * Reads the thumbnail of an image.
+	 * @param image the image file
+	 * @param lastModified the last modified time of the image file
+	 * @param targetWidth the width the thumbnail is scaled for
+	 * @param targetHeight the height the thumbnail is scaled for
+	 * @return the thumbnail, or {@code null} if it's not cached or outdated
+	 */
+	@Nullable
+	static LoadedImageData read(File image, long lastModified, int targetWidth, int targetHeight)
+	{
+		final File file = getFile(image, lastModified, targetWidth, targetHeight);
+		if (!file.isFile()) {
+			return null;
+		}
+		// not memory mapped, a mapping keeps the file locked on Windows until it is
+		// garbage collected, so it could not be replaced or pruned
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final byte[] path = image.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+			final ByteBuffer in = ByteBuffer.allocate(40 + path.length);
+			if (!readFully(channel, in)) {
+				return null;
+			}
+			in.flip();
+			if (in.getInt() != MAGIC ||
+				in.getInt() != VERSION ||
+				in.getLong() != lastModified ||
+				in.getInt() != targetWidth ||
+				in.getInt() != targetHeight ||
+				in.getInt() != path.length)
+			{
+				return null;
+			}
+			final byte[] storedPath = new byte[path.length];
+			in.get(storedPath);
+			if (!Arrays.equals(path, storedPath)) {
+				// hash collision, will be overwritten
+				return null;
+			}
+			final int width = in.getInt();
+			final int height = in.getInt();
+			final int depth = in.getInt();
+			final int bpp = depth / 8;
+			final int rowSize = width * bpp;
+			if (channel.size() - channel.position() != (long) rowSize * height) {
+				return null;
+			}
+
+			final LoadedImageData data = new LoadedImageData(depth, width, height);
+			final ByteBuffer out = data.getImageBufferData();
+			final int stride = data.getTexWidth() * bpp;
+			if (stride == rowSize) {
+				out.limit(rowSize * height);
+				if (!readFully(channel, out)) {
+					return null;
+				}
+			} else {
+				for (int y = 0; y < height; y++) {
+					out.limit(y * stride + rowSize);
+					out.position(y * stride);
+					if (!readFully(channel, out)) {
+						return null;
+					}
+				}
+			}
+			out.clear();
+			file.setLastModified(System.currentTimeMillis());
+			return data;
+		} catch (IOException | RuntimeException e) {
+			Log.warn(String.format("Failed to read thumbnail '%s'.", file), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Reads from a channel until the buffer is full.
+	 * @return false if the end of the channel was reached first
+	 */
+	private static boolean readFully(FileChannel channel, ByteBuffer buf) throws IOException
+	{
+		while (buf.hasRemaining()) {
+			if (channel.read(buf) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the thumbnail of an image, replacing any existing one.
+	 * @param image the image file
+	 * @param lastModified the last modified time of the image file
+	 * @param targetWidth the width the thumbnail is scaled for
+	 * @param targetHeight the height the thumbnail is scaled for
+	 * @param data the thumbnail, as returned by {@link #scale}
+	 */
+	static void write(File image, long lastModified, int targetWidth, int targetHeight, ImageData data)
+	{
+		final File dir = config.THUMBNAIL_DIR;
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			return;
+		}
+
+		final byte[] path = image.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+		final int bpp = data.getDepth() / 8;
+		final int rowSize = data.getWidth() * bpp;
+		final ByteBuffer header = ByteBuffer.allocate(40 + path.length);
+		header.putInt(MAGIC).putInt(VERSION).putLong(lastModified);
+		header.putInt(targetWidth).putInt(targetHeight);
+		header.putInt(path.length).put(path);
+		header.putInt(data.getWidth()).putInt(data.getHeight()).putInt(data.getDepth());
+		header.flip();
+
+		final File file = getFile(image, lastModified, targetWidth, targetHeight);
+		final File tmp = new File(dir, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+		// a replaced thumbnail (like after a hash collision) is already counted
+		final long replacedSize = file.length();
+		try {
+			try (FileChannel out = FileChannel.open(tmp.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+			{
+				out.write(header);
+				final ByteBuffer pixels = data.getImageBufferData().duplicate();
+				final int stride = data.getTexWidth() * bpp;
+				for (int y = 0; y < data.getHeight(); y++) {
+					pixels.limit(y * stride + rowSize).position(y * stride);
+					while (pixels.hasRemaining()) {
+						out.write(pixels);
+					}
+				}
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			Log.warn(String.format("Failed to write thumbnail '%s'.", file), e);
+			tmp.delete();
+			return;
+		}
+		added(file.length() - replacedSize);
+	}
+
+	/**
+	 * Scales decoded image data down, so it just covers the target size while
+	 * keeping its aspect ratio. Every pixel is the average of the pixels it covers.
+	 * @return the scaled data, or the given data if it's not larger than the target
+	 */
+	static ImageData scale(ImageData data, int targetWidth, int targetHeight)
+	{
+		final int width = data.getWidth(), height = data.getHeight();
+		final float scale = Math.max(targetWidth / (float) width, targetHeight / (float) height);
+		if (scale >= 1f) {
+			return data;
+		}
+		// round down, so a size that's just above a power of two doesn't double the texture size
+		final int newWidth = Math.max(targetWidth, (int) (width * scale));
+		final int newHeight = Math.max(targetHeight, (int) (height * scale));
+		final int bpp = data.getDepth() / 8;
+		final int srcStride = data.getTexWidth() * bpp;
+		final int srcRowSize = width * bpp;
+
+		final LoadedImageData scaled = new LoadedImageData(data.getDepth(), newWidth, newHeight);
+		final int dstStride = scaled.getTexWidth() * bpp;
+		final ByteBuffer src = data.getImageBufferData().duplicate();
+		final ByteBuffer dst = scaled.getImageBufferData().duplicate();
+		final byte[] row = new byte[srcRowSize];
+		final byte[] out = new byte[newWidth * bpp];
+		final int[] sums = new int[newWidth * bpp];
+		final int[] x0 = new int[newWidth + 1];
+		for (int x = 0; x <= newWidth; x++) {
+			x0[x] = x * width / newWidth;
+		}
+		for (int y = 0; y < newHeight; y++) {
+			final int y0 = y * height / newHeight;
+			final int y1 = Math.max(y0 + 1, (y + 1) * height / newHeight);
+			Arrays.fill(sums, 0);
+			for (int sy = y0; sy < y1; sy++) {
+				src.position(sy * srcStride);
+				src.get(row);
+				for (int x = 0, i = 0; x < newWidth; x++) {
+					final int end = Math.max(x0[x] + 1, x0[x + 1]) * bpp;
+					for (int j = x0[x] * bpp; j < end;) {
+						for (int c = 0; c < bpp; c++) {
+							sums[i + c] += row[j++] & 0xFF;
+						}
+					}
+					i += bpp;
+				}
+			}
+			for (int x = 0, i = 0; x < newWidth; x++) {
+				final int count = (y1 - y0) * Math.max(1, x0[x + 1] - x0[x]);
+				for (int c = 0; c < bpp; c++, i++) {
+					out[i] = (byte) (sums[i] / count);
+				}
+			}
+			dst.position(y * dstStride);
+			dst.put(out);
+		}
+		return scaled;
+	}
+
+	private static File getFile(File image, long lastModified, int targetWidth, int targetHeight)
+	{
+		final String key = image.getAbsolutePath() + '|' + lastModified + '|' + targetWidth + 'x' + targetHeight;
+		long hash = 0xCBF29CE484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			hash = (hash ^ key.charAt(i)) * 0x100000001B3L;
+		}
+		return new File(config.THUMBNAIL_DIR, String.format("%016x.raw", hash));
+	}
+
+	/**
+	 * Adds to the total size, removing the least recently used thumbnails
+	 * when the cache directory is full.
+	 * @param size the amount of bytes the cache directory grew, negative if it shrunk
+	 */
+	private static synchronized void added(long size)
+	{
+		if (totalSize == -1) {
+			// count the thumbnails of previous sessions once, this includes the new one
+			totalSize = 0;
+			final File[] files = config.THUMBNAIL_DIR.listFiles();
+			if (files != null) {
+				for (File f : files) {
+					totalSize += f.length();
+				}
+			}
+		} else {
+			totalSize += size;
+		}
+		if (totalSize <= MAX_TOTAL_SIZE) {
+			return;
+		}
+
+		final File[] files = config.THUMBNAIL_DIR.listFiles();
+		if (files == null) {
+			return;
+		}
+		final long[] lastModified = new long[files.length];
+		final Integer[] order = new Integer[files.length];
+		totalSize = 0;
+		for (int i = 0; i < files.length; i++) {
+			lastModified[i] = files[i].lastModified();
+			order[i] = i;
+			totalSize += files[i].length();
+		}
+		Arrays.sort(order, Comparator.comparingLong(i -> lastModified[i]));
+		for (int i = 0; i < order.length && totalSize > PRUNED_TOTAL_SIZE; i++) {
+			final File f = files[order[i]];
+			final long length = f.length();
+			if (f.delete()) {
+				totalSize -= length;
+			}
+		}
+	}
+}
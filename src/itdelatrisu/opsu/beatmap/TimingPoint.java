@@ -19,6 +19,9 @@
 package itdelatrisu.opsu.beatmap;
 
 import itdelatrisu.opsu.Utils;
+import itdelatrisu.opsu.io.OsuTokenizer;
+
+import java.util.NoSuchElementException;
 
 import org.newdawn.slick.util.Log;
 
@@ -58,6 +61,14 @@ public class TimingPoint {
 	 * @param line the line to be parsed
 	 */
 	public TimingPoint(String line) {
+		this(OsuTokenizer.forLine(line));
+	}
+
+	/**
+	 * Constructor.
+	 * @param t the tokenizer positioned on the line to be parsed
+	 */
+	public TimingPoint(OsuTokenizer t) {
 		/**
 		 * [TIMING POINT FORMATS]
 		 * Non-inherited:
@@ -67,28 +78,29 @@ public class TimingPoint {
 		 *   offset,velocity,meter,sampleType,sampleSet,volume,inherited,kiai
 		 */
 		// TODO: better support for old formats
-		String[] tokens = line.split(",");
-		try {
-			this.time = (int) Float.parseFloat(tokens[0]);  // rare float
-			this.meter = Integer.parseInt(tokens[2]);
-			this.sampleType = Byte.parseByte(tokens[3]);
-			this.sampleTypeCustom = Byte.parseByte(tokens[4]);
-			this.sampleVolume = Integer.parseInt(tokens[5]);
-//			this.inherited = Utils.parseBoolean(tokens[6]);
-			if (tokens.length > 7)
-				this.kiai = Utils.parseBoolean(tokens[7]);
-		} catch (ArrayIndexOutOfBoundsException e) {
-			Log.debug(String.format("Error parsing timing point: '%s'", line));
-		}
+		t.rewindLine();
+		this.time = (int) t.readFloat();  // rare float
 
-		// tokens[1] is either beatLength (positive) or velocity (negative)
-		float beatLength = Float.parseFloat(tokens[1]);
+		// beatLength is either positive or velocity (negative)
+		float beatLength = t.nextFloat(',');
 		if (beatLength > 0)
 			this.beatLength = beatLength;
 		else {
 			this.velocity = (int) beatLength;
 			this.inherited = true;
 		}
+
+		try {
+			this.meter = t.nextInt(',');
+			this.sampleType = t.nextByte(',');
+			this.sampleTypeCustom = t.nextByte(',');
+			this.sampleVolume = t.nextInt(',');
+//			this.inherited = (t.nextInt(',') == 1);
+			if (t.skip(',') && t.skipPast(',') && t.hasNext())
+				this.kiai = (t.readInt() == 1);
+		} catch (NoSuchElementException e) {
+			Log.debug(String.format("Error parsing timing point: '%s'", t.line()));
+		}
 	}
 
 	/**
@@ -20,8 +20,10 @@ package itdelatrisu.opsu.db;
 
 import itdelatrisu.opsu.beatmap.Beatmap;
 import itdelatrisu.opsu.beatmap.BeatmapParser;
+import itdelatrisu.opsu.beatmap.DifficultyAttributes;
 
 import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -39,6 +41,10 @@ import static yugecin.opsudance.core.InstanceContainer.*;
 
 /**
  * Handles connections and queries with the cached beatmap database.
+ * <p>
+ * The connection and prepared statements are shared, so every public method
+ * holds the class lock while it uses them: star ratings are saved from
+ * background threads while the main thread loads and updates beatmaps.
  */
 public class BeatmapDB {
 
@@ -47,7 +53,7 @@ public class BeatmapDB {
 	 * This value should be changed whenever the database format changes.
 	 * Add any update queries to the {@link #getUpdateQueries(int)} method.
 	 */
-	private static final int DATABASE_VERSION = 20161225;
+	private static final int DATABASE_VERSION = 20261018;
 
 	/**
 	 * Returns a list of SQL queries to apply, in order, to update from
@@ -69,13 +75,21 @@ public class BeatmapDB {
 			list.add("UPDATE beatmaps SET localOffset = 0");
 		}
 
+		if (version < 20261018) {
+			// recreated with a calculator version column
+			list.add("DROP TABLE IF EXISTS difficulty");
+		}
+
 		/* add future updates here */
 
 		return list;
 	}
 
-	/** Minimum batch size ratio ({@code batchSize/cacheSize}) to invoke batch loading. */
-	private static final float LOAD_BATCH_MIN_RATIO = 0.2f;
+	/** Minimum batch size to invoke batch loading. */
+	private static final int LOAD_BATCH_MIN = 10;
+
+	/** Minimum batch size ratio ({@code batchSize/cacheSize}) to load a batch by scanning the whole table. */
+	private static final float LOAD_SCAN_MIN_RATIO = 0.8f;
 
 	/** Minimum batch size to invoke batch insertion. */
 	private static final int INSERT_BATCH_MIN = 100;
@@ -89,7 +103,10 @@ public class BeatmapDB {
 	/** Query statements. */
 	private static PreparedStatement
 		insertStmt, selectStmt, deleteMapStmt, deleteGroupStmt,
-		setStarsStmt, updatePlayStatsStmt, setFavoriteStmt, setLocalOffsetStmt, updateSizeStmt;
+		setStarsStmt, updatePlayStatsStmt, setFavoriteStmt, setLocalOffsetStmt, updateSizeStmt,
+		selectObjectsStmt, insertObjectsStmt, deleteMapObjectsStmt, deleteGroupObjectsStmt,
+		insertLoadBatchStmt, selectLoadBatchStmt, clearLoadBatchStmt, selectLastModifiedStmt,
+		selectDifficultyStmt, insertDifficultyStmt;
 
 	/** Current size of beatmap cache table. */
 	private static int cacheSize = -1;
@@ -97,7 +114,7 @@ public class BeatmapDB {
 	/**
 	 * Initializes the database connection.
 	 */
-	public static void init() {
+	public static synchronized void init() {
 		// create a database connection
 		connection = DBController.createConnection(config.BEATMAP_DB.getPath());
 		if (connection == null)
@@ -135,6 +152,19 @@ public class BeatmapDB {
 			updatePlayStatsStmt = connection.prepareStatement("UPDATE beatmaps SET playCount = ?, lastPlayed = ? WHERE dir = ? AND file = ?");
 			setFavoriteStmt = connection.prepareStatement("UPDATE beatmaps SET favorite = ? WHERE dir = ? AND file = ?");
 			setLocalOffsetStmt = connection.prepareStatement("UPDATE beatmaps SET localOffset = ? WHERE dir = ? AND file = ?");
+			selectObjectsStmt = connection.prepareStatement("SELECT md5hash, data FROM hitobjects WHERE dir = ? AND file = ?");
+			insertObjectsStmt = connection.prepareStatement("REPLACE INTO hitobjects VALUES (?, ?, ?, ?, ?)");
+			deleteMapObjectsStmt = connection.prepareStatement("DELETE FROM hitobjects WHERE dir = ? AND file = ?");
+			deleteGroupObjectsStmt = connection.prepareStatement("DELETE FROM hitobjects WHERE dir = ?");
+			insertLoadBatchStmt = connection.prepareStatement("INSERT INTO temp.loadbatch VALUES (?, ?)");
+			selectLoadBatchStmt = connection.prepareStatement(
+				"SELECT beatmaps.* FROM temp.loadbatch " +
+				"JOIN beatmaps ON beatmaps.dir = loadbatch.dir AND beatmaps.file = loadbatch.file"
+			);
+			clearLoadBatchStmt = connection.prepareStatement("DELETE FROM temp.loadbatch");
+			selectLastModifiedStmt = connection.prepareStatement("SELECT file, lastModified FROM beatmaps WHERE dir = ?");
+			selectDifficultyStmt = connection.prepareStatement("SELECT mods, aim, speed, stars, maxCombo FROM difficulty WHERE md5hash = ? AND version = ?");
+			insertDifficultyStmt = connection.prepareStatement("REPLACE INTO difficulty VALUES (?, ?, ?, ?, ?, ?, ?)");
 		} catch (SQLException e) {
 			softErr(e, "Failed to prepare beatmap statements");
 		}
@@ -164,6 +194,16 @@ public class BeatmapDB {
 					"key TEXT NOT NULL UNIQUE, value TEXT" +
 				"); " +
 				"CREATE INDEX IF NOT EXISTS idx ON beatmaps (dir, file); " +
+				"CREATE TABLE IF NOT EXISTS hitobjects (" +
+					"dir TEXT, file TEXT, md5hash TEXT, lastModified INTEGER, data BLOB" +
+				"); " +
+				"CREATE UNIQUE INDEX IF NOT EXISTS hitobjects_idx ON hitobjects (dir, file); " +
+				"CREATE TEMP TABLE IF NOT EXISTS loadbatch (dir TEXT, file TEXT); " +
+				"CREATE TABLE IF NOT EXISTS difficulty (" +
+					"md5hash TEXT NOT NULL, mods INTEGER NOT NULL, " +
+					"aim REAL, speed REAL, stars REAL, maxCombo INTEGER, version INTEGER, " +
+					"PRIMARY KEY (md5hash, mods)" +
+				"); " +
 
 				// extra optimizations
 				"PRAGMA locking_mode = EXCLUSIVE; " +
@@ -266,7 +306,7 @@ public class BeatmapDB {
 	/**
 	 * Clears the database.
 	 */
-	public static void clearDatabase() {
+	public static synchronized void clearDatabase() {
 		if (connection == null)
 			return;
 
@@ -274,6 +314,10 @@ public class BeatmapDB {
 		try (Statement stmt = connection.createStatement()) {
 			String sql = "DROP TABLE beatmaps";
 			stmt.executeUpdate(sql);
+			sql = "DROP TABLE IF EXISTS hitobjects";
+			stmt.executeUpdate(sql);
+			sql = "DROP TABLE IF EXISTS difficulty";
+			stmt.executeUpdate(sql);
 			cacheSize = 0;
 			updateCacheSize();
 		} catch (SQLException e) {
@@ -286,7 +330,7 @@ public class BeatmapDB {
 	 * Adds the beatmap to the database.
 	 * @param beatmap the beatmap
 	 */
-	public static void insert(Beatmap beatmap) {
+	public static synchronized void insert(Beatmap beatmap) {
 		if (connection == null)
 			return;
 
@@ -303,13 +347,14 @@ public class BeatmapDB {
 	 * Adds the beatmaps to the database in a batch.
 	 * @param batch a list of beatmaps
 	 */
-	public static void insert(List<Beatmap> batch) {
+	public static synchronized void insert(List<Beatmap> batch) {
 		if (connection == null)
 			return;
 
+		boolean autoCommit = true;
 		try (Statement stmt = connection.createStatement()) {
 			// turn off auto-commit mode
-			boolean autoCommit = connection.getAutoCommit();
+			autoCommit = connection.getAutoCommit();
 			connection.setAutoCommit(false);
 
 			// drop indexes
@@ -341,14 +386,32 @@ public class BeatmapDB {
 				stmt.executeUpdate(sql);
 			}
 
-			// restore previous auto-commit mode
-			connection.commit();
-			connection.setAutoCommit(autoCommit);
-
 			// update cache size
 			updateCacheSize();
+
+			connection.commit();
 		} catch (SQLException e) {
 			softErr(e, "Failed to add beatmaps to db");
+		} finally {
+			// roll back on failure, restore previous auto-commit mode
+			endTransaction(autoCommit);
+		}
+	}
+
+	/**
+	 * Ends a transaction that was started by turning off auto-commit mode:
+	 * rolls back anything that was not committed because the transaction
+	 * failed, then restores the previous auto-commit mode.
+	 * @param autoCommit the auto-commit mode before the transaction
+	 */
+	private static void endTransaction(boolean autoCommit) {
+		try {
+			if (!connection.getAutoCommit()) {
+				connection.rollback();
+				connection.setAutoCommit(autoCommit);
+			}
+		} catch (SQLException e) {
+			softErr(e, "Failed to end beatmap db transaction");
 		}
 	}
 
@@ -421,7 +484,7 @@ public class BeatmapDB {
 	 * @param flag whether to load all fields (LOAD_ALL), non-array
 	 *        fields (LOAD_NONARRAY), or array fields (LOAD_ARRAY)
 	 */
-	public static void load(Beatmap beatmap, int flag) {
+	public static synchronized void load(Beatmap beatmap, int flag) {
 		if (connection == null)
 			return;
 
@@ -447,18 +510,24 @@ public class BeatmapDB {
 	 * @param flag whether to load all fields (LOAD_ALL), non-array
 	 *        fields (LOAD_NONARRAY), or array fields (LOAD_ARRAY)
 	 */
-	public static void load(List<Beatmap> batch, int flag) {
+	public static synchronized void load(List<Beatmap> batch, int flag) {
 		if (connection == null)
 			return;
 
 		// batch size too small
 		int size = batch.size();
-		if (size < cacheSize * LOAD_BATCH_MIN_RATIO) {
+		if (size < LOAD_BATCH_MIN) {
 			for (Beatmap beatmap : batch)
 				load(beatmap, flag);
 			return;
 		}
 
+		// batch is not a big part of the cache: look up only the requested rows
+		if (size < cacheSize * LOAD_SCAN_MIN_RATIO) {
+			loadIndexed(batch, flag);
+			return;
+		}
+
 		try (Statement stmt = connection.createStatement()) {
 			// create map
 			HashMap<String, HashMap<String, Beatmap>> map = new HashMap<String, HashMap<String, Beatmap>>();
@@ -504,6 +573,67 @@ public class BeatmapDB {
 		}
 	}
 
+	/**
+	 * Loads Beatmap fields from the database in a batch, by joining the
+	 * requested keys against the {@code (dir, file)} index, so that the cost
+	 * depends on the batch size rather than the size of the cache.
+	 * @param batch a list of beatmaps
+	 * @param flag whether to load all fields (LOAD_ALL), non-array
+	 *        fields (LOAD_NONARRAY), or array fields (LOAD_ARRAY)
+	 */
+	private static void loadIndexed(List<Beatmap> batch, int flag) {
+		boolean autoCommit = true;
+		try {
+			// turn off auto-commit mode
+			autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+
+			// fill the temporary key table and create map
+			HashMap<String, HashMap<String, Beatmap>> map = new HashMap<String, HashMap<String, Beatmap>>();
+			clearLoadBatchStmt.executeUpdate();
+			for (Beatmap beatmap : batch) {
+				String parent = beatmap.getFile().getParentFile().getName();
+				String name = beatmap.getFile().getName();
+				HashMap<String, Beatmap> m = map.get(parent);
+				if (m == null) {
+					m = new HashMap<String, Beatmap>();
+					map.put(parent, m);
+				}
+				m.put(name, beatmap);
+				insertLoadBatchStmt.setString(1, parent);
+				insertLoadBatchStmt.setString(2, name);
+				insertLoadBatchStmt.addBatch();
+			}
+			insertLoadBatchStmt.executeBatch();
+
+			// load the matching rows
+			selectLoadBatchStmt.setFetchSize(100);
+			ResultSet rs = selectLoadBatchStmt.executeQuery();
+			while (rs.next()) {
+				String parent = rs.getString(1);
+				String name = rs.getString(2);
+				Beatmap beatmap = map.get(parent).get(name);
+				try {
+					if ((flag & LOAD_NONARRAY) > 0)
+						setBeatmapFields(rs, beatmap);
+					if ((flag & LOAD_ARRAY) > 0)
+						setBeatmapArrayFields(rs, beatmap);
+				} catch (SQLException e) {
+					Log.error(String.format("Failed to load map '%s/%s' from database.", parent, name), e);
+				}
+			}
+			rs.close();
+			clearLoadBatchStmt.executeUpdate();
+
+			connection.commit();
+		} catch (SQLException e) {
+			softErr(e, "Failed to load beatmaps from db");
+		} finally {
+			// roll back on failure, restore previous auto-commit mode
+			endTransaction(autoCommit);
+		}
+	}
+
 	/**
 	 * Sets all beatmap non-array fields using a given result set.
 	 * @param rs the result set containing the fields
@@ -516,19 +646,12 @@ public class BeatmapDB {
 			beatmap.beatmapID = rs.getInt(4);
 			beatmap.beatmapSetID = rs.getInt(5);
 			beatmap.title = BeatmapParser.getDBString(rs.getString(6));
-			beatmap.searchTitle = beatmap.title.toLowerCase();
 			beatmap.titleUnicode = BeatmapParser.getDBString(rs.getString(7));
-			beatmap.searchTitleUnicode = beatmap.titleUnicode.toLowerCase();
 			beatmap.artist = BeatmapParser.getDBString(rs.getString(8));
-			beatmap.searchArtist = beatmap.artist.toLowerCase();
 			beatmap.artistUnicode = BeatmapParser.getDBString(rs.getString(9));
-			beatmap.searchArtistUnicode = beatmap.artistUnicode.toLowerCase();
 			beatmap.creator = BeatmapParser.getDBString(rs.getString(10));
-			beatmap.searchCreator = beatmap.creator.toLowerCase();
 			beatmap.version = BeatmapParser.getDBString(rs.getString(11));
-			beatmap.searchVersion = beatmap.version.toLowerCase();
 			beatmap.source = BeatmapParser.getDBString(rs.getString(12));
-			beatmap.searchSource = beatmap.source.toLowerCase();
 			beatmap.tags = BeatmapParser.getDBString(rs.getString(13));
 			beatmap.hitObjectCircle = rs.getInt(14);
 			beatmap.hitObjectSlider = rs.getInt(15);
@@ -592,7 +715,7 @@ public class BeatmapDB {
 	 * Returns a map of file paths ({dir}/{file}) to last modified times, or
 	 * null if any error occurred.
 	 */
-	public static Map<String, Long> getLastModifiedMap() {
+	public static synchronized Map<String, Long> getLastModifiedMap() {
 		if (connection == null)
 			return null;
 
@@ -614,12 +737,37 @@ public class BeatmapDB {
 		}
 	}
 
+	/**
+	 * Returns a map of file paths ({dir}/{file}) to last modified times for
+	 * the beatmaps in a single directory, or null if any error occurred.
+	 * @param dir the directory
+	 */
+	public static synchronized Map<String, Long> getLastModifiedMap(String dir) {
+		if (connection == null)
+			return null;
+
+		try {
+			Map<String, Long> map = new HashMap<String, Long>();
+			selectLastModifiedStmt.setString(1, dir);
+			ResultSet rs = selectLastModifiedStmt.executeQuery();
+			while (rs.next()) {
+				String path = String.format("%s/%s", dir, rs.getString(1));
+				map.put(path, rs.getLong(2));
+			}
+			rs.close();
+			return map;
+		} catch (SQLException e) {
+			softErr(e, "Failed to get last modified map from db");
+			return null;
+		}
+	}
+
 	/**
 	 * Deletes the beatmap entry from the database.
 	 * @param dir the directory
 	 * @param file the file
 	 */
-	public static void delete(String dir, String file) {
+	public static synchronized void delete(String dir, String file) {
 		if (connection == null)
 			return;
 
@@ -628,6 +776,9 @@ public class BeatmapDB {
 			deleteMapStmt.setString(2, file);
 			cacheSize -= deleteMapStmt.executeUpdate();
 			updateCacheSize();
+			deleteMapObjectsStmt.setString(1, dir);
+			deleteMapObjectsStmt.setString(2, file);
+			deleteMapObjectsStmt.executeUpdate();
 		} catch (SQLException e) {
 			softErr(e, "Failed to delete beatmap entry from db.");
 		}
@@ -637,7 +788,7 @@ public class BeatmapDB {
 	 * Deletes the beatmap group entry from the database.
 	 * @param dir the directory
 	 */
-	public static void delete(String dir) {
+	public static synchronized void delete(String dir) {
 		if (connection == null)
 			return;
 
@@ -645,6 +796,8 @@ public class BeatmapDB {
 			deleteGroupStmt.setString(1, dir);
 			cacheSize -= deleteGroupStmt.executeUpdate();
 			updateCacheSize();
+			deleteGroupObjectsStmt.setString(1, dir);
+			deleteGroupObjectsStmt.executeUpdate();
 		} catch (SQLException e) {
 			softErr(e, "Failed to delete beatmap group entry from db.");
 		}
@@ -654,7 +807,7 @@ public class BeatmapDB {
 	 * Sets the star rating for a beatmap in the database.
 	 * @param beatmap the beatmap
 	 */
-	public static void setStars(Beatmap beatmap) {
+	public static synchronized void setStars(Beatmap beatmap) {
 		if (connection == null)
 			return;
 
@@ -673,11 +826,162 @@ public class BeatmapDB {
 		}
 	}
 
+	/**
+	 * Sets the star ratings for beatmaps in the database, in a single transaction.
+	 * @param batch a list of beatmaps
+	 */
+	public static synchronized void setStars(List<Beatmap> batch) {
+		if (connection == null || batch.isEmpty())
+			return;
+
+		boolean autoCommit = true;
+		try {
+			// turn off auto-commit mode
+			autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+
+			for (Beatmap beatmap : batch) {
+				setStarsStmt.setDouble(1, beatmap.starRating);
+				setStarsStmt.setString(2, beatmap.getFile().getParentFile().getName());
+				setStarsStmt.setString(3, beatmap.getFile().getName());
+				setStarsStmt.addBatch();
+			}
+			setStarsStmt.executeBatch();
+
+			connection.commit();
+		} catch (SQLException e) {
+			softErr(e, "Failed to save %d star ratings in db", batch.size());
+		} finally {
+			// roll back on failure, restore previous auto-commit mode
+			endTransaction(autoCommit);
+		}
+	}
+
+	/**
+	 * Loads the cached difficulty values of a beatmap file for every combination of game mods.
+	 * Entries are keyed by MD5 hash, so they stay valid when the beatmap is moved or reloaded.
+	 * Entries calculated by another {@link DifficultyAttributes#VERSION} are ignored.
+	 * @param md5Hash the MD5 hash of the beatmap file
+	 * @return the difficulty values indexed by {@link DifficultyAttributes#indexOf(int)}, with
+	 *         null elements for combinations that are not cached, or null if the query failed
+	 */
+	public static synchronized DifficultyAttributes[] loadDifficultyAttributes(String md5Hash) {
+		if (connection == null)
+			return null;
+
+		DifficultyAttributes[] attributes = new DifficultyAttributes[DifficultyAttributes.COMBINATIONS];
+		try {
+			selectDifficultyStmt.setString(1, md5Hash);
+			selectDifficultyStmt.setInt(2, DifficultyAttributes.VERSION);
+			try (ResultSet rs = selectDifficultyStmt.executeQuery()) {
+				while (rs.next()) {
+					int mods = rs.getInt(1);
+					attributes[DifficultyAttributes.indexOf(mods)] = new DifficultyAttributes(
+						mods, rs.getDouble(2), rs.getDouble(3), rs.getDouble(4), rs.getInt(5)
+					);
+				}
+			}
+			return attributes;
+		} catch (SQLException e) {
+			Log.warn(String.format("Failed to load difficulty values for '%s'.", md5Hash), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores difficulty values of a beatmap file, in a single transaction.
+	 * @param md5Hash the MD5 hash of the beatmap file
+	 * @param batch the difficulty values
+	 */
+	public static synchronized void setDifficultyAttributes(String md5Hash, List<DifficultyAttributes> batch) {
+		if (connection == null || batch.isEmpty())
+			return;
+
+		boolean autoCommit = true;
+		try {
+			// turn off auto-commit mode
+			autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+
+			for (DifficultyAttributes attr : batch) {
+				insertDifficultyStmt.setString(1, md5Hash);
+				insertDifficultyStmt.setInt(2, attr.mods);
+				insertDifficultyStmt.setDouble(3, attr.aimStars);
+				insertDifficultyStmt.setDouble(4, attr.speedStars);
+				insertDifficultyStmt.setDouble(5, attr.starRating);
+				insertDifficultyStmt.setInt(6, attr.maxCombo);
+				insertDifficultyStmt.setInt(7, DifficultyAttributes.VERSION);
+				insertDifficultyStmt.addBatch();
+			}
+			insertDifficultyStmt.executeBatch();
+
+			connection.commit();
+		} catch (SQLException e) {
+			softErr(e, "Failed to save difficulty values for '%s' in db", md5Hash);
+		} finally {
+			// roll back on failure, restore previous auto-commit mode
+			endTransaction(autoCommit);
+		}
+	}
+
+	/**
+	 * Loads the hit objects of a beatmap from the hit object cache.
+	 * Cached hit objects are only used if they were stored for the same file
+	 * contents, see {@link Beatmap#objectsMD5Hash}.
+	 * @param beatmap the beatmap
+	 * @param comboColorCount the amount of combo colors in use
+	 * @return true if the hit objects were loaded
+	 */
+	public static synchronized boolean loadHitObjects(Beatmap beatmap, int comboColorCount) {
+		if (connection == null || beatmap.objectsMD5Hash == null)
+			return false;
+
+		try {
+			selectObjectsStmt.setString(1, beatmap.getFile().getParentFile().getName());
+			selectObjectsStmt.setString(2, beatmap.getFile().getName());
+			try (ResultSet rs = selectObjectsStmt.executeQuery()) {
+				if (!rs.next() || !beatmap.objectsMD5Hash.equals(rs.getString(1)))
+					return false;
+				byte[] data = rs.getBytes(2);
+				if (data == null || !beatmap.objectsFromBytes(data, comboColorCount))
+					return false;
+			}
+			beatmap.objectsCached = true;
+			beatmap.stacksCalculated = true;  // the cache is written after calculating them
+			return true;
+		} catch (SQLException | IOException e) {
+			Log.warn(String.format("Failed to load cached hit objects for beatmap '%s'.", beatmap.toString()), e);
+			return false;
+		}
+	}
+
+	/**
+	 * Stores the hit objects of a beatmap in the hit object cache.
+	 * @param beatmap the beatmap
+	 * @param comboColorCount the amount of combo colors the combo indices were assigned with
+	 */
+	public static synchronized void saveHitObjects(Beatmap beatmap, int comboColorCount) {
+		if (connection == null || beatmap.objectsMD5Hash == null || beatmap.objects == null)
+			return;
+
+		try {
+			insertObjectsStmt.setString(1, beatmap.getFile().getParentFile().getName());
+			insertObjectsStmt.setString(2, beatmap.getFile().getName());
+			insertObjectsStmt.setString(3, beatmap.objectsMD5Hash);
+			insertObjectsStmt.setLong(4, beatmap.getFile().lastModified());
+			insertObjectsStmt.setBytes(5, beatmap.objectsToBytes(comboColorCount));
+			insertObjectsStmt.executeUpdate();
+			beatmap.objectsCached = true;
+		} catch (SQLException e) {
+			softErr(e, "Failed to save hit objects for beatmap '%s' in db", beatmap.toString());
+		}
+	}
+
 	/**
 	 * Updates the play statistics for a beatmap in the database.
 	 * @param beatmap the beatmap
 	 */
-	public static void updatePlayStatistics(Beatmap beatmap) {
+	public static synchronized void updatePlayStatistics(Beatmap beatmap) {
 		if (connection == null)
 			return;
 
@@ -700,7 +1004,7 @@ public class BeatmapDB {
 	 * Updates the "favorite" status for a beatmap in the database.
 	 * @param beatmap the beatmap
 	 */
-	public static void updateFavoriteStatus(Beatmap beatmap) {
+	public static synchronized void updateFavoriteStatus(Beatmap beatmap) {
 		if (connection == null)
 			return;
 
@@ -722,7 +1026,7 @@ public class BeatmapDB {
 	 * Updates the local music offset for a beatmap in the database.
 	 * @param beatmap the beatmap
 	 */
-	public static void updateLocalOffset(Beatmap beatmap) {
+	public static synchronized void updateLocalOffset(Beatmap beatmap) {
 		if (connection == null)
 			return;
 		try {
@@ -742,7 +1046,7 @@ public class BeatmapDB {
 	/**
 	 * Closes the connection to the database.
 	 */
-	public static void closeConnection() {
+	public static synchronized void closeConnection() {
 		if (connection == null)
 			return;
 
@@ -751,6 +1055,16 @@ public class BeatmapDB {
 			selectStmt.close();
 			deleteMapStmt.close();
 			deleteGroupStmt.close();
+			selectObjectsStmt.close();
+			insertObjectsStmt.close();
+			deleteMapObjectsStmt.close();
+			deleteGroupObjectsStmt.close();
+			insertLoadBatchStmt.close();
+			selectLoadBatchStmt.close();
+			clearLoadBatchStmt.close();
+			selectLastModifiedStmt.close();
+			selectDifficultyStmt.close();
+			insertDifficultyStmt.close();
 			updateSizeStmt.close();
 			connection.close();
 			connection = null;
@@ -19,6 +19,7 @@
 package itdelatrisu.opsu.db;
 
 import itdelatrisu.opsu.GameData;
+import itdelatrisu.opsu.GameData.Grade;
 import itdelatrisu.opsu.ScoreData;
 import itdelatrisu.opsu.beatmap.Beatmap;
 
@@ -382,40 +383,83 @@ public class ScoreDB {
 		return map;
 	}
 
+	/**
+	 * Sets the top grade and score of every beatmap in the beatmap list,
+	 * using a single grouped query over the scores table.
+	 */
 	public static void loadTopGrades()
 	{
 		if (connection == null) {
 			return;
 		}
 
-		try (PreparedStatement stmt = connection.prepareStatement(
-			"SELECT hit300,hit100,hit50,miss,mods,score FROM scores WHERE MID=? AND "
-			+ "MSID=? AND title=? AND artist=? AND creator=? AND version=? ORDER BY "
-			+ "score DESC LIMIT 1"))
-		{
-			for (int i = beatmapList.maps.size() - 1; i >= 0; i--) {
-				final Beatmap bm = beatmapList.maps.get(i);
-				stmt.setInt(1, bm.beatmapID);
-				stmt.setInt(2, bm.beatmapSetID);
-				stmt.setString(3, bm.title);
-				stmt.setString(4, bm.artist);
-				stmt.setString(5, bm.creator);
-				stmt.setString(6, bm.version);
-				final ResultSet res = stmt.executeQuery();
-				if (res.next()) {
-					bm.topGrade = GameData.getGrade(
-						res.getInt(1),
-						res.getInt(2),
-						res.getInt(3),
-						res.getInt(4),
-						res.getInt(5)
-					);
-					bm.topScore = res.getInt(6);
-				}
+		// sqlite takes the bare columns from the row that holds MAX(score)
+		final String sql =
+			"SELECT MID,MSID,title,artist,creator,version,hit300,hit100,hit50,miss,mods,"
+			+ "MAX(score) FROM scores GROUP BY MID,MSID,title,artist,creator,version";
+		final HashMap<String, TopGrade> top = new HashMap<>();
+		try (Statement stmt = connection.createStatement()) {
+			final ResultSet res = stmt.executeQuery(sql);
+			while (res.next()) {
+				final String key = topGradeKey(
+					res.getInt(1),
+					res.getInt(2),
+					res.getString(3),
+					res.getString(4),
+					res.getString(5),
+					res.getString(6)
+				);
+				final TopGrade grade = new TopGrade();
+				grade.grade = GameData.getGrade(
+					res.getInt(7),
+					res.getInt(8),
+					res.getInt(9),
+					res.getInt(10),
+					res.getInt(11)
+				);
+				grade.score = res.getLong(12);
+				top.put(key, grade);
 			}
+			res.close();
 		} catch (SQLException e) {
 			softErr(e, "Failed to load scores from db");
+			return;
+		}
+
+		if (top.isEmpty()) {
+			return;
 		}
+		for (int i = beatmapList.maps.size() - 1; i >= 0; i--) {
+			final Beatmap bm = beatmapList.maps.get(i);
+			final TopGrade grade = top.get(topGradeKey(
+				bm.beatmapID,
+				bm.beatmapSetID,
+				bm.title,
+				bm.artist,
+				bm.creator,
+				bm.version
+			));
+			if (grade != null) {
+				bm.topGrade = grade.grade;
+				bm.topScore = grade.score;
+			}
+		}
+	}
+
+	private static String topGradeKey(int MID, int MSID, String title, String artist,
+		String creator, String version)
+	{
+		return new StringBuilder(64)
+			.append(MID).append('\0').append(MSID).append('\0')
+			.append(title).append('\0').append(artist).append('\0')
+			.append(creator).append('\0').append(version)
+			.toString();
+	}
+
+	private static class TopGrade
+	{
+		Grade grade;
+		long score;
 	}
 
 	/**
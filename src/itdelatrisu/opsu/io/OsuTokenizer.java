@@ -0,0 +1,636 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package itdelatrisu.opsu.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Tokenizer for the text format of OSU files.
+ * <p>
+ * The whole file is held in one reusable char buffer. Lines and fields are tracked
+ * as offsets into that buffer, and numeric fields are parsed in place, so reading
+ * timing points and hit objects does not create any intermediate strings.
+ * <p>
+ * Lines are trimmed the same way {@link String#trim()} does. Fields are read
+ * sequentially from the start of the current line using {@link #readInt()},
+ * {@link #readFloat()}, {@link #readString(char)} and the separator methods.
+ * Malformed numbers throw {@link NumberFormatException}, missing fields throw
+ * {@link NoSuchElementException}.
+ * <p>
+ * Instances are not thread safe.
+ */
+public class OsuTokenizer
+{
+	private static final int INITIAL_CAPACITY = 8192;
+
+	/** Powers of ten that can be represented exactly as doubles. */
+	private static final double[] POW10 = new double[23];
+	static {
+		POW10[0] = 1d;
+		for (int i = 1; i < POW10.length; i++) {
+			POW10[i] = POW10[i - 1] * 10d;
+		}
+	}
+
+	/** Max amount of digits that fit in a double mantissa without rounding. */
+	private static final int MAX_EXACT_DIGITS = 15;
+
+	private char[] buf;
+	private int length;
+
+	/** Decoder for {@link #load(byte[], int, int)}, created when first needed. */
+	private CharsetDecoder decoder;
+
+	/** Offset where the next line starts. */
+	private int next;
+
+	/** Bounds of the current (trimmed) line. */
+	private int lineStart, lineEnd;
+
+	/** Read position in the current line. */
+	private int pos;
+
+	/** Bounds of the key and value of a "key: value" line, see {@link #splitKeyValue()}. */
+	private int keyEnd, valueStart;
+
+	public OsuTokenizer()
+	{
+		this.buf = new char[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Creates a tokenizer that is positioned on the first line of the given string.
+	 */
+	public static OsuTokenizer forLine(String line)
+	{
+		final OsuTokenizer t = new OsuTokenizer(line.length());
+		t.load(line);
+		t.nextLine();
+		return t;
+	}
+
+	private OsuTokenizer(int capacity)
+	{
+		this.buf = new char[Math.max(capacity, 16)];
+	}
+
+	/**
+	 * Reads all remaining characters from the reader into this tokenizer.
+	 * The reader is not closed.
+	 */
+	public void load(Reader in) throws IOException
+	{
+		this.length = 0;
+		for (;;) {
+			if (this.length == this.buf.length) {
+				this.buf = Arrays.copyOf(this.buf, this.buf.length * 2);
+			}
+			final int read = in.read(this.buf, this.length, this.buf.length - this.length);
+			if (read == -1) {
+				break;
+			}
+			this.length += read;
+		}
+		this.rewind();
+	}
+
+	/**
+	 * Decodes UTF-8 encoded data into this tokenizer.
+	 * Malformed input is replaced instead of failing.
+	 */
+	public void load(byte[] data, int offset, int length)
+	{
+		// UTF-8 never decodes to more chars than there are bytes
+		if (this.buf.length < length) {
+			this.buf = new char[length];
+		}
+		if (this.decoder == null) {
+			this.decoder = StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+		final CharBuffer out = CharBuffer.wrap(this.buf);
+		this.decoder.reset();
+		this.decoder.decode(ByteBuffer.wrap(data, offset, length), out, true);
+		this.decoder.flush(out);
+		this.length = out.position();
+		this.rewind();
+	}
+
+	/**
+	 * Loads the characters of the given string into this tokenizer.
+	 */
+	public void load(CharSequence s)
+	{
+		this.length = s.length();
+		if (this.buf.length < this.length) {
+			this.buf = new char[this.length];
+		}
+		for (int i = 0; i < this.length; i++) {
+			this.buf[i] = s.charAt(i);
+		}
+		this.rewind();
+	}
+
+	/**
+	 * Moves back to before the first line.
+	 */
+	public void rewind()
+	{
+		this.next = 0;
+		this.lineStart = this.lineEnd = this.pos = 0;
+	}
+
+	/**
+	 * Advances to the next line.
+	 * @return {@code false} if there are no more lines
+	 */
+	public boolean nextLine()
+	{
+		if (this.next >= this.length) {
+			this.lineStart = this.lineEnd = this.pos = this.length;
+			return false;
+		}
+		int start = this.next;
+		int end = start;
+		while (end < this.length && this.buf[end] != '\n' && this.buf[end] != '\r') {
+			end++;
+		}
+		this.next = end + 1;
+		if (end < this.length && this.buf[end] == '\r'
+			&& this.next < this.length && this.buf[this.next] == '\n')
+		{
+			this.next++;
+		}
+		while (start < end && this.buf[start] <= ' ') {
+			start++;
+		}
+		while (end > start && this.buf[end - 1] <= ' ') {
+			end--;
+		}
+		this.lineStart = this.pos = start;
+		this.lineEnd = end;
+		return true;
+	}
+
+	/**
+	 * Advances past the line equal to the given section header.
+	 * @return {@code false} if the section was not found
+	 */
+	public boolean findSection(String header)
+	{
+		while (this.nextLine()) {
+			if (this.lineEquals(header)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return a value that can be passed to {@link #resetToLine(int)} to get back
+	 *         to the current line
+	 */
+	public int markLine()
+	{
+		return this.lineStart;
+	}
+
+	/**
+	 * Moves back to the line that was current when {@link #markLine()} was called.
+	 */
+	public void resetToLine(int mark)
+	{
+		this.next = mark;
+		this.nextLine();
+	}
+
+	/**
+	 * Returns {@code false} if the line is too short or commented.
+	 */
+	public boolean isValidLine()
+	{
+		return this.lineEnd - this.lineStart > 1 && !this.lineStartsWith("//");
+	}
+
+	public int lineLength()
+	{
+		return this.lineEnd - this.lineStart;
+	}
+
+	public char charAt(int index)
+	{
+		return this.buf[this.lineStart + index];
+	}
+
+	public boolean lineEquals(String s)
+	{
+		return this.lineEnd - this.lineStart == s.length() && this.lineStartsWith(s);
+	}
+
+	public boolean lineStartsWith(String prefix)
+	{
+		final int len = prefix.length();
+		if (this.lineEnd - this.lineStart < len) {
+			return false;
+		}
+		for (int i = 0; i < len; i++) {
+			if (this.buf[this.lineStart + i] != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the current line as a new string
+	 */
+	public String line()
+	{
+		return new String(this.buf, this.lineStart, this.lineEnd - this.lineStart);
+	}
+
+	/**
+	 * Counts the occurences of a character in the current line.
+	 */
+	public int count(char c)
+	{
+		int count = 0;
+		for (int i = this.lineStart; i < this.lineEnd; i++) {
+			if (this.buf[i] == c) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the parts that {@link String#split} would return for the rest of the
+	 * field until the given separator (or the end of the line), so trailing
+	 * empty parts are not counted. An empty field counts as one empty part, a
+	 * field with only delimiters has no parts.
+	 * Use {@link #skipTrailing(char)} after reading the parts.
+	 */
+	public int countParts(char delimiter, char separator)
+	{
+		int end = this.pos;
+		while (end < this.lineEnd && this.buf[end] != separator) {
+			end++;
+		}
+		if (end == this.pos) {
+			return 1;
+		}
+		while (end > this.pos && this.buf[end - 1] == delimiter) {
+			end--;
+		}
+		if (end == this.pos) {
+			// only delimiters
+			return 0;
+		}
+		int count = 1;
+		for (int i = this.pos; i < end; i++) {
+			if (this.buf[i] == delimiter) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Advances past all occurences of the given character at the read position,
+	 * the trailing delimiters that {@link #countParts(char, char)} ignores.
+	 */
+	public void skipTrailing(char delimiter)
+	{
+		while (this.pos < this.lineEnd && this.buf[this.pos] == delimiter) {
+			this.pos++;
+		}
+	}
+
+	/**
+	 * Splits the current line in a key and value around the first {@code ':'},
+	 * moving the read position to the start of the value.
+	 * Both the key and value are trimmed.
+	 * @return {@code false} if the line does not contain a {@code ':'}
+	 */
+	public boolean splitKeyValue()
+	{
+		int colon = this.lineStart;
+		while (colon < this.lineEnd && this.buf[colon] != ':') {
+			colon++;
+		}
+		if (colon == this.lineEnd) {
+			return false;
+		}
+		int end = colon;
+		while (end > this.lineStart && this.buf[end - 1] <= ' ') {
+			end--;
+		}
+		int start = colon + 1;
+		while (start < this.lineEnd && this.buf[start] <= ' ') {
+			start++;
+		}
+		this.keyEnd = end;
+		this.valueStart = this.pos = start;
+		return true;
+	}
+
+	/**
+	 * @return the key of the current line, see {@link #splitKeyValue()}
+	 */
+	public String key()
+	{
+		return new String(this.buf, this.lineStart, this.keyEnd - this.lineStart);
+	}
+
+	/**
+	 * @return the value of the current line, see {@link #splitKeyValue()}
+	 */
+	public String value()
+	{
+		return new String(this.buf, this.valueStart, this.lineEnd - this.valueStart);
+	}
+
+	/**
+	 * Moves the read position back to the start of the current line.
+	 */
+	public void rewindLine()
+	{
+		this.pos = this.lineStart;
+	}
+
+	/**
+	 * @return {@code true} if the read position is not at the end of the line
+	 */
+	public boolean hasNext()
+	{
+		return this.pos < this.lineEnd;
+	}
+
+	/**
+	 * @return the character at the read position, or {@code 0} at the end of the line
+	 */
+	public char peek()
+	{
+		return this.pos < this.lineEnd ? this.buf[this.pos] : 0;
+	}
+
+	/**
+	 * @return the character at the read position, advancing the read position
+	 * @throws NoSuchElementException at the end of the line
+	 */
+	public char readChar()
+	{
+		if (this.pos >= this.lineEnd) {
+			throw new NoSuchElementException(this.error("unexpected end of line"));
+		}
+		return this.buf[this.pos++];
+	}
+
+	/**
+	 * Advances past the given character if it is at the read position.
+	 * @return {@code true} if the character was skipped
+	 */
+	public boolean skip(char c)
+	{
+		if (this.pos < this.lineEnd && this.buf[this.pos] == c) {
+			this.pos++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Advances past the given character, which must be at the read position.
+	 * @throws NoSuchElementException at the end of the line
+	 * @throws NumberFormatException if another character is at the read position
+	 */
+	public void expect(char c)
+	{
+		if (this.pos >= this.lineEnd) {
+			throw new NoSuchElementException(this.error("expected '" + c + "'"));
+		}
+		if (this.buf[this.pos] != c) {
+			throw new NumberFormatException(this.error("expected '" + c + "'"));
+		}
+		this.pos++;
+	}
+
+	/**
+	 * Advances past the next occurence of the given character.
+	 * @return {@code false} if the character was not found, the read position
+	 *         will then be at the end of the line
+	 */
+	public boolean skipPast(char c)
+	{
+		while (this.pos < this.lineEnd) {
+			if (this.buf[this.pos++] == c) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reads up to (not including) the given separator or the end of the line.
+	 */
+	public String readString(char separator)
+	{
+		final int start = this.pos;
+		while (this.pos < this.lineEnd && this.buf[this.pos] != separator) {
+			this.pos++;
+		}
+		return new String(this.buf, start, this.pos - start);
+	}
+
+	/**
+	 * Equivalent of {@code expect(separator); return readInt();}
+	 */
+	public int nextInt(char separator)
+	{
+		this.expect(separator);
+		return this.readInt();
+	}
+
+	/**
+	 * Equivalent of {@code expect(separator); return readByte();}
+	 */
+	public byte nextByte(char separator)
+	{
+		this.expect(separator);
+		return this.readByte();
+	}
+
+	/**
+	 * Equivalent of {@code expect(separator); return readFloat();}
+	 */
+	public float nextFloat(char separator)
+	{
+		this.expect(separator);
+		return this.readFloat();
+	}
+
+	/**
+	 * Parses an integer at the read position. The number must be followed by a
+	 * separator ({@code ',' ':' '|'}) or the end of the line.
+	 * @throws NumberFormatException if there is no valid integer at the read position
+	 */
+	public int readInt()
+	{
+		final int start = this.pos;
+		int i = start;
+		boolean negative = false;
+		if (i < this.lineEnd && (this.buf[i] == '-' || this.buf[i] == '+')) {
+			negative = this.buf[i] == '-';
+			i++;
+		}
+		final int digitsStart = i;
+		long value = 0;
+		while (i < this.lineEnd && i - digitsStart < 11) {
+			final int digit = this.buf[i] - '0';
+			if (digit < 0 || digit > 9) {
+				break;
+			}
+			value = value * 10 + digit;
+			i++;
+		}
+		if (negative) {
+			value = -value;
+		}
+		if (i == digitsStart || !this.isSeparator(i)
+			|| value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+		{
+			// let the JDK produce the proper exception
+			return Integer.parseInt(this.token(start));
+		}
+		this.pos = i;
+		return (int) value;
+	}
+
+	/**
+	 * Parses an integer at the read position, like {@link #readInt()}.
+	 * @throws NumberFormatException if there is no valid integer at the read
+	 *         position or it doesn't fit in a byte, like {@link Byte#parseByte}
+	 */
+	public byte readByte()
+	{
+		return (byte) this.readInt(Byte.MIN_VALUE, Byte.MAX_VALUE);
+	}
+
+	/**
+	 * Parses an integer at the read position, like {@link #readInt()}.
+	 * @throws NumberFormatException if there is no valid integer at the read
+	 *         position or it doesn't fit in a short, like {@link Short#parseShort}
+	 */
+	public short readShort()
+	{
+		return (short) this.readInt(Short.MIN_VALUE, Short.MAX_VALUE);
+	}
+
+	private int readInt(int min, int max)
+	{
+		final int start = this.pos;
+		final int value = this.readInt();
+		if (value < min || value > max) {
+			this.pos = start;
+			throw new NumberFormatException(this.error("value out of range"));
+		}
+		return value;
+	}
+
+	/**
+	 * Parses a floating point number at the read position. The number must be
+	 * followed by a separator ({@code ',' ':' '|'}) or the end of the line.
+	 * @throws NumberFormatException if there is no valid number at the read position
+	 */
+	public float readFloat()
+	{
+		final int start = this.pos;
+		int i = start;
+		boolean negative = false;
+		if (i < this.lineEnd && (this.buf[i] == '-' || this.buf[i] == '+')) {
+			negative = this.buf[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean fraction = false, anyDigit = false;
+		for (; i < this.lineEnd; i++) {
+			final char c = this.buf[i];
+			if (c == '.' && !fraction) {
+				fraction = true;
+				continue;
+			}
+			final int digit = c - '0';
+			if (digit < 0 || digit > 9) {
+				break;
+			}
+			anyDigit = true;
+			if (mantissa != 0 || digit != 0) {
+				digits++;
+			}
+			mantissa = mantissa * 10 + digit;
+			if (fraction) {
+				scale++;
+			}
+			if (digits > MAX_EXACT_DIGITS) {
+				break;
+			}
+		}
+		if (digits > MAX_EXACT_DIGITS || scale >= POW10.length
+			|| !anyDigit || !this.isSeparator(i))
+		{
+			// exponents, long fractions, NaN, malformed input...
+			final String token = this.token(start);
+			return Float.parseFloat(token);
+		}
+		double value = mantissa;
+		if (scale > 0) {
+			value /= POW10[scale];
+		}
+		this.pos = i;
+		return (float) (negative ? -value : value);
+	}
+
+	private boolean isSeparator(int index)
+	{
+		if (index >= this.lineEnd) {
+			return true;
+		}
+		final char c = this.buf[index];
+		return c == ',' || c == ':' || c == '|';
+	}
+
+	/**
+	 * Returns the token starting at the given offset until the next separator,
+	 * and moves the read position past it. Used as slow path for number parsing.
+	 */
+	private String token(int start)
+	{
+		int end = start;
+		while (!this.isSeparator(end)) {
+			end++;
+		}
+		this.pos = end;
+		return new String(this.buf, start, end - start);
+	}
+
+	private String error(String message)
+	{
+		return String.format(
+			"%s at column %d in '%s'",
+			message,
+			this.pos - this.lineStart,
+			this.line()
+		);
+	}
+}
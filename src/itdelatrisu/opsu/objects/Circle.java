@@ -57,6 +57,9 @@ public class Circle extends GameObject {
 
 	private int comboColorIndex;
 
+	/** Judges the circle, and shows its results in the combo color. */
+	private final CircleJudgement judgement;
+
 	/**
 	 * Constructor.
 	 * @param hitObject the associated HitObject
@@ -69,12 +72,14 @@ public class Circle extends GameObject {
 		this.data = data;
 		this.comboEnd = comboEnd;
 		this.comboColorIndex = comboColorIndex;
+		this.judgement = new Judgement();
 		updateColor();
 		updatePosition();
 	}
 
 	public Circle(float x, float y, int time) {
 		hitObject = new HitObject(x, y, time);
+		judgement = new Judgement();
 		super.updateStartEndPositions(time);
 	}
 
@@ -121,83 +126,14 @@ public class Circle extends GameObject {
 		color = orig;
 	}
 
-	/**
-	 * Calculates the circle hit result.
-	 * @param time the hit object time (difference between track time)
-	 * @return the hit result (GameData.HIT_* constants)
-	 */
-	private int hitResult(int time) {
-		int timeDiff = Math.abs(time);
-
-		int[] hitResultOffset = gameState.getHitResultOffsets();
-		int result = -1;
-		if (timeDiff <= hitResultOffset[GameData.HIT_300])
-			result = GameData.HIT_300;
-		else if (timeDiff <= hitResultOffset[GameData.HIT_100])
-			result = GameData.HIT_100;
-		else if (timeDiff <= hitResultOffset[GameData.HIT_50])
-			result = GameData.HIT_50;
-		else if (timeDiff <= hitResultOffset[GameData.HIT_MISS])
-			result = GameData.HIT_MISS;
-		//else not a hit
-
-		return result;
-	}
-
 	@Override
 	public boolean mousePressed(int x, int y, int trackPosition) {
-		double distance = Math.hypot(this.x - x, this.y - y);
-		if (distance < gameObjectRenderer.circleDiameter / 2) {
-			int timeDiff = trackPosition - hitObject.getTime();
-			int result = hitResult(timeDiff);
-
-			if (result > -1) {
-				data.addHitError(hitObject.getTime(), x, y, timeDiff);
-				data.sendHitResult(trackPosition, result, this.x, this.y, color, comboEnd, hitObject, HitObjectType.CIRCLE, true, 0, null, false);
-				return true;
-			}
-		}
-		return false;
+		return judgement.mousePressed(x, y, trackPosition);
 	}
 
 	@Override
 	public boolean update(boolean overlap, int delta, int mouseX, int mouseY, boolean keyPressed, int trackPosition) {
-		int time = hitObject.getTime();
-
-		int[] hitResultOffset = gameState.getHitResultOffsets();
-		boolean isAutoMod = GameMod.AUTO.isActive();
-
-		if (trackPosition > time + hitResultOffset[GameData.HIT_50]) {
-			if (isAutoMod) {// "auto" mod: catch any missed notes due to lag
-				data.sendHitResult(time, GameData.HIT_300, x, y, color, comboEnd, hitObject, HitObjectType.CIRCLE, true, 0, null, false);
-				if (OPTION_DANCE_MIRROR.state && GameMod.AUTO.isActive()) {
-					float[] m = Utils.mirrorPoint(x, y);
-					data.sendHitResult(time, GameData.HIT_300, m[0], m[1], mirrorColor, comboEnd, hitObject, HitObjectType.CIRCLE, true, 0, null, false, false);
-				}
-			}
-
-			else  // no more points can be scored, so send a miss
-				data.sendHitResult(trackPosition, GameData.HIT_MISS, x, y, null, comboEnd, hitObject, HitObjectType.CIRCLE, true, 0, null, false);
-			return true;
-		}
-
-		// "auto" mod: send a perfect hit result
-		else if (isAutoMod) {
-			if (Math.abs(trackPosition - time) < hitResultOffset[GameData.HIT_300]) {
-				data.sendHitResult(time, GameData.HIT_300, x, y, color, comboEnd, hitObject, HitObjectType.CIRCLE, true, 0, null, false);
-				if (OPTION_DANCE_MIRROR.state && GameMod.AUTO.isActive()) {
-					float[] m = Utils.mirrorPoint(x, y);
-					data.sendHitResult(time, GameData.HIT_300, m[0], m[1], mirrorColor, comboEnd, hitObject, HitObjectType.CIRCLE, true, 0, null, false, false);
-				}
-				return true;
-			}
-		}
-
-		// "relax" mod: click automatically
-		else if (GameMod.RELAX.isActive() && trackPosition >= time)
-			return mousePressed(mouseX, mouseY, trackPosition);
-
-		return false;
+		return judgement.update(overlap, delta, mouseX, mouseY, keyPressed, trackPosition);
 	}
 
 	@Override
@@ -210,6 +146,7 @@ public class Circle extends GameObject {
 	public void updatePosition() {
 		this.x = hitObject.getScaledX();
 		this.y = hitObject.getScaledY();
+		judgement.updatePosition();
 		super.updateStartEndPositions(hitObject.getTime());
 	}
 
@@ -250,4 +187,22 @@ public class Circle extends GameObject {
 		mirrorColor = Dancer.colorMirrorOverride.getColor(comboColorIndex);
 	}
 
+	/**
+	 * Sends the results in the combo color, and mirrored in the "auto" mod.
+	 */
+	private class Judgement extends CircleJudgement {
+		Judgement() {
+			super(gameState, Circle.this.hitObject, Circle.this.data, Circle.this.comboEnd);
+		}
+
+		@Override
+		protected void sendHitResult(int time, int result) {
+			data.sendHitResult(time, result, x, y, result == GameData.HIT_MISS ? null : color, comboEnd, hitObject, HitObjectType.CIRCLE, true, 0, null, false);
+			if (OPTION_DANCE_MIRROR.state && GameMod.AUTO.isActive()) {
+				float[] m = Utils.mirrorPoint(x, y);
+				data.sendHitResult(time, result, m[0], m[1], mirrorColor, comboEnd, hitObject, HitObjectType.CIRCLE, true, 0, null, false, false);
+			}
+		}
+	}
+
 }
@@ -0,0 +1,107 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package itdelatrisu.opsu.objects;
+
+import itdelatrisu.opsu.GameData;
+import itdelatrisu.opsu.GameData.HitObjectType;
+import itdelatrisu.opsu.GameMod;
+import itdelatrisu.opsu.beatmap.HitObject;
+
+/**
+ * Judges a hit circle.
+ * @see Circle
+ */
+public class CircleJudgement extends HitObjectJudgement
+{
+	public CircleJudgement(Context context, HitObject hitObject, GameData data, boolean comboEnd)
+	{
+		super(context, hitObject, data, comboEnd);
+	}
+
+	/**
+	 * Calculates the circle hit result.
+	 * @param time the hit object time (difference between track time)
+	 * @return the hit result (GameData.HIT_* constants), or -1 if not a hit
+	 */
+	private int hitResult(int time)
+	{
+		final int timeDiff = Math.abs(time);
+		final int[] hitResultOffset = this.context.getHitResultOffsets();
+		if (timeDiff <= hitResultOffset[GameData.HIT_300]) {
+			return GameData.HIT_300;
+		}
+		if (timeDiff <= hitResultOffset[GameData.HIT_100]) {
+			return GameData.HIT_100;
+		}
+		if (timeDiff <= hitResultOffset[GameData.HIT_50]) {
+			return GameData.HIT_50;
+		}
+		if (timeDiff <= hitResultOffset[GameData.HIT_MISS]) {
+			return GameData.HIT_MISS;
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean mousePressed(int x, int y, int trackPosition)
+	{
+		final double distance = Math.hypot(this.x - x, this.y - y);
+		if (distance < this.context.getCircleRadius()) {
+			final int timeDiff = trackPosition - this.hitObject.getTime();
+			final int result = this.hitResult(timeDiff);
+			if (result > -1) {
+				this.context.addHitError(this.hitObject.getTime(), x, y, timeDiff);
+				this.sendHitResult(trackPosition, result);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean update(boolean overlap, int delta, int mouseX, int mouseY, boolean keyPressed, int trackPosition)
+	{
+		final int time = this.hitObject.getTime();
+		final int[] hitResultOffset = this.context.getHitResultOffsets();
+		final boolean isAutoMod = GameMod.AUTO.isActive();
+
+		if (trackPosition > time + hitResultOffset[GameData.HIT_50]) {
+			if (isAutoMod) {
+				// "auto" mod: catch any missed notes due to lag
+				this.sendHitResult(time, GameData.HIT_300);
+			} else {
+				// no more points can be scored, so send a miss
+				this.sendHitResult(trackPosition, GameData.HIT_MISS);
+			}
+			return true;
+		}
+
+		if (isAutoMod) {
+			// "auto" mod: send a perfect hit result
+			if (Math.abs(trackPosition - time) < hitResultOffset[GameData.HIT_300]) {
+				this.sendHitResult(time, GameData.HIT_300);
+				return true;
+			}
+		} else if (GameMod.RELAX.isActive() && trackPosition >= time) {
+			// "relax" mod: click automatically
+			return this.mousePressed(mouseX, mouseY, trackPosition);
+		}
+		return false;
+	}
+
+	/**
+	 * Sends the hit result of the circle.
+	 * @param time the hit time
+	 * @param result the hit result (GameData.HIT_* constants)
+	 */
+	protected void sendHitResult(int time, int result)
+	{
+		this.data.sendHitResult(time, result, this.x, this.y, null, this.comboEnd,
+			this.hitObject, HitObjectType.CIRCLE, true, 0, null, false);
+	}
+
+	@Override
+	public void reset()
+	{
+	}
+}
@@ -0,0 +1,101 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package itdelatrisu.opsu.objects;
+
+import itdelatrisu.opsu.GameData;
+import itdelatrisu.opsu.beatmap.HitObject;
+
+/**
+ * Judges a hit object from the cursor and keys, without drawing anything or
+ * playing sounds. The game objects and the replay simulator both judge with
+ * these, so they can't disagree on the rules.
+ * <p>
+ * Scores are sent to the {@link GameData}, which ignores the animations when
+ * it's headless. The game objects override the protected methods that are
+ * called for everything else they show.
+ */
+public abstract class HitObjectJudgement
+{
+	/**
+	 * The values of the current game that objects are judged with.
+	 */
+	public interface Context
+	{
+		/**
+		 * Returns an array of hit result offset times, in milliseconds (indexed by GameData.HIT_* constants).
+		 */
+		int[] getHitResultOffsets();
+
+		/**
+		 * Returns the scaled radius of the hit circles.
+		 */
+		float getCircleRadius();
+
+		/**
+		 * Adds a hit on a circle or slider start to the hit errors.
+		 * @param time the object time
+		 * @param x the x coordinate of the hit
+		 * @param y the y coordinate of the hit
+		 * @param timeDiff the difference between the hit time and the object time
+		 */
+		void addHitError(int time, int x, int y, int timeDiff);
+	}
+
+	protected final Context context;
+	protected final HitObject hitObject;
+	protected final GameData data;
+
+	/** Whether or not the result ends the combo streak. */
+	protected final boolean comboEnd;
+
+	/** The scaled starting x, y coordinates. */
+	protected float x, y;
+
+	HitObjectJudgement(Context context, HitObject hitObject, GameData data, boolean comboEnd)
+	{
+		this.context = context;
+		this.hitObject = hitObject;
+		this.data = data;
+		this.comboEnd = comboEnd;
+		this.x = hitObject.getScaledX();
+		this.y = hitObject.getScaledY();
+	}
+
+	/**
+	 * Updates the position, after the stack of the hit object changed.
+	 */
+	public void updatePosition()
+	{
+		this.x = this.hitObject.getScaledX();
+		this.y = this.hitObject.getScaledY();
+	}
+
+	/**
+	 * Returns the time at which the object ends.
+	 */
+	public int getEndTime()
+	{
+		return this.hitObject.getTime();
+	}
+
+	/**
+	 * Processes a game key press.
+	 * @param x the cursor x coordinate
+	 * @param y the cursor y coordinate
+	 * @param trackPosition the track position
+	 * @return true if a hit result was processed
+	 * @see GameObject#mousePressed(int, int, int)
+	 */
+	public abstract boolean mousePressed(int x, int y, int trackPosition);
+
+	/**
+	 * Updates the judgement, see {@link GameObject#update} for the parameters.
+	 * @return true if the object is judged
+	 */
+	public abstract boolean update(boolean overlap, int delta, int mouseX, int mouseY, boolean keyPressed, int trackPosition);
+
+	/**
+	 * Resets the judgement, to judge the object again.
+	 */
+	public abstract void reset();
+}
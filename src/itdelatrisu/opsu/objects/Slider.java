@@ -26,6 +26,8 @@ import itdelatrisu.opsu.Utils;
 import itdelatrisu.opsu.beatmap.Beatmap;
 import itdelatrisu.opsu.beatmap.HitObject;
 import itdelatrisu.opsu.objects.curves.Curve;
+import itdelatrisu.opsu.objects.curves.CurveCache;
+import itdelatrisu.opsu.objects.curves.LinearBezier;
 import itdelatrisu.opsu.objects.curves.Vec2f;
 import itdelatrisu.opsu.ui.Colors;
 import itdelatrisu.opsu.ui.animations.AnimationEquation;
@@ -33,10 +35,18 @@ import itdelatrisu.opsu.ui.animations.AnimationEquation;
 import org.newdawn.slick.Color;
 import org.newdawn.slick.Graphics;
 import org.newdawn.slick.Image;
+import org.newdawn.slick.util.Log;
 import yugecin.opsudance.Dancer;
 import yugecin.opsudance.ObjectColorOverrides;
 import yugecin.opsudance.skinning.SkinService;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static itdelatrisu.opsu.ui.Colors.*;
 import static yugecin.opsudance.core.InstanceContainer.*;
 import static yugecin.opsudance.options.Options.*;
 
@@ -54,8 +64,11 @@ public class Slider extends GameObject {
 	/** Rate at which slider ticks are placed. */
 	private static float sliderTickRate = 1.0f;
 
-	/** Follow circle radius. */
-	private static float followRadius;
+	/** The slider curves of the beatmap. */
+	private static CurveCache curveCache;
+
+	/** Calculates slider curves in the background, so sliders don't block until they're drawn. */
+	private static ThreadPoolExecutor curveExecutor;
 
 	/** The associated HitObject. */
 	private HitObject hitObject;
@@ -70,20 +83,14 @@ public class Slider extends GameObject {
 	private Color color;
 	private Color mirrorColor;
 
-	/** The underlying Curve. */
-	private Curve curve;
-
-	/** The time duration of the slider, in milliseconds. */
-	private float sliderTime = 0f;
+	/** Judges the slider, and shows its results. */
+	private final Judgement judgement;
 
-	/** The time duration of the slider including repeats, in milliseconds. */
-	private float sliderTimeTotal = 0f;
-
-	/** Whether or not the result of the initial hit circle has been processed. */
-	private boolean sliderClickedInitial = false;
+	/** The underlying Curve, or null while {@link #pendingCurve} is not done. */
+	private Curve curve;
 
-	/** Whether or not the slider was held to the end. */
-	private boolean sliderHeldToEnd = false;
+	/** The calculation of the curve by {@link #curveExecutor}, or null if done. */
+	private FutureTask<Curve> pendingCurve;
 
 	/** Whether or not to show the follow circle. */
 	private boolean followCircleActive = false;
@@ -91,18 +98,6 @@ public class Slider extends GameObject {
 	/** Whether or not the slider result ends the combo streak. */
 	private boolean comboEnd;
 
-	/** The number of repeats that have passed so far. */
-	private int currentRepeats = 0;
-
-	/** The t values of the slider ticks. */
-	private float[] ticksT;
-
-	/** The tick index in the ticksT[] array. */
-	private int tickIndex = 0;
-
-	/** Number of ticks hit and tick intervals so far. */
-	private int ticksHit = 0, tickIntervals = 1;
-
 	/** The current tick time for the follow circle expanding animation. */
 	private int tickExpandTime = 0;
 
@@ -123,13 +118,15 @@ public class Slider extends GameObject {
 
 	public int curveStartIndex;
 
+	/** Scratch arrays for points on the curve, to not allocate every frame. */
+	private final float[] endPos = new float[2], point = new float[2], point2 = new float[2];
+
 	/**
 	 * Initializes the Slider data type with images and dimensions.
 	 * @param circleDiameter the circle diameter
 	 * @param beatmap the associated beatmap
 	 */
 	public static void init(float circleDiameter, Beatmap beatmap) {
-		followRadius = circleDiameter / 2 * 3f;
 		int diameterInt = (int) circleDiameter;
 
 		// slider ball
@@ -147,6 +144,27 @@ public class Slider extends GameObject {
 
 		sliderMultiplier = beatmap.sliderMultiplier;
 		sliderTickRate = beatmap.sliderTickRate;
+		curveCache = beatmap.getCurveCache();
+
+		if (curveExecutor == null) {
+			final int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+			curveExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(), r -> {
+					final Thread thread = new Thread(r, "SliderCurves");
+					thread.setDaemon(true);
+					return thread;
+				});
+		}
+	}
+
+	/**
+	 * Discards the background calculations of curves that didn't start yet, for
+	 * when the sliders are not used anymore. If the curve of such a slider is
+	 * needed anyway, {@link #getCurve()} calculates it on the calling thread.
+	 */
+	public static void discardPendingCurves() {
+		if (curveExecutor != null)
+			curveExecutor.getQueue().clear();
 	}
 
 	/**
@@ -161,26 +179,12 @@ public class Slider extends GameObject {
 		this.data = data;
 		this.comboEnd = comboEnd;
 		this.comboColorIndex = comboColorIndex;
+		this.judgement = new Judgement();
 		updateColor();
 		updatePosition();
 
 		this.pixelLength = hitObject.getPixelLength();
 
-		// slider time calculations
-		this.sliderTime = hitObject.getSliderTime(sliderMultiplier, gameState.getBeatLength());
-		this.sliderTimeTotal = sliderTime * hitObject.getRepeatCount();
-
-		// ticks
-		float tickLengthDiv = 100f * sliderMultiplier / sliderTickRate / gameState.getTimingPointMultiplier();
-		int tickCount = (int) Math.ceil(hitObject.getPixelLength() / tickLengthDiv) - 1;
-		if (tickCount > 0) {
-			this.ticksT = new float[tickCount];
-			float tickTOffset = 1f / (tickCount + 1);
-			float t = tickTOffset;
-			for (int i = 0; i < tickCount; i++, t += tickTOffset)
-				ticksT[i] = t;
-		}
-
 		repeats = hitObject.getRepeatCount();
 	}
 
@@ -206,7 +210,7 @@ public class Slider extends GameObject {
 		boolean overlayAboveNumber = SkinService.skin.isHitCircleOverlayAboveNumber();
 		float oldAlpha = Colors.WHITE_FADE.a;
 		Colors.WHITE_FADE.a = color.a = alpha;
-		Vec2f endPos = curve.pointAt(1);
+		getCurve().pointAt(1f, endPos);
 
 		float oldWhiteFadeAlpha = Colors.WHITE_FADE.a;
 		float sliderAlpha = 1f;
@@ -221,10 +225,10 @@ public class Slider extends GameObject {
 		color.a = alpha;
 
 		// end circle (only draw if ball still has to go there)
-		if (OPTION_DRAW_SLIDER_ENDCIRCLES.state && isCurveCompletelyDrawn && currentRepeats < repeatCount - (repeatCount % 2 == 0 ? 1 : 0)) {
+		if (OPTION_DRAW_SLIDER_ENDCIRCLES.state && isCurveCompletelyDrawn && judgement.currentRepeats < repeatCount - (repeatCount % 2 == 0 ? 1 : 0)) {
 			Color circleColor = new Color(color);
 			Color overlayColor = new Color(Colors.WHITE_FADE);
-			if (currentRepeats == 0) {
+			if (judgement.currentRepeats == 0) {
 				if (OPTION_SNAKING_SLIDERS.state) {
 					// fade in end circle using decorationsAlpha when snaking sliders are enabled
 					circleColor.a = overlayColor.a = sliderAlpha * decorationsAlpha;
@@ -233,9 +237,8 @@ public class Slider extends GameObject {
 				// fade in end circle after repeats
 				circleColor.a = overlayColor.a = sliderAlpha * getCircleAlphaAfterRepeat(trackPosition, true);
 			}
-			Vec2f endCircPos = curve.pointAt(1f);
-			gameObjectRenderer.renderHitCircleOnly(endCircPos.x, endCircPos.y, circleColor);
-			gameObjectRenderer.renderHitCircleOverlayOnly(endCircPos.x, endCircPos.y, overlayColor);
+			gameObjectRenderer.renderHitCircleOnly(endPos[0], endPos[1], circleColor);
+			gameObjectRenderer.renderHitCircleOverlayOnly(endPos[0], endPos[1], overlayColor);
 		}
 
 		g.pushTransform();
@@ -246,15 +249,15 @@ public class Slider extends GameObject {
 		// set first circle colors to fade in after repeats
 		Color firstCircleColor = new Color(color);
 		Color startCircleOverlayColor = new Color(Colors.WHITE_FADE);
-		if (sliderClickedInitial) {
+		if (judgement.sliderClickedInitial) {
 			// fade in first circle after repeats
 			firstCircleColor.a = startCircleOverlayColor.a = sliderAlpha * getCircleAlphaAfterRepeat(trackPosition, false);
 		}
 
 		// start circle, only draw if ball still has to go there
-		if (!sliderClickedInitial || (OPTION_DRAW_SLIDER_ENDCIRCLES.state && currentRepeats < repeatCount - (repeatCount % 2 == 1 ? 1 : 0))) {
+		if (!judgement.sliderClickedInitial || (OPTION_DRAW_SLIDER_ENDCIRCLES.state && judgement.currentRepeats < repeatCount - (repeatCount % 2 == 1 ? 1 : 0))) {
 			gameObjectRenderer.renderHitCircleOnly(x, y, firstCircleColor);
-			if (!overlayAboveNumber || sliderClickedInitial) {
+			if (!overlayAboveNumber || judgement.sliderClickedInitial) {
 				gameObjectRenderer.renderHitCircleOverlayOnly(x, y, startCircleOverlayColor);
 			}
 		}
@@ -262,7 +265,7 @@ public class Slider extends GameObject {
 		g.popTransform();
 
 		// ticks
-		if (ticksT != null) {
+		if (judgement.ticksT != null) {
 			drawSliderTicks(g, trackPosition, alpha, decorationsAlpha, mirror);
 			Colors.WHITE_FADE.a = oldWhiteFadeAlpha;
 		}
@@ -282,7 +285,7 @@ public class Slider extends GameObject {
 		}
 
 		// draw combo number and overlay if not initially clicked
-		if (!sliderClickedInitial) {
+		if (!judgement.sliderClickedInitial) {
 			gameObjectRenderer.renderComboNumberOnly(x, y, hitObject.getComboNumber(), alpha);
 
 			if (overlayAboveNumber) {
@@ -295,24 +298,24 @@ public class Slider extends GameObject {
 
 		// repeats
 		if (isCurveCompletelyDrawn) {
-			for (int tcurRepeat = currentRepeats; tcurRepeat <= currentRepeats + 1 && tcurRepeat < repeatCount - 1; tcurRepeat++) {
+			for (int tcurRepeat = judgement.currentRepeats; tcurRepeat <= judgement.currentRepeats + 1 && tcurRepeat < repeatCount - 1; tcurRepeat++) {
 				Image arrow = GameImage.REVERSEARROW.getImage();
-				arrow = arrow.getScaledCopy((float) (1 + 0.2d * ((trackPosition + sliderTime * tcurRepeat) % 292) / 292));
+				arrow = arrow.getScaledCopy((float) (1 + 0.2d * ((trackPosition + judgement.sliderTime * tcurRepeat) % 292) / 292));
 				if (tcurRepeat == 0) {
 					arrow.setAlpha(OPTION_SNAKING_SLIDERS.state ? decorationsAlpha : 1f);
 				} else {
-					if (!sliderClickedInitial) {
+					if (!judgement.sliderClickedInitial) {
 						continue;
 					}
 					arrow.setAlpha(getCircleAlphaAfterRepeat(trackPosition, tcurRepeat % 2 == 0));
 				}
 				if (tcurRepeat % 2 == 0) {
 					// last circle
-					arrow.setRotation(curve.getEndAngle());
-					arrow.drawCentered(endPos.x, endPos.y);
+					arrow.setRotation(getCurve().getEndAngle());
+					arrow.drawCentered(endPos[0], endPos[1]);
 				} else {
 					// first circle
-					arrow.setRotation(curve.getStartAngle());
+					arrow.setRotation(getCurve().getStartAngle());
 					arrow.drawCentered(x, y);
 				}
 			}
@@ -331,26 +334,34 @@ public class Slider extends GameObject {
 		} else {
 			// Since update() might not have run before drawing during a replay, the
 			// slider time may not have been calculated, which causes NAN numbers and flicker.
-			if (sliderTime == 0)
+			if (judgement.sliderTime == 0)
 				return;
 
 			// Don't draw follow ball if already done
-			if (trackPosition > hitObject.getTime() + sliderTimeTotal)
+			if (trackPosition > hitObject.getTime() + judgement.sliderTimeTotal)
 				return;
 
-			Vec2f c = curve.pointAt(getT(trackPosition, false));
-			Vec2f c2 = curve.pointAt(getT(trackPosition, false) + 0.01f);
+			float t = judgement.getT(trackPosition, false);
+			float[] c = point, c2 = point2;
+			getCurve().pointAt(t, c);
+			float angle;
+			if (t < 0.99f) {
+				getCurve().pointAt(t + 0.01f, c2);
+				angle = (float) (Math.atan2(c2[1] - c[1], c2[0] - c[0]) * 180 / Math.PI);
+			} else {
+				// points past the end are clamped, look back instead
+				getCurve().pointAt(t - 0.01f, c2);
+				angle = (float) (Math.atan2(c[1] - c2[1], c[0] - c2[0]) * 180 / Math.PI);
+			}
 
-			float t = getT(trackPosition, false);
 //			float dis = hitObject.getPixelLength() * HitObject.getXMultiplier() * (t - (int) t);
 //			Image sliderBallFrame = sliderBallImages[(int) (dis / (diameter * Math.PI) * 30) % sliderBallImages.length];
-			Image sliderBallFrame = sliderBallImages[(int) (t * sliderTime * 60 / 1000) % sliderBallImages.length];
-			float angle = (float) (Math.atan2(c2.y - c.y, c2.x - c.x) * 180 / Math.PI);
+			Image sliderBallFrame = sliderBallImages[(int) (t * judgement.sliderTime * 60 / 1000) % sliderBallImages.length];
 			sliderBallFrame.setRotation(angle);
 			if (SkinService.skin.isAllowSliderBallTint()) {
-				sliderBallFrame.drawCentered(c.x, c.y, color);
+				sliderBallFrame.drawCentered(c[0], c[1], color);
 			} else {
-				sliderBallFrame.drawCentered(c.x, c.y);
+				sliderBallFrame.drawCentered(c[0], c[1]);
 			}
 
 			// follow circle
@@ -372,7 +383,7 @@ public class Slider extends GameObject {
 					followCircleScale *= progress;
 					followAlpha = progress;
 				}
-				GameImage.SLIDER_FOLLOWCIRCLE.getImage().getScaledCopy(followCircleScale).setAlpha(followAlpha).drawCentered(c.x, c.y);
+				GameImage.SLIDER_FOLLOWCIRCLE.getImage().getScaledCopy(followCircleScale).setAlpha(followAlpha).drawCentered(c[0], c[1]);
 
 				// "flashlight" mod: dim the screen
 				if (GameMod.FLASHLIGHT.isActive()) {
@@ -404,41 +415,41 @@ public class Slider extends GameObject {
 
 		// calculate which ticks need to be drawn (don't draw if sliderball crossed it)
 		int min = 0;
-		int max = ticksT.length;
+		int max = judgement.ticksT.length;
 		if (trackPosition > getTime()) {
-			for (int i = 0; i < ticksT.length; ) {
-				if (((trackPosition - getTime()) % sliderTime) / sliderTime < ticksT[i]) {
+			for (int i = 0; i < judgement.ticksT.length; ) {
+				if (((trackPosition - getTime()) % judgement.sliderTime) / judgement.sliderTime < judgement.ticksT[i]) {
 					break;
 				}
 				min = ++i;
 			}
 		}
-		if (currentRepeats % 2 == 1) {
+		if (judgement.currentRepeats % 2 == 1) {
 			max -= min;
 			min = 0;
 		}
 
 		// calculate the tick alpha level
 		float sliderTickAlpha;
-		if (currentRepeats == 0) {
+		if (judgement.currentRepeats == 0) {
 			sliderTickAlpha = decorationsAlpha;
 		} else {
-			float t = getT(trackPosition, false);
-			if (currentRepeats % 2 == 1) {
+			float t = judgement.getT(trackPosition, false);
+			if (judgement.currentRepeats % 2 == 1) {
 				t = 1f - t;
 			}
-			sliderTickAlpha = Utils.clamp(t * ticksT.length * 2, 0f, 1f);
+			sliderTickAlpha = Utils.clamp(t * judgement.ticksT.length * 2, 0f, 1f);
 		}
 
 		// draw ticks
 		Colors.WHITE_FADE.a = Math.min(curveAlpha, sliderTickAlpha);
 		for (int i = min; i < max; i++) {
-			Vec2f c = curve.pointAt(ticksT[i]);
+			getCurve().pointAt(judgement.ticksT[i], point);
 			g.pushTransform();
 			if (mirror) {
-				g.rotate(c.x, c.y, -180f);
+				g.rotate(point[0], point[1], -180f);
 			}
-			tick.drawCentered(c.x, c.y, Colors.WHITE_FADE);
+			tick.drawCentered(point[0], point[1], Colors.WHITE_FADE);
 			g.popTransform();
 		}
 	}
@@ -448,14 +459,14 @@ public class Slider extends GameObject {
 	 */
 	private boolean drawSliderTrack(int trackPosition, float snakingSliderProgress)
 	{
-		int curvelen = curve.curve.length;
+		int curvelen = getCurve().getPointCount();
 		if (curvelen == 0) {
 			return true;
 		}
 		float curveIntervalTo = OPTION_SNAKING_SLIDERS.state ? snakingSliderProgress : 1f;
 		float curveIntervalFrom = 0f;
 		if (OPTION_SHRINKING_SLIDERS.state) {
-			float sliderprogress = (trackPosition - getTime() - sliderTime * (repeats - 1)) / sliderTime;
+			float sliderprogress = (trackPosition - getTime() - judgement.sliderTime * (repeats - 1)) / judgement.sliderTime;
 			if (sliderprogress > 0) {
 				curveIntervalFrom = sliderprogress;
 			}
@@ -479,11 +490,11 @@ public class Slider extends GameObject {
 				if (OPTION_FALLBACK_SLIDERS.state) {
 					curveIntervalTo = 1f - curveIntervalFrom;
 				} else {
-					curve.splice((int) ((1f - curveIntervalFrom) * curvelen), curvelen);
+					getCurve().splice((int) ((1f - curveIntervalFrom) * curvelen), curvelen);
 				}
 				curveIntervalFrom = 0f;
 			}
-			curve.draw(curveColor, (int) (curveIntervalFrom * curvelen), (int) (curveIntervalTo * curvelen));
+			getCurve().draw(curveColor, (int) (curveIntervalFrom * curvelen), (int) (curveIntervalTo * curvelen));
 		}
 		return curveIntervalTo == 1f;
 	}
@@ -495,355 +506,101 @@ public class Slider extends GameObject {
 	 * @return alpha level as float in interval [0, 1]
 	 */
 	private float getCircleAlphaAfterRepeat(int trackPosition, boolean endCircle) {
-		int ticksN = ticksT == null ? 0 : ticksT.length;
-		float t = getT(trackPosition, false);
+		int ticksN = judgement.ticksT == null ? 0 : judgement.ticksT.length;
+		float t = judgement.getT(trackPosition, false);
 		if (endCircle) {
 			t = 1f - t;
 		}
-		if (currentRepeats % 2 == (endCircle ? 0 : 1)) {
+		if (judgement.currentRepeats % 2 == (endCircle ? 0 : 1)) {
 			t = 1f;
 		}
 		return Utils.clamp(t * (ticksN + 1), 0f, 1f);
 	}
 
-	/**
-	 * Calculates the slider hit result.
-	 * @return the hit result (GameData.HIT_* constants)
-	 */
-	private int hitResult() {
-		/*
-			time     scoredelta score-hit-initial-tick= unaccounted
-			(1/4   - 1)		396 - 300 - 30	 		46
-			(1+1/4 - 2)		442 - 300 - 30 - 10
-			(2+1/4 - 3)		488 - 300 - 30 - 2*10	896 (408)5x
-			(3+1/4 - 4)		534 - 300 - 30 - 3*10
-			(4+1/4 - 5)		580 - 300 - 30 - 4*10
-			(5+1/4 - 6) 	626	- 300 - 30 - 5*10
-			(6+1/4 - 7)		672	- 300 - 30 - 6*10
-
-			difficultyMulti = 3	(+36 per combo)
-
-			score =
-			(t)ticks(10) * nticks +
-			(h)hitValue
-			(c)combo (hitValue/25 * difficultyMultiplier*(combo-1))
-			(i)initialHit (30) +
-			(f)finalHit(30) +
-
-			s     t       h          c     i     f
-			626 - 10*5 - 300  - 276(-216 - 30 - 30) (all)(7x)
-			240 - 10*5 - 100  - 90 (-60     <- 30>) (no final or initial)(6x)
-
-			218 - 10*4 - 100  - 78 (-36       - 30) (4 tick no initial)(5x)
-			196 - 10*3 - 100  - 66 (-24       - 30 ) (3 tick no initial)(4x)
-			112 - 10*2 - 50   - 42 (-12       - 30 ) (2 tick no initial)(3x)
-			96  - 10   - 50   - 36 ( -6       - 30 ) (1 tick no initial)(2x)
-
-			206 - 10*4 - 100  - 66 (-36       - 30 ) (4 tick no initial)(4x)
-			184 - 10*3 - 100  - 54 (-24       - 30 ) (3 tick no initial)(3x)
-			90  - 10   - 50   - 30 (          - 30 ) (1 tick no initial)(0x)
-
-			194 - 10*4 - 100  - 54 (-24       - 30 ) (4 tick no initial)(3x)
-
-			170 - 10*4 - 100  - 30 (     - 30      ) (4 tick no final)(0x)
-			160 - 10*3 - 100  - 30 (     - 30      ) (3 tick no final)(0x)
-			100 - 10*2 - 50   - 30 (     - 30      ) (2 tick no final)(0x)
-
-			198 - 10*5 - 100  - 48 (-36            ) (no initial and final)(5x)
-			110        - 50   -    (     - 30 - 30 ) (final and initial no tick)(0x)
-			80         - 50   -    (       <- 30>  ) (only final or initial)(0x)
-
-			140 - 10*4 - 100  - 0                    (4 ticks only)(0x)
-			80  - 10*3 - 50   - 0                    (3 tick only)(0x)
-			70  - 10*2 - 50   - 0                    (2 tick only)(0x)
-			60  - 10   - 50   - 0                    (1 tick only)(0x)
-		*/
-		float tickRatio = (float) ticksHit / tickIntervals;
-
-		int result;
-		if (tickRatio >= 1.0f)
-			result = GameData.HIT_300;
-		else if (tickRatio >= 0.5f)
-			result = GameData.HIT_100;
-		else if (tickRatio > 0f)
-			result = GameData.HIT_50;
-		else
-			result = GameData.HIT_MISS;
-
-		float cx, cy;
-		HitObjectType type;
-		if (currentRepeats % 2 == 0) {
-			// last circle
-			Vec2f lastPos = curve.pointAt(1);
-			cx = lastPos.x;
-			cy = lastPos.y;
-			type = HitObjectType.SLIDER_LAST;
-		} else {
-			// first circle
-			cx = x;
-			cy = y;
-			type = HitObjectType.SLIDER_FIRST;
-		}
-		data.sendHitResult(hitObject.getTime() + (int) sliderTimeTotal, result,
-				cx, cy, color, comboEnd, hitObject, type, sliderHeldToEnd,
-				currentRepeats + 1, curve, sliderHeldToEnd);
-		if (OPTION_DANCE_MIRROR.state && GameMod.AUTO.isActive()) {
-			float[] m = Utils.mirrorPoint(cx, cy);
-			data.sendHitResult(hitObject.getTime() + (int) sliderTimeTotal, result,
-				m[0], m[1], mirrorColor, comboEnd, hitObject, type, sliderHeldToEnd,
-				currentRepeats + 1, curve, sliderHeldToEnd, false);
-		}
-
-		return result;
-	}
-
 	@Override
 	public boolean mousePressed(int x, int y, int trackPosition) {
-		if (sliderClickedInitial)  // first circle already processed
-			return false;
-
-		double distance = Math.hypot(this.x - x, this.y - y);
-		if (distance < gameObjectRenderer.circleDiameter / 2) {
-			int timeDiff = Math.abs(trackPosition - hitObject.getTime());
-			int[] hitResultOffset = gameState.getHitResultOffsets();
-
-			int result = -1;
-			if (timeDiff < hitResultOffset[GameData.HIT_50]) {
-				result = GameData.HIT_SLIDER30;
-				ticksHit++;
-				data.sendSliderStartResult(trackPosition, this.x, this.y, color, mirrorColor, true);
-			} else if (timeDiff < hitResultOffset[GameData.HIT_MISS]) {
-				result = GameData.HIT_MISS;
-				data.sendSliderStartResult(trackPosition, this.x, this.y, color, mirrorColor, false);
-			}
-			//else not a hit
-
-			if (result > -1) {
-				data.addHitError(hitObject.getTime(), x,y,trackPosition - hitObject.getTime());
-				sliderClickedInitial = true;
-				data.sendSliderTickResult(hitObject.getTime(), result, this.x, this.y, hitObject, currentRepeats);
-				return true;
-			}
-		}
-		return false;
+		return judgement.mousePressed(x, y, trackPosition);
 	}
 
 	@Override
 	public boolean update(boolean overlap, int delta, int mouseX, int mouseY, boolean keyPressed, int trackPosition) {
-		int repeatCount = hitObject.getRepeatCount();
-		int[] hitResultOffset = gameState.getHitResultOffsets();
-		boolean isAutoMod = GameMod.AUTO.isActive();
-
-		if (!sliderClickedInitial) {
-			int time = hitObject.getTime();
-
-			// start circle time passed
-			if (trackPosition > time + hitResultOffset[GameData.HIT_50]) {
-				sliderClickedInitial = true;
-				if (isAutoMod) {  // "auto" mod: catch any missed notes due to lag
-					ticksHit++;
-					data.sendSliderTickResult(time, GameData.HIT_SLIDER30, x, y, hitObject, currentRepeats);
-					data.sendSliderStartResult(time, x, y, color, mirrorColor, true);
-				} else {
-					data.sendSliderTickResult(time, GameData.HIT_MISS, x, y, hitObject, currentRepeats);
-					data.sendSliderStartResult(trackPosition, x, y, color, mirrorColor, false);
-				}
-			}
-
-			// "auto" mod: send a perfect hit result
-			else if (isAutoMod) {
-				if (Math.abs(trackPosition - time) < hitResultOffset[GameData.HIT_300]) {
-					ticksHit++;
-					sliderClickedInitial = true;
-					data.sendSliderTickResult(time, GameData.HIT_SLIDER30, x, y, hitObject, currentRepeats);
-					data.sendSliderStartResult(time, x, y, color, mirrorColor, true);
-				}
-			}
-
-			// "relax" mod: click automatically
-			else if (GameMod.RELAX.isActive() && trackPosition >= time)
-				mousePressed(mouseX, mouseY, trackPosition);
-		}
-
-		// end of slider
-		if (trackPosition > hitObject.getTime() + sliderTimeTotal) {
-			tickIntervals++;
-			tickExpandTime = TICK_EXPAND_TIME;
-
-			// check if cursor pressed and within end circle
-			if (keyPressed || GameMod.RELAX.isActive()) {
-				Vec2f c = curve.pointAt(getT(trackPosition, false));
-				double distance = Math.hypot(c.x - mouseX, c.y - mouseY);
-				if (distance < followRadius)
-					sliderHeldToEnd = true;
-			}
-
-			// final circle hit
-			if (sliderHeldToEnd)
-				ticksHit++;
-
-			// "auto" mod: always send a perfect hit result
-			if (isAutoMod)
-				ticksHit = tickIntervals;
-
-			// calculate and send slider result
-			hitResult();
-			return true;
-		}
-
-		// update tick expand time
-		if (tickExpandTime > 0) {
-			tickExpandTime -= delta;
-			if (tickExpandTime < 0)
-				tickExpandTime = 0;
-		}
-
-		// repeats
-		boolean isNewRepeat = false;
-		if (repeatCount - 1 > currentRepeats) {
-			float t = getT(trackPosition, true);
-			if (Math.floor(t) > currentRepeats) {
-				currentRepeats++;
-				tickIndex = 0;
-				isNewRepeat = true;
-				tickExpandTime = TICK_EXPAND_TIME;
-			}
-		}
-
-		// ticks
-		boolean isNewTick = false;
-		if (ticksT != null &&
-			tickIntervals < (ticksT.length * (currentRepeats + 1)) + repeatCount &&
-			tickIntervals < (ticksT.length * repeatCount) + repeatCount) {
-			float t = getT(trackPosition, true);
-			if (t - Math.floor(t) >= ticksT[tickIndex]) {
-				tickIntervals++;
-				tickIndex = (tickIndex + 1) % ticksT.length;
-				isNewTick = true;
-				tickExpandTime = TICK_EXPAND_TIME;
-			}
-		}
-
-		// holding slider...
-		Vec2f c = curve.pointAt(getT(trackPosition, false));
-		double distance = Math.hypot(c.x - mouseX, c.y - mouseY);
-		if (((keyPressed || GameMod.RELAX.isActive()) && distance < followRadius) || isAutoMod) {
-			// mouse pressed and within follow circle
-			if (!followCircleActive) {
-				followCircleActive = true;
-				followExpandTime = 0;
-			}
-
-			// held during new repeat
-			if (isNewRepeat) {
-				ticksHit++;
-
-				HitObjectType type;
-				float posX, posY;
-				if (currentRepeats % 2 > 0) {
-					// last circle
-					type = HitObjectType.SLIDER_LAST;
-					Vec2f endPos = curve.pointAt(1f);
-					posX = endPos.x;
-					posY = endPos.y;
-				} else {
-					// first circle
-					type = HitObjectType.SLIDER_FIRST;
-					posX = this.x;
-					posY = this.y;
-				}
-				data.sendSliderTickResult(trackPosition, GameData.HIT_SLIDER30,
-					posX, posY, hitObject, currentRepeats);
-
-				// fade out reverse arrow
-				data.sendSliderRepeatResult(trackPosition, posX, posY, Color.white, curve, type);
-			}
-
-			// held during new tick
-			if (isNewTick) {
-				ticksHit++;
-				data.sendSliderTickResult(trackPosition, GameData.HIT_SLIDER10,
-						c.x, c.y, hitObject, currentRepeats);
-			}
-
-			// held near end of slider
-			if (!sliderHeldToEnd && trackPosition > hitObject.getTime() + sliderTimeTotal - hitResultOffset[GameData.HIT_300])
-				sliderHeldToEnd = true;
-		} else {
-			followCircleActive = false;
-
-			if (isNewRepeat)
-				data.sendSliderTickResult(trackPosition, GameData.HIT_MISS, 0, 0, hitObject, currentRepeats);
-			if (isNewTick)
-				data.sendSliderTickResult(trackPosition, GameData.HIT_MISS, 0, 0, hitObject, currentRepeats);
-		}
-
-		return false;
+		return judgement.update(overlap, delta, mouseX, mouseY, keyPressed, trackPosition);
 	}
 
 	@Override
 	public void updatePosition() {
 		this.x = hitObject.getScaledX();
 		this.y = hitObject.getScaledY();
-		this.curve = hitObject.getSliderCurve(true);
+		judgement.updatePosition();
+		final HitObject hitObject = this.hitObject;
+		final CurveCache curveCache = Slider.curveCache;
+		this.curve = null;
+		this.pendingCurve = new FutureTask<>(() -> curveCache.get(hitObject, true));
+		curveExecutor.execute(pendingCurve);
 	}
 
 	@Override
 	public Vec2f getPointAt(int trackPosition) {
 		if (trackPosition <= hitObject.getTime())
 			return new Vec2f(x, y);
-		else if (trackPosition >= hitObject.getTime() + sliderTimeTotal) {
+		else if (trackPosition >= hitObject.getTime() + judgement.sliderTimeTotal) {
 			if (hitObject.getRepeatCount() % 2 == 0)
 				return new Vec2f(x, y);
-			else
-				return curve.pointAt(1);
-		} else
-			return curve.pointAt(getT(trackPosition, false));
+			else {
+				getCurve().pointAt(1f, point);
+				return new Vec2f(point[0], point[1]);
+			}
+		} else {
+			getCurve().pointAt(judgement.getT(trackPosition, false), point);
+			return new Vec2f(point[0], point[1]);
+		}
 	}
 
 	@Override
-	public int getEndTime() { return hitObject.getTime() + (int) sliderTimeTotal; }
-
-	/**
-	 * Returns the t value based on the given track position.
-	 * @param trackPosition the current track position
-	 * @param raw if false, ensures that the value lies within [0, 1] by looping repeats
-	 * @return the t value: raw [0, repeats] or looped [0, 1]
-	 */
-	private float getT(int trackPosition, boolean raw) {
-		float t = (trackPosition - hitObject.getTime()) / sliderTime;
-		if (raw)
-			return t;
-		else {
-			float floor = (float) Math.floor(t);
-			return (floor % 2 == 0) ? t - floor : floor + 1 - t;
-		}
-	}
+	public int getEndTime() { return judgement.getEndTime(); }
 
 	@Override
 	public void reset() {
-		sliderClickedInitial = false;
-		sliderHeldToEnd = false;
+		judgement.reset();
 		followCircleActive = false;
-		currentRepeats = 0;
-		tickIndex = 0;
-		ticksHit = 0;
-		tickIntervals = 1;
 		tickExpandTime = 0;
 	}
 
+	/**
+	 * Returns the curve, waiting for it if it's being calculated in the background.
+	 * If no worker started calculating it yet, it's calculated on the calling thread.
+	 */
 	public Curve getCurve() {
+		if (pendingCurve != null) {
+			pendingCurve.run();
+			try {
+				curve = pendingCurve.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return curveCache.get(hitObject, true);
+			} catch (ExecutionException e) {
+				// game objects used to fail on creation, draw lines between the control points instead
+				String message = String.format("Failed to create slider curve:\n%s", hitObject.toString());
+				Log.error(message, e.getCause());
+				bubNotifs.send(BUB_RED, message);
+				curve = new LinearBezier(hitObject, true, true);
+			}
+			pendingCurve = null;
+		}
 		return curve;
 	}
 
-	public Vec2f[] getCurvePoints()
+	/**
+	 * Returns the points along the curve as x, y pairs, see {@link Curve#getPoints()}.
+	 */
+	public float[] getCurvePoints()
 	{
-		return curve.curve;
+		return getCurve().getPoints();
 	}
 
 	public int getCurvePointsCount()
 	{
-		return curve.curve.length;
+		return getCurve().getPointCount();
 	}
 
 	public int getRepeats() {
@@ -889,9 +646,9 @@ public class Slider extends GameObject {
 		float tickTOffset = 1f / (tickCount + 1) / repeats;
 		float t = tickTOffset;
 		for( int i = 0; i < (tickCount + 1) * repeats; i++, t += tickTOffset ) {
-			pos = getPointAt( getTime() + (int) (t * sliderTimeTotal ) );
+			pos = getPointAt( getTime() + (int) (t * judgement.sliderTimeTotal ) );
 			pos.set( HitObject.unscaleX( pos.x ), HitObject.unscaleY( pos.y ) );
-			ticks[1 + i] = new Circle(pos.x, pos.y, getTime() + (int) (t * sliderTimeTotal));
+			ticks[1 + i] = new Circle(pos.x, pos.y, getTime() + (int) (t * judgement.sliderTimeTotal));
 		}
 
 		for(Circle c : ticks) {
@@ -910,4 +667,66 @@ public class Slider extends GameObject {
 		mirrorColor = Dancer.colorMirrorOverride.getColor(comboColorIndex);
 	}
 
+	/**
+	 * Shows the results in the combo color and animates the follow circle.
+	 */
+	private class Judgement extends SliderJudgement {
+		Judgement() {
+			super(gameState, Slider.this.hitObject, Slider.this.data, Slider.this.comboEnd,
+				sliderMultiplier, sliderTickRate, gameState.getBeatLength(), gameState.getTimingPointMultiplier());
+		}
+
+		@Override
+		protected Curve getCurve() {
+			return Slider.this.getCurve();
+		}
+
+		@Override
+		protected void sendHitResult(int time, int result, float x, float y, HitObjectType type) {
+			data.sendHitResult(time, result, x, y, color, comboEnd, hitObject, type, sliderHeldToEnd,
+					currentRepeats + 1, getCurve(), sliderHeldToEnd);
+			if (OPTION_DANCE_MIRROR.state && GameMod.AUTO.isActive()) {
+				float[] m = Utils.mirrorPoint(x, y);
+				data.sendHitResult(time, result, m[0], m[1], mirrorColor, comboEnd, hitObject, type, sliderHeldToEnd,
+					currentRepeats + 1, getCurve(), sliderHeldToEnd, false);
+			}
+		}
+
+		@Override
+		protected void sendSliderStartResult(int time, boolean hit) {
+			data.sendSliderStartResult(time, x, y, color, mirrorColor, hit);
+		}
+
+		@Override
+		protected void sendSliderRepeatResult(int time, float x, float y, HitObjectType type) {
+			// fade out reverse arrow
+			data.sendSliderRepeatResult(time, x, y, Color.white, getCurve(), type);
+		}
+
+		@Override
+		protected void updateFollowCircle(int delta, boolean held, boolean passedTick) {
+			// update tick expand time
+			if (tickExpandTime > 0) {
+				tickExpandTime -= delta;
+				if (tickExpandTime < 0)
+					tickExpandTime = 0;
+			}
+			if (passedTick)
+				tickExpandTime = TICK_EXPAND_TIME;
+
+			if (!held)
+				followCircleActive = false;
+			else if (!followCircleActive) {
+				// mouse pressed and within follow circle
+				followCircleActive = true;
+				followExpandTime = 0;
+			}
+		}
+
+		@Override
+		protected void endReached() {
+			tickExpandTime = TICK_EXPAND_TIME;
+		}
+	}
+
 }
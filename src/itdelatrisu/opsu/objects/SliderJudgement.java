@@ -0,0 +1,428 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package itdelatrisu.opsu.objects;
+
+import itdelatrisu.opsu.GameData;
+import itdelatrisu.opsu.GameData.HitObjectType;
+import itdelatrisu.opsu.GameMod;
+import itdelatrisu.opsu.beatmap.HitObject;
+import itdelatrisu.opsu.objects.curves.Curve;
+
+/**
+ * Judges a slider: its start circle, ticks, repeats and whether it was held
+ * to the end.
+ * @see Slider
+ */
+public abstract class SliderJudgement extends HitObjectJudgement
+{
+	/** The time duration of the slider, in milliseconds. */
+	final float sliderTime;
+
+	/** The time duration of the slider including repeats, in milliseconds. */
+	final float sliderTimeTotal;
+
+	/** The t values of the slider ticks, or null if there are none. */
+	final float[] ticksT;
+
+	/** Whether or not the result of the initial hit circle has been processed. */
+	boolean sliderClickedInitial;
+
+	/** Whether or not the slider was held to the end. */
+	boolean sliderHeldToEnd;
+
+	/** The number of repeats that have passed so far. */
+	int currentRepeats;
+
+	/** The tick index in the ticksT[] array. */
+	private int tickIndex;
+
+	/** Number of ticks hit and tick intervals so far. */
+	private int ticksHit, tickIntervals = 1;
+
+	/** Scratch arrays for points on the curve. */
+	private final float[] point = new float[2], endPos = new float[2];
+
+	/**
+	 * @param sliderMultiplier the slider multiplier of the beatmap
+	 * @param sliderTickRate the slider tick rate of the beatmap
+	 * @param beatLength the beat length at the time of the slider
+	 * @param timingPointMultiplier the slider multiplier of the timing point
+	 */
+	public SliderJudgement(Context context, HitObject hitObject, GameData data, boolean comboEnd,
+		float sliderMultiplier, float sliderTickRate, float beatLength, float timingPointMultiplier)
+	{
+		super(context, hitObject, data, comboEnd);
+		this.sliderTime = hitObject.getSliderTime(sliderMultiplier, beatLength);
+		this.sliderTimeTotal = this.sliderTime * hitObject.getRepeatCount();
+
+		final float tickLengthDiv = 100f * sliderMultiplier / sliderTickRate / timingPointMultiplier;
+		final int tickCount = (int) Math.ceil(hitObject.getPixelLength() / tickLengthDiv) - 1;
+		if (tickCount > 0) {
+			this.ticksT = new float[tickCount];
+			final float tickTOffset = 1f / (tickCount + 1);
+			float t = tickTOffset;
+			for (int i = 0; i < tickCount; i++, t += tickTOffset) {
+				this.ticksT[i] = t;
+			}
+		} else {
+			this.ticksT = null;
+		}
+	}
+
+	/**
+	 * Returns the curve of the slider, at the current position.
+	 */
+	protected abstract Curve getCurve();
+
+	@Override
+	public int getEndTime()
+	{
+		return this.hitObject.getTime() + (int) this.sliderTimeTotal;
+	}
+
+	/**
+	 * Returns the t value based on the given track position.
+	 * @param trackPosition the current track position
+	 * @param raw if false, ensures that the value lies within [0, 1] by looping repeats
+	 * @return the t value: raw [0, repeats] or looped [0, 1]
+	 */
+	float getT(int trackPosition, boolean raw)
+	{
+		final float t = (trackPosition - this.hitObject.getTime()) / this.sliderTime;
+		if (raw) {
+			return t;
+		}
+		final float floor = (float) Math.floor(t);
+		return (floor % 2 == 0) ? t - floor : floor + 1 - t;
+	}
+
+	/**
+	 * Calculates and sends the slider hit result.
+	 * @return the hit result (GameData.HIT_* constants)
+	 */
+	private int hitResult()
+	{
+		/*
+			time     scoredelta score-hit-initial-tick= unaccounted
+			(1/4   - 1)		396 - 300 - 30	 		46
+			(1+1/4 - 2)		442 - 300 - 30 - 10
+			(2+1/4 - 3)		488 - 300 - 30 - 2*10	896 (408)5x
+			(3+1/4 - 4)		534 - 300 - 30 - 3*10
+			(4+1/4 - 5)		580 - 300 - 30 - 4*10
+			(5+1/4 - 6) 	626	- 300 - 30 - 5*10
+			(6+1/4 - 7)		672	- 300 - 30 - 6*10
+
+			difficultyMulti = 3	(+36 per combo)
+
+			score =
+			(t)ticks(10) * nticks +
+			(h)hitValue
+			(c)combo (hitValue/25 * difficultyMultiplier*(combo-1))
+			(i)initialHit (30) +
+			(f)finalHit(30) +
+
+			s     t       h          c     i     f
+			626 - 10*5 - 300  - 276(-216 - 30 - 30) (all)(7x)
+			240 - 10*5 - 100  - 90 (-60     <- 30>) (no final or initial)(6x)
+
+			218 - 10*4 - 100  - 78 (-36       - 30) (4 tick no initial)(5x)
+			196 - 10*3 - 100  - 66 (-24       - 30 ) (3 tick no initial)(4x)
+			112 - 10*2 - 50   - 42 (-12       - 30 ) (2 tick no initial)(3x)
+			96  - 10   - 50   - 36 ( -6       - 30 ) (1 tick no initial)(2x)
+
+			206 - 10*4 - 100  - 66 (-36       - 30 ) (4 tick no initial)(4x)
+			184 - 10*3 - 100  - 54 (-24       - 30 ) (3 tick no initial)(3x)
+			90  - 10   - 50   - 30 (          - 30 ) (1 tick no initial)(0x)
+
+			194 - 10*4 - 100  - 54 (-24       - 30 ) (4 tick no initial)(3x)
+
+			170 - 10*4 - 100  - 30 (     - 30      ) (4 tick no final)(0x)
+			160 - 10*3 - 100  - 30 (     - 30      ) (3 tick no final)(0x)
+			100 - 10*2 - 50   - 30 (     - 30      ) (2 tick no final)(0x)
+
+			198 - 10*5 - 100  - 48 (-36            ) (no initial and final)(5x)
+			110        - 50   -    (     - 30 - 30 ) (final and initial no tick)(0x)
+			80         - 50   -    (       <- 30>  ) (only final or initial)(0x)
+
+			140 - 10*4 - 100  - 0                    (4 ticks only)(0x)
+			80  - 10*3 - 50   - 0                    (3 tick only)(0x)
+			70  - 10*2 - 50   - 0                    (2 tick only)(0x)
+			60  - 10   - 50   - 0                    (1 tick only)(0x)
+		*/
+		final float tickRatio = (float) this.ticksHit / this.tickIntervals;
+
+		final int result;
+		if (tickRatio >= 1.0f) {
+			result = GameData.HIT_300;
+		} else if (tickRatio >= 0.5f) {
+			result = GameData.HIT_100;
+		} else if (tickRatio > 0f) {
+			result = GameData.HIT_50;
+		} else {
+			result = GameData.HIT_MISS;
+		}
+
+		final float cx, cy;
+		final HitObjectType type;
+		if (this.currentRepeats % 2 == 0) {
+			// last circle
+			this.getCurve().pointAt(1f, this.endPos);
+			cx = this.endPos[0];
+			cy = this.endPos[1];
+			type = HitObjectType.SLIDER_LAST;
+		} else {
+			// first circle
+			cx = this.x;
+			cy = this.y;
+			type = HitObjectType.SLIDER_FIRST;
+		}
+		this.sendHitResult(this.hitObject.getTime() + (int) this.sliderTimeTotal, result, cx, cy, type);
+		return result;
+	}
+
+	@Override
+	public boolean mousePressed(int x, int y, int trackPosition)
+	{
+		if (this.sliderClickedInitial) {
+			// first circle already processed
+			return false;
+		}
+
+		final double distance = Math.hypot(this.x - x, this.y - y);
+		if (distance < this.context.getCircleRadius()) {
+			final int timeDiff = Math.abs(trackPosition - this.hitObject.getTime());
+			final int[] hitResultOffset = this.context.getHitResultOffsets();
+
+			int result = -1;
+			if (timeDiff < hitResultOffset[GameData.HIT_50]) {
+				result = GameData.HIT_SLIDER30;
+				this.ticksHit++;
+				this.sendSliderStartResult(trackPosition, true);
+			} else if (timeDiff < hitResultOffset[GameData.HIT_MISS]) {
+				result = GameData.HIT_MISS;
+				this.sendSliderStartResult(trackPosition, false);
+			}
+			//else not a hit
+
+			if (result > -1) {
+				this.context.addHitError(this.hitObject.getTime(), x, y, trackPosition - this.hitObject.getTime());
+				this.sliderClickedInitial = true;
+				this.data.sendSliderTickResult(this.hitObject.getTime(), result, this.x, this.y,
+					this.hitObject, this.currentRepeats);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean update(boolean overlap, int delta, int mouseX, int mouseY, boolean keyPressed, int trackPosition)
+	{
+		final int repeatCount = this.hitObject.getRepeatCount();
+		final int[] hitResultOffset = this.context.getHitResultOffsets();
+		final float followRadius = this.context.getCircleRadius() * 3f;
+		final boolean isAutoMod = GameMod.AUTO.isActive();
+
+		if (!this.sliderClickedInitial) {
+			final int time = this.hitObject.getTime();
+
+			if (trackPosition > time + hitResultOffset[GameData.HIT_50]) {
+				// start circle time passed
+				this.sliderClickedInitial = true;
+				if (isAutoMod) {
+					// "auto" mod: catch any missed notes due to lag
+					this.ticksHit++;
+					this.data.sendSliderTickResult(time, GameData.HIT_SLIDER30, this.x, this.y,
+						this.hitObject, this.currentRepeats);
+					this.sendSliderStartResult(time, true);
+				} else {
+					this.data.sendSliderTickResult(time, GameData.HIT_MISS, this.x, this.y,
+						this.hitObject, this.currentRepeats);
+					this.sendSliderStartResult(trackPosition, false);
+				}
+			} else if (isAutoMod) {
+				// "auto" mod: send a perfect hit result
+				if (Math.abs(trackPosition - time) < hitResultOffset[GameData.HIT_300]) {
+					this.ticksHit++;
+					this.sliderClickedInitial = true;
+					this.data.sendSliderTickResult(time, GameData.HIT_SLIDER30, this.x, this.y,
+						this.hitObject, this.currentRepeats);
+					this.sendSliderStartResult(time, true);
+				}
+			} else if (GameMod.RELAX.isActive() && trackPosition >= time) {
+				// "relax" mod: click automatically
+				this.mousePressed(mouseX, mouseY, trackPosition);
+			}
+		}
+
+		// end of slider
+		if (trackPosition > this.hitObject.getTime() + this.sliderTimeTotal) {
+			this.tickIntervals++;
+			this.endReached();
+
+			// check if cursor pressed and within end circle
+			if (keyPressed || GameMod.RELAX.isActive()) {
+				this.getCurve().pointAt(this.getT(trackPosition, false), this.point);
+				final double distance = Math.hypot(this.point[0] - mouseX, this.point[1] - mouseY);
+				if (distance < followRadius) {
+					this.sliderHeldToEnd = true;
+				}
+			}
+
+			// final circle hit
+			if (this.sliderHeldToEnd) {
+				this.ticksHit++;
+			}
+
+			// "auto" mod: always send a perfect hit result
+			if (isAutoMod) {
+				this.ticksHit = this.tickIntervals;
+			}
+
+			this.hitResult();
+			return true;
+		}
+
+		// repeats
+		boolean isNewRepeat = false;
+		if (repeatCount - 1 > this.currentRepeats) {
+			final float t = this.getT(trackPosition, true);
+			if (Math.floor(t) > this.currentRepeats) {
+				this.currentRepeats++;
+				this.tickIndex = 0;
+				isNewRepeat = true;
+			}
+		}
+
+		// ticks
+		boolean isNewTick = false;
+		if (this.ticksT != null &&
+			this.tickIntervals < (this.ticksT.length * (this.currentRepeats + 1)) + repeatCount &&
+			this.tickIntervals < (this.ticksT.length * repeatCount) + repeatCount)
+		{
+			final float t = this.getT(trackPosition, true);
+			if (t - Math.floor(t) >= this.ticksT[this.tickIndex]) {
+				this.tickIntervals++;
+				this.tickIndex = (this.tickIndex + 1) % this.ticksT.length;
+				isNewTick = true;
+			}
+		}
+
+		// holding slider...
+		final float[] c = this.point;
+		this.getCurve().pointAt(this.getT(trackPosition, false), c);
+		final double distance = Math.hypot(c[0] - mouseX, c[1] - mouseY);
+		final boolean held = ((keyPressed || GameMod.RELAX.isActive()) && distance < followRadius) || isAutoMod;
+		this.updateFollowCircle(delta, held, isNewRepeat || isNewTick);
+		if (held) {
+			// held during new repeat
+			if (isNewRepeat) {
+				this.ticksHit++;
+
+				final HitObjectType type;
+				final float posX, posY;
+				if (this.currentRepeats % 2 > 0) {
+					// last circle
+					type = HitObjectType.SLIDER_LAST;
+					this.getCurve().pointAt(1f, this.endPos);
+					posX = this.endPos[0];
+					posY = this.endPos[1];
+				} else {
+					// first circle
+					type = HitObjectType.SLIDER_FIRST;
+					posX = this.x;
+					posY = this.y;
+				}
+				this.data.sendSliderTickResult(trackPosition, GameData.HIT_SLIDER30,
+					posX, posY, this.hitObject, this.currentRepeats);
+				this.sendSliderRepeatResult(trackPosition, posX, posY, type);
+			}
+
+			// held during new tick
+			if (isNewTick) {
+				this.ticksHit++;
+				this.data.sendSliderTickResult(trackPosition, GameData.HIT_SLIDER10,
+					c[0], c[1], this.hitObject, this.currentRepeats);
+			}
+
+			// held near end of slider
+			if (!this.sliderHeldToEnd &&
+				trackPosition > this.hitObject.getTime() + this.sliderTimeTotal - hitResultOffset[GameData.HIT_300])
+			{
+				this.sliderHeldToEnd = true;
+			}
+		} else {
+			if (isNewRepeat) {
+				this.data.sendSliderTickResult(trackPosition, GameData.HIT_MISS, 0, 0,
+					this.hitObject, this.currentRepeats);
+			}
+			if (isNewTick) {
+				this.data.sendSliderTickResult(trackPosition, GameData.HIT_MISS, 0, 0,
+					this.hitObject, this.currentRepeats);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sends the hit result of the slider.
+	 * @param time the end time of the slider
+	 * @param result the hit result (GameData.HIT_* constants)
+	 * @param x the x coordinate of the circle the slider ended on
+	 * @param y the y coordinate of the circle the slider ended on
+	 * @param type the circle the slider ended on
+	 */
+	protected void sendHitResult(int time, int result, float x, float y, HitObjectType type)
+	{
+		this.data.sendHitResult(time, result, x, y, null, this.comboEnd, this.hitObject, type,
+			this.sliderHeldToEnd, this.currentRepeats + 1, this.getCurve(), this.sliderHeldToEnd);
+	}
+
+	/**
+	 * Called when the start circle is judged, to show it.
+	 * @param time the hit time
+	 * @param hit true if the start circle was hit in time
+	 */
+	protected void sendSliderStartResult(int time, boolean hit)
+	{
+	}
+
+	/**
+	 * Called when a repeat is held, to show it.
+	 * @param time the track position
+	 * @param x the x coordinate of the repeat
+	 * @param y the y coordinate of the repeat
+	 * @param type the circle of the repeat
+	 */
+	protected void sendSliderRepeatResult(int time, float x, float y, HitObjectType type)
+	{
+	}
+
+	/**
+	 * Called on every update before the end of the slider, to show the follow circle.
+	 * @param delta the delta interval since the last update
+	 * @param held whether or not the slider is held
+	 * @param passedTick true if a tick or repeat was passed in this update
+	 */
+	protected void updateFollowCircle(int delta, boolean held, boolean passedTick)
+	{
+	}
+
+	/**
+	 * Called once when the end of the slider is reached, before its result is sent.
+	 */
+	protected void endReached()
+	{
+	}
+
+	@Override
+	public void reset()
+	{
+		this.sliderClickedInitial = false;
+		this.sliderHeldToEnd = false;
+		this.currentRepeats = 0;
+		this.tickIndex = 0;
+		this.ticksHit = 0;
+		this.tickIntervals = 1;
+	}
+}
@@ -0,0 +1,310 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package itdelatrisu.opsu.objects;
+
+import itdelatrisu.opsu.GameData;
+import itdelatrisu.opsu.GameData.HitObjectType;
+import itdelatrisu.opsu.GameMod;
+import itdelatrisu.opsu.Utils;
+import itdelatrisu.opsu.beatmap.HitObject;
+
+/**
+ * Judges a spinner by the rotations of the cursor around the spinner center.
+ * @see Spinner
+ */
+public class SpinnerJudgement extends HitObjectJudgement
+{
+	/** The amount of time, in milliseconds, before another velocity is stored. */
+	static final float DELTA_UPDATE_TIME = 1000 / 60f;
+
+	/** Angle mod multipliers: "auto" (477rpm), "spun out" (287rpm) */
+	static final float
+		AUTO_MULTIPLIER = 1 / 20f,         // angle = 477/60f * delta/1000f * TWO_PI;
+		SPUN_OUT_MULTIPLIER = 1 / 33.25f;  // angle = 287/60f * delta/1000f * TWO_PI;
+
+	/** Maximum angle difference. */
+	private static final float MAX_ANG_DIFF = DELTA_UPDATE_TIME * AUTO_MULTIPLIER; // ~95.3
+
+	static final float TWO_PI = (float) (Math.PI * 2);
+
+	/** The point that the spinner is spun around. */
+	private final float centerX, centerY;
+
+	/** The total number of rotations needed to clear the spinner. */
+	final float rotationsNeeded;
+
+	/** Array holding the most recent rotation velocities. */
+	private final float[] storedDeltaAngle;
+
+	/** The last rotation angle. */
+	private float lastAngle;
+
+	/** The current number of rotations. */
+	float rotations;
+
+	/** The remaining amount of time that was not used. */
+	private float deltaOverflow;
+
+	/** The remaining amount of the angle that was not used. */
+	private float deltaAngleOverflow;
+
+	/** The sum of all the velocities in storedVelocities. */
+	private float sumDeltaAngle;
+
+	/** Current index of the stored velocities in rotations/second. */
+	private int deltaAngleIndex;
+
+	/** True if the mouse cursor is pressed. */
+	private boolean isSpinning;
+
+	/**
+	 * @param overallDifficulty the overall difficulty, with game mods applied
+	 * @param centerX the x coordinate of the point that the spinner is spun around
+	 * @param centerY the y coordinate of the point that the spinner is spun around
+	 */
+	public SpinnerJudgement(Context context, HitObject hitObject, GameData data, float overallDifficulty,
+		float centerX, float centerY)
+	{
+		super(context, hitObject, data, true);
+		this.centerX = centerX;
+		this.centerY = centerY;
+
+/*
+		1 beat = 731.707317073171ms
+			RPM at frame X with spinner Y beats long
+				10	20	30	40	50	60 <frame#
+		1.00	306	418	457	470
+		1.25	323	424	459	471	475
+		1.5		305	417	456	470	475	477
+		1.75	322	417	456	471	475
+		2.00	304	410	454	469	474	476
+		2.25	303	410	451	467	474	476
+		2.50	303	417	456	470	475	476
+		2.75	302	416	456	470	475	476
+		3.00	301	416	456	470	475		<-- ~2sec
+		4.00	274	414	453	470	475
+		5.00	281	409	454	469	475
+		6.00	232	392	451	467	472	476
+		6.25	193	378	443	465
+		6.50	133	344	431	461
+		6.75	85	228	378	435	463	472	<-- ~5sec
+		7.00	53	154	272	391	447
+		8.00	53	154	272	391	447
+		9.00	53	154	272	400	450
+		10.00	53	154	272	400	450
+		15.00	53	154	272	391	444	466
+		20.00	61	154	272	400	447
+		25.00	53	154	272	391	447	466
+		^beats
+*/
+		// TODO not correct at all, but close enough?
+		// <2sec ~ 12 ~ 200ms
+		// >5sec ~ 48 ~ 800ms
+
+		final int minVel = 12;
+		final int maxVel = 48;
+		final int minTime = 2000;
+		final int maxTime = 5000;
+		final int maxStoredDeltaAngles = Utils.clamp((hitObject.getEndTime() - hitObject.getTime() - minTime)
+			* (maxVel - minVel) / (maxTime - minTime) + minVel, minVel, maxVel);
+		this.storedDeltaAngle = new float[maxStoredDeltaAngles];
+
+		// calculate rotations needed
+		final float spinsPerMinute = 100 + (overallDifficulty * 15);
+		this.rotationsNeeded = spinsPerMinute * (hitObject.getEndTime() - hitObject.getTime()) / 60000f;
+	}
+
+	@Override
+	public int getEndTime()
+	{
+		return this.hitObject.getEndTime();
+	}
+
+	/**
+	 * Calculates and sends the spinner hit result.
+	 * @return the hit result (GameData.HIT_* constants)
+	 */
+	private int hitResult()
+	{
+		// TODO: verify ratios
+		final int result;
+		final float ratio = this.rotations / this.rotationsNeeded;
+		if (ratio >= 1.0f || GameMod.AUTO.isActive() || GameMod.AUTOPILOT.isActive() ||
+			GameMod.SPUN_OUT.isActive())
+		{
+			result = GameData.HIT_300;
+		} else if (ratio >= 0.9f) {
+			result = GameData.HIT_100;
+		} else if (ratio >= 0.75f) {
+			result = GameData.HIT_50;
+		} else {
+			result = GameData.HIT_MISS;
+		}
+		this.sendHitResult(result);
+		return result;
+	}
+
+	/**
+	 * Sets the last angle, like the game did when a spinner was clicked. The
+	 * coordinates are swapped, but this is not called for game key presses.
+	 */
+	@Override
+	public boolean mousePressed(int x, int y, int trackPosition)
+	{
+		this.lastAngle = (float) Math.atan2(x - this.centerY, y - this.centerX);
+		return false;
+	}
+
+	@Override
+	public boolean update(boolean overlap, int delta, int mouseX, int mouseY, boolean keyPressed, int trackPosition)
+	{
+		// end of spinner
+		if (overlap || trackPosition > this.hitObject.getEndTime()) {
+			this.hitResult();
+			return true;
+		}
+
+		// game button is released
+		if (this.isSpinning && !(keyPressed || GameMod.RELAX.isActive())) {
+			this.isSpinning = false;
+		}
+
+		// spin automatically
+		// http://osu.ppy.sh/wiki/FAQ#Spinners
+
+		this.deltaOverflow += delta;
+
+		float angleDiff;
+		if (GameMod.AUTO.isActive()) {
+			angleDiff = delta * AUTO_MULTIPLIER;
+			this.isSpinning = true;
+		} else if (GameMod.SPUN_OUT.isActive() || GameMod.AUTOPILOT.isActive()) {
+			angleDiff = delta * SPUN_OUT_MULTIPLIER;
+			this.isSpinning = true;
+		} else {
+			final float angle = (float) Math.atan2(mouseY - this.centerY, mouseX - this.centerX);
+
+			// set initial angle to current mouse position to skip first click
+			if (!this.isSpinning && (keyPressed || GameMod.RELAX.isActive())) {
+				this.lastAngle = angle;
+				this.isSpinning = true;
+				return false;
+			}
+
+			angleDiff = angle - this.lastAngle;
+			if (Math.abs(angleDiff) > 0.01f) {
+				this.lastAngle = angle;
+			} else {
+				angleDiff = 0;
+			}
+		}
+
+		// make angleDiff the smallest angle change possible
+		// (i.e. 1/4 rotation instead of 3/4 rotation)
+		if (angleDiff < -Math.PI) {
+			angleDiff += TWO_PI;
+		} else if (angleDiff > Math.PI) {
+			angleDiff -= TWO_PI;
+		}
+
+		// may be a problem at higher frame rate due to floating point round off
+		if (this.isSpinning) {
+			this.deltaAngleOverflow += angleDiff;
+		}
+
+		while (this.deltaOverflow >= DELTA_UPDATE_TIME) {
+			// spin caused by the cursor
+			float deltaAngle = 0;
+			if (this.isSpinning) {
+				deltaAngle = this.deltaAngleOverflow * DELTA_UPDATE_TIME / this.deltaOverflow;
+				this.deltaAngleOverflow -= deltaAngle;
+				deltaAngle = Utils.clamp(deltaAngle, -MAX_ANG_DIFF, MAX_ANG_DIFF);
+			}
+			this.sumDeltaAngle -= this.storedDeltaAngle[this.deltaAngleIndex];
+			this.sumDeltaAngle += deltaAngle;
+			this.storedDeltaAngle[this.deltaAngleIndex++] = deltaAngle;
+			this.deltaAngleIndex %= this.storedDeltaAngle.length;
+			this.deltaOverflow -= DELTA_UPDATE_TIME;
+
+			float rotationAngle = this.sumDeltaAngle / this.storedDeltaAngle.length;
+			rotationAngle = Utils.clamp(rotationAngle, -MAX_ANG_DIFF, MAX_ANG_DIFF);
+			this.rotate(rotationAngle);
+			if (Math.abs(rotationAngle) > 0.00001f) {
+				this.data.changeHealth(DELTA_UPDATE_TIME * GameData.HP_DRAIN_MULTIPLIER);
+			}
+		}
+
+		//TODO may need to update 1 more time when the spinner ends?
+		return false;
+	}
+
+	/**
+	 * Rotates the spinner by an angle.
+	 * @param angle the angle to rotate (in radians)
+	 */
+	private void rotate(float angle)
+	{
+		this.rotated(angle);
+		angle = Math.abs(angle);
+		final float newRotations = this.rotations + (angle / TWO_PI);
+
+		// added one whole rotation...
+		if (Math.floor(newRotations) > this.rotations) {
+			//TODO seems to give 1100 points per spin but also an extra 100 for some spinners
+			final boolean extra = newRotations > this.rotationsNeeded;
+			if (extra) {
+				this.data.changeScore(1000);
+			}
+			this.data.changeScore(100);
+			this.rotationCompleted(extra);
+		}
+
+		// extra 100 for some spinners (mostly wrong)
+//		if (Math.floor(newRotations + 0.5f) > rotations + 0.5f) {
+//			if (newRotations + 0.5f > rotationsNeeded)  // extra rotations
+//				data.changeScore(100);
+//		}
+
+		this.rotations = newRotations;
+	}
+
+	/**
+	 * Sends the hit result of the spinner.
+	 * @param result the hit result (GameData.HIT_* constants)
+	 */
+	protected void sendHitResult(int result)
+	{
+		this.data.sendHitResult(this.hitObject.getEndTime(), result, this.centerX, this.centerY, null, true,
+			this.hitObject, HitObjectType.SPINNER, true, 0, null, false);
+	}
+
+	/**
+	 * Called every {@link #DELTA_UPDATE_TIME} milliseconds while the spinner is
+	 * not judged, to show its rotation.
+	 * @param angle the rotation since the last call, in radians
+	 */
+	protected void rotated(float angle)
+	{
+	}
+
+	/**
+	 * Called when a whole rotation is added, to play its sound.
+	 * @param extra true if the rotation is more than needed to clear the spinner
+	 */
+	protected void rotationCompleted(boolean extra)
+	{
+	}
+
+	@Override
+	public void reset()
+	{
+		this.deltaAngleIndex = 0;
+		this.sumDeltaAngle = 0;
+		for (int i = 0; i < this.storedDeltaAngle.length; i++) {
+			this.storedDeltaAngle[i] = 0;
+		}
+		this.rotations = 0;
+		this.deltaOverflow = 0;
+		this.isSpinning = false;
+	}
+}
@@ -18,12 +18,25 @@
 
 package itdelatrisu.opsu.objects.curves;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
 /**
  * Representation of a Bezier curve with the distance between each point calculated.
+ * <p>
+ * The curve is flattened by adaptive subdivision: it's split in halves using
+ * De Casteljau's algorithm until every part is flat enough to be drawn as a
+ * line, so straight parts get few points and sharp bends get many.
  *
  * @author fluddokt (https://github.com/fluddokt)
  */
 public class Bezier2 extends CurveType {
+	/** Maximum distance between the curve and its flattened lines. */
+	private static final float FLATNESS_TOLERANCE = 0.25f;
+
+	/** Maximum number of times a part of the curve is split, in case it never becomes flat. */
+	private static final int MAX_DEPTH = 16;
+
 	/** The control points of the Bezier curve. */
 	private Vec2f[] points;
 
@@ -33,51 +46,105 @@ public class Bezier2 extends CurveType {
 	 */
 	public Bezier2(Vec2f[] points) {
 		this.points = points;
+		init(flatten(points));
+	}
 
-		// approximate by finding the length of all points
-		// (which should be the max possible length of the curve)
-		float approxlength = 0;
-		for (int i = 0; i < points.length - 1; i++)
-			approxlength += points[i].cpy().sub(points[i + 1]).len();
+	/**
+	 * Flattens a Bezier curve.
+	 * @param points the control points
+	 * @return the points of the lines that approximate the curve, including both end points
+	 */
+	private static Vec2f[] flatten(Vec2f[] points) {
+		final int count = points.length;
+		final ArrayList<Vec2f> curve = new ArrayList<>();
+		curve.add(points[0].cpy());
+		if (count < 2)
+			return curve.toArray(new Vec2f[0]);
 
-		init(approxlength);
-	}
+		// parts of the curve as control points x, y pairs, last element is the depth
+		final ArrayDeque<float[]> stack = new ArrayDeque<>();
+		final float[] first = new float[count * 2 + 1];
+		for (int i = 0; i < count; i++) {
+			first[i * 2] = points[i].x;
+			first[i * 2 + 1] = points[i].y;
+		}
+		stack.push(first);
 
-	@Override
-	public Vec2f pointAt(float t) {
-		Vec2f c = new Vec2f();
-		int n = points.length - 1;
-		for (int i = 0; i <= n; i++) {
-			double b = bernstein(i, n, t);
-			c.x += points[i].x * b;
-			c.y += points[i].y * b;
+		final float[] work = new float[count * 2];
+		while (!stack.isEmpty()) {
+			final float[] part = stack.pop();
+			final int depth = (int) part[count * 2];
+			if (depth >= MAX_DEPTH || isFlatEnough(part, count)) {
+				curve.add(new Vec2f(part[count * 2 - 2], part[count * 2 - 1]));
+				continue;
+			}
+
+			// split in halves, the right half is pushed first so the left half comes out first
+			final float[] left = new float[count * 2 + 1];
+			final float[] right = new float[count * 2 + 1];
+			subdivide(part, count, work, left, right);
+			left[count * 2] = right[count * 2] = depth + 1;
+			stack.push(right);
+			stack.push(left);
 		}
-		return c;
+		return curve.toArray(new Vec2f[0]);
 	}
 
 	/**
-	 * Calculates the binomial coefficient.
-	 * http://en.wikipedia.org/wiki/Binomial_coefficient#Binomial_coefficient_in_programming_languages
+	 * Returns whether the curve is close enough to the line between its end points.
+	 * A Bezier curve of degree n deviates at most n(n-1)/8 times the largest second
+	 * difference of its control points from that line.
 	 */
-	private static long binomialCoefficient(int n, int k) {
-		if (k < 0 || k > n)
-			return 0;
-		if (k == 0 || k == n)
-			return 1;
-		k = Math.min(k, n - k);  // take advantage of symmetry
-		long c = 1;
-		for (int i = 0; i < k; i++)
-			c = c * (n - i) / (i + 1);
-		return c;
+	private static boolean isFlatEnough(float[] part, int count) {
+		final int degree = count - 1;
+		final float maxDifference = 8 * FLATNESS_TOLERANCE / Math.max(1, degree * (degree - 1));
+		final float limit = maxDifference * maxDifference;
+		for (int i = 1; i < count - 1; i++) {
+			final float dx = part[i * 2 - 2] - 2 * part[i * 2] + part[i * 2 + 2];
+			final float dy = part[i * 2 - 1] - 2 * part[i * 2 + 1] + part[i * 2 + 3];
+			if (dx * dx + dy * dy > limit)
+				return false;
+		}
+		return true;
 	}
 
 	/**
-	 * Calculates the Bernstein polynomial.
-	 * @param i the index
-	 * @param n the degree of the polynomial (i.e. number of points)
-	 * @param t the t value [0, 1]
+	 * Splits a Bezier curve at t = 0.5 using De Casteljau's algorithm.
+	 * @param part the control points
+	 * @param count the number of control points
+	 * @param work scratch array of {@code count * 2} elements
+	 * @param left the control points of the first half
+	 * @param right the control points of the second half
 	 */
-	private static double bernstein(int i, int n, float t) {
-		return binomialCoefficient(n, i) * Math.pow(t, i) * Math.pow(1 - t, n - i);
+	private static void subdivide(float[] part, int count, float[] work, float[] left, float[] right) {
+		System.arraycopy(part, 0, work, 0, count * 2);
+		for (int i = 0; i < count; i++) {
+			left[i * 2] = work[0];
+			left[i * 2 + 1] = work[1];
+			right[(count - i - 1) * 2] = work[(count - i - 1) * 2];
+			right[(count - i - 1) * 2 + 1] = work[(count - i - 1) * 2 + 1];
+			for (int j = 0; j < count - i - 1; j++) {
+				work[j * 2] = (work[j * 2] + work[j * 2 + 2]) / 2;
+				work[j * 2 + 1] = (work[j * 2 + 1] + work[j * 2 + 3]) / 2;
+			}
+		}
+	}
+
+	@Override
+	public Vec2f pointAt(float t) {
+		// De Casteljau's algorithm, stable for any number of control points
+		final int count = points.length;
+		final float[] work = new float[count * 2];
+		for (int i = 0; i < count; i++) {
+			work[i * 2] = points[i].x;
+			work[i * 2 + 1] = points[i].y;
+		}
+		for (int n = count - 1; n > 0; n--) {
+			for (int j = 0; j < n; j++) {
+				work[j * 2] += (work[j * 2 + 2] - work[j * 2]) * t;
+				work[j * 2 + 1] += (work[j * 2 + 3] - work[j * 2 + 1]) * t;
+			}
+		}
+		return new Vec2f(work[0], work[1]);
 	}
 }
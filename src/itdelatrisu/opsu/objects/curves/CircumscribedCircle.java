@@ -112,11 +112,19 @@ public class CircumscribedCircle extends Curve {
 		this.drawEndAngle   = (float) ((endAng   + (startAng > endAng ? HALF_PI : -HALF_PI)) * 180 / Math.PI);
 		this.drawStartAngle = (float) ((startAng + (startAng > endAng ? -HALF_PI : HALF_PI)) * 180 / Math.PI);
 
-		// calculate points
+		// calculate points, ending exactly at the end of the arc
 		float step = hitObject.getPixelLength() / CURVE_POINTS_SEPERATION;
-		curve = new Vec2f[(int) step + 1];
-		for (int i = 0; i < curve.length; i++)
-			curve[i] = pointAt(i / step);
+		int npoints = ((int) step < step) ? (int) step + 2 : (int) step + 1;
+		float[] points = new float[npoints * 2];
+		float[] distances = new float[npoints];
+		for (int i = 0; i < npoints; i++) {
+			float t = (step > 0) ? Math.min(i / step, 1f) : 0f;
+			float ang = Utils.lerp(startAng, endAng, t);
+			points[i * 2] = (float) (Math.cos(ang) * radius + circleCenter.x);
+			points[i * 2 + 1] = (float) (Math.sin(ang) * radius + circleCenter.y);
+			distances[i] = t * pixelLength;
+		}
+		initPoints(points, distances);
 	}
 
 	/**
@@ -154,15 +162,6 @@ public class CircumscribedCircle extends Curve {
 		return b.cpy().add(tb.x * u, tb.y * u);
 	}
 
-	@Override
-	public Vec2f pointAt(float t) {
-		float ang = Utils.lerp(startAng, endAng, t);
-		return new Vec2f(
-			(float) (Math.cos(ang) * radius + circleCenter.x),
-			(float) (Math.sin(ang) * radius + circleCenter.y)
-		);
-	}
-
 	@Override
 	public float getEndAngle() { return drawEndAngle; }
 
@@ -60,11 +60,25 @@ public abstract class Curve {
 	/** Per-curve render-state used for the new style curve renders. */
 	protected CurveRenderState renderState;
 
-	/** Points along the curve (set by inherited classes). */
-	public Vec2f[] curve;
+	/** Points along the curve as x, y pairs (set by inherited classes). */
+	private float[] points;
 
-	public Vec2f[] getCurvePoints() {
-		return curve;
+	/** Distance along the curve of each point in {@link #points}, ascending. */
+	private float[] distances;
+
+	/**
+	 * Returns the points along the curve as x, y pairs, shared by all curves
+	 * of the same slider definition, so they must not be modified.
+	 */
+	public float[] getPoints() {
+		return points;
+	}
+
+	/**
+	 * Returns the number of points along the curve.
+	 */
+	public int getPointCount() {
+		return (points == null) ? 0 : points.length / 2;
 	}
 
 	private Color fallbackSliderColor = new Color(20, 20, 20);
@@ -90,6 +104,18 @@ public abstract class Curve {
 		this.renderState = null;
 	}
 
+	/**
+	 * Constructor for a curve that uses the points of another curve of the same slider definition.
+	 * @param hitObject the associated HitObject
+	 * @param scaled whether to use scaled coordinates
+	 * @param shared the curve to share the points of
+	 */
+	protected Curve(HitObject hitObject, boolean scaled, Curve shared) {
+		this(hitObject, scaled);
+		this.points = shared.points;
+		this.distances = shared.distances;
+	}
+
 	/**
 	 * Init curves for given circle diameter
 	 * Should be called before any curves are drawn.
@@ -109,17 +135,61 @@ public abstract class Curve {
 	}
 
 	/**
-	 * Returns the point on the curve at a value t.
-	 * @param t the t value [0, 1]
-	 * @return the position vector
+	 * Sets the points along the curve, which are drawn and which
+	 * {@link #pointAt(float, float[])} interpolates between.
+	 * Must be called by inherited classes.
+	 * @param points the points as x, y pairs
+	 * @param distances the distance along the curve of each point, ascending,
+	 *                  the last one being the length of the curve,
+	 *                  or null if {@link #pointAt(float, float[])} is not used
+	 */
+	protected void initPoints(float[] points, float[] distances) {
+		this.points = points;
+		this.distances = distances;
+	}
+
+	/**
+	 * Stores the point on the curve at a value t in the given array, without allocating.
+	 * The value t is the fraction of the length of the curve, the point is interpolated
+	 * between the two points of which the distances surround it.
+	 * @param t the t value [0, 1], clamped
+	 * @param out the array to store the x, y coordinates in
 	 */
-	public abstract Vec2f pointAt(float t);
+	public void pointAt(float t, float[] out) {
+		final float[] distances = this.distances;
+		final int last = distances.length - 1;
+		final float distance = t * distances[last];
+		if (distance <= distances[0]) {
+			out[0] = points[0];
+			out[1] = points[1];
+			return;
+		}
+		if (distance >= distances[last]) {
+			out[0] = points[last * 2];
+			out[1] = points[last * 2 + 1];
+			return;
+		}
+
+		// find the last point at or before the distance
+		int low = 0, high = last;
+		while (high - low > 1) {
+			final int mid = (low + high) >>> 1;
+			if (distances[mid] <= distance)
+				low = mid;
+			else
+				high = mid;
+		}
+		final float length = distances[high] - distances[low];
+		final float t2 = length > 0 ? (distance - distances[low]) / length : 0f;
+		out[0] = points[low * 2] + (points[high * 2] - points[low * 2]) * t2;
+		out[1] = points[low * 2 + 1] + (points[high * 2 + 1] - points[low * 2 + 1]) * t2;
+	}
 
 	/**
 	 * Draws the full curve to the graphics context.
 	 * @param color the color filter
 	 */
-	public void draw(Color color) { draw(color, 0, curve.length); }
+	public void draw(Color color) { draw(color, 0, getPointCount()); }
 
 	/**
 	 * Draws the curve in the range [0, t] (where the full range is [0, 1]) to the graphics context.
@@ -128,7 +198,7 @@ public abstract class Curve {
 	 * @param to index to draw to (exclusive)
 	 */
 	public void draw(Color color, int from, int to) {
-		if (curve == null)
+		if (points == null)
 			return;
 
 		if (OPTION_FALLBACK_SLIDERS.state || SkinService.skin.getSliderStyle() == Skin.STYLE_PEPPYSLIDER || !mmsliderSupported) {
@@ -136,23 +206,23 @@ public abstract class Curve {
 			Image hitCircle = GameImage.HITCIRCLE.getImage();
 			Image hitCircleOverlay = GameImage.HITCIRCLE_OVERLAY.getImage();
 			for (int i = from; i < to; i++)
-				hitCircleOverlay.drawCentered(curve[i].x, curve[i].y, Colors.WHITE_FADE);
+				hitCircleOverlay.drawCentered(points[i * 2], points[i * 2 + 1], Colors.WHITE_FADE);
 			float a = fallbackSliderColor.a;
 			fallbackSliderColor.a = color.a;
 			for (int i = from; i < to; i++)
-				hitCircle.drawCentered(curve[i].x, curve[i].y, fallbackSliderColor);
+				hitCircle.drawCentered(points[i * 2], points[i * 2 + 1], fallbackSliderColor);
 			fallbackSliderColor.a = a;
 		} else {
 			// mmsliders
 			if (renderState == null)
-				renderState = new CurveRenderState(hitObject, curve, false);
+				renderState = new CurveRenderState(hitObject, points, false);
 			renderState.draw(color, borderColor, from, to);
 		}
 	}
 
 	public void splice(int from, int to) {
 		if (renderState == null)
-			renderState = new CurveRenderState(hitObject, curve, false);
+			renderState = new CurveRenderState(hitObject, points, false);
 		renderState.splice(from, to);
 	}
 
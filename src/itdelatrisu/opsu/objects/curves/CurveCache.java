@@ -0,0 +1,145 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package itdelatrisu.opsu.objects.curves;
+
+import itdelatrisu.opsu.beatmap.HitObject;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of slider curves, so sliders with the same definition don't have their
+ * curve calculated again, for example when retrying a beatmap.
+ * <p>
+ * Curves are keyed by the slider type, control points, pixel length and whether
+ * they use scaled coordinates. The cached curves are never drawn; every call to
+ * {@link #get} returns a new curve that shares the points of the cached one, but
+ * has its own render state. Can be used from multiple threads.
+ */
+public class CurveCache
+{
+	private final ConcurrentHashMap<Key, Curve> curves = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the curve of a slider, calculating it if it's not cached.
+	 * @param hitObject the slider
+	 * @param scaled whether to use scaled coordinates
+	 * @return a new Curve instance
+	 * @see HitObject#getSliderCurve(boolean)
+	 */
+	public Curve get(HitObject hitObject, boolean scaled)
+	{
+		final Key key = new Key(hitObject, scaled);
+		Curve curve = this.curves.get(key);
+		if (curve == null) {
+			curve = hitObject.getSliderCurve(scaled);
+			// don't cache it if the position changed while calculating, which
+			// happens when stacks are calculated while sliders are being created
+			if (key.equals(new Key(hitObject, scaled))) {
+				final Curve previous = this.curves.putIfAbsent(key, curve);
+				if (previous != null) {
+					curve = previous;
+				}
+			}
+		}
+		return new SharedCurve(hitObject, scaled, curve);
+	}
+
+	public void clear()
+	{
+		this.curves.clear();
+	}
+
+	public int size()
+	{
+		return this.curves.size();
+	}
+
+	/**
+	 * Curve that uses the points of a cached curve.
+	 */
+	private static class SharedCurve extends Curve
+	{
+		private final Curve shared;
+
+		SharedCurve(HitObject hitObject, boolean scaled, Curve shared)
+		{
+			super(hitObject, scaled, shared);
+			this.shared = shared;
+		}
+
+		@Override
+		public float getEndAngle()
+		{
+			return this.shared.getEndAngle();
+		}
+
+		@Override
+		public float getStartAngle()
+		{
+			return this.shared.getStartAngle();
+		}
+	}
+
+	private static class Key
+	{
+		private final char type;
+		private final boolean scaled;
+		private final float pixelLength, xMultiplier;
+		/** The x, y coordinates of the control points. */
+		private final float[] points;
+		private final int hash;
+
+		Key(HitObject hitObject, boolean scaled)
+		{
+			this.type = hitObject.getSliderType();
+			this.scaled = scaled;
+			this.pixelLength = hitObject.getPixelLength();
+			// the curve lengths are scaled even if the coordinates aren't
+			this.xMultiplier = HitObject.getXMultiplier();
+
+			final float[] sliderX, sliderY;
+			if (scaled) {
+				sliderX = hitObject.getScaledSliderX();
+				sliderY = hitObject.getScaledSliderY();
+			} else {
+				sliderX = hitObject.getSliderX();
+				sliderY = hitObject.getSliderY();
+			}
+			this.points = new float[sliderX.length * 2 + 2];
+			this.points[0] = scaled ? hitObject.getScaledX() : hitObject.getX();
+			this.points[1] = scaled ? hitObject.getScaledY() : hitObject.getY();
+			for (int i = 0; i < sliderX.length; i++) {
+				this.points[i * 2 + 2] = sliderX[i];
+				this.points[i * 2 + 3] = sliderY[i];
+			}
+
+			int hash = Arrays.hashCode(this.points);
+			hash = hash * 31 + this.type;
+			hash = hash * 31 + Float.floatToIntBits(this.pixelLength);
+			hash = hash * 31 + Float.floatToIntBits(this.xMultiplier);
+			this.hash = hash * 31 + (scaled ? 1 : 0);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return this.hash == other.hash &&
+				this.type == other.type &&
+				this.scaled == other.scaled &&
+				Float.compare(this.pixelLength, other.pixelLength) == 0 &&
+				Float.compare(this.xMultiplier, other.xMultiplier) == 0 &&
+				Arrays.equals(this.points, other.points);
+		}
+	}
+}
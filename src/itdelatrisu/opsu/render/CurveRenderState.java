@@ -20,7 +20,6 @@ package itdelatrisu.opsu.render;
 import itdelatrisu.opsu.GameImage;
 import itdelatrisu.opsu.Utils;
 import itdelatrisu.opsu.beatmap.HitObject;
-import itdelatrisu.opsu.objects.curves.Vec2f;
 
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
@@ -61,7 +60,10 @@ public class CurveRenderState {
 	/** The HitObject associated with the curve to be drawn. */
 	protected HitObject hitObject;
 
-	protected Vec2f[] curve;
+	protected float[] curve;
+
+	/** The number of points in {@code curve}. */
+	protected int curveLength;
 
 	/** The point to which the curve has last been rendered into the texture (as an index into {@code curve}). */
 	private int lastPointDrawn;
@@ -99,11 +101,12 @@ public class CurveRenderState {
 	/**
 	 * Creates an object to hold the render state that's necessary to draw a curve.
 	 * @param hitObject the HitObject that represents this curve, just used as a unique ID
-	 * @param curve the points along the curve to be drawn
+	 * @param curve the points along the curve to be drawn, as x, y pairs
 	 */
-	public CurveRenderState(HitObject hitObject, Vec2f[] curve, boolean isKnorkeSlider) {
+	public CurveRenderState(HitObject hitObject, float[] curve, boolean isKnorkeSlider) {
 		this.hitObject = hitObject;
 		this.curve = curve;
+		this.curveLength = curve.length / 2;
 		if (isKnorkeSlider) {
 			this.mirrors = OPTION_MERGING_SLIDERS_MIRROR_POOL.val;
 		} else {
@@ -139,7 +142,7 @@ public class CurveRenderState {
 		lastPointDrawn = -1;
 		firstPointDrawn = -1;
 		this.pointsToRender = pointsToRender;
-		draw(color, borderColor, 0, curve.length);
+		draw(color, borderColor, 0, curveLength);
 		this.pointsToRender = null;
 	}
 
@@ -292,16 +295,16 @@ public class CurveRenderState {
 	 */
 	private void createVertexBuffer(int bufferID) {
 		int arrayBufferBinding = GL11.glGetInteger(GL15.GL_ARRAY_BUFFER_BINDING);
-		FloatBuffer buff = BufferUtils.createByteBuffer(4 * (4 + 2) * (curve.length) * mirrors * (NewCurveStyleState.DIVIDES + 2)).asFloatBuffer();
+		FloatBuffer buff = BufferUtils.createByteBuffer(4 * (4 + 2) * (curveLength) * mirrors * (NewCurveStyleState.DIVIDES + 2)).asFloatBuffer();
 
 		for (int mirror = 0; mirror < mirrors; mirror++) {
 			final float angle = 360f * mirror / mirrors;
-			float lastx = curve[0].x;
-			float lasty = curve[0].y;
+			float lastx = curve[0];
+			float lasty = curve[1];
 			fillCone(buff, lastx, lasty, angle);
-			for (int i = 1; i < curve.length; ++i) {
-				float x = curve[i].x;
-				float y = curve[i].y;
+			for (int i = 1; i < curveLength; ++i) {
+				float x = curve[i * 2];
+				float y = curve[i * 2 + 1];
 				fillCone(buff, x, y, angle);
 				//fillCone(buff, (x + lastx) / 2f, (y + lasty) / 2f, angle);
 				//lastx = x;
@@ -363,7 +366,7 @@ public class CurveRenderState {
 			if (spliceFrom <= i && i <= spliceTo) {
 				continue;
 			}
-			final int index = i + curve.length * mirror;
+			final int index = i + curveLength * mirror;
 			GL11.glDrawArrays(GL11.GL_TRIANGLE_FAN, index * (NewCurveStyleState.DIVIDES + 2), NewCurveStyleState.DIVIDES + 2);
 		}
 	}
@@ -372,7 +375,7 @@ public class CurveRenderState {
 		Iterator<Integer> iter = pointsToRender.iterator();
 		while (iter.hasNext()) {
 			for (int i = iter.next(), end = iter.next(); i < end; ++i) {
-				final int index = i + curve.length * mirror;
+				final int index = i + curveLength * mirror;
 				GL11.glDrawArrays(GL11.GL_TRIANGLE_FAN, index * (NewCurveStyleState.DIVIDES + 2), NewCurveStyleState.DIVIDES + 2);
 			}
 		}
@@ -0,0 +1,512 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package itdelatrisu.opsu.replay;
+
+import itdelatrisu.opsu.GameData;
+import itdelatrisu.opsu.GameMod;
+import itdelatrisu.opsu.ScoreData;
+import itdelatrisu.opsu.beatmap.Beatmap;
+import itdelatrisu.opsu.beatmap.HitObject;
+import itdelatrisu.opsu.beatmap.TimingPoint;
+import itdelatrisu.opsu.objects.Circle;
+import itdelatrisu.opsu.objects.CircleJudgement;
+import itdelatrisu.opsu.objects.HitObjectJudgement;
+import itdelatrisu.opsu.objects.Slider;
+import itdelatrisu.opsu.objects.SliderJudgement;
+import itdelatrisu.opsu.objects.Spinner;
+import itdelatrisu.opsu.objects.SpinnerJudgement;
+import itdelatrisu.opsu.objects.curves.Curve;
+import itdelatrisu.opsu.states.game.Game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Judges the hit objects of a beatmap for the frames of a replay, without a
+ * display or audio. Gives the score, hit errors and health over time, like
+ * watching the replay in the game does.
+ * <p>
+ * The hit objects are judged by the same {@link HitObjectJudgement}s as the
+ * {@link Circle}, {@link Slider} and {@link Spinner} objects in the game, and
+ * the frames are run like {@link Game} runs them when
+ * watching a replay: a frame that presses a key hits the current object, a
+ * frame that doesn't change the keys updates the objects with the time since
+ * the previous frame. Objects can also be updated at a fixed timestep between
+ * frames that are further apart, see {@link #setTimestep(int)}.
+ * <p>
+ * Coordinates are scaled with {@link HitObject#init(int, int)} like in the game,
+ * so the results are those of a game with that resolution. The game mods of
+ * the replay are active while simulating, so don't use this while a game is
+ * being played. Stacks are calculated if the beatmap doesn't have them yet.
+ * The fixed difficulty options are ignored, they are not stored in replays.
+ */
+public class ReplaySimulator
+{
+	/** Time between updates after the last frame when not using a fixed timestep, in milliseconds. */
+	private static final int END_TIMESTEP = 16;
+
+	/** Minimum time between life frames, in milliseconds. */
+	private static final int LIFE_FRAME_INTERVAL = 1000;
+
+	private final Beatmap beatmap;
+	private final ReplayFrame[] frames;
+	private final int mods;
+	/** Fixed timestep in milliseconds, or 0 to only update on replay frames. */
+	private int timestep;
+
+	private GameData data;
+	private int[] hitResultOffset;
+	private int approachTime;
+	private float circleRadius;
+	/** Center of the playfield, where spinners are spun around. */
+	private float centerX, centerY;
+
+	private HitObjectJudgement.Context context;
+	private HitObjectJudgement[] objects;
+	private int objectIndex;
+	private int breakIndex, breakTime;
+	private int deaths, failTime;
+	private ArrayList<HitError> hitErrors;
+	private ArrayList<LifeFrame> lifeFrames;
+	private int lastLifeFrameTime;
+
+	/**
+	 * @param beatmap the beatmap, with its timing points and hit objects loaded
+	 * @param replay the replay, with its frames loaded
+	 */
+	public ReplaySimulator(Beatmap beatmap, Replay replay)
+	{
+		this(beatmap, replay.frames, replay.mods);
+	}
+
+	/**
+	 * @param beatmap the beatmap, with its timing points and hit objects loaded
+	 * @param frames the replay frames
+	 * @param mods the game mods (bitwise OR of active mods)
+	 */
+	public ReplaySimulator(Beatmap beatmap, ReplayFrame[] frames, int mods)
+	{
+		if (beatmap.timingPoints == null || beatmap.objects == null) {
+			throw new IllegalArgumentException(String.format(
+				"%s of beatmap '%s' are not loaded",
+				beatmap.timingPoints == null ? "timing points" : "hit objects",
+				beatmap
+			));
+		}
+		if (frames == null) {
+			throw new IllegalArgumentException("replay has no frames");
+		}
+		this.beatmap = beatmap;
+		this.frames = frames;
+		this.mods = mods;
+	}
+
+	/**
+	 * Sets the fixed timestep. Objects are updated at least this often, also
+	 * between replay frames that are further apart, using the cursor and keys
+	 * of the previous frame. By default, objects are only updated on frames.
+	 * @param timestep the timestep in milliseconds, or 0 to only update on frames
+	 */
+	public void setTimestep(int timestep)
+	{
+		if (timestep < 0) {
+			throw new IllegalArgumentException("timestep must not be negative");
+		}
+		this.timestep = timestep;
+	}
+
+	/**
+	 * Judges all hit objects. The global game mods and stack offset are restored
+	 * afterwards.
+	 */
+	public Result run()
+	{
+		final int previousMods = GameMod.getModState();
+		final float previousStackOffset = HitObject.getStackOffset();
+		GameMod.loadModState(this.mods);
+		try {
+			this.init();
+			this.simulate();
+			final ScoreData score = this.data.getCurrentScoreData(this.beatmap, false);
+			return new Result(
+				score,
+				this.hitErrors.toArray(new HitError[this.hitErrors.size()]),
+				this.lifeFrames.toArray(new LifeFrame[this.lifeFrames.size()]),
+				this.failTime
+			);
+		} finally {
+			GameMod.loadModState(previousMods);
+			HitObject.setStackOffset(previousStackOffset);
+		}
+	}
+
+	/**
+	 * Sets up the difficulty values and objects, like {@link Game} does when
+	 * loading a beatmap.
+	 */
+	private void init()
+	{
+		// the fixed difficulty options are not part of the replay, so they're not used
+		final float multiplier = GameMod.getDifficultyMultiplier();
+		final float circleSize = Math.min(this.beatmap.circleSize * multiplier, 10f);
+		final float approachRate = Math.min(this.beatmap.approachRate * multiplier, 10f);
+		final float overallDifficulty = Math.min(this.beatmap.overallDifficulty * multiplier, 10f);
+		final float HPDrainRate = Math.min(this.beatmap.HPDrainRate * multiplier, 10f);
+
+		final float diameter = Game.getCircleDiameter(circleSize);
+		HitObject.setStackOffset(diameter * Game.STACK_OFFSET_MODIFIER);
+		this.circleRadius = diameter * HitObject.getXMultiplier() / 2;
+		this.approachTime = Game.getApproachTime(approachRate);
+		this.hitResultOffset = Game.calculateHitResultOffsets(overallDifficulty);
+		// the game uses the screen center, which is at most a pixel away
+		this.centerX = 256 * HitObject.getXMultiplier() + HitObject.getXOffset();
+		this.centerY = 192 * HitObject.getYMultiplier() + HitObject.getYOffset();
+
+		this.data = new GameData();
+		this.data.setHeadless(true);
+		this.data.setHitResultOffset(this.hitResultOffset);
+		this.data.setDrainRate(HPDrainRate);
+		this.data.calculateDifficultyMultiplier(
+			this.beatmap.HPDrainRate,
+			this.beatmap.circleSize,
+			this.beatmap.overallDifficulty
+		);
+
+		this.objectIndex = 0;
+		this.breakIndex = 0;
+		this.breakTime = 0;
+		this.deaths = 0;
+		this.failTime = -1;
+		this.hitErrors = new ArrayList<>();
+		this.lifeFrames = new ArrayList<>();
+		this.lastLifeFrameTime = 0;
+		this.context = new HitObjectJudgement.Context()
+		{
+			@Override
+			public int[] getHitResultOffsets()
+			{
+				return hitResultOffset;
+			}
+
+			@Override
+			public float getCircleRadius()
+			{
+				return circleRadius;
+			}
+
+			@Override
+			public void addHitError(int time, int x, int y, int timeDiff)
+			{
+				hitErrors.add(new HitError(time, x, y, timeDiff));
+			}
+		};
+
+		final HitObject[] hitObjects = this.beatmap.objects;
+		final List<TimingPoint> timingPoints = this.beatmap.timingPoints;
+		this.objects = new HitObjectJudgement[hitObjects.length];
+		int timingPointIndex = 0;
+		float beatLengthBase = 1, beatLength = 1;
+		if (!timingPoints.isEmpty() && !timingPoints.get(0).isInherited()) {
+			beatLengthBase = beatLength = timingPoints.get(0).getBeatLength();
+			timingPointIndex++;
+		}
+		for (int i = 0; i < hitObjects.length; i++) {
+			final HitObject hitObject = hitObjects[i];
+			final boolean comboEnd = i + 1 >= hitObjects.length || hitObjects[i + 1].isNewCombo();
+
+			// pass beatLength to hit objects
+			while (timingPointIndex < timingPoints.size()) {
+				final TimingPoint timingPoint = timingPoints.get(timingPointIndex);
+				if (timingPoint.getTime() > hitObject.getTime()) {
+					break;
+				}
+				if (!timingPoint.isInherited()) {
+					beatLengthBase = beatLength = timingPoint.getBeatLength();
+				} else {
+					beatLength = beatLengthBase * timingPoint.getSliderMultiplier();
+				}
+				timingPointIndex++;
+			}
+
+			if (hitObject.isSlider()) {
+				this.objects[i] = new SimulatedSlider(hitObject, comboEnd, beatLength, beatLength / beatLengthBase);
+			} else if (hitObject.isSpinner()) {
+				this.objects[i] = new SpinnerJudgement(this.context, hitObject, this.data,
+					overallDifficulty, this.centerX, this.centerY);
+			} else {
+				this.objects[i] = new CircleJudgement(this.context, hitObject, this.data, comboEnd);
+			}
+		}
+
+		if (!this.beatmap.stacksCalculated) {
+			this.calculateStacks();
+		}
+	}
+
+	/**
+	 * Calculates the stacks like {@link Game} does, and updates the object positions.
+	 */
+	private void calculateStacks()
+	{
+		final int count = this.objects.length;
+		final float[] starts = new float[count * 2], ends = new float[count * 2];
+		Arrays.fill(ends, Float.NaN);
+		final int[] endTimes = new int[count];
+		for (int i = 0; i < count; i++) {
+			final HitObjectJudgement object = this.objects[i];
+			starts[i * 2] = this.beatmap.objects[i].getScaledX();
+			starts[i * 2 + 1] = this.beatmap.objects[i].getScaledY();
+			endTimes[i] = object.getEndTime();
+			if (object instanceof SimulatedSlider) {
+				((SimulatedSlider) object).getEndPoint(ends, i * 2);
+			}
+		}
+		Game.calculateStacks(this.beatmap, starts, ends, endTimes);
+		for (int i = 0; i < count; i++) {
+			if (this.beatmap.objects[i].getStack() != 0) {
+				this.objects[i].updatePosition();
+			}
+		}
+	}
+
+	/**
+	 * Runs the replay frames, then keeps updating with the last cursor position
+	 * and keys until all objects are judged.
+	 */
+	private void simulate()
+	{
+		final ReplayFrame[] frames = this.frames;
+		int mouseX = (int) this.centerX, mouseY = (int) this.centerY;
+
+		// skip the start frames, like Game#setReplay
+		int index = 0;
+		for (; index < frames.length; index++) {
+			final ReplayFrame frame = frames[index];
+			if (frame.getY() < 0) {
+				continue;
+			}
+			if (frame.getTime() != 0) {
+				break;
+			}
+			mouseX = frame.getScaledX();
+			mouseY = frame.getScaledY();
+		}
+
+		int keys = ReplayFrame.KEY_NONE;
+		int time = index < frames.length ? frames[index].getTime() : 0;
+		for (; index < frames.length; index++) {
+			final ReplayFrame frame = frames[index];
+			int delta = frame.getTimeDiff();
+			if (this.timestep > 0) {
+				while (frame.getTime() - time > this.timestep) {
+					time += this.timestep;
+					this.update(mouseX, mouseY, this.timestep, time, keys);
+				}
+				delta = frame.getTime() - time;
+			}
+			mouseX = frame.getScaledX();
+			mouseY = frame.getScaledY();
+			final int frameKeys = frame.getKeys();
+			if ((frameKeys & ~keys) != ReplayFrame.KEY_NONE) {
+				this.keyPress(mouseX, mouseY, frame.getTime());
+			} else if (frameKeys == keys) {
+				this.update(mouseX, mouseY, delta, frame.getTime(), frameKeys);
+			}
+			keys = frameKeys;
+			time = frame.getTime();
+		}
+
+		final int step = this.timestep > 0 ? this.timestep : END_TIMESTEP;
+		while (this.objectIndex < this.objects.length) {
+			time += step;
+			this.update(mouseX, mouseY, step, time, keys);
+		}
+		this.lifeFrames.add(new LifeFrame(time, this.data.getHealth() / 100f));
+	}
+
+	/**
+	 * Hits the current object, like {@code Game#sendGameKeyPress}.
+	 */
+	private void keyPress(int x, int y, int trackPosition)
+	{
+		if (this.objectIndex >= this.objects.length) {
+			return;
+		}
+		final HitObject hitObject = this.beatmap.objects[this.objectIndex];
+		final HitObjectJudgement object = this.objects[this.objectIndex];
+		if (hitObject.isCircle() && object.mousePressed(x, y, trackPosition)) {
+			this.objectIndex++;
+		} else if (hitObject.isSlider()) {
+			object.mousePressed(x, y, trackPosition);
+		}
+	}
+
+	/**
+	 * Updates the objects, like {@code Game#updateGame} does.
+	 */
+	private void update(int mouseX, int mouseY, int delta, int trackPosition, int keys)
+	{
+		if (this.objectIndex >= this.objects.length) {
+			return;
+		}
+		final HitObject[] hitObjects = this.beatmap.objects;
+
+		// song beginning
+		if (this.objectIndex == 0 && trackPosition < hitObjects[0].getTime()) {
+			return;
+		}
+
+		// break periods
+		if (this.beatmap.breaks != null && this.breakIndex < this.beatmap.breaks.size()) {
+			final int breakValue = this.beatmap.breaks.get(this.breakIndex);
+			if (this.breakTime > 0) {
+				if (trackPosition < breakValue &&
+					trackPosition < hitObjects[this.objectIndex].getTime() - this.approachTime)
+				{
+					return;
+				}
+				this.breakTime = 0;
+				this.breakIndex++;
+			} else if (trackPosition >= breakValue) {
+				this.breakTime = breakValue;
+				this.breakIndex++;
+				return;
+			}
+		}
+
+		// drain health
+		this.data.changeHealth(delta * -1 * GameData.HP_DRAIN_MULTIPLIER);
+		if (!this.data.isAlive()) {
+			// "Easy" mod: the game pauses the track until the health bar is filled again
+			if (GameMod.EASY.isActive() && !GameMod.SUDDEN_DEATH.isActive()) {
+				this.deaths++;
+				if (this.deaths < 3) {
+					this.data.changeHealth(99f - this.data.getHealth());
+					return;
+				}
+			}
+			// replays continue after failing
+			if (this.failTime == -1) {
+				this.failTime = trackPosition;
+			}
+		}
+
+		// update objects (loop in unlikely event of any skipped indexes)
+		final boolean keyPressed = keys != ReplayFrame.KEY_NONE;
+		while (this.objectIndex < this.objects.length &&
+			trackPosition > hitObjects[this.objectIndex].getTime())
+		{
+			// check if we've already passed the next object's start time
+			final boolean overlap = this.objectIndex + 1 < this.objects.length &&
+				trackPosition > hitObjects[this.objectIndex + 1].getTime() - this.hitResultOffset[GameData.HIT_50];
+			final HitObjectJudgement object = this.objects[this.objectIndex];
+			if (!object.update(overlap, delta, mouseX, mouseY, keyPressed, trackPosition)) {
+				break;
+			}
+			this.objectIndex++;
+		}
+
+		if (this.lifeFrames.isEmpty() || trackPosition - this.lastLifeFrameTime >= LIFE_FRAME_INTERVAL) {
+			this.lifeFrames.add(new LifeFrame(trackPosition, this.data.getHealth() / 100f));
+			this.lastLifeFrameTime = trackPosition;
+		}
+	}
+
+	/**
+	 * Slider judgement with the curve from the curve cache of the beatmap.
+	 */
+	private class SimulatedSlider extends SliderJudgement
+	{
+		private final float[] point = new float[2];
+		private Curve curve;
+
+		/**
+		 * @param beatLength the beat length at the time of the slider
+		 * @param timingPointMultiplier the slider multiplier of the timing point
+		 */
+		SimulatedSlider(HitObject hitObject, boolean comboEnd, float beatLength, float timingPointMultiplier)
+		{
+			super(ReplaySimulator.this.context, hitObject, ReplaySimulator.this.data, comboEnd,
+				beatmap.sliderMultiplier, beatmap.sliderTickRate, beatLength, timingPointMultiplier);
+			this.curve = beatmap.getCurveCache().get(hitObject, true);
+		}
+
+		@Override
+		public void updatePosition()
+		{
+			super.updatePosition();
+			this.curve = beatmap.getCurveCache().get(this.hitObject, true);
+		}
+
+		@Override
+		protected Curve getCurve()
+		{
+			return this.curve;
+		}
+
+		/**
+		 * Writes the position of the slider at its end time, like {@code Slider#getPointAt}.
+		 */
+		void getEndPoint(float[] out, int offset)
+		{
+			if (this.hitObject.getRepeatCount() % 2 == 0) {
+				out[offset] = this.x;
+				out[offset + 1] = this.y;
+				return;
+			}
+			this.curve.pointAt(1f, this.point);
+			out[offset] = this.point[0];
+			out[offset + 1] = this.point[1];
+		}
+	}
+
+	/**
+	 * A hit on a circle or slider start, like the hit error bar in the game shows.
+	 */
+	public static class HitError
+	{
+		/** The object time. */
+		public final int time;
+
+		/** The scaled cursor coordinates. */
+		public final int x, y;
+
+		/** The difference between the hit time and the object time, negative if early. */
+		public final int timeDiff;
+
+		HitError(int time, int x, int y, int timeDiff)
+		{
+			this.time = time;
+			this.x = x;
+			this.y = y;
+			this.timeDiff = timeDiff;
+		}
+	}
+
+	public static class Result
+	{
+		/** The score, with the game mods of the replay. */
+		public final ScoreData score;
+
+		/** The hits, in order. */
+		public final HitError[] hitErrors;
+
+		/** The health (in [0, 1]) over time. */
+		public final LifeFrame[] lifeFrames;
+
+		/**
+		 * The time at which the health was depleted without a way to recover,
+		 * or -1 if it never was. The game doesn't stop replays when this happens.
+		 */
+		public final int failTime;
+
+		Result(ScoreData score, HitError[] hitErrors, LifeFrame[] lifeFrames, int failTime)
+		{
+			this.score = score;
+			this.hitErrors = hitErrors;
+			this.lifeFrames = lifeFrames;
+			this.failTime = failTime;
+		}
+	}
+}
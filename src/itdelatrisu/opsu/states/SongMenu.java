@@ -27,6 +27,7 @@ import itdelatrisu.opsu.audio.SoundEffect;
 import itdelatrisu.opsu.beatmap.Beatmap;
 import itdelatrisu.opsu.beatmap.BeatmapDifficultyCalculator;
 import itdelatrisu.opsu.beatmap.BeatmapGroup;
+import itdelatrisu.opsu.beatmap.BeatmapParser;
 import itdelatrisu.opsu.beatmap.BeatmapSet;
 import itdelatrisu.opsu.beatmap.BeatmapSortOrder;
 import itdelatrisu.opsu.beatmap.BeatmapWatchService;
@@ -46,10 +47,12 @@ import itdelatrisu.opsu.ui.UI;
 import itdelatrisu.opsu.ui.animations.AnimatedValue;
 import itdelatrisu.opsu.ui.animations.AnimationEquation;
 
-import java.nio.file.Path;
-import java.nio.file.StandardWatchEventKinds;
-import java.nio.file.WatchEvent.Kind;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.lwjgl.input.Mouse;
 import org.newdawn.slick.Color;
@@ -132,8 +135,14 @@ public class SongMenu extends BaseOpsuState
 		/** If true, also clear the beatmap cache and invoke the unpacker. */
 		private final boolean fullReload;
 
+		/** The changed directories to reload, or null to reload all directories. */
+		private final List<File> dirs;
+
+		/** The reparsed sets of the changed directories, to apply on the main thread. */
+		private BeatmapParser.DirectoryUpdate update;
+
 		/** Whether this thread has completed execution. */
-		private boolean finished = false;
+		private volatile boolean finished = false;
 
 		/** Returns true only if this thread has completed execution. */
 		public boolean isFinished() { return finished; }
@@ -141,9 +150,11 @@ public class SongMenu extends BaseOpsuState
 		/**
 		 * Constructor.
 		 * @param fullReload if true, also clear the beatmap cache and invoke the unpacker
+		 * @param dirs the changed directories to reload, or null to reload all directories
 		 */
-		public BeatmapReloadThread(boolean fullReload) {
+		public BeatmapReloadThread(boolean fullReload, List<File> dirs) {
 			this.fullReload = fullReload;
+			this.dirs = dirs;
 		}
 
 		@Override
@@ -155,8 +166,12 @@ public class SongMenu extends BaseOpsuState
 			}
 		}
 
-		/** Reloads all beatmaps. */
+		/** Reloads all beatmaps, or only the changed directories. */
 		private void reloadBeatmaps() {
+			if (dirs != null) {
+				update = beatmapParser.updateDirectories(dirs);
+				return;
+			}
 			if (fullReload) {
 				BeatmapDB.clearDatabase();
 				oszunpacker.unpackAll();
@@ -192,6 +207,9 @@ public class SongMenu extends BaseOpsuState
 	/** Whether the song folder changed (notified via the watch service). */
 	private boolean songFolderChanged = false;
 
+	/** The beatmap set directories that changed since the last reload (notified via the watch service). */
+	private final Set<File> changedDirs = new LinkedHashSet<>();
+
 	/** Timer for animations when a new song node is selected. */
 	private AnimatedValue songChangeTimer = new AnimatedValue(900, 0f, 1f, AnimationEquation.LINEAR);
 
@@ -359,8 +377,11 @@ public class SongMenu extends BaseOpsuState
 		// beatmap watch service listener
 		BeatmapWatchService.addListener(new BeatmapWatchServiceListener() {
 			@Override
-			public void eventReceived(Kind<?> kind, Path child) {
-				if (songFolderChanged || kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+			public void directoriesChanged(List<File> dirs) {
+				synchronized (changedDirs) {
+					changedDirs.addAll(dirs);
+				}
+				if (songFolderChanged) {
 					return;
 				}
 				songFolderChanged = true;
@@ -545,6 +566,13 @@ public class SongMenu extends BaseOpsuState
 				color4.a = oldAlpha4;
 			}
 			c.a = oldAlpha;
+
+			// background star rating calculations
+			if (starRatingService.isRunning()) {
+				textY += Fonts.SMALL.getLineHeight();
+				Fonts.SMALL.drawString(textX, textY, String.format("Calculating star ratings (%d/%d)...",
+					starRatingService.getCalculatedCount(), starRatingService.getTotalCount()), Colors.WHITE_FADE);
+			}
 		}
 
 		// selection buttons
@@ -725,8 +753,12 @@ public class SongMenu extends BaseOpsuState
 		if (reloadThread == null)
 			MusicController.loopTrackIfEnded(true);
 		else if (reloadThread.isFinished()) {
-			BeatmapGroup.current = BeatmapGroup.ALL;
-			BeatmapSortOrder.current = BeatmapSortOrder.TITLE;
+			if (reloadThread.dirs == null) {
+				BeatmapGroup.current = BeatmapGroup.ALL;
+				BeatmapSortOrder.current = BeatmapSortOrder.TITLE;
+			} else if (reloadThread.update != null) {
+				reloadThread.update.apply();
+			}
 			beatmapList.activeGroupChanged();
 			nodeList.recreate();
 			if (beatmapList.getBeatmapSetCount() > 0) {
@@ -735,6 +767,10 @@ public class SongMenu extends BaseOpsuState
 				MusicController.playThemeSong();
 			}
 			reloadThread = null;
+			starRatingService.start();
+		}
+		if (starRatingService.applyResults()) {
+			songInfo = null;
 		}
 		selectModeButton.hoverUpdate(delta, mouseX, mouseY);
 		selectModsButton.hoverUpdate(delta, mouseX, mouseY);
@@ -1426,11 +1462,18 @@ public class SongMenu extends BaseOpsuState
 	}
 
 	/**
-	 * Reloads all beatmaps.
+	 * Reloads all beatmaps, or only the directories that changed since the
+	 * last reload if this is not a full reload.
 	 * @param fullReload if true, also clear the beatmap cache and invoke the unpacker
 	 */
 	private void reloadBeatmaps(final boolean fullReload) {
 		songFolderChanged = false;
+		List<File> dirs = null;
+		synchronized (changedDirs) {
+			if (!fullReload && !changedDirs.isEmpty())
+				dirs = new ArrayList<>(changedDirs);
+			changedDirs.clear();
+		}
 
 		// reset state and node references
 		MusicController.reset();
@@ -1444,7 +1487,8 @@ public class SongMenu extends BaseOpsuState
 		dynBg.reset();
 
 		// reload songs in new thread
-		reloadThread = new BeatmapReloadThread(fullReload);
+		starRatingService.stop();
+		reloadThread = new BeatmapReloadThread(fullReload, dirs);
 		reloadThread.start();
 	}
 
@@ -1465,6 +1509,7 @@ public class SongMenu extends BaseOpsuState
 		if (beatmapSet == null) {
 			return;
 		}
+		starRatingService.requestDifficultyAttributes(beatmapSet);
 		boolean needCalc = false;
 		for (int i = 0; i < beatmapSet.beatmaps.length; i++) {
 			if (beatmapSet.beatmaps[i].starRating < 0) {
@@ -1501,6 +1546,7 @@ public class SongMenu extends BaseOpsuState
 			// save star rating
 			beatmap.starRating = diffCalc.getStarRating();
 			BeatmapDB.setStars(beatmap);
+			beatmapList.metadata.update(beatmap);
 			beatmapsCalculated.put(beatmap, !hasTimingPoints);
 		}
 	}
@@ -92,6 +92,7 @@ public class Splash extends BaseOpsuState {
 		}
 
 		nodeList.recreate();
+		starRatingService.start();
 		if (OPTION_ENABLE_THEME_SONG.state || beatmapList.getBeatmapSetCount() == 0) {
 			MusicController.playThemeSong();
 		} else {
@@ -34,6 +34,7 @@ import itdelatrisu.opsu.db.ScoreDB;
 import itdelatrisu.opsu.objects.Circle;
 import itdelatrisu.opsu.objects.DummyObject;
 import itdelatrisu.opsu.objects.GameObject;
+import itdelatrisu.opsu.objects.HitObjectJudgement;
 import itdelatrisu.opsu.objects.Slider;
 import itdelatrisu.opsu.objects.Spinner;
 import itdelatrisu.opsu.objects.curves.Curve;
@@ -71,6 +72,7 @@ import yugecin.opsudance.ui.OptionsOverlay;
 import yugecin.opsudance.ui.StoryboardOverlay;
 import yugecin.opsudance.ui.cursor.colors.CursorColorManager;
 import yugecin.opsudance.utils.GLHelper;
+import yugecin.opsudance.utils.PointGrid;
 
 import static itdelatrisu.opsu.GameImage.*;
 import static itdelatrisu.opsu.ui.Colors.*;
@@ -83,7 +85,7 @@ import static yugecin.opsudance.core.InstanceContainer.*;
 /**
  * "Game" state.
  */
-public class Game extends ComplexOpsuState {
+public class Game extends ComplexOpsuState implements HitObjectJudgement.Context {
 
 	public static boolean isInGame; // TODO delete this when #79 is fixed
 	/** Game restart states. */
@@ -125,7 +127,7 @@ public class Game extends ComplexOpsuState {
 	private static final int STACK_TIMEOUT = 1000;
 
 	/** Stack position offset modifier. */
-	private static final float STACK_OFFSET_MODIFIER = 0.05f;
+	public static final float STACK_OFFSET_MODIFIER = 0.05f;
 
 	/** The associated beatmap. */
 	private Beatmap beatmap;
@@ -1480,6 +1482,9 @@ public class Game extends ComplexOpsuState {
 
 		super.enter();
 
+		// leave the processing time to the game
+		starRatingService.setThrottled(true);
+
 		displayContainer.drawCursor = false;
 
 		isInGame = true;
@@ -1518,6 +1523,7 @@ public class Game extends ComplexOpsuState {
 		// update play stats
 		if (restartReason == RestartReason.NEWGAME) {
 			beatmap.incrementPlayCounter();
+			beatmapList.metadata.update(beatmap);
 			BeatmapDB.updatePlayStatistics(beatmap);
 		}
 
@@ -1552,6 +1558,7 @@ public class Game extends ComplexOpsuState {
 			retries = 0;
 		}
 
+		Slider.discardPendingCurves();
 		gameObjects = new GameObject[beatmap.objects.length];
 		playbackSpeed = PlaybackSpeed.NORMAL;
 
@@ -1611,6 +1618,11 @@ public class Game extends ComplexOpsuState {
 		// stack calculations
 		calculateStacks();
 
+		// cache the parsed hit objects (including stacks) for next time
+		if (!beatmap.objectsCached) {
+			BeatmapDB.saveHitObjects(beatmap, comboColors.length);
+		}
+
 		// load the first timingPoint
 		timingPointIndex = 0;
 		beatLengthBase = beatLength = 1;
@@ -1709,11 +1721,11 @@ public class Game extends ComplexOpsuState {
 					}
 				}
 				if (totalpoints > 0) {
-					Vec2f[] combinedcurve = new Vec2f[totalpoints];
+					float[] combinedcurve = new float[totalpoints * 2];
 					int idx = 0;
 					for (Slider s : sliders) {
 						int len = s.getCurvePointsCount();
-						arraycopy(s.getCurvePoints(), 0, combinedcurve, idx, len);
+						arraycopy(s.getCurvePoints(), 0, combinedcurve, idx * 2, len * 2);
 						idx += len;
 					}
 					knorkesliders = new FakeCombinedCurve(combinedcurve);
@@ -1752,6 +1764,8 @@ public class Game extends ComplexOpsuState {
 	{
 		super.leave();
 
+		starRatingService.setThrottled(false);
+
 		Display.setTitle(Constants.PROJECT_NAME);
 
 		this.pauseOverlay.hide();
@@ -1965,6 +1979,10 @@ public class Game extends ComplexOpsuState {
 	 * @param beatmap the beatmap to load
 	 */
 	public void loadBeatmap(Beatmap beatmap) {
+		if (this.beatmap != null && this.beatmap != beatmap) {
+			// keep the curves for retries, but not for other beatmaps
+			this.beatmap.clearCurveCache();
+		}
 		this.beatmap = beatmap;
 		if (beatmap.breaks == null) {
 			BeatmapDB.load(beatmap, BeatmapDB.LOAD_ARRAY);
@@ -2089,8 +2107,7 @@ public class Game extends ComplexOpsuState {
 
 		// Stack modifier scales with hit object size
 		// StackOffset = HitObjectRadius / 10
-		//int diameter = (int) (104 - (circleSize * 8));
-		float diameter = 108.848f - (circleSize * 8.9646f);
+		float diameter = getCircleDiameter(circleSize);
 		HitObject.setStackOffset(diameter * STACK_OFFSET_MODIFIER);
 
 		// initialize objects
@@ -2104,22 +2121,10 @@ public class Game extends ComplexOpsuState {
 		Curve.init(diameter, sliderBorderColor);
 
 		// approachRate (hit object approach time)
-		if (approachRate < 5)
-			approachTime = (int) (1800 - (approachRate * 120));
-		else
-			approachTime = (int) (1200 - ((approachRate - 5) * 150));
+		approachTime = getApproachTime(approachRate);
 
 		// overallDifficulty (hit result time offsets)
-		hitResultOffset = new int[GameData.HIT_MAX];
-		hitResultOffset[GameData.HIT_300]  = (int) (79.5f - (overallDifficulty * 6));
-		hitResultOffset[GameData.HIT_100]  = (int) (139.5f - (overallDifficulty * 8));
-		hitResultOffset[GameData.HIT_50]   = (int) (199.5f - (overallDifficulty * 10));
-		hitResultOffset[GameData.HIT_MISS] = (int) (500 - (overallDifficulty * 10));
-		//final float mult = 0.608f;
-		//hitResultOffset[GameData.HIT_300]  = (int) ((128 - (overallDifficulty * 9.6)) * mult);
-		//hitResultOffset[GameData.HIT_100]  = (int) ((224 - (overallDifficulty * 12.8)) * mult);
-		//hitResultOffset[GameData.HIT_50]   = (int) ((320 - (overallDifficulty * 16)) * mult);
-		//hitResultOffset[GameData.HIT_MISS] = (int) ((1000 - (overallDifficulty * 10)) * mult);
+		hitResultOffset = calculateHitResultOffsets(overallDifficulty);
 		data.setHitResultOffset(hitResultOffset);
 
 		// HPDrainRate (health change)
@@ -2137,6 +2142,44 @@ public class Game extends ComplexOpsuState {
 		hiddenTimeDiff = (int) (approachTime / 3.3f);
 	}
 
+	/**
+	 * Returns the hit object approach time for an approach rate, in milliseconds.
+	 * @param approachRate the approach rate, with game mods applied
+	 */
+	public static int getApproachTime(float approachRate) {
+		if (approachRate < 5)
+			return (int) (1800 - (approachRate * 120));
+		return (int) (1200 - ((approachRate - 5) * 150));
+	}
+
+	/**
+	 * Returns the hit object diameter for a circle size, in osu!pixels.
+	 * @param circleSize the circle size, with game mods applied
+	 */
+	public static float getCircleDiameter(float circleSize) {
+		//int diameter = (int) (104 - (circleSize * 8));
+		return 108.848f - (circleSize * 8.9646f);
+	}
+
+	/**
+	 * Calculates the hit result offset times for an overall difficulty.
+	 * @param overallDifficulty the overall difficulty, with game mods applied
+	 * @return the offsets in milliseconds, indexed by GameData.HIT_* constants
+	 */
+	public static int[] calculateHitResultOffsets(float overallDifficulty) {
+		int[] hitResultOffset = new int[GameData.HIT_MAX];
+		hitResultOffset[GameData.HIT_300]  = (int) (79.5f - (overallDifficulty * 6));
+		hitResultOffset[GameData.HIT_100]  = (int) (139.5f - (overallDifficulty * 8));
+		hitResultOffset[GameData.HIT_50]   = (int) (199.5f - (overallDifficulty * 10));
+		hitResultOffset[GameData.HIT_MISS] = (int) (500 - (overallDifficulty * 10));
+		//final float mult = 0.608f;
+		//hitResultOffset[GameData.HIT_300]  = (int) ((128 - (overallDifficulty * 9.6)) * mult);
+		//hitResultOffset[GameData.HIT_100]  = (int) ((224 - (overallDifficulty * 12.8)) * mult);
+		//hitResultOffset[GameData.HIT_50]   = (int) ((320 - (overallDifficulty * 16)) * mult);
+		//hitResultOffset[GameData.HIT_MISS] = (int) ((1000 - (overallDifficulty * 10)) * mult);
+		return hitResultOffset;
+	}
+
 	/**
 	 * Returns whether or not the track is in the lead-in time state.
 	 */
@@ -2176,8 +2219,17 @@ public class Game extends ComplexOpsuState {
 	/**
 	 * Returns an array of hit result offset times, in milliseconds (indexed by GameData.HIT_* constants).
 	 */
+	@Override
 	public int[] getHitResultOffsets() { return hitResultOffset; }
 
+	@Override
+	public float getCircleRadius() { return gameObjectRenderer.circleDiameter / 2; }
+
+	@Override
+	public void addHitError(int time, int x, int y, int timeDiff) {
+		data.addHitError(time, x, y, timeDiff);
+	}
+
 	/**
 	 * Returns the beat length.
 	 */
@@ -2370,11 +2422,81 @@ public class Game extends ComplexOpsuState {
 	/**
 	 * Performs stacking calculations on all hit objects, and updates their
 	 * positions if necessary.
-	 * @author peppy (https://gist.github.com/peppy/1167470)
+	 * @see #calculateStacks(Beatmap, float[], float[], int[])
 	 */
 	private void calculateStacks() {
+		// the stacks don't depend on game mods
+		if (beatmap.stacksCalculated)
+			return;
+
+		final int count = gameObjects.length;
+		float[] starts = new float[count * 2], ends = new float[count * 2];
+		Arrays.fill(ends, Float.NaN);
+		int[] endTimes = new int[count];
+		for (int i = 0; i < count; i++) {
+			HitObject hitObject = beatmap.objects[i];
+			Vec2f p = gameObjects[i].getPointAt(hitObject.getTime());
+			starts[i * 2] = p.x;
+			starts[i * 2 + 1] = p.y;
+			endTimes[i] = gameObjects[i].getEndTime();
+			if (hitObject.isSlider()) {
+				p = gameObjects[i].getPointAt(endTimes[i]);
+				ends[i * 2] = p.x;
+				ends[i * 2 + 1] = p.y;
+			}
+		}
+		calculateStacks(beatmap, starts, ends, endTimes);
+
+		// update hit object positions
+		for (int i = 0; i < gameObjects.length; i++) {
+			if (beatmap.objects[i].getStack() != 0)
+				gameObjects[i].updatePosition();
+		}
+	}
+
+	/**
+	 * Performs stacking calculations on all hit objects of a beatmap, without
+	 * updating the positions of their game objects.
+	 * <p>
+	 * Hit objects that can be part of a stack are looked up in grids of their
+	 * positions instead of comparing every pair of objects in the time window.
+	 * The stacks are stored with the hit objects, so this only runs once per beatmap.
+	 * @param beatmap the beatmap, with its hit objects loaded
+	 * @param starts the scaled x, y coordinates of the objects at their start time
+	 * @param ends the scaled x, y coordinates of the slider ends (NaN for other objects)
+	 * @param endTimes the end times of the objects
+	 * @author peppy (https://gist.github.com/peppy/1167470)
+	 */
+	public static void calculateStacks(Beatmap beatmap, float[] starts, float[] ends, int[] endTimes) {
+		final int count = beatmap.objects.length;
+		final float scaledLenience = STACK_LENIENCE * HitObject.getXMultiplier();
+		final float stackTimeout = STACK_TIMEOUT * beatmap.stackLeniency;
+
+		// unscaled positions of the hit objects (NaN for objects that aren't looked up)
+		float[] positions = new float[count * 2];
+		Arrays.fill(positions, Float.NaN);
+		// times that are compared with the stack timeout (end times for sliders)
+		int[] times = new int[count];
+		boolean sorted = true;
+		for (int i = 0; i < count; i++) {
+			HitObject hitObject = beatmap.objects[i];
+			if (i > 0 && hitObject.getTime() < beatmap.objects[i - 1].getTime())
+				sorted = false;
+			if (hitObject.isSpinner()) {
+				times[i] = Integer.MAX_VALUE;  // never ends the search
+				continue;
+			}
+			positions[i * 2] = hitObject.getX();
+			positions[i * 2 + 1] = hitObject.getY();
+			times[i] = hitObject.isSlider() ? endTimes[i] : hitObject.getTime();
+		}
+		PointGrid positionGrid = new PointGrid(positions, STACK_LENIENCE);
+		PointGrid startGrid = new PointGrid(starts, scaledLenience);
+		PointGrid sliderEndGrid = new PointGrid(ends, scaledLenience);
+		int[] found = new int[count];
+
 		// reverse pass for stack calculation
-		for (int i = gameObjects.length - 1; i > 0; i--) {
+		for (int i = count - 1; i > 0; i--) {
 			HitObject hitObjectI = beatmap.objects[i];
 
 			// already calculated
@@ -2382,57 +2504,56 @@ public class Game extends ComplexOpsuState {
 				continue;
 
 			// search for hit objects in stack
-			for (int n = i - 1; n >= 0; n--) {
-				HitObject hitObjectN = beatmap.objects[n];
-				if (hitObjectN.isSpinner())
-					continue;
+			float p1x = starts[i * 2], p1y = starts[i * 2 + 1];
+			int n = i;
+			while (true) {
+				// check if in range stack calculation: the first object that ends too early stops the search
+				float timeI = hitObjectI.getTime() - stackTimeout;
+				int last = n - 1;
+				if (sorted) {
+					// objects that start within the range can't end too early
+					int low = 0;
+					while (low <= last) {
+						int mid = (low + last) >>> 1;
+						if (timeI > beatmap.objects[mid].getTime())
+							low = mid + 1;
+						else
+							last = mid - 1;
+					}
+				}
+				while (last >= 0 && !(timeI > times[last]))
+					last--;
 
-				// check if in range stack calculation
-				float timeI = hitObjectI.getTime() - (STACK_TIMEOUT * beatmap.stackLeniency);
-				float timeN = hitObjectN.isSlider() ? gameObjects[n].getEndTime() : hitObjectN.getTime();
-				if (timeI > timeN)
-					break;
+				int stacked = positionGrid.previous(hitObjectI.getX(), hitObjectI.getY(), n, last);
 
 				// possible special case: if slider end in the stack,
 				// all next hit objects in stack move right down
-				if (hitObjectN.isSlider()) {
-					Vec2f p1 = gameObjects[i].getPointAt(hitObjectI.getTime());
-					Vec2f p2 = gameObjects[n].getPointAt(gameObjects[n].getEndTime());
-					float distance = Utils.distance(p1.x, p1.y, p2.x, p2.y);
-
-					// check if hit object part of this stack
-					if (distance < STACK_LENIENCE * HitObject.getXMultiplier()) {
-						int offset = hitObjectI.getStack() - hitObjectN.getStack() + 1;
-						for (int j = n + 1; j <= i; j++) {
-							HitObject hitObjectJ = beatmap.objects[j];
-							p1 = gameObjects[j].getPointAt(hitObjectJ.getTime());
-							distance = Utils.distance(p1.x, p1.y, p2.x, p2.y);
-
-							// hit object below slider end
-							if (distance < STACK_LENIENCE * HitObject.getXMultiplier())
-								hitObjectJ.setStack(hitObjectJ.getStack() - offset);
-						}
-						break;  // slider end always start of the stack: reset calculation
+				int sliderN = sliderEndGrid.previous(p1x, p1y, n, Math.max(last, stacked - 1));
+				if (sliderN != -1) {
+					HitObject hitObjectN = beatmap.objects[sliderN];
+					float p2x = ends[sliderN * 2], p2y = ends[sliderN * 2 + 1];
+					int offset = hitObjectI.getStack() - hitObjectN.getStack() + 1;
+
+					// hit objects below slider end
+					int below = startGrid.collect(p2x, p2y, i + 1, sliderN, found);
+					for (int k = 0; k < below; k++) {
+						HitObject hitObjectJ = beatmap.objects[found[k]];
+						hitObjectJ.setStack(hitObjectJ.getStack() - offset);
 					}
+					break;  // slider end always start of the stack: reset calculation
 				}
 
 				// not a special case: stack moves up left
-				float distance = Utils.distance(
-						hitObjectI.getX(), hitObjectI.getY(),
-						hitObjectN.getX(), hitObjectN.getY()
-				);
-				if (distance < STACK_LENIENCE) {
-					hitObjectN.setStack(hitObjectI.getStack() + 1);
-					hitObjectI = hitObjectN;
-				}
+				if (stacked == -1)
+					break;
+				HitObject hitObjectN = beatmap.objects[stacked];
+				hitObjectN.setStack(hitObjectI.getStack() + 1);
+				hitObjectI = hitObjectN;
+				n = stacked;
 			}
 		}
 
-		// update hit object positions
-		for (int i = 0; i < gameObjects.length; i++) {
-			if (beatmap.objects[i].getStack() != 0)
-				gameObjects[i].updatePosition();
-		}
+		beatmap.stacksCalculated = true;
 	}
 
 	/**
@@ -73,7 +73,8 @@ public class UI {
 
 		// determine current action
 		if ((file = oszunpacker.getCurrentFileName()) != null) {
-			text = "Unpacking new beatmaps...";
+			text = String.format("Unpacking new beatmaps (%d/%d)...",
+					oszunpacker.getUnpackedArchiveCount(), oszunpacker.getArchiveCount());
 			progress = oszunpacker.getUnpackerProgress();
 		} else if ((file = beatmapParser.getCurrentFileName()) != null) {
 			text = (beatmapParser.getStatus() == BeatmapParser.Status.INSERTING) ?
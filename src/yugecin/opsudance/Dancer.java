@@ -93,6 +93,7 @@ public class Dancer {
 	public float y;
 
 	private boolean isCurrentLazySlider;
+	private final float[] sliderPoint = new float[2];
 
 	public Dancer() {
 		moverFactory = moverFactories[0];
@@ -179,10 +180,11 @@ public class Dancer {
 			// detect lazy sliders, should work pretty good
 			if (c.isSlider() && OPTION_DANCE_LAZY_SLIDERS.state && Utils.distance(c.start.x, c.start.y, c.end.x, c.end.y) <= gameObjectRenderer.circleDiameter * 0.8f) {
 				Slider s = (Slider) c;
-				Vec2f mid = s.getCurve().pointAt(1f);
-				if (s.getRepeats() == 1 || Utils.distance(c.start.x, c.start.y, mid.x, mid.y) <= gameObjectRenderer.circleDiameter * 0.8f) {
-					mid = s.getCurve().pointAt(0.5f);
-					if (Utils.distance(c.start.x, c.start.y, mid.x, mid.y) <= gameObjectRenderer.circleDiameter * 0.8f) {
+				final float[] mid = sliderPoint;
+				s.getCurve().pointAt(1f, mid);
+				if (s.getRepeats() == 1 || Utils.distance(c.start.x, c.start.y, mid[0], mid[1]) <= gameObjectRenderer.circleDiameter * 0.8f) {
+					s.getCurve().pointAt(0.5f, mid);
+					if (Utils.distance(c.start.x, c.start.y, mid[0], mid[1]) <= gameObjectRenderer.circleDiameter * 0.8f) {
 						isCurrentLazySlider = true;
 					}
 				}
@@ -52,6 +52,7 @@ public class OpsuDance
 
 		optionservice.saveOptions();
 		closeSingleInstanceSocket();
+		starRatingService.shutdown();
 		DBController.closeConnections();
 		Utils.deleteDirectory(config.TEMP_DIR);
 		if (!OPTION_ENABLE_WATCH_SERVICE.state) {
@@ -0,0 +1,698 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package yugecin.opsudance.beatmap;
+
+import java.util.Arrays;
+
+import itdelatrisu.opsu.beatmap.Beatmap;
+import yugecin.opsudance.core.Nullable;
+
+/**
+ * Columnar copy of the beatmap metadata that is used for searching and sorting.
+ * <p>
+ * Every beatmap in the list gets a slot ({@link Beatmap#metadataSlot}), numeric
+ * values are kept in primitive arrays indexed by that slot and the lowercase
+ * search strings are dictionary encoded, so that maps sharing a title, artist,
+ * creator or tags (which is every difficulty in a set) share a single string.
+ * The dictionary also keeps a sort rank for each string, so string sort orders
+ * only compare two ints, and a {@link TrigramIndex} to search its strings,
+ * which is only built once a term is long enough to use it.
+ * The numeric columns used by range filters have a lazily built index of the
+ * slots sorted by their value, to find the maps in the most selective range.
+ * <p>
+ * The fields in {@link Beatmap} stay the source of truth, call
+ * {@link #update(Beatmap)} after changing any of the mirrored values.
+ * Not thread safe.
+ */
+public class BeatmapMetadata
+{
+	/** String columns. */
+	public static final int
+		TITLE = 0, TITLE_UNICODE = 1, ARTIST = 2, ARTIST_UNICODE = 3,
+		CREATOR = 4, VERSION = 5, SOURCE = 6, TAGS = 7;
+	public static final int STRING_COLUMNS = 8;
+
+	/** Numeric columns that can be used with {@link #ranges}. */
+	public static final int
+		APPROACH_RATE = 0, CIRCLE_SIZE = 1, OVERALL_DIFFICULTY = 2, HP_DRAIN_RATE = 3,
+		BPM = 4, LENGTH = 5, STARS = 6;
+	public static final int NUMERIC_COLUMNS = 7;
+
+	/** Range operators. */
+	public static final int
+		LESS = 0, LESS_OR_EQUAL = 1, EQUAL = 2, GREATER = 3, GREATER_OR_EQUAL = 4;
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	/**
+	 * Range filters only walk the slots of their smallest range if it has less
+	 * than {@code 1 / RANGE_SCAN_RATIO} of the candidates, walking sorted slots
+	 * jumps around in memory while a scan reads the columns in order.
+	 */
+	private static final int RANGE_SCAN_RATIO = 8;
+
+	/** Dictionary ids of the string columns, at {@code slot * STRING_COLUMNS + column}. */
+	private int[] strings;
+	public float[] approachRate, circleSize, overallDifficulty, HPDrainRate;
+	public int[] bpmMin, bpmMax, endTime, playCount;
+	/** {@code floor(starRating * 100)} */
+	public int[] stars;
+	public long[] dateAdded, lastPlayed;
+
+	private Beatmap[] beatmaps;
+	private int size;
+	private int[] freeSlots;
+	private int freeSlotCount;
+	/** Incremented whenever a map is added or removed, or a value used for searching changes. */
+	private int modifications;
+
+	/**
+	 * Distinct lowercase strings, the index in this array is the dictionary id.
+	 * Ids of released strings are not reused, their entry is an empty string.
+	 */
+	private String[] dictionary;
+	/** Amount of string columns referencing every dictionary entry. */
+	private int[] references;
+	private int dictionarySize;
+	/** Open addressing hash table of {@code dictionary id + 1}, 0 for empty buckets. */
+	private int[] dictionaryTable;
+	/** Index of the dictionary, {@code null} until the first search that can use it. */
+	private TrigramIndex trigrams;
+	/** Slots of all maps sorted by a numeric column, {@code null} when it needs to be rebuilt. */
+	private final int[][] sortedSlots;
+	/** Sort position of every dictionary entry, {@code null} when it needs to be recalculated. */
+	private int[] ranks;
+
+	public BeatmapMetadata()
+	{
+		this.dictionary = new String[INITIAL_CAPACITY];
+		this.references = new int[INITIAL_CAPACITY];
+		this.dictionaryTable = new int[INITIAL_CAPACITY * 2];
+		this.sortedSlots = new int[NUMERIC_COLUMNS][];
+		this.beatmaps = new Beatmap[INITIAL_CAPACITY];
+		this.freeSlots = new int[16];
+		this.strings = new int[INITIAL_CAPACITY * STRING_COLUMNS];
+		this.approachRate = new float[INITIAL_CAPACITY];
+		this.circleSize = new float[INITIAL_CAPACITY];
+		this.overallDifficulty = new float[INITIAL_CAPACITY];
+		this.HPDrainRate = new float[INITIAL_CAPACITY];
+		this.bpmMin = new int[INITIAL_CAPACITY];
+		this.bpmMax = new int[INITIAL_CAPACITY];
+		this.endTime = new int[INITIAL_CAPACITY];
+		this.playCount = new int[INITIAL_CAPACITY];
+		this.stars = new int[INITIAL_CAPACITY];
+		this.dateAdded = new long[INITIAL_CAPACITY];
+		this.lastPlayed = new long[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Assigns a slot to the beatmap and fills in its values.
+	 */
+	public void add(Beatmap beatmap)
+	{
+		if (beatmap.metadataSlot != -1) {
+			this.update(beatmap);
+			return;
+		}
+		final int slot;
+		if (this.freeSlotCount > 0) {
+			slot = this.freeSlots[--this.freeSlotCount];
+		} else {
+			if (this.size == this.beatmaps.length) {
+				this.grow(this.size * 2);
+			}
+			slot = this.size++;
+		}
+		this.beatmaps[slot] = beatmap;
+		beatmap.metadataSlot = slot;
+		final int base = slot * STRING_COLUMNS;
+		this.strings[base + TITLE] = this.encode(beatmap.title);
+		this.strings[base + TITLE_UNICODE] = this.encode(beatmap.titleUnicode);
+		this.strings[base + ARTIST] = this.encode(beatmap.artist);
+		this.strings[base + ARTIST_UNICODE] = this.encode(beatmap.artistUnicode);
+		this.strings[base + CREATOR] = this.encode(beatmap.creator);
+		this.strings[base + VERSION] = this.encode(beatmap.version);
+		this.strings[base + SOURCE] = this.encode(beatmap.source);
+		this.strings[base + TAGS] = this.encode(beatmap.tags);
+		this.approachRate[slot] = beatmap.approachRate;
+		this.circleSize[slot] = beatmap.circleSize;
+		this.overallDifficulty[slot] = beatmap.overallDifficulty;
+		this.HPDrainRate[slot] = beatmap.HPDrainRate;
+		this.bpmMin[slot] = beatmap.bpmMin;
+		this.bpmMax[slot] = beatmap.bpmMax;
+		this.endTime[slot] = beatmap.endTime;
+		this.dateAdded[slot] = beatmap.dateAdded;
+		Arrays.fill(this.sortedSlots, null);
+		this.modifications++;
+		this.update(beatmap);
+	}
+
+	/**
+	 * Copies the values that can change after loading (play stats, star rating)
+	 * from the beatmap into its slot.
+	 */
+	public void update(Beatmap beatmap)
+	{
+		final int slot = beatmap.metadataSlot;
+		if (slot == -1 || this.beatmaps[slot] != beatmap) {
+			return;
+		}
+		final int stars = (int) Math.floor(beatmap.starRating * 100);
+		if (this.stars[slot] != stars) {
+			this.stars[slot] = stars;
+			this.sortedSlots[STARS] = null;
+			this.modifications++;
+		}
+		this.playCount[slot] = beatmap.playCount;
+		this.lastPlayed[slot] = beatmap.lastPlayed;
+	}
+
+	/**
+	 * Releases the slot of the beatmap, and the dictionary entries that are
+	 * no longer used by any other map.
+	 */
+	public void remove(Beatmap beatmap)
+	{
+		final int slot = beatmap.metadataSlot;
+		if (slot == -1 || this.beatmaps[slot] != beatmap) {
+			return;
+		}
+		this.beatmaps[slot] = null;
+		beatmap.metadataSlot = -1;
+		for (int i = slot * STRING_COLUMNS, end = i + STRING_COLUMNS; i < end; i++) {
+			this.release(this.strings[i]);
+		}
+		if (this.freeSlotCount == this.freeSlots.length) {
+			this.freeSlots = Arrays.copyOf(this.freeSlots, this.freeSlotCount * 2);
+		}
+		this.freeSlots[this.freeSlotCount++] = slot;
+		Arrays.fill(this.sortedSlots, null);
+		this.modifications++;
+	}
+
+	/**
+	 * @return the lowercase value of the string column for the map in the given slot
+	 */
+	public String string(int slot, int column)
+	{
+		return this.dictionary[this.strings[slot * STRING_COLUMNS + column]];
+	}
+
+	/**
+	 * Finds the maps that have a string column containing the term.
+	 * @param term lowercase search term
+	 * @return a bitset of the slots of the matching maps
+	 */
+	public long[] findMaps(String term)
+	{
+		final long[] stringSet = this.findStrings(term);
+		final long[] slotSet = new long[(this.size + 63) >>> 6];
+		for (int slot = 0; slot < this.size; slot++) {
+			for (int i = slot * STRING_COLUMNS, end = i + STRING_COLUMNS; i < end; i++) {
+				final int id = this.strings[i];
+				if ((stringSet[id >>> 6] & (1L << id)) != 0) {
+					slotSet[slot >>> 6] |= 1L << slot;
+					break;
+				}
+			}
+		}
+		return slotSet;
+	}
+
+	/**
+	 * Removes the maps that don't have a string column containing the term from
+	 * the set. When only a few maps are left, their strings are tested directly
+	 * instead of searching the whole dictionary.
+	 * @param term lowercase search term
+	 * @param slotSet a bitset of slots, like returned by {@link #findMaps(String)}
+	 */
+	public void refineMaps(String term, long[] slotSet)
+	{
+		int count = 0;
+		for (long bits : slotSet) {
+			count += Long.bitCount(bits);
+		}
+		if (count * STRING_COLUMNS >= this.dictionarySize) {
+			final long[] matches = this.findMaps(term);
+			for (int i = slotSet.length - 1; i >= 0; i--) {
+				slotSet[i] &= matches[i];
+			}
+			return;
+		}
+		for (int i = 0; i < slotSet.length; i++) {
+			long bits = slotSet[i];
+			while (bits != 0) {
+				final long bit = Long.lowestOneBit(bits);
+				bits ^= bit;
+				final int slot = (i << 6) + Long.numberOfTrailingZeros(bit);
+				if (!this.hasString(slot, term)) {
+					slotSet[i] ^= bit;
+				}
+			}
+		}
+	}
+
+	private boolean hasString(int slot, String term)
+	{
+		for (int i = slot * STRING_COLUMNS, end = i + STRING_COLUMNS; i < end; i++) {
+			if (this.dictionary[this.strings[i]].contains(term)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return a bitset of the dictionary ids of the strings that contain the term
+	 */
+	private long[] findStrings(String term)
+	{
+		final long[] set = new long[(this.dictionarySize + 63) >>> 6];
+		if (this.trigrams == null && term.length() >= 3) {
+			this.trigrams = new TrigramIndex();
+			for (int id = 0; id < this.dictionarySize; id++) {
+				this.trigrams.add(id, this.dictionary[id]);
+			}
+		}
+		final int[] candidates = this.trigrams == null ? null : this.trigrams.candidates(term);
+		if (candidates == null) {
+			for (int id = 0; id < this.dictionarySize; id++) {
+				if (this.dictionary[id].contains(term)) {
+					set[id >>> 6] |= 1L << id;
+				}
+			}
+			return set;
+		}
+		for (int id : candidates) {
+			if (this.dictionary[id].contains(term)) {
+				set[id >>> 6] |= 1L << id;
+			}
+		}
+		return set;
+	}
+
+	/**
+	 * Resolves range filters {@code columns[i] operators[i] values[i]}, by binary
+	 * searching the slots sorted by their column.
+	 * @param columns numeric column constants
+	 * @param operators range operator constants
+	 * @param count the amount of filters in the arrays
+	 */
+	public Ranges ranges(int[] columns, int[] operators, float[] values, int count)
+	{
+		final Ranges ranges = new Ranges(count);
+		for (int f = 0; f < count; f++) {
+			float min = Float.NEGATIVE_INFINITY, max = Float.POSITIVE_INFINITY;
+			switch (operators[f]) {
+			case LESS: max = Math.nextDown(values[f]); break;
+			case LESS_OR_EQUAL: max = values[f]; break;
+			case EQUAL: min = max = values[f]; break;
+			case GREATER: min = Math.nextUp(values[f]); break;
+			default: min = values[f]; break;
+			}
+			int[] sorted = this.sortedSlots[columns[f]];
+			if (sorted == null) {
+				sorted = this.sortedSlots[columns[f]] = this.sortSlots(columns[f]);
+			}
+			final int low = this.bound(columns[f], sorted, min, false);
+			final int high = Math.max(low, this.bound(columns[f], sorted, max, true));
+			ranges.columns[f] = columns[f];
+			switch (columns[f]) {
+			case APPROACH_RATE: ranges.floats[f] = this.approachRate; break;
+			case CIRCLE_SIZE: ranges.floats[f] = this.circleSize; break;
+			case OVERALL_DIFFICULTY: ranges.floats[f] = this.overallDifficulty; break;
+			case HP_DRAIN_RATE: ranges.floats[f] = this.HPDrainRate; break;
+			case BPM: ranges.ints[f] = this.bpmMax; break;
+			case LENGTH: ranges.ints[f] = this.endTime; break;
+			default: ranges.ints[f] = this.stars; break;
+			}
+			ranges.min[f] = min;
+			ranges.max[f] = max;
+			if (f == 0 || high - low < ranges.to - ranges.from) {
+				ranges.best = f;
+				ranges.from = low;
+				ranges.to = high;
+			}
+		}
+		return ranges;
+	}
+
+	/**
+	 * @return {@code true} if the smallest range of the filters has less than
+	 *         {@code 1 / RANGE_SCAN_RATIO} of the candidates, so walking it is
+	 *         faster than testing every candidate
+	 */
+	public boolean isSelective(Ranges ranges, int candidates)
+	{
+		return (ranges.to - ranges.from) * RANGE_SCAN_RATIO < candidates;
+	}
+
+	/**
+	 * @return {@code true} if the values of the map in the slot match all filters
+	 */
+	public boolean matches(Ranges ranges, int slot)
+	{
+		for (int f = 0; f < ranges.count; f++) {
+			if (!ranges.contains(f, slot)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the maps that match all filters. When the smallest range is
+	 * {@link #isSelective selective}, only its slots are tested against the
+	 * other filters. Otherwise the columns are read in slot order.
+	 * @param within a bitset of the slots to search in, or {@code null} to search all maps
+	 * @return a bitset of the slots of the matching maps
+	 */
+	public long[] findMaps(Ranges ranges, @Nullable long[] within)
+	{
+		int candidates = this.mapCount();
+		if (within != null) {
+			candidates = 0;
+			for (long bits : within) {
+				candidates += Long.bitCount(bits);
+			}
+		}
+		if (!this.isSelective(ranges, candidates)) {
+			final long[] slotSet = within != null ? within.clone() : this.usedSlots();
+			for (int f = 0; f < ranges.count; f++) {
+				this.keepInRange(slotSet, ranges, f);
+			}
+			return slotSet;
+		}
+
+		final long[] slotSet = new long[(this.size + 63) >>> 6];
+		final int[] sorted = this.sortedSlots[ranges.columns[ranges.best]];
+		next: for (int i = ranges.from; i < ranges.to; i++) {
+			final int slot = sorted[i];
+			if (within != null && (within[slot >>> 6] & (1L << slot)) == 0) {
+				continue;
+			}
+			for (int f = 0; f < ranges.count; f++) {
+				if (f == ranges.best) {
+					continue;
+				}
+				if (!ranges.contains(f, slot)) {
+					continue next;
+				}
+			}
+			slotSet[slot >>> 6] |= 1L << slot;
+		}
+		return slotSet;
+	}
+
+	/**
+	 * @return a bitset of the slots that have a map
+	 */
+	private long[] usedSlots()
+	{
+		final long[] slotSet = new long[(this.size + 63) >>> 6];
+		for (int slot = 0; slot < this.size; slot++) {
+			if (this.beatmaps[slot] != null) {
+				slotSet[slot >>> 6] |= 1L << slot;
+			}
+		}
+		return slotSet;
+	}
+
+	/**
+	 * Removes the slots with a value outside of {@code [min, max]} from the set,
+	 * reading the column in slot order.
+	 */
+	private void keepInRange(long[] slotSet, Ranges ranges, int f)
+	{
+		final float[] floats = ranges.floats[f];
+		final int[] ints = ranges.ints[f];
+		final float min = ranges.min[f], max = ranges.max[f];
+		for (int i = 0; i < slotSet.length; i++) {
+			if (slotSet[i] == 0) {
+				continue;
+			}
+			final int base = i << 6;
+			final int end = Math.min(64, this.size - base);
+			long keep = 0;
+			if (floats != null) {
+				for (int bit = 0; bit < end; bit++) {
+					final float v = floats[base + bit];
+					keep |= (v >= min & v <= max ? 1L : 0L) << bit;
+				}
+			} else {
+				for (int bit = 0; bit < end; bit++) {
+					final float v = ints[base + bit];
+					keep |= (v >= min & v <= max ? 1L : 0L) << bit;
+				}
+			}
+			slotSet[i] &= keep;
+		}
+	}
+
+	/**
+	 * @param inclusive {@code true} to find the first value greater than {@code value},
+	 *        {@code false} to find the first value greater than or equal to {@code value}
+	 * @return the index of the first matching value in {@code sorted}
+	 */
+	private int bound(int column, int[] sorted, float value, boolean inclusive)
+	{
+		int low = 0, high = sorted.length;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			final float v = this.numeric(column, sorted[mid]);
+			if (v < value || (inclusive && v == value)) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private int[] sortSlots(int column)
+	{
+		final int count = this.mapCount();
+		// sortable float bits in the high half, slot in the low half
+		final long[] keys = new long[count];
+		for (int slot = 0, i = 0; slot < this.size; slot++) {
+			if (this.beatmaps[slot] == null) {
+				continue;
+			}
+			int bits = Float.floatToIntBits(this.numeric(column, slot));
+			bits ^= (bits >> 31) & 0x7FFFFFFF;
+			keys[i++] = ((long) bits << 32) | slot;
+		}
+		Arrays.sort(keys);
+		final int[] sorted = new int[count];
+		for (int i = 0; i < count; i++) {
+			sorted[i] = (int) keys[i];
+		}
+		return sorted;
+	}
+
+	private float numeric(int column, int slot)
+	{
+		switch (column) {
+		case APPROACH_RATE: return this.approachRate[slot];
+		case CIRCLE_SIZE: return this.circleSize[slot];
+		case OVERALL_DIFFICULTY: return this.overallDifficulty[slot];
+		case HP_DRAIN_RATE: return this.HPDrainRate[slot];
+		case BPM: return this.bpmMax[slot];
+		case LENGTH: return this.endTime[slot];
+		default: return this.stars[slot];
+		}
+	}
+
+	/**
+	 * Compares the string column of two beatmaps, like {@link String#compareTo}
+	 * would compare their lowercase values.
+	 */
+	public int compare(int column, Beatmap v, Beatmap w)
+	{
+		if (this.ranks == null) {
+			this.calculateRanks();
+		}
+		return Integer.compare(
+			this.ranks[this.strings[v.metadataSlot * STRING_COLUMNS + column]],
+			this.ranks[this.strings[w.metadataSlot * STRING_COLUMNS + column]]
+		);
+	}
+
+	/**
+	 * @return a number that changes whenever a map is added or removed, or a
+	 *         value that is used for searching changes
+	 */
+	public int modifications()
+	{
+		return this.modifications;
+	}
+
+	/**
+	 * @return the amount of maps
+	 */
+	public int mapCount()
+	{
+		return this.size - this.freeSlotCount;
+	}
+
+	/**
+	 * @return the amount of slots in use, including released slots
+	 */
+	public int slotCount()
+	{
+		return this.size;
+	}
+
+	/**
+	 * @return the beatmap in the given slot, or {@code null} if it was released
+	 */
+	public Beatmap beatmap(int slot)
+	{
+		return this.beatmaps[slot];
+	}
+
+	private int encode(String value)
+	{
+		final String lower = value == null ? "" : value.toLowerCase();
+		final int mask = this.dictionaryTable.length - 1;
+		int bucket = lower.hashCode() & mask;
+		int entry;
+		while ((entry = this.dictionaryTable[bucket]) != 0) {
+			if (this.dictionary[entry - 1].equals(lower)) {
+				this.references[entry - 1]++;
+				return entry - 1;
+			}
+			bucket = (bucket + 1) & mask;
+		}
+		final int id = this.dictionarySize++;
+		if (id == this.dictionary.length) {
+			this.dictionary = Arrays.copyOf(this.dictionary, id * 2);
+			this.references = Arrays.copyOf(this.references, id * 2);
+		}
+		this.dictionary[id] = lower;
+		this.references[id] = 1;
+		this.dictionaryTable[bucket] = id + 1;
+		if (this.trigrams != null) {
+			this.trigrams.add(id, lower);
+		}
+		if (this.dictionarySize * 2 > this.dictionaryTable.length) {
+			this.rehash(this.dictionaryTable.length * 2);
+		}
+		this.ranks = null;
+		return id;
+	}
+
+	/**
+	 * Drops a reference to a dictionary entry, the entry is removed from the
+	 * hash table and the trigram index when nothing references it anymore.
+	 */
+	private void release(int id)
+	{
+		if (--this.references[id] > 0) {
+			return;
+		}
+		final String value = this.dictionary[id];
+		if (this.trigrams != null) {
+			this.trigrams.remove(id, value);
+		}
+
+		// remove it from the hash table, moving back the entries after it
+		// that can't be found anymore with an empty bucket in between
+		final int[] table = this.dictionaryTable;
+		final int mask = table.length - 1;
+		int hole = value.hashCode() & mask;
+		while (table[hole] != id + 1) {
+			hole = (hole + 1) & mask;
+		}
+		for (int bucket = (hole + 1) & mask; table[bucket] != 0; bucket = (bucket + 1) & mask) {
+			final int home = this.dictionary[table[bucket] - 1].hashCode() & mask;
+			if (((bucket - home) & mask) >= ((bucket - hole) & mask)) {
+				table[hole] = table[bucket];
+				hole = bucket;
+			}
+		}
+		table[hole] = 0;
+		this.dictionary[id] = "";
+	}
+
+	private void rehash(int tableSize)
+	{
+		final int[] table = new int[tableSize];
+		final int mask = tableSize - 1;
+		for (int id = 0; id < this.dictionarySize; id++) {
+			if (this.references[id] == 0) {
+				continue;
+			}
+			int bucket = this.dictionary[id].hashCode() & mask;
+			while (table[bucket] != 0) {
+				bucket = (bucket + 1) & mask;
+			}
+			table[bucket] = id + 1;
+		}
+		this.dictionaryTable = table;
+	}
+
+	private void calculateRanks()
+	{
+		final int count = this.dictionarySize;
+		final String[] sorted = Arrays.copyOf(this.dictionary, count);
+		Arrays.sort(sorted);
+		final int[] ranks = new int[count];
+		for (int id = 0; id < count; id++) {
+			ranks[id] = Arrays.binarySearch(sorted, this.dictionary[id]);
+		}
+		this.ranks = ranks;
+	}
+
+	private void grow(int capacity)
+	{
+		this.beatmaps = Arrays.copyOf(this.beatmaps, capacity);
+		this.strings = Arrays.copyOf(this.strings, capacity * STRING_COLUMNS);
+		this.approachRate = Arrays.copyOf(this.approachRate, capacity);
+		this.circleSize = Arrays.copyOf(this.circleSize, capacity);
+		this.overallDifficulty = Arrays.copyOf(this.overallDifficulty, capacity);
+		this.HPDrainRate = Arrays.copyOf(this.HPDrainRate, capacity);
+		this.bpmMin = Arrays.copyOf(this.bpmMin, capacity);
+		this.bpmMax = Arrays.copyOf(this.bpmMax, capacity);
+		this.endTime = Arrays.copyOf(this.endTime, capacity);
+		this.playCount = Arrays.copyOf(this.playCount, capacity);
+		this.stars = Arrays.copyOf(this.stars, capacity);
+		this.dateAdded = Arrays.copyOf(this.dateAdded, capacity);
+		this.lastPlayed = Arrays.copyOf(this.lastPlayed, capacity);
+	}
+
+	/**
+	 * Range filters as inclusive bounds, with the position of the smallest
+	 * range in the slots sorted by its column. Only valid until the metadata
+	 * is changed.
+	 */
+	public static class Ranges
+	{
+		final int count;
+		final int[] columns;
+		final float[] min, max;
+		/** The column of every filter, either as floats or as ints. */
+		final float[][] floats;
+		final int[][] ints;
+		/** Index of the filter with the smallest range. */
+		int best;
+		/** Bounds of the smallest range in the sorted slots of its column. */
+		int from, to;
+
+		Ranges(int count)
+		{
+			this.count = count;
+			this.columns = new int[count];
+			this.min = new float[count];
+			this.max = new float[count];
+			this.floats = new float[count][];
+			this.ints = new int[count][];
+		}
+
+		boolean contains(int f, int slot)
+		{
+			final float v = this.floats[f] != null ? this.floats[f][slot] : this.ints[f][slot];
+			return v >= this.min[f] && v <= this.max[f];
+		}
+	}
+}
@@ -4,225 +4,358 @@ package yugecin.opsudance.beatmap;
 
 import java.util.ArrayList;
 
-import org.newdawn.slick.util.Log;
-
 import itdelatrisu.opsu.beatmap.Beatmap;
+import itdelatrisu.opsu.beatmap.LRUCache;
+import yugecin.opsudance.core.Nullable;
+
+import static yugecin.opsudance.beatmap.BeatmapMetadata.*;
 
+/**
+ * Searches beatmaps using the {@link BeatmapMetadata} indexes.
+ * <p>
+ * Results are kept as bitsets of metadata slots, which don't depend on the
+ * group that is being searched. The results of recent queries are cached, and
+ * a query that can only match a subset of the previous query's result (because
+ * characters or terms were added) only tests the maps in that result.
+ */
 public class BeatmapSearcher
 {
 	private static final int[] OPMAP = { /*<*/0, /*<=*/1, /*=*/2, /*==*/2, /*>*/3, /*>=*/4 };
 
-	private static final Tester[]
-		AR = {
-			(m, v) -> m.approachRate < v,
-			(m, v) -> m.approachRate <= v,
-			(m, v) -> m.approachRate == v,
-			(m, v) -> m.approachRate > v,
-			(m, v) -> m.approachRate >= v,
-		},
-		CS = {
-			(m, v) -> m.circleSize < v,
-			(m, v) -> m.circleSize <= v,
-			(m, v) -> m.circleSize == v,
-			(m, v) -> m.circleSize > v,
-			(m, v) -> m.circleSize >= v,
-		},
-		OD = {
-			(m, v) -> m.overallDifficulty < v,
-			(m, v) -> m.overallDifficulty <= v,
-			(m, v) -> m.overallDifficulty == v,
-			(m, v) -> m.overallDifficulty > v,
-			(m, v) -> m.overallDifficulty >= v,
-		},
-		HP = {
-			(m, v) -> m.HPDrainRate < v,
-			(m, v) -> m.HPDrainRate <= v,
-			(m, v) -> m.HPDrainRate == v,
-			(m, v) -> m.HPDrainRate > v,
-			(m, v) -> m.HPDrainRate >= v,
-		},
-		BPM = {
-			(m, v) -> m.bpmMax < v,
-			(m, v) -> m.bpmMax <= v,
-			(m, v) -> m.bpmMax == v,
-			(m, v) -> m.bpmMax > v,
-			(m, v) -> m.bpmMax >= v,
-		},
-		LENGTH = {
-			(m, v) -> m.endTime < v,
-			(m, v) -> m.endTime <= v,
-			(m, v) -> m.endTime == v,
-			(m, v) -> m.endTime > v,
-			(m, v) -> m.endTime >= v,
-		},
-		STARS = {
-			(m, v) -> Math.floor(m.starRating * 100) < v,
-			(m, v) -> Math.floor(m.starRating * 100) <= v,
-			(m, v) -> Math.floor(m.starRating * 100) == v,
-			(m, v) -> Math.floor(m.starRating * 100) > v,
-			(m, v) -> Math.floor(m.starRating * 100) >= v,
-		};
-
-	public static ArrayList<Beatmap> search(ArrayList<Beatmap> maps, String trimmedQuery)
+	/** Amount of recent query results to keep. */
+	private static final int CACHE_SIZE = 32;
+
+	private final BeatmapMetadata md;
+	/** Recent query results, valid as long as {@link BeatmapMetadata#modifications()} did not change. */
+	private final LRUCache<String, long[]> cache;
+	private int cacheModifications;
+	@Nullable
+	private Query lastQuery;
+
+	public BeatmapSearcher(BeatmapMetadata md)
+	{
+		this.md = md;
+		this.cache = new LRUCache<>(CACHE_SIZE);
+		this.cacheModifications = md.modifications();
+	}
+
+	/**
+	 * @param maps the maps to search in, the result keeps their order
+	 * @param trimmedQuery the query, terms and filters separated by spaces
+	 */
+	public ArrayList<Beatmap> search(ArrayList<Beatmap> maps, String trimmedQuery)
 	{
 		if (trimmedQuery.isEmpty()) {
 			return maps;
 		}
 
-		final long start = System.currentTimeMillis();
+		if (this.cacheModifications != this.md.modifications()) {
+			this.cacheModifications = this.md.modifications();
+			this.cache.clear();
+			this.lastQuery = null;
+		}
 
-		final ArrayList<Beatmap> result = new ArrayList<>(maps.size());
-		// this might not be very i18n friendly... :/
-		final char[] search = trimmedQuery.toCharArray();
-		int buflen = 0;
-		final String[] terms = new String[search.length / 2 + 1];
-		int termsc = 0;
-		final ArrayList<Tester> testers = new ArrayList<>(terms.length);
-		final float[] testervalues = new float[terms.length];
-
-		for (int i = 0;; i++) {
-			if (i == search.length || search[i] == ' ') {
-				if (buflen > 0) {
-					terms[termsc++] = new String(search, i - buflen, buflen);
-					buflen = 0;
+		final Query query = new Query(trimmedQuery);
+		long[] matches = this.cache.get(trimmedQuery);
+		Ranges scan = null;
+		if (matches == null) {
+			if (this.lastQuery != null && query.narrows(this.lastQuery)) {
+				matches = this.refine(this.lastQuery, query);
+			} else if (query.termsc == 0 && query.filtersc > 0) {
+				final Ranges ranges = query.ranges(this.md);
+				if (this.md.isSelective(ranges, this.md.mapCount())) {
+					matches = this.md.findMaps(ranges, null);
+				} else {
+					// testing every map in the list is faster than making
+					// a bitset and then testing every map in the list
+					scan = ranges;
 				}
-				if (i == search.length) {
-					break;
+			} else {
+				matches = this.find(query);
+			}
+			if (scan == null) {
+				this.cache.put(trimmedQuery, matches);
+			}
+		}
+		query.matches = matches;
+		this.lastQuery = query;
+
+		final ArrayList<Beatmap> result = new ArrayList<>(maps.size());
+		for (int i = 0, m = maps.size(); i < m; i++) {
+			final Beatmap map = maps.get(i);
+			final int slot = map.metadataSlot;
+			if (scan != null) {
+				if (this.md.matches(scan, slot)) {
+					result.add(map);
 				}
-				continue;
+			} else if (matches == null || (matches[slot >>> 6] & (1L << slot)) != 0) {
+				result.add(map);
 			}
-			char c = search[i];
-			if (c == '<' || c == '=' || c == '>') {
-				Tester[] t = null;
-				switch (buflen) {
-				case 2:
-					if (search[i - 2] == 'a' && search[i - 1] == 'r') {
-						t = AR;
-					} else if (search[i - 2] == 'c' && search[i - 1] == 's') {
-						t = CS;
-					} else if (search[i - 2] == 'o' && search[i - 1] == 'd') {
-						t = OD;
-					} else if (search[i - 2] == 'h' && search[i - 1] == 'p') {
-						t = HP;
-					}
-					break;
-				case 3:
-					if (search[i - 3] == 'b' && search[i - 2] == 'p' &&
-						search[i - 1] == 'm')
-					{
-						t = BPM;
-					}
-					break;
-				case 4:
-					if (search[i - 4] == 's' && search[i - 3] == 't' &&
-						search[i - 2] == 'a' && search[i - 1] == 'r')
-					{
-						t = STARS;
-					}
-					break;
-				case 5:
-					if (search[i - 5] == 's' && search[i - 4] == 't' &&
-						search[i - 3] == 'a' && search[i - 2] == 'r' &&
-						search[i - 1] == 's')
-					{
-						t = STARS;
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return a bitset of the slots of the maps that match all terms and filters
+	 *         of the query, or {@code null} if the query has none
+	 */
+	@Nullable
+	private long[] find(Query query)
+	{
+		long[] matches = null;
+		for (int j = 0; j < query.termsc; j++) {
+			if (matches == null) {
+				matches = this.md.findMaps(query.terms[j]);
+			} else {
+				this.md.refineMaps(query.terms[j], matches);
+			}
+		}
+		if (query.filtersc > 0) {
+			matches = this.md.findMaps(query.ranges(this.md), matches);
+		}
+		return matches;
+	}
+
+	/**
+	 * Finds the matches of a query that {@link Query#narrows narrows} the
+	 * previous query, by only testing the terms and filters that are new.
+	 */
+	@Nullable
+	private long[] refine(Query previous, Query query)
+	{
+		if (previous.matches == null) {
+			return this.find(query);
+		}
+		long[] matches = previous.matches.clone();
+		for (int j = 0; j < query.termsc; j++) {
+			if (!previous.hasTerm(query.terms[j])) {
+				this.md.refineMaps(query.terms[j], matches);
+			}
+		}
+		final Query newFilters = query.filtersNotIn(previous);
+		if (newFilters.filtersc > 0) {
+			matches = this.md.findMaps(newFilters.ranges(this.md), matches);
+		}
+		return matches;
+	}
+
+	private static class Query
+	{
+		final String[] terms;
+		int termsc;
+		final int[] filtercolumns;
+		final int[] filteroperators;
+		final float[] filtervalues;
+		int filtersc;
+		/**
+		 * Result of this query, see {@link #find(Query)}, or {@code null} if
+		 * the maps were tested while searching because the filters were wide.
+		 */
+		long[] matches;
+
+		private Query(int filters)
+		{
+			this.terms = new String[0];
+			this.filtercolumns = new int[filters];
+			this.filteroperators = new int[filters];
+			this.filtervalues = new float[filters];
+		}
+
+		Query(String trimmedQuery)
+		{
+
+			// this might not be very i18n friendly... :/
+			final char[] search = trimmedQuery.toCharArray();
+			int buflen = 0;
+			this.terms = new String[search.length / 2 + 1];
+			this.filtercolumns = new int[terms.length];
+			this.filteroperators = new int[terms.length];
+			this.filtervalues = new float[terms.length];
+
+			for (int i = 0;; i++) {
+				if (i == search.length || search[i] == ' ') {
+					if (buflen > 0) {
+						terms[termsc++] = new String(search, i - buflen, buflen);
+						buflen = 0;
 					}
-					break;
-				case 6:
-					if (search[i - 6] == 'l' && search[i - 5] == 'e' &&
-						search[i - 4] == 'n' && search[i - 3] == 'g' &&
-						search[i - 2] == 't' && search[i - 1] == 'h')
-					{
-						t = LENGTH;
+					if (i == search.length) {
+						break;
 					}
-					break;
+					continue;
 				}
-				if (t != null) {
-					int op = (c - '<') * 2;
-					if (++i != search.length && search[i] == '=') {
-						op++;
-						i++;
+				char c = search[i];
+				if (c == '<' || c == '=' || c == '>') {
+					int t = -1;
+					switch (buflen) {
+					case 2:
+						if (search[i - 2] == 'a' && search[i - 1] == 'r') {
+							t = APPROACH_RATE;
+						} else if (search[i - 2] == 'c' && search[i - 1] == 's') {
+							t = CIRCLE_SIZE;
+						} else if (search[i - 2] == 'o' && search[i - 1] == 'd') {
+							t = OVERALL_DIFFICULTY;
+						} else if (search[i - 2] == 'h' && search[i - 1] == 'p') {
+							t = HP_DRAIN_RATE;
+						}
+						break;
+					case 3:
+						if (search[i - 3] == 'b' && search[i - 2] == 'p' &&
+							search[i - 1] == 'm')
+						{
+							t = BPM;
+						}
+						break;
+					case 4:
+						if (search[i - 4] == 's' && search[i - 3] == 't' &&
+							search[i - 2] == 'a' && search[i - 1] == 'r')
+						{
+							t = STARS;
+						}
+						break;
+					case 5:
+						if (search[i - 5] == 's' && search[i - 4] == 't' &&
+							search[i - 3] == 'a' && search[i - 2] == 'r' &&
+							search[i - 1] == 's')
+						{
+							t = STARS;
+						}
+						break;
+					case 6:
+						if (search[i - 6] == 'l' && search[i - 5] == 'e' &&
+							search[i - 4] == 'n' && search[i - 3] == 'g' &&
+							search[i - 2] == 't' && search[i - 1] == 'h')
+						{
+							t = LENGTH;
+						}
+						break;
 					}
-					buflen = 0;
-					float value = 0f;
-					for (;; i++) {
-						if (i == search.length || search[i] == ' ') {
-							if (buflen == 0) {
+					if (t != -1) {
+						int op = (c - '<') * 2;
+						if (++i != search.length && search[i] == '=') {
+							op++;
+							i++;
+						}
+						buflen = 0;
+						float value = 0f;
+						for (;; i++) {
+							if (i == search.length || search[i] == ' ') {
+								if (buflen == 0) {
+									break;
+								}
+								final String s;
+								s = new String(search, i - buflen, buflen);
+								try {
+									value += Float.parseFloat(s);
+								} catch (NumberFormatException ignored) {
+								}
 								break;
 							}
-							final String s;
-							s = new String(search, i - buflen, buflen);
-							try {
-								value += Float.parseFloat(s);
-							} catch (NumberFormatException ignored) {
-							}
-							break;
-						}
-						if (search[i] == ':') {
-							if (buflen == 0) {
+							if (search[i] == ':') {
+								if (buflen == 0) {
+									continue;
+								}
+								final String s;
+								s = new String(search, i - buflen, buflen);
+								value *= 60;
+								try {
+									value += Float.parseFloat(s) * 60;
+								} catch (NumberFormatException ignored) {
+								}
+								buflen = 0;
 								continue;
 							}
-							final String s;
-							s = new String(search, i - buflen, buflen);
-							value *= 60;
-							try {
-								value += Float.parseFloat(s) * 60;
-							} catch (NumberFormatException ignored) {
-							}
-							buflen = 0;
-							continue;
+							buflen++;
 						}
-						buflen++;
-					}
 
-					if (t == LENGTH) {
-						value *= 1000;
-					} else if (t == STARS) {
-						value *= 100;
-					}
-					testervalues[testers.size()] = value;
-					final Tester tester = t[OPMAP[op]];
-					testers.add(tester);
-					if (i == search.length) {
-						break;
+						if (t == LENGTH) {
+							value *= 1000;
+						} else if (t == STARS) {
+							value *= 100;
+						}
+						filtercolumns[filtersc] = t;
+						filteroperators[filtersc] = OPMAP[op];
+						filtervalues[filtersc] = value;
+						filtersc++;
+						if (i == search.length) {
+							break;
+						}
+						buflen = 0;
+						continue;
 					}
-					buflen = 0;
-					continue;
 				}
+				buflen++;
 			}
-			buflen++;
 		}
 
-		nm: for (int i = 0, m = maps.size(); i < m; i++) {
-			final Beatmap map = maps.get(i);
-			for (int j = 0; j < termsc; j++) {
-				final String t = terms[j];
-				if (!(map.searchTitle.contains(t) ||
-					map.searchArtist.contains(t) ||
-					map.searchCreator.contains(t) ||
-					map.searchSource.contains(t) ||
-					map.searchVersion.contains(t) ||
-					map.searchTitleUnicode.contains(t) ||
-					map.searchArtistUnicode.contains(t) ||
-					map.tags.contains(t)))
-				{
-					continue nm;
+		/**
+		 * @return {@code true} if every map matching this query also matches
+		 *         the previous query
+		 */
+		boolean narrows(Query previous)
+		{
+			for (int f = 0; f < previous.filtersc; f++) {
+				if (!this.hasFilter(previous, f)) {
+					return false;
 				}
 			}
-			for (int j = testers.size() - 1; j >= 0; j--) {
-				if (!testers.get(j).test(map, testervalues[j])) {
-					continue nm;
+			pt: for (int j = 0; j < previous.termsc; j++) {
+				for (int k = 0; k < this.termsc; k++) {
+					if (this.terms[k].contains(previous.terms[j])) {
+						continue pt;
+					}
 				}
+				return false;
 			}
-			result.add(map);
+			return true;
 		}
 
-		Log.debug("search: " + (System.currentTimeMillis() - start) + "ms");
-		return result;
-	}
+		/**
+		 * @return a query with only the filters of this query that the other query doesn't have
+		 */
+		Query filtersNotIn(Query other)
+		{
+			final Query q = new Query(this.filtersc);
+			for (int f = 0; f < this.filtersc; f++) {
+				if (!other.hasFilter(this, f)) {
+					q.filtercolumns[q.filtersc] = this.filtercolumns[f];
+					q.filteroperators[q.filtersc] = this.filteroperators[f];
+					q.filtervalues[q.filtersc] = this.filtervalues[f];
+					q.filtersc++;
+				}
+			}
+			return q;
+		}
 
-	private static interface Tester
-	{
-		boolean test(Beatmap map, float value);
+		Ranges ranges(BeatmapMetadata md)
+		{
+			return md.ranges(this.filtercolumns, this.filteroperators, this.filtervalues, this.filtersc);
+		}
+
+		boolean hasTerm(String term)
+		{
+			for (int j = 0; j < this.termsc; j++) {
+				if (this.terms[j].equals(term)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * @return {@code true} if this query has the filter at {@code index} of {@code other}
+		 */
+		boolean hasFilter(Query other, int index)
+		{
+			for (int f = 0; f < this.filtersc; f++) {
+				if (this.filtercolumns[f] == other.filtercolumns[index] &&
+					this.filteroperators[f] == other.filteroperators[index] &&
+					this.filtervalues[f] == other.filtervalues[index])
+				{
+					return true;
+				}
+			}
+			return false;
+		}
 	}
 }
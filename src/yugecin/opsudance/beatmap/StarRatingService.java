@@ -0,0 +1,394 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package yugecin.opsudance.beatmap;
+
+import itdelatrisu.opsu.beatmap.Beatmap;
+import itdelatrisu.opsu.beatmap.BeatmapDifficultyCalculator;
+import itdelatrisu.opsu.beatmap.BeatmapParser;
+import itdelatrisu.opsu.beatmap.BeatmapSet;
+import itdelatrisu.opsu.beatmap.DifficultyAttributes;
+import itdelatrisu.opsu.beatmap.HitObject;
+import itdelatrisu.opsu.beatmap.TimingPoint;
+import itdelatrisu.opsu.db.BeatmapDB;
+import itdelatrisu.opsu.objects.curves.CurveCache;
+import org.newdawn.slick.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static yugecin.opsudance.core.InstanceContainer.*;
+import static yugecin.opsudance.options.Options.*;
+
+/**
+ * Calculates the star ratings of all beatmaps that don't have one yet, in the
+ * background. Hit objects are read on the worker threads without storing them
+ * in the beatmaps, and the results are written to the database in batches.
+ * <p>
+ * Difficulty values for the game mods that change the difficulty are only
+ * calculated for the selected beatmap set, see {@link #requestDifficultyAttributes}.
+ * They are cached in the database per MD5 hash and combination of game mods.
+ * <p>
+ * Workers pause while the game is being played, see {@link #setThrottled}.
+ */
+public class StarRatingService
+{
+	/** Maximum number of beatmaps that are calculated at the same time, leaving a core for the game. */
+	private static final int THREADS = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 4));
+
+	/** Number of star ratings that are written to the database in one transaction. */
+	private static final int BATCH_SIZE = 100;
+
+	/** Time between checks whether a throttled worker can continue, in milliseconds. */
+	private static final long THROTTLE_SLEEP = 250;
+
+	/** The running job, or null if not calculating. */
+	private volatile Job job;
+
+	/** Whether the workers should pause. */
+	private volatile boolean throttled;
+
+	/** Beatmaps with a new star rating that still need their metadata updated on the main thread. */
+	private final ConcurrentLinkedQueue<Beatmap> calculated = new ConcurrentLinkedQueue<>();
+
+	/** Single thread that calculates the difficulty values of the requested beatmap set. */
+	private final ExecutorService attributesExecutor = Executors.newSingleThreadExecutor(r -> {
+		final Thread thread = new Thread(r, "StarRatingService-mods");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+
+	/** The last beatmap set of which the difficulty values were requested. */
+	private volatile BeatmapSet requestedSet;
+
+	/** Whether new difficulty values were calculated since the last {@link #applyResults()}. */
+	private volatile boolean attributesChanged;
+
+	/**
+	 * Starts calculating the star ratings of all beatmaps in the beatmap list
+	 * that don't have one, stopping the previous calculation.
+	 * Call from the main thread, after loading the beatmaps.
+	 */
+	public void start()
+	{
+		this.stop();
+		final ArrayList<Beatmap> maps = new ArrayList<>();
+		for (Beatmap map : beatmapList.maps) {
+			if (map.starRating < 0) {
+				maps.add(map);
+			}
+		}
+		if (maps.isEmpty()) {
+			return;
+		}
+		Log.info(String.format("Calculating star ratings for %d beatmaps.", maps.size()));
+		this.job = new Job(maps);
+	}
+
+	/**
+	 * Stops calculating, without waiting for the workers. Star ratings that
+	 * were already calculated are still saved by the workers before they exit,
+	 * but the metadata of their beatmaps is not updated anymore.
+	 * Call before reloading the beatmaps.
+	 */
+	public void stop()
+	{
+		final Job job = this.job;
+		if (job != null) {
+			this.job = null;
+			job.cancel();
+		}
+	}
+
+	/**
+	 * Stops calculating and waits a moment for the workers to save the star
+	 * ratings that were already calculated. Call when exiting.
+	 */
+	public void shutdown()
+	{
+		final Job job = this.job;
+		this.stop();
+		if (job != null) {
+			try {
+				job.pool.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Sets whether the workers should pause, so they don't take processing time
+	 * away from the game.
+	 */
+	public void setThrottled(boolean throttled)
+	{
+		this.throttled = throttled;
+	}
+
+	/**
+	 * Updates the metadata of the beatmaps with new star ratings, so they sort
+	 * correctly. Call from the main thread.
+	 * @return true if difficulty values were calculated since the last call,
+	 *         so displayed star ratings should be updated
+	 */
+	public boolean applyResults()
+	{
+		Beatmap map;
+		while ((map = this.calculated.poll()) != null) {
+			beatmapList.metadata.update(map);
+		}
+		if (this.attributesChanged) {
+			this.attributesChanged = false;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Loads or calculates the difficulty values of every combination of game
+	 * mods for all beatmaps in a set, in the background. Cached values are
+	 * loaded from the database, the others are calculated and stored.
+	 * A new request replaces the previous one. Call from the main thread.
+	 * @see Beatmap#getStarRating()
+	 */
+	public void requestDifficultyAttributes(BeatmapSet set)
+	{
+		if (set == null || set == this.requestedSet) {
+			return;
+		}
+		this.requestedSet = set;
+		this.attributesExecutor.execute(() -> this.calculateAttributes(set));
+	}
+
+	private void calculateAttributes(BeatmapSet set)
+	{
+		for (Beatmap map : set.beatmaps) {
+			if (this.requestedSet != set) {
+				return;
+			}
+			if (map.md5Hash == null) {
+				continue;
+			}
+			DifficultyAttributes[] attributes = map.difficultyAttributes;
+			if (attributes == null) {
+				attributes = BeatmapDB.loadDifficultyAttributes(map.md5Hash);
+				if (attributes == null) {
+					// nothing cached, calculate everything
+					attributes = new DifficultyAttributes[DifficultyAttributes.COMBINATIONS];
+				}
+				map.difficultyAttributes = attributes;
+				this.attributesChanged = true;
+			}
+
+			final ArrayList<DifficultyAttributes> calculated = new ArrayList<>();
+			List<TimingPoint> timingPoints = null;
+			HitObject[] objects = null;
+			// the slider curves are the same for every combination of mods
+			final CurveCache curveCache = new CurveCache();
+			try {
+				// index 0 (no mods) is the regular star rating, but it's cheap to store along
+				for (int i = 0; i < DifficultyAttributes.COMBINATIONS; i++) {
+					if (attributes[i] != null) {
+						continue;
+					}
+					while (throttled) {
+						Thread.sleep(THROTTLE_SLEEP);
+					}
+					if (this.requestedSet != set) {
+						break;
+					}
+					if (objects == null) {
+						timingPoints = BeatmapParser.readTimingPoints(map, false);
+						objects = BeatmapParser.readHitObjects(map, 1, false);
+					}
+					final int mods = DifficultyAttributes.modsOf(i);
+					final BeatmapDifficultyCalculator diffCalc;
+					diffCalc = new BeatmapDifficultyCalculator(map, objects, timingPoints, mods, curveCache);
+					diffCalc.calculate();
+					final DifficultyAttributes attr = diffCalc.getAttributes();
+					if (attr == null) {
+						break;  // calculations failed
+					}
+					calculated.add(attr);
+					// replace instead of modify, so readers see a consistent array
+					attributes = Arrays.copyOf(attributes, attributes.length);
+					attributes[i] = attr;
+					map.difficultyAttributes = attributes;
+					this.attributesChanged = true;
+				}
+			} catch (InterruptedException e) {
+				return;
+			} catch (Exception e) {
+				Log.warn(String.format("Failed to calculate difficulty values for beatmap '%s'.", map), e);
+			} finally {
+				BeatmapDB.setDifficultyAttributes(map.md5Hash, calculated);
+			}
+		}
+	}
+
+	/**
+	 * Returns whether star ratings are being calculated.
+	 */
+	public boolean isRunning()
+	{
+		final Job job = this.job;
+		return job != null && job.done.get() < job.total;
+	}
+
+	/**
+	 * Returns the number of beatmaps that are done.
+	 */
+	public int getCalculatedCount()
+	{
+		final Job job = this.job;
+		return job == null ? 0 : job.done.get();
+	}
+
+	/**
+	 * Returns the number of beatmaps to calculate.
+	 */
+	public int getTotalCount()
+	{
+		final Job job = this.job;
+		return job == null ? 0 : job.total;
+	}
+
+	/**
+	 * Returns the progress of the calculations, or -1 if not calculating.
+	 * @return the completion percent [0, 100] or -1
+	 */
+	public int getProgress()
+	{
+		final Job job = this.job;
+		return job == null ? -1 : job.done.get() * 100 / job.total;
+	}
+
+	private class Job
+	{
+		private final ExecutorService pool;
+		private final int total;
+		private final AtomicInteger done;
+		/** Beatmaps with a new star rating that are not yet written to the database. */
+		private final ArrayList<Beatmap> pending;
+		private volatile boolean cancelled;
+
+		Job(List<Beatmap> maps)
+		{
+			this.total = maps.size();
+			this.done = new AtomicInteger();
+			this.pending = new ArrayList<>(BATCH_SIZE);
+			final int threads = OPTION_PARALLEL_BEATMAP_PARSING.state ? THREADS : 1;
+			final ThreadFactory threadFactory = r -> {
+				final Thread thread = new Thread(r, "StarRatingService");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			};
+			this.pool = new ThreadPoolExecutor(
+				threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory
+			) {
+				@Override
+				protected void terminated()
+				{
+					// after the last beatmap, or after the last running worker stopped when cancelled
+					flush();
+				}
+			};
+			for (Beatmap map : maps) {
+				this.pool.execute(() -> this.calculate(map));
+			}
+			this.pool.shutdown();
+		}
+
+		private void calculate(Beatmap map)
+		{
+			try {
+				while (throttled) {
+					if (this.cancelled) {
+						return;
+					}
+					Thread.sleep(THROTTLE_SLEEP);
+				}
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (this.cancelled) {
+				return;
+			}
+
+			// the song menu may have calculated it in the meantime
+			if (map.starRating < 0) {
+				try {
+					final List<TimingPoint> timingPoints = BeatmapParser.readTimingPoints(map, false);
+					final HitObject[] objects = BeatmapParser.readHitObjects(map, 1, false);
+					final BeatmapDifficultyCalculator diffCalc;
+					diffCalc = new BeatmapDifficultyCalculator(map, objects, timingPoints);
+					diffCalc.calculate();
+					if (diffCalc.getStarRating() != -1) {
+						map.starRating = diffCalc.getStarRating();
+						this.add(map);
+					}
+				} catch (Exception e) {
+					// reading the file fails when the worker is interrupted
+					if (!this.cancelled) {
+						Log.warn(String.format("Failed to calculate star rating for beatmap '%s'.", map), e);
+					}
+				}
+			}
+			this.done.incrementAndGet();
+		}
+
+		private void add(Beatmap map)
+		{
+			final boolean full;
+			synchronized (this.pending) {
+				this.pending.add(map);
+				full = this.pending.size() >= BATCH_SIZE;
+			}
+			if (full) {
+				this.flush();
+			}
+		}
+
+		/**
+		 * Writes the pending star ratings to the database, one flush at a time.
+		 * Their metadata is only updated if this is still the running job.
+		 */
+		private synchronized void flush()
+		{
+			final ArrayList<Beatmap> batch;
+			synchronized (this.pending) {
+				if (this.pending.isEmpty()) {
+					return;
+				}
+				batch = new ArrayList<>(this.pending);
+				this.pending.clear();
+			}
+			BeatmapDB.setStars(batch);
+			if (job == this) {
+				calculated.addAll(batch);
+			}
+		}
+
+		/**
+		 * Stops the workers without waiting for them, beatmaps that didn't start
+		 * yet are dropped. The pending star ratings are written when the pool
+		 * terminates.
+		 */
+		void cancel()
+		{
+			this.cancelled = true;
+			this.pool.shutdownNow();
+		}
+	}
+}
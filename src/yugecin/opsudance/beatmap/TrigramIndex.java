@@ -0,0 +1,265 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package yugecin.opsudance.beatmap;
+
+import java.util.Arrays;
+
+/**
+ * Inverted index from every three character sequence to the ids of the strings
+ * containing it, used to find candidates for a {@link String#contains} search
+ * without testing every string.
+ * <p>
+ * Ids must be added in ascending order, so every posting list stays sorted.
+ * Posting lists are stored as the differences between successive ids, each
+ * as a variable length number of 7 bits per byte, most ids take one or two
+ * bytes instead of four. Not thread safe.
+ */
+public class TrigramIndex
+{
+	public static final int[] NO_IDS = {};
+
+	private static final int INITIAL_TABLE_SIZE = 1024;
+
+	/** Open addressing hash table of {@code trigram + 1}, 0 for empty buckets. */
+	private long[] keys;
+	/** Posting list index for every bucket in {@link #keys}. */
+	private int[] postingIndices;
+	/** Delta encoded ids of every posting list, see {@link #append}. */
+	private byte[][] postings;
+	/** Amount of bytes used in every posting list. */
+	private int[] postingSizes;
+	/** Amount of ids in every posting list. */
+	private int[] postingCounts;
+	/** Last id added to every posting list. */
+	private int[] lastIds;
+	private int trigramCount;
+
+	public TrigramIndex()
+	{
+		this.keys = new long[INITIAL_TABLE_SIZE];
+		this.postingIndices = new int[INITIAL_TABLE_SIZE];
+		this.postings = new byte[INITIAL_TABLE_SIZE / 2][];
+		this.postingSizes = new int[INITIAL_TABLE_SIZE / 2];
+		this.postingCounts = new int[INITIAL_TABLE_SIZE / 2];
+		this.lastIds = new int[INITIAL_TABLE_SIZE / 2];
+	}
+
+	/**
+	 * Adds all trigrams of the string, {@code id} must be greater than all
+	 * previously added ids.
+	 */
+	public void add(int id, String value)
+	{
+		for (int i = 0, end = value.length() - 2; i < end; i++) {
+			final int posting = this.postingIndex(trigram(value, i), true);
+			if (this.postingCounts[posting] > 0 && this.lastIds[posting] == id) {
+				// trigram occurs more than once in this string
+				continue;
+			}
+			this.append(posting, id - this.lastIds[posting]);
+			this.lastIds[posting] = id;
+			this.postingCounts[posting]++;
+		}
+	}
+
+	/**
+	 * Removes the id from the posting lists of all trigrams of the string,
+	 * which must be the same string it was added with.
+	 */
+	public void remove(int id, String value)
+	{
+		for (int i = 0, end = value.length() - 2; i < end; i++) {
+			final int posting = this.postingIndex(trigram(value, i), false);
+			if (posting == -1 || this.postingCounts[posting] == 0) {
+				continue;
+			}
+			final int[] ids = this.decode(posting);
+			final int index = Arrays.binarySearch(ids, id);
+			if (index < 0) {
+				// trigram occurs more than once in this string
+				continue;
+			}
+			// encode the list again without the id, the emptied list and its trigram are kept
+			this.postingSizes[posting] = 0;
+			this.postingCounts[posting] = 0;
+			this.lastIds[posting] = 0;
+			for (int j = 0; j < ids.length; j++) {
+				if (j != index) {
+					this.append(posting, ids[j] - this.lastIds[posting]);
+					this.lastIds[posting] = ids[j];
+					this.postingCounts[posting]++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Appends a delta to a posting list, 7 bits per byte starting with the
+	 * lowest bits, the high bit is set on all bytes except the last one.
+	 */
+	private void append(int posting, int delta)
+	{
+		byte[] bytes = this.postings[posting];
+		int size = this.postingSizes[posting];
+		if (size + 5 > bytes.length) {
+			this.postings[posting] = bytes = Arrays.copyOf(bytes, Math.max(size + 5, size * 2));
+		}
+		while ((delta & ~0x7F) != 0) {
+			bytes[size++] = (byte) (delta | 0x80);
+			delta >>>= 7;
+		}
+		bytes[size++] = (byte) delta;
+		this.postingSizes[posting] = size;
+	}
+
+	/**
+	 * Returns the ids of the strings that contain all trigrams of the term, in
+	 * ascending order. This is a superset of the strings containing the term,
+	 * every candidate still needs to be verified.
+	 * @return the candidate ids, or {@code null} if the term is too short to
+	 *         use the index, in which case every string is a candidate
+	 */
+	public int[] candidates(String term)
+	{
+		final int count = term.length() - 2;
+		if (count < 1) {
+			return null;
+		}
+
+		// start with the shortest posting list
+		final int[] lists = new int[count];
+		int shortest = 0;
+		for (int i = 0; i < count; i++) {
+			final int posting = this.postingIndex(trigram(term, i), false);
+			if (posting == -1) {
+				return NO_IDS;
+			}
+			lists[i] = posting;
+			if (this.postingCounts[posting] < this.postingCounts[lists[shortest]]) {
+				shortest = i;
+			}
+		}
+		final int[] result = this.decode(lists[shortest]);
+		int size = result.length;
+		for (int i = 0; i < count && size > 0; i++) {
+			if (i != shortest) {
+				size = this.intersect(result, size, lists[i]);
+			}
+		}
+		return size == result.length ? result : Arrays.copyOf(result, size);
+	}
+
+	private int[] decode(int posting)
+	{
+		final byte[] bytes = this.postings[posting];
+		final int[] ids = new int[this.postingCounts[posting]];
+		int id = 0;
+		for (int i = 0, pos = 0; i < ids.length; i++) {
+			int delta = 0, b, shift = 0;
+			do {
+				b = bytes[pos++];
+				delta |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			ids[i] = id += delta;
+		}
+		return ids;
+	}
+
+	/**
+	 * Keeps the elements of {@code a} that are also in the posting list, both sorted.
+	 * @return the new size of {@code a}
+	 */
+	private int intersect(int[] a, int asize, int posting)
+	{
+		final byte[] bytes = this.postings[posting];
+		final int end = this.postingSizes[posting];
+		int size = 0, pos = 0, id = 0;
+		for (int i = 0; i < asize && pos < end;) {
+			int delta = 0, b, shift = 0;
+			do {
+				b = bytes[pos++];
+				delta |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			id += delta;
+			while (i < asize && a[i] < id) {
+				i++;
+			}
+			if (i < asize && a[i] == id) {
+				a[size++] = id;
+				i++;
+			}
+		}
+		return size;
+	}
+
+	private static long trigram(String value, int index)
+	{
+		return ((long) value.charAt(index) << 32)
+			| ((long) value.charAt(index + 1) << 16)
+			| value.charAt(index + 2);
+	}
+
+	/**
+	 * @return the index of the posting list of the trigram, or -1 if it's
+	 *         not in the index and {@code create} is {@code false}
+	 */
+	private int postingIndex(long trigram, boolean create)
+	{
+		final long key = trigram + 1;
+		int mask = this.keys.length - 1;
+		int bucket = hash(key) & mask;
+		long k;
+		while ((k = this.keys[bucket]) != 0) {
+			if (k == key) {
+				return this.postingIndices[bucket];
+			}
+			bucket = (bucket + 1) & mask;
+		}
+		if (!create) {
+			return -1;
+		}
+		final int index = this.trigramCount++;
+		if (index == this.postings.length) {
+			this.postings = Arrays.copyOf(this.postings, index * 2);
+			this.postingSizes = Arrays.copyOf(this.postingSizes, index * 2);
+			this.postingCounts = Arrays.copyOf(this.postingCounts, index * 2);
+			this.lastIds = Arrays.copyOf(this.lastIds, index * 2);
+		}
+		this.postings[index] = new byte[4];
+		this.keys[bucket] = key;
+		this.postingIndices[bucket] = index;
+		if (this.trigramCount * 2 > this.keys.length) {
+			this.rehash(this.keys.length * 2);
+		}
+		return index;
+	}
+
+	private void rehash(int tableSize)
+	{
+		final long[] keys = new long[tableSize];
+		final int[] postingIndices = new int[tableSize];
+		final int mask = tableSize - 1;
+		for (int i = 0; i < this.keys.length; i++) {
+			final long key = this.keys[i];
+			if (key == 0) {
+				continue;
+			}
+			int bucket = hash(key) & mask;
+			while (keys[bucket] != 0) {
+				bucket = (bucket + 1) & mask;
+			}
+			keys[bucket] = key;
+			postingIndices[bucket] = this.postingIndices[i];
+		}
+		this.keys = keys;
+		this.postingIndices = postingIndices;
+	}
+
+	private static int hash(long key)
+	{
+		key *= 0x9E3779B97F4A7C15L;
+		return (int) (key ^ (key >>> 32));
+	}
+}
@@ -15,6 +15,7 @@ import org.newdawn.slick.util.FileSystemLocation;
 import org.newdawn.slick.util.ResourceLoader;
 
 import yugecin.opsudance.core.input.Input;
+import yugecin.opsudance.beatmap.StarRatingService;
 import yugecin.opsudance.core.state.specialstates.BarNotificationState;
 import yugecin.opsudance.core.state.specialstates.BubNotifState;
 import yugecin.opsudance.core.state.specialstates.FpsRenderState;
@@ -59,6 +60,7 @@ public class InstanceContainer
 	public static ReplayImporter replayImporter;
 	public static BeatmapList beatmapList;
 	public static BeatmapParser beatmapParser;
+	public static StarRatingService starRatingService;
 	public static Updater updater;
 
 	public static VolumeControl volumeControl;
@@ -112,6 +114,7 @@ public class InstanceContainer
 		oszunpacker = new OszUnpacker();
 		replayImporter = new ReplayImporter();
 		beatmapParser = new BeatmapParser();
+		starRatingService = new StarRatingService();
 		updater = new Updater();
 
 		displayContainer = new DisplayContainer();
@@ -19,7 +19,6 @@ package yugecin.opsudance.objects.curves;
 
 import itdelatrisu.opsu.beatmap.HitObject;
 import itdelatrisu.opsu.objects.curves.Curve;
-import itdelatrisu.opsu.objects.curves.Vec2f;
 import itdelatrisu.opsu.render.CurveRenderState;
 import org.newdawn.slick.Color;
 
@@ -30,9 +29,12 @@ public class FakeCombinedCurve extends Curve {
 
 	private List<Integer> pointsToRender;
 
-	public FakeCombinedCurve(Vec2f[] points) {
+	/**
+	 * @param points the points of all sliders as x, y pairs
+	 */
+	public FakeCombinedCurve(float[] points) {
 		super(new HitObject(0, 0, 0), false);
-		this.curve = points;
+		initPoints(points, null);
 		pointsToRender = new ArrayList<>();
 	}
 
@@ -48,15 +50,10 @@ public class FakeCombinedCurve extends Curve {
 	@Override
 	public void draw(Color color) {
 		if (renderState == null)
-			renderState = new CurveRenderState(hitObject, curve, true);
+			renderState = new CurveRenderState(hitObject, getPoints(), true);
 		renderState.draw(color, borderColor, pointsToRender);
 	}
 
-	@Override
-	public Vec2f pointAt(float t) {
-		return null;
-	}
-
 	@Override
 	public float getEndAngle() {
 		return 0;
@@ -38,6 +38,7 @@ public class Configuration
 	public final File SCORE_DB;
 	public final File NATIVE_DIR;
 	public final File TEMP_DIR;
+	public final File THUMBNAIL_DIR;
 
 	public final File OPTIONS_FILE;
 
@@ -58,6 +59,7 @@ public class Configuration
 		SCORE_DB = new File(Entrypoint.workingdir, ".opsu_scores.db");
 		NATIVE_DIR = new File(Entrypoint.workingdir, "Natives/");
 		TEMP_DIR = new File(Entrypoint.workingdir, "Temp/");
+		THUMBNAIL_DIR = new File(Entrypoint.workingdir, "Thumbnails/");
 
 		OPTIONS_FILE = new File(Entrypoint.workingdir, ".opsu.cfg");
 
@@ -28,7 +28,10 @@ public class OptionGroups {
 		new OptionTab("General", GameImage.MENU_NAV_GENERAL),
 		new OptionTab("GENERAL", new Option[]{
 			OPTION_DISABLE_UPDATER,
-			OPTION_ENABLE_WATCH_SERVICE
+			OPTION_ENABLE_WATCH_SERVICE,
+			OPTION_PARALLEL_BEATMAP_PARSING,
+			OPTION_BACKGROUND_THUMBNAILS,
+			OPTION_BACKGROUND_CACHE_SIZE
 		}),
 		new OptionTab("LANGUAGE", new Option[]{
 			OPTION_SHOW_UNICODE,
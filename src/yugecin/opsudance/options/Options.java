@@ -613,6 +613,14 @@ public class Options
 	public static final ToggleOption OPTION_REPLAY_SEEKING = new ToggleOption("Replay Seeking", "ReplaySeeking", "Enable a seeking bar on the left side of the screen during replays.", false);
 	public static final ToggleOption OPTION_DISABLE_UPDATER = new ToggleOption("Disable Automatic Updates", "DisableUpdater", "Disable automatic checking for updates upon starting opsu!.", false);
 	public static final ToggleOption OPTION_ENABLE_WATCH_SERVICE = new ToggleOption("Enable Watch Service", "WatchService", "Watch the beatmap directory for changes. Requires a restart.", false);
+	public static final ToggleOption OPTION_PARALLEL_BEATMAP_PARSING = new ToggleOption("Parallel Beatmap Parsing", "ParallelBeatmapParsing", "Use multiple threads when scanning the beatmap directory.", true);
+	public static final NumericOption OPTION_BACKGROUND_CACHE_SIZE = new NumericOption("Background Cache Size", "BackgroundCacheSize", "Memory used to keep recently shown backgrounds loaded.", 128, 32, 1024) {
+		@Override
+		public String getValueString() {
+			return String.format("%dMB", val);
+		}
+	};
+	public static final ToggleOption OPTION_BACKGROUND_THUMBNAILS = new ToggleOption("Cache Scaled Backgrounds", "BackgroundThumbnails", "Keep backgrounds scaled to the screen size on disk, so they load faster.", true);
 	public static final ListOption OPTION_DANCE_MOVER = new ListOption("Algorithm", "Mover", "Algorithm that decides how to move from note to note" ) {
 		@Override
 		public Object[] getListItems () {
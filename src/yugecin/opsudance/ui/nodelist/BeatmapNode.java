@@ -288,13 +288,14 @@ class BeatmapNode extends Node
 		versionfont.drawString(cx, y + versionYoffset, beatmap.version, textColor);
 
 		// draw stars
-		if (beatmap.starRating < 0) {
+		final double starRating = beatmap.getStarRating();
+		if (starRating < 0) {
 			return;
 		}
 
 		glPushMatrix();
 		glTranslatef(cx, y + starYoffset, 0f);
-		final float stars = (float) beatmap.starRating * starProgress;
+		final float stars = (float) starRating * starProgress;
 		int fullStars = (int) Math.floor(stars);
 		glColor3f(1f, 1f, 1f);
 		glBindTexture(GL_TEXTURE_2D, starTexture.id);
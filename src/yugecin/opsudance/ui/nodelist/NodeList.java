@@ -25,6 +25,12 @@ import static org.lwjgl.opengl.GL11.*;
  */
 public class NodeList
 {
+	/**
+	 * amount of beatmaps on each side of the focused node of which the
+	 * background image is prefetched
+	 */
+	private static final int PREFETCH_DISTANCE = 2;
+
 	private final StarStream starStream;
 
 	public final Scrolling scrolling;
@@ -572,7 +578,7 @@ public class NodeList
 		}
 		MusicController.play(beatmap, /*loop*/ false, playAtPreviewTime);
 		if (displayContainer.isIn(songMenuState)) {
-			beatmap.loadBackground();
+			Beatmap.loadBackgrounds(beatmap, this.getPrefetchBeatmaps(node));
 			this.centerFocusedNodeSmooth();
 		}
 		for (int i = this.size; i > 0;) {
@@ -581,6 +587,52 @@ public class NodeList
 		this.selectedNode = node;
 	}
 
+	/**
+	 * @return the closest beatmaps around the node that have a different
+	 *         background image, nearest first
+	 */
+	private Beatmap[] getPrefetchBeatmaps(BeatmapNode node)
+	{
+		final Beatmap[] result = new Beatmap[PREFETCH_DISTANCE * 2];
+		int count = 0;
+		int before = 0, after = 0;
+		for (int i = 1; i < this.size && (before + after) < result.length; i++) {
+			for (int dir = 1; dir >= -1; dir -= 2) {
+				if ((dir > 0 ? after : before) == PREFETCH_DISTANCE) {
+					continue;
+				}
+				final int idx = node.idx + i * dir;
+				if (idx < 0 || idx >= this.size) {
+					continue;
+				}
+				final Node n = this.nodes[idx];
+				final Beatmap bm;
+				if (n instanceof BeatmapNode) {
+					bm = ((BeatmapNode) n).beatmap;
+				} else if (n instanceof MultiBeatmapNode) {
+					bm = ((MultiBeatmapNode) n).beatmaps[0];
+				} else {
+					continue;
+				}
+				if (bm.bg == null || bm.bg.equals(node.beatmap.bg)) {
+					continue;
+				}
+				result[count++] = bm;
+				if (dir > 0) {
+					after++;
+				} else {
+					before++;
+				}
+			}
+		}
+		if (count == result.length) {
+			return result;
+		}
+		final Beatmap[] maps = new Beatmap[count];
+		System.arraycopy(result, 0, maps, 0, count);
+		return maps;
+	}
+
 	/**
 	 * call when user presses enter in song menu
 	 * @return {@code true} if game should start
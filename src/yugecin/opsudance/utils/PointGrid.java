@@ -0,0 +1,221 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package yugecin.opsudance.utils;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid of indexed points, to find points that are close to a position
+ * without looking at all of them.
+ * <p>
+ * The cells are at least as large as the search radius, so only the cell of a
+ * position and its eight neighbours need to be searched. Every cell holds the
+ * indices of its points in ascending order, so searches can be limited to a
+ * range of indices, for example a time window of hit objects. The indices
+ * closest to the range end and small ranges are just checked one by one.
+ * <p>
+ * Not safe for use from multiple threads.
+ */
+public class PointGrid
+{
+	/** Maximum number of cells on each axis, cells get larger if the points are too far apart. */
+	private static final int MAX_CELLS = 256;
+
+	/** Number of indices that are checked one by one before searching the cells, which has more overhead. */
+	private static final int SCAN_RANGE = 16;
+
+	private final float[] points;
+	private final float radius;
+	private final float minX, minY, cellSize;
+	private final int columns, rows;
+	/** Start of every cell in {@link #indices}, and the end of the last one. */
+	private final int[] cellStart;
+	/** Indices of the points, grouped by cell. */
+	private final int[] indices;
+	/** Positions in {@link #indices} and the start of their cells while searching. */
+	private final int[] cursors = new int[9], cursorEnds = new int[9];
+
+	/**
+	 * @param points the x, y coordinates of the points, a NaN x coordinate
+	 *               means that index has no point; not copied
+	 * @param radius the search radius
+	 */
+	public PointGrid(float[] points, float radius)
+	{
+		this.points = points;
+		this.radius = radius;
+
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+		int count = 0;
+		for (int i = 0; i < points.length; i += 2) {
+			if (Float.isNaN(points[i])) {
+				continue;
+			}
+			minX = Math.min(minX, points[i]);
+			maxX = Math.max(maxX, points[i]);
+			minY = Math.min(minY, points[i + 1]);
+			maxY = Math.max(maxY, points[i + 1]);
+			count++;
+		}
+		if (count == 0) {
+			minX = minY = maxX = maxY = 0f;
+		}
+		this.minX = minX;
+		this.minY = minY;
+		this.cellSize = Math.max(radius, Math.max(maxX - minX, maxY - minY) / MAX_CELLS);
+		this.columns = (int) ((maxX - minX) / this.cellSize) + 1;
+		this.rows = (int) ((maxY - minY) / this.cellSize) + 1;
+
+		// counting sort by cell, keeps the indices ascending within every cell
+		final int[] cells = new int[points.length / 2];
+		this.cellStart = new int[this.columns * this.rows + 1];
+		for (int i = 0; i < cells.length; i++) {
+			if (Float.isNaN(points[i * 2])) {
+				cells[i] = -1;
+				continue;
+			}
+			cells[i] = this.row(points[i * 2 + 1]) * this.columns + this.column(points[i * 2]);
+			this.cellStart[cells[i] + 1]++;
+		}
+		for (int i = 1; i < this.cellStart.length; i++) {
+			this.cellStart[i] += this.cellStart[i - 1];
+		}
+		this.indices = new int[count];
+		final int[] next = Arrays.copyOf(this.cellStart, this.cellStart.length - 1);
+		for (int i = 0; i < cells.length; i++) {
+			if (cells[i] != -1) {
+				this.indices[next[cells[i]]++] = i;
+			}
+		}
+	}
+
+	/**
+	 * Returns the highest index in {@code (after, before)} of a point that is
+	 * closer than the radius to a position.
+	 * @return the index, or -1 if there is no such point
+	 */
+	public int previous(float x, float y, int before, int after)
+	{
+		// close points are often close in index too, check the nearest ones first
+		final int scanEnd = Math.max(after, before - 1 - SCAN_RANGE);
+		for (int index = before - 1; index > scanEnd; index--) {
+			if (this.isClose(index, x, y)) {
+				return index;
+			}
+		}
+		if (scanEnd == after) {
+			return -1;
+		}
+		before = scanEnd + 1;
+
+		// walk the cells together from high to low indices, so the points that are
+		// skipped are at most the ones between the found index and before
+		int cursorCount = 0;
+		final int column = this.column(x), row = this.row(y);
+		final int lastColumn = Math.min(column + 1, this.columns - 1);
+		final int lastRow = Math.min(row + 1, this.rows - 1);
+		for (int r = Math.max(row - 1, 0); r <= lastRow; r++) {
+			for (int c = Math.max(column - 1, 0); c <= lastColumn; c++) {
+				final int cell = r * this.columns + c;
+				final int start = this.cellStart[cell];
+				int k = Arrays.binarySearch(this.indices, start, this.cellStart[cell + 1], before);
+				if (k < 0) {
+					k = -k - 1;
+				}
+				if (k > start) {
+					this.cursors[cursorCount] = k - 1;
+					this.cursorEnds[cursorCount++] = start;
+				}
+			}
+		}
+		while (cursorCount > 0) {
+			int highest = 0;
+			for (int i = 1; i < cursorCount; i++) {
+				if (this.indices[this.cursors[i]] > this.indices[this.cursors[highest]]) {
+					highest = i;
+				}
+			}
+			final int index = this.indices[this.cursors[highest]];
+			if (index <= after) {
+				break;
+			}
+			if (this.isClose(index, x, y)) {
+				return index;
+			}
+			if (--this.cursors[highest] < this.cursorEnds[highest]) {
+				cursorCount--;
+				this.cursors[highest] = this.cursors[cursorCount];
+				this.cursorEnds[highest] = this.cursorEnds[cursorCount];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds all points in {@code (after, before)} that are closer than the
+	 * radius to a position, in no particular order.
+	 * @param out array for the found indices, large enough for all of them
+	 * @return the number of found indices
+	 */
+	public int collect(float x, float y, int before, int after, int[] out)
+	{
+		int found = 0;
+		if (before - after <= SCAN_RANGE * 2) {
+			for (int index = before - 1; index > after; index--) {
+				if (this.isClose(index, x, y)) {
+					out[found++] = index;
+				}
+			}
+			return found;
+		}
+
+		final int column = this.column(x), row = this.row(y);
+		final int lastColumn = Math.min(column + 1, this.columns - 1);
+		final int lastRow = Math.min(row + 1, this.rows - 1);
+		for (int r = Math.max(row - 1, 0); r <= lastRow; r++) {
+			for (int c = Math.max(column - 1, 0); c <= lastColumn; c++) {
+				final int cell = r * this.columns + c;
+				final int start = this.cellStart[cell];
+				int k = Arrays.binarySearch(this.indices, start, this.cellStart[cell + 1], before);
+				if (k < 0) {
+					k = -k - 1;
+				}
+				while (--k >= start) {
+					final int index = this.indices[k];
+					if (index <= after) {
+						break;
+					}
+					if (this.isClose(index, x, y)) {
+						out[found++] = index;
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Returns whether a point is closer than the radius to a position, false if
+	 * the index has no point.
+	 */
+	private boolean isClose(int index, float x, float y)
+	{
+		final float dx = x - this.points[index * 2];
+		final float dy = y - this.points[index * 2 + 1];
+		return (float) Math.sqrt(dx * dx + dy * dy) < this.radius;
+	}
+
+	/**
+	 * Returns the column of a coordinate, outside of the grid if it's outside of all points.
+	 */
+	private int column(float x)
+	{
+		return (int) Math.max(-2f, Math.min(this.columns + 1, (float) Math.floor((x - this.minX) / this.cellSize)));
+	}
+
+	private int row(float y)
+	{
+		return (int) Math.max(-2f, Math.min(this.rows + 1, (float) Math.floor((y - this.minY) / this.cellSize)));
+	}
+}
@@ -0,0 +1,449 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package yugecin.opsudance.utils;
+
+import yugecin.opsudance.core.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiPredicate;
+
+/**
+ * Least recently used cache bounded by the total weight of its entries, for
+ * example their size in bytes, instead of by the amount of entries.
+ * <p>
+ * Override {@link #weigh} to give entries a weight (1 by default) and
+ * {@link #removed} to clean up the resources of entries that leave the cache.
+ * Entries can optionally expire when they weren't accessed for some time.
+ * <p>
+ * Can be used from any thread. Lookups only take the read lock, so readers
+ * don't block each other, and modifications take the write lock. A lookup
+ * doesn't reorder anything, it stamps its entry with an increasing access
+ * counter, and eviction removes the entries with the lowest stamps. This is an
+ * approximate LRU, a lookup that races with an eviction may still see its
+ * entry evicted. The most recently used entry is never evicted, even if it
+ * alone exceeds the maximum weight.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class WeightedCache<K, V>
+{
+	private final HashMap<K, Node<V>> map;
+	private final Lock readLock, writeLock;
+	/** Source of access stamps, a higher stamp was used more recently. */
+	private final AtomicLong accessCounter;
+	/** Maximum time since the last access of an entry before it expires, 0 to never expire. */
+	private final long expireAfterAccessNanos;
+
+	private long maxWeight;
+	private long totalWeight;
+
+	private final LongAdder hits, misses;
+	private long evictions, expirations;
+
+	/**
+	 * @param maxWeight the maximum total weight of all entries
+	 */
+	public WeightedCache(long maxWeight)
+	{
+		this(maxWeight, 0);
+	}
+
+	/**
+	 * @param maxWeight the maximum total weight of all entries
+	 * @param expireAfterAccessMillis time after the last access after which an
+	 *                                entry is removed, or 0 to never expire
+	 */
+	public WeightedCache(long maxWeight, long expireAfterAccessMillis)
+	{
+		this.map = new HashMap<>();
+		final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+		this.readLock = lock.readLock();
+		this.writeLock = lock.writeLock();
+		this.accessCounter = new AtomicLong();
+		this.maxWeight = maxWeight;
+		this.expireAfterAccessNanos = expireAfterAccessMillis * 1000000L;
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+	}
+
+	/**
+	 * Returns the weight of an entry, called when it's added and by {@link #reweigh()}.
+	 */
+	protected long weigh(K key, V value)
+	{
+		return 1;
+	}
+
+	/**
+	 * Notification that an entry left the cache, because it was evicted, expired,
+	 * replaced, removed or cleared. Called while modifications are blocked.
+	 */
+	protected void removed(K key, V value)
+	{
+	}
+
+	/**
+	 * Returns the value of the key and marks it as most recently used.
+	 * @return the value, or {@code null} if not cached or expired
+	 */
+	@Nullable
+	public V get(K key)
+	{
+		final Node<V> node;
+		this.readLock.lock();
+		try {
+			node = this.map.get(key);
+		} finally {
+			this.readLock.unlock();
+		}
+		if (node == null) {
+			this.misses.increment();
+			return null;
+		}
+		final long now = System.nanoTime();
+		if (this.isExpired(node, now)) {
+			this.writeLock.lock();
+			try {
+				// unless it was replaced or removed in the meantime
+				if (this.map.get(key) == node) {
+					this.map.remove(key);
+					this.expirations++;
+					this.detach(key, node);
+				}
+			} finally {
+				this.writeLock.unlock();
+			}
+			this.misses.increment();
+			return null;
+		}
+		node.accessTime = now;
+		node.accessStamp = this.accessCounter.incrementAndGet();
+		this.hits.increment();
+		return node.value;
+	}
+
+	/**
+	 * Adds or replaces an entry, then evicts the least recently used entries
+	 * until the total weight is within bounds again.
+	 */
+	public void put(K key, V value)
+	{
+		this.writeLock.lock();
+		try {
+			final Node<V> node = new Node<>(
+				value, this.weigh(key, value), System.nanoTime(), this.accessCounter.incrementAndGet()
+			);
+			final Node<V> old = this.map.put(key, node);
+			if (old != null) {
+				this.detach(key, old);
+			}
+			this.totalWeight += node.weight;
+			this.evict();
+		} finally {
+			this.writeLock.unlock();
+		}
+	}
+
+	/**
+	 * @return the removed value, or {@code null} if the key wasn't cached
+	 */
+	@Nullable
+	public V remove(K key)
+	{
+		this.writeLock.lock();
+		try {
+			final Node<V> node = this.map.remove(key);
+			if (node == null) {
+				return null;
+			}
+			this.detach(key, node);
+			return node.value;
+		} finally {
+			this.writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Removes all entries that match the filter, least recently used first.
+	 */
+	public void removeIf(BiPredicate<? super K, ? super V> filter)
+	{
+		this.writeLock.lock();
+		try {
+			for (Access<K, V> entry : this.entriesByAccess()) {
+				if (filter.test(entry.key, entry.node.value)) {
+					this.map.remove(entry.key);
+					this.detach(entry.key, entry.node);
+				}
+			}
+		} finally {
+			this.writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Removes all entries, least recently used first.
+	 */
+	public void clear()
+	{
+		this.writeLock.lock();
+		try {
+			for (Access<K, V> entry : this.entriesByAccess()) {
+				this.map.remove(entry.key);
+				this.detach(entry.key, entry.node);
+			}
+		} finally {
+			this.writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Calculates the weight of all entries again, for values that change in
+	 * weight after they were added, and evicts entries if needed.
+	 */
+	public void reweigh()
+	{
+		this.writeLock.lock();
+		try {
+			long total = 0;
+			for (Map.Entry<K, Node<V>> entry : this.map.entrySet()) {
+				final Node<V> node = entry.getValue();
+				total += node.weight = this.weigh(entry.getKey(), node.value);
+			}
+			this.totalWeight = total;
+			this.evict();
+		} finally {
+			this.writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Calculates the weight of one entry again, for a value that changed in
+	 * weight after it was added, and evicts entries if needed. Doesn't count
+	 * as an access.
+	 */
+	public void reweigh(K key)
+	{
+		this.writeLock.lock();
+		try {
+			final Node<V> node = this.map.get(key);
+			if (node != null) {
+				this.totalWeight -= node.weight;
+				this.totalWeight += node.weight = this.weigh(key, node.value);
+				this.evict();
+			}
+		} finally {
+			this.writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Changes the maximum total weight, evicting entries if needed.
+	 */
+	public void setMaxWeight(long maxWeight)
+	{
+		this.writeLock.lock();
+		try {
+			if (this.maxWeight != maxWeight) {
+				this.maxWeight = maxWeight;
+				this.evict();
+			}
+		} finally {
+			this.writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the expired entries and the least recently used entries that
+	 * don't fit within the maximum weight. Called with the write lock held.
+	 */
+	private void evict()
+	{
+		if (this.map.size() <= 1 || this.expireAfterAccessNanos == 0 && this.totalWeight <= this.maxWeight) {
+			return;
+		}
+		final long now = System.nanoTime();
+		final List<Access<K, V>> entries = this.entriesByAccess();
+		// the last entry is the most recently used one, which is always kept
+		for (int i = 0, end = entries.size() - 1; i < end; i++) {
+			final Access<K, V> entry = entries.get(i);
+			final Node<V> node = entry.node;
+			if (this.isExpired(node, now)) {
+				this.expirations++;
+			} else if (this.totalWeight > this.maxWeight) {
+				this.evictions++;
+			} else {
+				// entries after this one were used more recently
+				break;
+			}
+			this.map.remove(entry.key);
+			this.detach(entry.key, node);
+		}
+	}
+
+	/**
+	 * Returns the entries sorted by their access stamp, least recently used
+	 * first. Called with a lock held.
+	 */
+	private List<Access<K, V>> entriesByAccess()
+	{
+		final ArrayList<Access<K, V>> entries = new ArrayList<>(this.map.size());
+		for (Map.Entry<K, Node<V>> entry : this.map.entrySet()) {
+			entries.add(new Access<>(entry.getKey(), entry.getValue()));
+		}
+		entries.sort(Access.ORDER);
+		return entries;
+	}
+
+	private void detach(K key, Node<V> node)
+	{
+		this.totalWeight -= node.weight;
+		this.removed(key, node.value);
+	}
+
+	private boolean isExpired(Node<V> node, long now)
+	{
+		return this.expireAfterAccessNanos > 0 && now - node.accessTime > this.expireAfterAccessNanos;
+	}
+
+	/**
+	 * Returns a snapshot of the cached values, least recently used first.
+	 */
+	public Collection<V> values()
+	{
+		this.readLock.lock();
+		try {
+			final List<Access<K, V>> entries = this.entriesByAccess();
+			final ArrayList<V> values = new ArrayList<>(entries.size());
+			for (Access<K, V> entry : entries) {
+				values.add(entry.node.value);
+			}
+			return values;
+		} finally {
+			this.readLock.unlock();
+		}
+	}
+
+	public int size()
+	{
+		this.readLock.lock();
+		try {
+			return this.map.size();
+		} finally {
+			this.readLock.unlock();
+		}
+	}
+
+	public long getWeight()
+	{
+		this.readLock.lock();
+		try {
+			return this.totalWeight;
+		} finally {
+			this.readLock.unlock();
+		}
+	}
+
+	public long getMaxWeight()
+	{
+		this.readLock.lock();
+		try {
+			return this.maxWeight;
+		} finally {
+			this.readLock.unlock();
+		}
+	}
+
+	public long getHitCount()
+	{
+		return this.hits.sum();
+	}
+
+	public long getMissCount()
+	{
+		return this.misses.sum();
+	}
+
+	public long getEvictionCount()
+	{
+		this.readLock.lock();
+		try {
+			return this.evictions;
+		} finally {
+			this.readLock.unlock();
+		}
+	}
+
+	public long getExpirationCount()
+	{
+		this.readLock.lock();
+		try {
+			return this.expirations;
+		} finally {
+			this.readLock.unlock();
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format(
+			"%d entries, weight %d/%d, %d hits, %d misses, %d evictions, %d expirations",
+			this.size(),
+			this.getWeight(),
+			this.getMaxWeight(),
+			this.getHitCount(),
+			this.getMissCount(),
+			this.getEvictionCount(),
+			this.getExpirationCount()
+		);
+	}
+
+	private static class Node<V>
+	{
+		final V value;
+		long weight;
+		/** {@link System#nanoTime()} of the last access, written without the write lock. */
+		volatile long accessTime;
+		/** Value of the access counter at the last access, written without the write lock. */
+		volatile long accessStamp;
+
+		Node(V value, long weight, long accessTime, long accessStamp)
+		{
+			this.value = value;
+			this.weight = weight;
+			this.accessTime = accessTime;
+			this.accessStamp = accessStamp;
+		}
+	}
+
+	/**
+	 * An entry with the access stamp it had when the entries were sorted, since
+	 * lookups can change the stamp of the node while sorting.
+	 */
+	private static class Access<K, V>
+	{
+		static final Comparator<Access<?, ?>> ORDER = Comparator.comparingLong(access -> access.stamp);
+
+		final K key;
+		final Node<V> node;
+		final long stamp;
+
+		Access(K key, Node<V> node)
+		{
+			this.key = key;
+			this.node = node;
+			this.stamp = node.accessStamp;
+		}
+	}
+}
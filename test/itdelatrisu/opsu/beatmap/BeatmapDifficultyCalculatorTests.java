@@ -0,0 +1,120 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package itdelatrisu.opsu.beatmap;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static itdelatrisu.opsu.beatmap.BeatmapDifficultyCalculator.*;
+import static org.junit.Assert.*;
+
+public class BeatmapDifficultyCalculatorTests
+{
+	/**
+	 * Speed stars, aim stars and star rating of the maps made by {@link #generate},
+	 * calculated by the implementation that kept an object per hit object and
+	 * walked the slider curves every millisecond.
+	 */
+	private static final double[][] REFERENCE = {
+		{ 1.0137907214132815, 1.8608306436602884, 3.298141326197073 },
+		{ 1.1484019234528984, 1.4905377170088143, 2.8100075372396707 },
+		{ 1.2159889771822134, 1.8501000485783095, 3.383144561458571 },
+		{ 1.216595426573067, 1.8961235993221872, 3.4524831122698143 },
+		{ 1.2276215761036555, 2.245384609435113, 3.9818877022044976 },
+		{ 1.2735140608847828, 1.8464431692806105, 3.406421784363307 },
+		{ 1.0996551971841158, 1.6292288480622632, 2.9936708706854525 },
+		{ 1.3605504119833651, 2.149634313525608, 3.9047266762800943 },
+		{ 1.3187544764620982, 1.8296844561452341, 3.4039039224489 },
+		{ 1.3035661303116333, 1.8849484015859128, 3.4792056675346856 },
+		{ 1.4187243354600123, 2.658537375701445, 4.697168231282173 },
+		{ 1.300658946424953, 1.9284865640150795, 3.5430593192350956 },
+	};
+
+	/** Slider movement is calculated per segment instead of per millisecond, which only changes rounding. */
+	private static final double TOLERANCE = 1e-6;
+
+	@BeforeClass
+	public static void init()
+	{
+		HitObject.init(640, 480);
+	}
+
+	@Test
+	public void star_ratings_should_match_the_reference()
+	{
+		final Random rand = new Random(72);
+		for (int i = 0; i < REFERENCE.length; i++) {
+			final Beatmap map = generate(rand, 50 + 50 * i);
+			final BeatmapDifficultyCalculator calc;
+			calc = new BeatmapDifficultyCalculator(map, map.objects, map.timingPoints);
+			calc.calculate();
+			assertEquals("speed of map " + i, REFERENCE[i][0], calc.getStars(DIFFICULTY_SPEED), TOLERANCE);
+			assertEquals("aim of map " + i, REFERENCE[i][1], calc.getStars(DIFFICULTY_AIM), TOLERANCE);
+			assertEquals("stars of map " + i, REFERENCE[i][2], calc.getStarRating(), TOLERANCE);
+		}
+	}
+
+	@Test
+	public void calculating_again_should_give_the_same_result()
+	{
+		final Beatmap map = generate(new Random(7), 300);
+		final BeatmapDifficultyCalculator calc;
+		calc = new BeatmapDifficultyCalculator(map, map.objects, map.timingPoints);
+		calc.calculate();
+		final double stars = calc.getStarRating();
+		calc.calculate();
+		assertEquals(stars, calc.getStarRating(), 0d);
+	}
+
+	/**
+	 * Makes a map with random circles, sliders of every curve type, spinners
+	 * and slider velocity changes.
+	 */
+	static Beatmap generate(Random rand, int objects)
+	{
+		final Beatmap map = new Beatmap(null);
+		map.circleSize = 2 + rand.nextInt(50) / 10f;
+		map.sliderMultiplier = 1 + rand.nextInt(10) / 10f;
+		map.timingPoints = new ArrayList<>();
+		int time = rand.nextInt(2000);
+		for (int i = 0; i < objects / 50 + 1; i++) {
+			if (i % 4 == 0) {
+				map.timingPoints.add(new TimingPoint(time + "," + 60000f / (120 + rand.nextInt(120)) + ",4,2,1,60,1,0"));
+			} else {
+				map.timingPoints.add(new TimingPoint(time + "," + -25 * (1 + rand.nextInt(8)) + ",4,2,1,60,0,0"));
+			}
+			time += 1000 + rand.nextInt(10000);
+		}
+
+		map.objects = new HitObject[objects];
+		time = rand.nextInt(2000);
+		for (int i = 0; i < objects; i++) {
+			final int x = rand.nextInt(512), y = rand.nextInt(384);
+			final String line;
+			final int kind = rand.nextInt(100);
+			if (kind < 60) {
+				line = x + "," + y + "," + time + ",1,0";
+				time += 80 + rand.nextInt(300);
+			} else if (kind < 98) {
+				final StringBuilder sb = new StringBuilder();
+				sb.append(x).append(',').append(y).append(',').append(time).append(",2,0,");
+				sb.append("BLP".charAt(rand.nextInt(3)));
+				final int points = 2 + rand.nextInt(4);
+				for (int p = 0; p < points; p++) {
+					sb.append('|').append(rand.nextInt(512)).append(':').append(rand.nextInt(384));
+				}
+				sb.append(',').append(1 + rand.nextInt(3)).append(',').append(50 + rand.nextInt(250));
+				line = sb.toString();
+				time += 300 + rand.nextInt(1500);
+			} else {
+				line = "256,192," + time + ",8,0," + (time + 1500);
+				time += 2000;
+			}
+			map.objects[i] = new HitObject(line);
+		}
+		return map;
+	}
+}
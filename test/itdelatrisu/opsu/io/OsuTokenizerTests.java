@@ -0,0 +1,163 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package itdelatrisu.opsu.io;
+
+import itdelatrisu.opsu.beatmap.HitObject;
+import itdelatrisu.opsu.beatmap.TimingPoint;
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OsuTokenizerTests
+{
+	/**
+	 * Hit object lines and their {@link HitObject#toString()} after parsing them
+	 * with the old {@code String.split()} parser.
+	 */
+	private static final String[][] HIT_OBJECTS = {
+		{ "256,192,1000,1,0", "256,192,1000,1,0" },
+		{ "256,192,1000,5,2,0:0:0:0:", "256,192,1000,5,2,0:0:0:0:" },
+		{ "256.5,-12.25,1000,1,8,1:2:3:70:hit.wav", "256.5,-12.25,1000,1,8,1:2:3:70:hit.wav" },
+		{ "256,192,1000,1,127,1:2:3:4:x", "256,192,1000,1,127,1:2:3:4:x" },
+		{ "256,192,1000,1,0,1", "256,192,1000,1,0" },
+		{ "256,192,1000,1,0,1:2", "256,192,1000,1,0,1:2:0:0:" },
+		{
+			"300,68,4591,2,0,B|372:100|332:172|420:192,2,180,2|2|2,0:0|0:0|0:0,0:0:0:0:",
+			"300,68,4591,2,0,B|372:100|332:172|420:192,2,180.0,2|2|2,0:0|0:0|0:0,0:0:0:0:"
+		},
+		{ "300,68,4591,2,0,B|372:100|332:172|,2,180", "300,68,4591,2,0,B|372:100|332:172,2,180.0" },
+		{ "300,68,4591,2,0,B|372:100||,1,180", "300,68,4591,2,0,B|372:100,1,180.0" },
+		{
+			"300,68,4591,2,0,P|372:100|332:172,1,97.5000019073486,2|8|,1:2|0:0|,0:0:0:0:",
+			"300,68,4591,2,0,P|372:100|332:172,1,97.5,2|8,1:2|0:0,0:0:0:0:"
+		},
+		// edge hit sounds were parsed as shorts and then cast to bytes
+		{ "300,68,4591,6,0,L|372:100,1,90,200|-2,0:0|0:0", "300,68,4591,6,0,L|372:100,1,90.0,-56|-2,0:0|0:0" },
+		{ "300,68,4591,2,0,B,1,180", "300,68,4591,2,0,B,1,180.0" },
+		{ "300,68,4591,2,0,B|372:100,1,180,|,|", "300,68,4591,2,0,B|372:100,1,180.0" },
+		{ "256,192,654,12,0,4029,0:0:0:0:", "256,192,654,12,0,4029,0:0:0:0:" },
+		{ "256,192,654,12,0,4029:1,1:2:0:0:", "256,192,654,12,0,4029,1:2:0:0:" },
+		{ "256,192,654,12,0,4029", "256,192,654,12,0,4029" },
+	};
+
+	/**
+	 * Hit object lines that the old parser rejected with a {@link NumberFormatException}.
+	 */
+	private static final String[] MALFORMED_HIT_OBJECTS = {
+		"256,abc,1000,1,0",
+		"256,192,1000,1,300",
+		"256,192,1000,1,-129",
+		"256,192,1000,1,0,200:0:0:0:",
+		"256,192,1000,1,0,0:0:128:0:",
+		"300,68,4591,2,0,B|372:100|332:172,2,180,40000|2,0:0|0:0",
+		"300,68,4591,2,0,B|372:100|332:172,2,180,2|2,300:0|0:0",
+		"300,68,4591,2,0,B||372:100,1,180",
+	};
+
+	@Test
+	public void hit_objects_should_parse_like_split()
+	{
+		for (String[] line : HIT_OBJECTS) {
+			assertEquals(line[0], line[1], new HitObject(line[0]).toString());
+		}
+	}
+
+	@Test
+	public void malformed_hit_objects_should_be_rejected_like_split()
+	{
+		for (String line : MALFORMED_HIT_OBJECTS) {
+			try {
+				new HitObject(line);
+				fail("accepted " + line);
+			} catch (NumberFormatException e) {
+			}
+		}
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void missing_hit_object_fields_should_be_rejected()
+	{
+		new HitObject("256,192,1000,1");
+	}
+
+	@Test
+	public void timing_points_should_parse_like_split()
+	{
+		assertEquals("1000,500.000,4,2,1,60,0,0", new TimingPoint("1000,500,4,2,1,60,1,0").toString());
+		assertEquals("1000,-50,4,2,0,60,1,1", new TimingPoint("1000.5,-50,4,2,0,60,0,1").toString());
+		assertEquals("1000,500.000,4,2,-1,60,0,0", new TimingPoint("1000,500,4,2,-1,60,1,0").toString());
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void timing_point_sample_type_should_be_a_byte()
+	{
+		new TimingPoint("1000,500,4,300,1,60,1,0");
+	}
+
+	@Test
+	public void numbers_should_parse_like_the_jdk()
+	{
+		final Random rand = new Random(72);
+		final OsuTokenizer t = new OsuTokenizer();
+		for (int i = 0; i < 10000; i++) {
+			final int n = rand.nextInt() >> rand.nextInt(32);
+			final String f = Float.toString((rand.nextFloat() - 0.5f) * (1 << rand.nextInt(20)));
+			t.load(n + "," + f);
+			t.nextLine();
+			assertEquals(n, t.readInt());
+			assertEquals(f, Float.parseFloat(f), t.nextFloat(','), 0f);
+		}
+	}
+
+	@Test
+	public void lines_should_be_trimmed()
+	{
+		final OsuTokenizer t = new OsuTokenizer();
+		t.load("  [Section] \r\n\r\n\tkey : value\n\nlast");
+		assertTrue(t.findSection("[Section]"));
+		assertTrue(t.nextLine());
+		assertEquals(0, t.lineLength());
+		assertTrue(t.nextLine());
+		assertTrue(t.splitKeyValue());
+		assertEquals("key", t.key());
+		assertEquals("value", t.value());
+		assertTrue(t.nextLine());
+		assertTrue(t.nextLine());
+		assertEquals("last", t.line());
+		assertFalse(t.nextLine());
+	}
+
+	@Test
+	public void count_parts_should_ignore_trailing_empty_parts_like_split()
+	{
+		final String[] fields = { "", "a", "a|b", "a|b|", "a||", "a||b", "|a", "|", "||" };
+		for (String field : fields) {
+			final OsuTokenizer t = OsuTokenizer.forLine(field + ",x");
+			final int expected = field.isEmpty() ? 1 : field.split("\\|").length;
+			assertEquals(field, expected, t.countParts('|', ','));
+		}
+	}
+
+	@Test
+	public void bytes_should_be_range_checked()
+	{
+		final OsuTokenizer t = OsuTokenizer.forLine("127,-128,128,-129");
+		assertEquals(127, t.readByte());
+		assertEquals(-128, t.nextByte(','));
+		t.expect(',');
+		try {
+			t.readByte();
+			fail("accepted 128");
+		} catch (NumberFormatException e) {
+		}
+		t.skipPast(',');
+		try {
+			t.readByte();
+			fail("accepted -129");
+		} catch (NumberFormatException e) {
+		}
+	}
+}
@@ -0,0 +1,331 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package itdelatrisu.opsu.replay;
+
+import itdelatrisu.opsu.GameMod;
+import itdelatrisu.opsu.ScoreData;
+import itdelatrisu.opsu.beatmap.Beatmap;
+import itdelatrisu.opsu.beatmap.HitObject;
+import itdelatrisu.opsu.beatmap.TimingPoint;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class ReplaySimulatorTests
+{
+	/** Time between replay frames, in milliseconds. */
+	private static final int FRAME_TIME = 16;
+
+	/** With an overall difficulty of 5, the windows are 49, 99 and 149 ms. */
+	private static final float OVERALL_DIFFICULTY = 5f;
+
+	@BeforeClass
+	public static void init()
+	{
+		HitObject.init(640, 480);
+	}
+
+	@Test
+	public void circles_should_be_judged_by_the_hit_time()
+	{
+		final Beatmap map = map(
+			"100,100,1000,1,0",
+			"200,100,2000,1,0",
+			"300,100,3000,1,0",
+			"400,100,4000,1,0",
+			"100,300,5000,1,0"
+		);
+		final Frames frames = new Frames();
+		frames.click(1000, 100, 100);
+		frames.click(2060, 200, 100);
+		frames.click(2880, 300, 100);
+		// too late, the circle is missed before the click
+		frames.click(4200, 400, 100);
+		// not on the circle
+		frames.click(5000, 250, 300);
+
+		final ReplaySimulator.Result result = run(map, frames, 0);
+		assertCounts(result.score, 1, 1, 1, 2);
+		final ReplaySimulator.HitError[] hitErrors = result.hitErrors;
+		assertEquals(3, hitErrors.length);
+		assertEquals(1000, hitErrors[0].time);
+		assertEquals(0, hitErrors[0].timeDiff);
+		assertEquals(60, hitErrors[1].timeDiff);
+		assertEquals(-120, hitErrors[2].timeDiff);
+	}
+
+	@Test
+	public void clicks_outside_the_miss_window_should_be_ignored()
+	{
+		final Beatmap map = map("100,100,1000,1,0");
+		final Frames frames = new Frames();
+		frames.click(400, 100, 100);
+		frames.click(1000, 100, 100);
+
+		final ReplaySimulator.Result result = run(map, frames, 0);
+		assertCounts(result.score, 1, 0, 0, 0);
+		assertEquals(1, result.hitErrors.length);
+	}
+
+	@Test
+	public void early_clicks_in_the_miss_window_should_miss()
+	{
+		final Beatmap map = map("100,100,1000,1,0");
+		final Frames frames = new Frames();
+		frames.click(700, 100, 100);
+		frames.click(1000, 100, 100);
+
+		final ReplaySimulator.Result result = run(map, frames, 0);
+		assertCounts(result.score, 0, 0, 0, 1);
+		assertEquals(-300, result.hitErrors[0].timeDiff);
+	}
+
+	@Test
+	public void sliders_should_be_followed_to_the_end()
+	{
+		// 2000 ms long, with 3 ticks
+		final String slider = "50,100,1000,2,0,L|450:100,1,400";
+
+		final Frames followed = new Frames();
+		followed.slide(1000, 2000, 1, 50, 450);
+		final ReplaySimulator.Result result = run(map(slider), followed, 0);
+		assertCounts(result.score, 1, 0, 0, 0);
+		// start, ticks and end
+		assertEquals(5, result.score.combo);
+		assertTrue(result.score.perfect);
+
+		// only the start circle is hit
+		final Frames left = new Frames();
+		left.click(1000, 50, 100);
+		left.hold(1032, 250, 380);
+		left.hold(3100, 250, 380);
+		assertCounts(run(map(slider), left, 0).score, 0, 0, 1, 0);
+
+		// the start circle and the first tick are missed
+		final Frames late = new Frames();
+		for (int time = 1000; time <= 3000 + FRAME_TIME; time += FRAME_TIME) {
+			final float x = 50 + 400 * Math.min(1f, (time - 1000) / 2000f);
+			late.add(time, x, 100, time >= 1600 ? ReplayFrame.KEY_K1 : ReplayFrame.KEY_NONE);
+		}
+		final ScoreData lateScore = run(map(slider), late, 0).score;
+		assertCounts(lateScore, 0, 1, 0, 0);
+		assertFalse(lateScore.perfect);
+
+		assertCounts(run(map(slider), new Frames(), 0).score, 0, 0, 0, 1);
+	}
+
+	@Test
+	public void repeats_should_count_as_ticks()
+	{
+		// 1500 ms per repeat, with 2 ticks per repeat
+		final Frames frames = new Frames();
+		frames.slide(1000, 1500, 2, 100, 400);
+		final ReplaySimulator.Result result = run(map("100,100,1000,2,0,L|400:100,2,300"), frames, 0);
+		assertCounts(result.score, 1, 0, 0, 0);
+		// start, 2 ticks, repeat, 2 ticks and end, and like in the game, the tick
+		// limit of the first repeat lets the first tick count again
+		assertEquals(8, result.score.combo);
+	}
+
+	@Test
+	public void spinners_should_need_enough_rotations()
+	{
+		// 8.75 rotations are needed
+		final String spinner = "256,192,1000,8,0,4000";
+
+		final Frames spun = new Frames();
+		spun.spin(1000, 4000, 0.6);
+		final ScoreData score = run(map(spinner), spun, 0).score;
+		assertCounts(score, 1, 0, 0, 0);
+		// more rotations than needed give bonus points
+		assertTrue(score.score > 300 + 1000);
+
+		final Frames held = new Frames();
+		held.hold(1000, 300, 192);
+		held.hold(4100, 300, 192);
+		assertCounts(run(map(spinner), held, 0).score, 0, 0, 0, 1);
+
+		// spinning without holding a key doesn't count
+		final Frames hovered = new Frames();
+		hovered.spin(1000, 4000, 0.6);
+		final ArrayList<ReplayFrame> released = new ArrayList<>();
+		for (ReplayFrame frame : hovered.list) {
+			released.add(new ReplayFrame(
+				frame.getTimeDiff(), frame.getTime(), frame.getX(), frame.getY(), ReplayFrame.KEY_NONE
+			));
+		}
+		hovered.list.clear();
+		hovered.list.addAll(released);
+		assertCounts(run(map(spinner), hovered, 0).score, 0, 0, 0, 1);
+	}
+
+	@Test
+	public void auto_mod_should_hit_everything()
+	{
+		final Beatmap map = map(
+			"100,100,1000,1,0",
+			"50,100,2000,2,0,L|450:100,2,400",
+			"256,192,7000,8,0,9000",
+			"400,300,9500,1,0"
+		);
+		final ReplaySimulator.Result result = run(map, new Frames(), GameMod.AUTO.getBit());
+		assertCounts(result.score, 4, 0, 0, 0);
+		assertTrue(result.score.perfect);
+		assertEquals(0, result.hitErrors.length);
+	}
+
+	@Test
+	public void a_fixed_timestep_should_not_change_a_followed_replay()
+	{
+		final Beatmap map = map(
+			"100,100,1000,1,0",
+			"50,100,2000,2,0,L|450:100,2,400",
+			"256,192,7000,8,0,9000",
+			"400,300,9500,1,0"
+		);
+		final Frames frames = new Frames();
+		frames.click(1000, 100, 100);
+		frames.slide(2000, 2000, 2, 50, 450);
+		frames.spin(7000, 9000, 0.6);
+		frames.click(9500, 400, 300);
+
+		final ScoreData score = run(map, frames, 0).score;
+		assertCounts(score, 4, 0, 0, 0);
+		final ReplaySimulator simulator = new ReplaySimulator(map, frames.toArray(), 0);
+		simulator.setTimestep(1);
+		final ScoreData fixed = simulator.run().score;
+		assertCounts(fixed, 4, 0, 0, 0);
+		assertEquals(score.combo, fixed.combo);
+	}
+
+	@Test
+	public void game_mods_and_stack_offset_should_be_restored()
+	{
+		final int mods = GameMod.getModState();
+		final float stackOffset = HitObject.getStackOffset();
+		run(map("100,100,1000,1,0"), new Frames(), GameMod.HARD_ROCK.getBit() | GameMod.AUTO.getBit());
+		assertEquals(mods, GameMod.getModState());
+		assertEquals(stackOffset, HitObject.getStackOffset(), 0f);
+	}
+
+	private static ReplaySimulator.Result run(Beatmap map, Frames frames, int mods)
+	{
+		return new ReplaySimulator(map, frames.toArray(), mods).run();
+	}
+
+	private static void assertCounts(ScoreData score, int hit300, int hit100, int hit50, int miss)
+	{
+		assertEquals(
+			String.format("%d/%d/%d/%d (300/100/50/miss)", hit300, hit100, hit50, miss),
+			String.format("%d/%d/%d/%d (300/100/50/miss)", score.hit300, score.hit100, score.hit50, score.miss)
+		);
+	}
+
+	/**
+	 * Makes a beatmap with a beat length of 500 ms, where sliders move 100
+	 * osu!pixels per beat and have a tick every beat.
+	 */
+	private static Beatmap map(String... objects)
+	{
+		final Beatmap map = new Beatmap(null);
+		map.circleSize = 4f;
+		map.approachRate = 9f;
+		map.overallDifficulty = OVERALL_DIFFICULTY;
+		map.HPDrainRate = 5f;
+		map.sliderMultiplier = 1f;
+		map.sliderTickRate = 1f;
+		map.timingPoints = new ArrayList<>();
+		map.timingPoints.add(new TimingPoint("0,500,4,2,1,60,1,0"));
+		map.objects = new HitObject[objects.length];
+		for (int i = 0; i < objects.length; i++) {
+			map.objects[i] = new HitObject(objects[i]);
+		}
+		return map;
+	}
+
+	/**
+	 * Replay frames every {@link #FRAME_TIME} ms, in unscaled coordinates like
+	 * recorded replays.
+	 */
+	private static class Frames
+	{
+		final ArrayList<ReplayFrame> list = new ArrayList<>();
+		int time;
+		float x = 256, y = 192;
+		int keys = ReplayFrame.KEY_NONE;
+
+		/**
+		 * Keeps the cursor and keys until a time, then adds a frame.
+		 */
+		void add(int time, float x, float y, int keys)
+		{
+			while (this.time + FRAME_TIME < time) {
+				this.frame(this.time + FRAME_TIME, this.x, this.y, this.keys);
+			}
+			this.frame(time, x, y, keys);
+		}
+
+		private void frame(int time, float x, float y, int keys)
+		{
+			this.list.add(new ReplayFrame(time - this.time, time, x, y, keys));
+			this.time = time;
+			this.x = x;
+			this.y = y;
+			this.keys = keys;
+		}
+
+		/**
+		 * Presses a key and releases it a frame later.
+		 */
+		void click(int time, float x, float y)
+		{
+			this.add(time, x, y, ReplayFrame.KEY_K1);
+			this.add(time + FRAME_TIME, x, y, ReplayFrame.KEY_NONE);
+		}
+
+		/**
+		 * Moves the cursor with a key held, pressing it if it isn't yet.
+		 */
+		void hold(int time, float x, float y)
+		{
+			this.add(time, x, y, ReplayFrame.KEY_K1);
+		}
+
+		/**
+		 * Follows a horizontal slider at y 100 with a key held, then releases the key.
+		 * @param duration the time of one repeat
+		 */
+		void slide(int start, int duration, int repeats, float fromX, float toX)
+		{
+			for (int time = start; time <= start + duration * repeats + FRAME_TIME; time += FRAME_TIME) {
+				float t = Math.min(repeats, (time - start) / (float) duration);
+				final float floor = (float) Math.floor(t);
+				t = (floor % 2 == 0) ? t - floor : floor + 1 - t;
+				this.hold(time, fromX + (toX - fromX) * t, 100);
+			}
+			this.add(this.time + FRAME_TIME, this.x, this.y, ReplayFrame.KEY_NONE);
+		}
+
+		/**
+		 * Circles around the center of the playfield with a key held, then releases the key.
+		 * @param step the angle per frame, in radians
+		 */
+		void spin(int start, int end, double step)
+		{
+			double angle = 0;
+			for (int time = start; time <= end + FRAME_TIME; time += FRAME_TIME) {
+				this.hold(time, 256 + (float) Math.cos(angle) * 50, 192 + (float) Math.sin(angle) * 50);
+				angle += step;
+			}
+			this.add(this.time + FRAME_TIME, this.x, this.y, ReplayFrame.KEY_NONE);
+		}
+
+		ReplayFrame[] toArray()
+		{
+			return this.list.toArray(new ReplayFrame[this.list.size()]);
+		}
+	}
+}
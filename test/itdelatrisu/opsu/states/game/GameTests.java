@@ -0,0 +1,209 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package itdelatrisu.opsu.states.game;
+
+import itdelatrisu.opsu.Utils;
+import itdelatrisu.opsu.beatmap.Beatmap;
+import itdelatrisu.opsu.beatmap.HitObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GameTests
+{
+	/** Same as the private constants in {@link Game}. */
+	private static final float STACK_LENIENCE = 3f;
+	private static final int STACK_TIMEOUT = 1000;
+
+	@BeforeClass
+	public static void init()
+	{
+		HitObject.init(640, 480);
+	}
+
+	@Test
+	public void stacks_should_match_pairwise_search_on_streams()
+	{
+		final float[] leniencies = { 0.1f, 0.3f, 0.7f, 1f };
+		for (int seed = 0; seed < 20; seed++) {
+			final float leniency = leniencies[seed % leniencies.length];
+			final Stacking grid = new Stacking(new Random(seed), 2000, leniency, false);
+			final Stacking pairwise = new Stacking(new Random(seed), 2000, leniency, false);
+			Game.calculateStacks(grid.beatmap, grid.starts, grid.ends, grid.endTimes);
+			pairwise.calculateStacksPairwise();
+			assertArrayEquals("seed " + seed, pairwise.stacks(), grid.stacks());
+			assertTrue(grid.beatmap.stacksCalculated);
+		}
+	}
+
+	@Test
+	public void stacks_should_match_pairwise_search_on_unsorted_objects()
+	{
+		for (int seed = 0; seed < 10; seed++) {
+			final Stacking grid = new Stacking(new Random(seed), 500, 0.7f, true);
+			final Stacking pairwise = new Stacking(new Random(seed), 500, 0.7f, true);
+			Game.calculateStacks(grid.beatmap, grid.starts, grid.ends, grid.endTimes);
+			pairwise.calculateStacksPairwise();
+			assertArrayEquals("seed " + seed, pairwise.stacks(), grid.stacks());
+		}
+	}
+
+	@Test
+	public void stacks_should_be_found_on_a_stream_and_below_slider_ends()
+	{
+		final Stacking stacking = new Stacking(new Random(72), 2000, 0.7f, false);
+		Game.calculateStacks(stacking.beatmap, stacking.starts, stacking.ends, stacking.endTimes);
+		boolean up = false, down = false;
+		for (int stack : stacking.stacks()) {
+			up |= stack > 1;
+			down |= stack < 0;
+		}
+		assertTrue("stacks moving up", up);
+		assertTrue("stacks moving down below slider ends", down);
+	}
+
+	/**
+	 * A generated beatmap with the inputs of {@link Game#calculateStacks(Beatmap, float[], float[], int[])}.
+	 */
+	private static class Stacking
+	{
+		final Beatmap beatmap;
+		final float[] starts, ends;
+		final int[] endTimes;
+
+		/**
+		 * Makes streams of circles on the same or nearly the same position,
+		 * with jumps between them, sliders that end on the next object and
+		 * some spinners.
+		 * @param unsorted {@code true} to swap the times of some neighbouring objects
+		 */
+		Stacking(Random rand, int count, float stackLeniency, boolean unsorted)
+		{
+			this.beatmap = new Beatmap(null);
+			this.beatmap.stackLeniency = stackLeniency;
+			this.beatmap.objects = new HitObject[count];
+			this.starts = new float[count * 2];
+			this.ends = new float[count * 2];
+			Arrays.fill(this.ends, Float.NaN);
+			this.endTimes = new int[count];
+
+			// kind (0 circle, 1 slider, 2 spinner), x, y, time and end time of every object
+			final int[][] objects = new int[count][];
+			int time = 1000, x = 256, y = 192;
+			for (int i = 0; i < count; i++) {
+				final int kind = rand.nextInt(100);
+				if (kind < 10) {
+					// jump
+					x = rand.nextInt(512);
+					y = rand.nextInt(384);
+				} else if (kind < 40) {
+					// nearly on the previous object
+					x = Math.max(0, x + rand.nextInt(5) - 2);
+					y = Math.max(0, y + rand.nextInt(5) - 2);
+				}
+				if (kind >= 97) {
+					objects[i] = new int[] { 2, 256, 192, time, time + 800 };
+				} else if (kind >= 85) {
+					objects[i] = new int[] { 1, x, y, time, time + 100 + rand.nextInt(200) };
+					// the next objects continue from the slider end, or from its start
+					if (rand.nextBoolean()) {
+						x += 40;
+					}
+				} else {
+					objects[i] = new int[] { 0, x, y, time, time };
+				}
+				time = objects[i][4] + 50 + rand.nextInt(rand.nextInt(10) == 0 ? 3000 : 150);
+			}
+			if (unsorted) {
+				for (int i = 1; i < count; i += 2 + rand.nextInt(20)) {
+					if (objects[i - 1][0] == 0 && objects[i][0] == 0) {
+						final int t = objects[i - 1][3];
+						objects[i - 1][3] = objects[i - 1][4] = objects[i][3];
+						objects[i][3] = objects[i][4] = t;
+					}
+				}
+			}
+
+			for (int i = 0; i < count; i++) {
+				final int[] o = objects[i];
+				final HitObject hitObject;
+				if (o[0] == 2) {
+					hitObject = new HitObject(o[1] + "," + o[2] + "," + o[3] + ",8,0," + o[4]);
+				} else if (o[0] == 1) {
+					hitObject = new HitObject(o[1] + "," + o[2] + "," + o[3] + ",2,0,L|" + (o[1] + 40) + ":" + o[2] + ",1,40");
+				} else {
+					hitObject = new HitObject(o[1] + "," + o[2] + "," + o[3] + ",1,0");
+				}
+				this.beatmap.objects[i] = hitObject;
+				this.endTimes[i] = o[4];
+				this.starts[i * 2] = hitObject.getScaledX();
+				this.starts[i * 2 + 1] = hitObject.getScaledY();
+				if (hitObject.isSlider()) {
+					this.ends[i * 2] = this.starts[i * 2] + 40 * HitObject.getXMultiplier();
+					this.ends[i * 2 + 1] = this.starts[i * 2 + 1];
+				}
+			}
+		}
+
+		int[] stacks()
+		{
+			final int[] stacks = new int[this.beatmap.objects.length];
+			for (int i = 0; i < stacks.length; i++) {
+				stacks[i] = this.beatmap.objects[i].getStack();
+			}
+			return stacks;
+		}
+
+		/**
+		 * The stack calculation that compared every pair of objects in the time window.
+		 */
+		void calculateStacksPairwise()
+		{
+			final HitObject[] objects = this.beatmap.objects;
+			final float lenience = STACK_LENIENCE * HitObject.getXMultiplier();
+			for (int i = objects.length - 1; i > 0; i--) {
+				HitObject hitObjectI = objects[i];
+				if (hitObjectI.getStack() != 0 || hitObjectI.isSpinner()) {
+					continue;
+				}
+				for (int n = i - 1; n >= 0; n--) {
+					final HitObject hitObjectN = objects[n];
+					if (hitObjectN.isSpinner()) {
+						continue;
+					}
+					final float timeI = hitObjectI.getTime() - (STACK_TIMEOUT * this.beatmap.stackLeniency);
+					final float timeN = hitObjectN.isSlider() ? this.endTimes[n] : hitObjectN.getTime();
+					if (timeI > timeN) {
+						break;
+					}
+					if (hitObjectN.isSlider()) {
+						final float p2x = this.ends[n * 2], p2y = this.ends[n * 2 + 1];
+						float distance = Utils.distance(this.starts[i * 2], this.starts[i * 2 + 1], p2x, p2y);
+						if (distance < lenience) {
+							final int offset = hitObjectI.getStack() - hitObjectN.getStack() + 1;
+							for (int j = n + 1; j <= i; j++) {
+								distance = Utils.distance(this.starts[j * 2], this.starts[j * 2 + 1], p2x, p2y);
+								if (distance < lenience) {
+									objects[j].setStack(objects[j].getStack() - offset);
+								}
+							}
+							break;
+						}
+					}
+					final float distance = Utils.distance(
+						hitObjectI.getX(), hitObjectI.getY(),
+						hitObjectN.getX(), hitObjectN.getY()
+					);
+					if (distance < STACK_LENIENCE) {
+						hitObjectN.setStack(hitObjectI.getStack() + 1);
+						hitObjectI = hitObjectN;
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,204 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package yugecin.opsudance.beatmap;
+
+import itdelatrisu.opsu.beatmap.Beatmap;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.*;
+
+public class BeatmapSearcherTests
+{
+	private static final String[] WORDS = {
+		"blue", "bluebird", "red", "sky", "skyline", "night", "nightcore", "a", "ab", "tv size"
+	};
+
+	private ArrayList<Beatmap> maps;
+	private BeatmapMetadata md;
+
+	@Before
+	public void setup()
+	{
+		final Random rand = new Random(72);
+		this.maps = new ArrayList<>();
+		this.md = new BeatmapMetadata();
+		for (int i = 0; i < 3000; i++) {
+			final Beatmap map = new Beatmap(new File("Songs", i + ".osu"));
+			map.title = map.titleUnicode = WORDS[rand.nextInt(WORDS.length)] + " " + WORDS[rand.nextInt(WORDS.length)];
+			map.artist = map.artistUnicode = WORDS[rand.nextInt(WORDS.length)].toUpperCase();
+			map.creator = "mapper" + rand.nextInt(20);
+			map.version = rand.nextBoolean() ? "Hard" : "Insane";
+			map.source = "";
+			map.tags = rand.nextInt(4) == 0 ? "sky tags" : "";
+			map.approachRate = rand.nextInt(101) / 10f;
+			map.circleSize = rand.nextInt(71) / 10f;
+			map.overallDifficulty = rand.nextInt(101) / 10f;
+			map.HPDrainRate = rand.nextInt(101) / 10f;
+			map.bpmMax = 100 + rand.nextInt(150);
+			map.endTime = 30000 + rand.nextInt(300000);
+			map.starRating = rand.nextInt(800) / 100d;
+			this.md.add(map);
+			this.maps.add(map);
+		}
+	}
+
+	@Test
+	public void terms_should_match_any_string_column()
+	{
+		this.assertSearch("blue", map -> this.contains(map, "blue"));
+		this.assertSearch("sky", map -> this.contains(map, "sky"));
+		this.assertSearch("bluebird nightcore", map -> this.contains(map, "bluebird") && this.contains(map, "nightcore"));
+		this.assertSearch("mapper1 hard", map -> this.contains(map, "mapper1") && this.contains(map, "hard"));
+		this.assertSearch("zzz", map -> false);
+	}
+
+	@Test
+	public void filters_should_match_their_columns()
+	{
+		this.assertSearch("ar=9", map -> map.approachRate == 9f);
+		this.assertSearch("ar>2 hp>2", map -> map.approachRate > 2 && map.HPDrainRate > 2);
+		this.assertSearch("cs<3 od>=5", map -> map.circleSize < 3 && map.overallDifficulty >= 5);
+		this.assertSearch("bpm>=200 length<3:00", map -> map.bpmMax >= 200 && map.endTime < 180000);
+		// star ratings are compared in hundredths, rounded down
+		this.assertSearch("stars>5", map -> Math.floor(map.starRating * 100) > 500);
+		this.assertSearch("star<=1.5 cs==2", map -> Math.floor(map.starRating * 100) <= 150 && map.circleSize == 2);
+	}
+
+	@Test
+	public void terms_and_filters_should_be_combined()
+	{
+		this.assertSearch("sky ar>8", map -> this.contains(map, "sky") && map.approachRate > 8);
+		this.assertSearch("ab bpm<120 insane", map ->
+			this.contains(map, "ab") && this.contains(map, "insane") && map.bpmMax < 120
+		);
+	}
+
+	@Test
+	public void typed_queries_should_match_a_new_search()
+	{
+		final String[] queries = {
+			"nightcore sky ar>5 cs<4",
+			"ar>2 hp>2 blue",
+			"od>1 od>3 od>=5 red",
+			"bluebird length>1:30 stars<4",
+		};
+		final BeatmapSearcher searcher = new BeatmapSearcher(this.md);
+		for (String query : queries) {
+			for (int i = 1; i <= query.length(); i++) {
+				final String typed = query.substring(0, i).trim();
+				final ArrayList<Beatmap> expected = new BeatmapSearcher(this.md).search(this.maps, typed);
+				assertEquals(typed, expected, searcher.search(this.maps, typed));
+			}
+			// deleting characters widens the query again
+			for (int i = query.length() - 1; i > 0; i--) {
+				final String typed = query.substring(0, i).trim();
+				final ArrayList<Beatmap> expected = new BeatmapSearcher(this.md).search(this.maps, typed);
+				assertEquals(typed, expected, searcher.search(this.maps, typed));
+			}
+		}
+	}
+
+	@Test
+	public void results_should_keep_the_order_of_the_searched_list()
+	{
+		final ArrayList<Beatmap> group = new ArrayList<>();
+		for (int i = this.maps.size() - 1; i >= 0; i -= 3) {
+			group.add(this.maps.get(i));
+		}
+		final ArrayList<Beatmap> expected = new ArrayList<>();
+		for (Beatmap map : group) {
+			if (this.contains(map, "night") && map.approachRate > 3) {
+				expected.add(map);
+			}
+		}
+
+		final BeatmapSearcher searcher = new BeatmapSearcher(this.md);
+		assertEquals(expected, searcher.search(group, "night ar>3"));
+		searcher.search(this.maps, "night");
+		assertEquals(expected, searcher.search(group, "night ar>3"));
+	}
+
+	@Test
+	public void changes_should_invalidate_cached_results()
+	{
+		final BeatmapSearcher searcher = new BeatmapSearcher(this.md);
+		final Beatmap map = this.maps.get(0);
+		map.starRating = 9.5;
+		this.md.update(map);
+		assertTrue(searcher.search(this.maps, "stars>9").contains(map));
+
+		map.starRating = 1;
+		this.md.update(map);
+		assertFalse(searcher.search(this.maps, "stars>9").contains(map));
+
+		this.md.remove(map);
+		final Beatmap added = new Beatmap(new File("Songs", "new.osu"));
+		added.title = added.titleUnicode = "unique title";
+		added.artist = added.artistUnicode = added.creator = added.version = added.source = added.tags = "";
+		this.md.add(added);
+		final ArrayList<Beatmap> list = new ArrayList<>(this.maps);
+		list.add(added);
+		list.remove(map);
+		assertEquals(1, searcher.search(list, "unique").size());
+	}
+
+	@Test
+	public void strings_of_removed_maps_should_be_released()
+	{
+		// build the trigram index first
+		this.assertSearch("bluebird", map -> this.contains(map, "bluebird"));
+
+		final Beatmap removed = new Beatmap(new File("Songs", "removed.osu"));
+		removed.title = removed.titleUnicode = "gone title";
+		removed.artist = removed.artistUnicode = removed.creator = removed.version = removed.source = removed.tags = "";
+		this.md.add(removed);
+		this.md.remove(removed);
+
+		// remove and add back every other map, so entries are released and added again
+		for (int i = 0; i < this.maps.size(); i += 2) {
+			this.md.remove(this.maps.get(i));
+		}
+		for (int i = 0; i < this.maps.size(); i += 2) {
+			this.md.add(this.maps.get(i));
+		}
+		this.md.add(removed);
+
+		final ArrayList<Beatmap> list = new ArrayList<>(this.maps);
+		list.add(removed);
+		assertEquals(1, new BeatmapSearcher(this.md).search(list, "gone").size());
+		this.assertSearch("bluebird", map -> this.contains(map, "bluebird"));
+		this.assertSearch("sky tags", map -> this.contains(map, "sky") && this.contains(map, "tags"));
+		this.assertSearch("mapper1", map -> this.contains(map, "mapper1"));
+	}
+
+	private void assertSearch(String query, Predicate<Beatmap> test)
+	{
+		final ArrayList<Beatmap> expected = new ArrayList<>();
+		for (Beatmap map : this.maps) {
+			if (test.test(map)) {
+				expected.add(map);
+			}
+		}
+		assertEquals(query, expected, new BeatmapSearcher(this.md).search(this.maps, query));
+	}
+
+	private boolean contains(Beatmap map, String term)
+	{
+		final String[] values = {
+			map.title, map.titleUnicode, map.artist, map.artistUnicode,
+			map.creator, map.version, map.source, map.tags
+		};
+		for (String value : values) {
+			if (value.toLowerCase().contains(term)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
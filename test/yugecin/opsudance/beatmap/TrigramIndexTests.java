@@ -0,0 +1,130 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package yugecin.opsudance.beatmap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TrigramIndexTests
+{
+	@Test
+	public void short_terms_should_not_use_the_index()
+	{
+		final TrigramIndex index = new TrigramIndex();
+		index.add(0, "hello");
+
+		assertNull(index.candidates(""));
+		assertNull(index.candidates("he"));
+	}
+
+	@Test
+	public void unknown_trigrams_should_have_no_candidates()
+	{
+		final TrigramIndex index = new TrigramIndex();
+		index.add(0, "hello");
+
+		assertArrayEquals(TrigramIndex.NO_IDS, index.candidates("hex"));
+		assertArrayEquals(TrigramIndex.NO_IDS, index.candidates("hello world"));
+	}
+
+	@Test
+	public void candidates_should_contain_all_trigrams()
+	{
+		final TrigramIndex index = new TrigramIndex();
+		index.add(0, "abcd");
+		index.add(1, "bcde");
+		index.add(2, "abc bcd");
+		index.add(3, "xabcx");
+
+		assertArrayEquals(new int[] { 0, 2, 3 }, index.candidates("abc"));
+		assertArrayEquals(new int[] { 0, 1, 2 }, index.candidates("bcd"));
+		// a superset, "abc bcd" has both trigrams but not the term
+		assertArrayEquals(new int[] { 0, 2 }, index.candidates("abcd"));
+	}
+
+	@Test
+	public void repeated_trigrams_should_be_added_once()
+	{
+		final TrigramIndex index = new TrigramIndex();
+		index.add(0, "aaaaaa");
+		index.add(1, "aaa");
+
+		assertArrayEquals(new int[] { 0, 1 }, index.candidates("aaa"));
+		assertArrayEquals(new int[] { 0, 1 }, index.candidates("aaaa"));
+	}
+
+	@Test
+	public void removed_ids_should_not_be_candidates()
+	{
+		final TrigramIndex index = new TrigramIndex();
+		index.add(0, "abcd");
+		index.add(1, "abcabc");
+		index.add(200, "xabcx");
+		index.add(300, "bcd");
+
+		index.remove(1, "abcabc");
+		assertArrayEquals(new int[] { 0, 200 }, index.candidates("abc"));
+		index.remove(200, "xabcx");
+		assertArrayEquals(new int[] { 0 }, index.candidates("abc"));
+		assertArrayEquals(TrigramIndex.NO_IDS, index.candidates("xab"));
+
+		index.add(301, "abc");
+		assertArrayEquals(new int[] { 0, 301 }, index.candidates("abc"));
+		assertArrayEquals(new int[] { 0, 300 }, index.candidates("bcd"));
+	}
+
+	@Test
+	public void large_id_gaps_should_be_kept()
+	{
+		final TrigramIndex index = new TrigramIndex();
+		final int[] ids = { 0, 1, 127, 128, 16383, 16384, 2097152, Integer.MAX_VALUE };
+		for (int id : ids) {
+			index.add(id, "xyz");
+		}
+
+		assertArrayEquals(ids, index.candidates("xyz"));
+	}
+
+	@Test
+	public void candidates_should_include_every_match()
+	{
+		final Random rand = new Random(72);
+		final ArrayList<String> strings = new ArrayList<>();
+		final TrigramIndex index = new TrigramIndex();
+		for (int id = 0; id < 5000; id++) {
+			final StringBuilder sb = new StringBuilder();
+			for (int i = 2 + rand.nextInt(20); i > 0; i--) {
+				sb.append((char) ('a' + rand.nextInt(6)));
+			}
+			strings.add(sb.toString());
+			index.add(id, sb.toString());
+		}
+
+		for (int q = 0; q < 200; q++) {
+			final String source = strings.get(rand.nextInt(strings.size()));
+			final int start = rand.nextInt(source.length());
+			final String term = source.substring(start, Math.min(source.length(), start + 3 + rand.nextInt(4)));
+			final int[] candidates = index.candidates(term);
+			if (term.length() < 3) {
+				assertNull(candidates);
+				continue;
+			}
+			for (int i = 1; i < candidates.length; i++) {
+				assertTrue(candidates[i - 1] < candidates[i]);
+			}
+			int c = 0;
+			for (int id = 0; id < strings.size(); id++) {
+				if (strings.get(id).contains(term)) {
+					while (c < candidates.length && candidates[c] < id) {
+						c++;
+					}
+					assertTrue(term + " in " + strings.get(id), c < candidates.length && candidates[c] == id);
+				}
+			}
+		}
+	}
+}
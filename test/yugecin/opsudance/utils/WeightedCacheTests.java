@@ -0,0 +1,226 @@
+// Copyright 2019 yugecin - this source is licensed under GPL
+// see the LICENSE file for more details
+package yugecin.opsudance.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class WeightedCacheTests
+{
+	private ArrayList<String> removed;
+	private WeightedCache<String, Integer> cache;
+
+	@Before
+	public void setup()
+	{
+		this.removed = new ArrayList<>();
+		this.cache = this.create(10, 0);
+	}
+
+	/**
+	 * Creates a cache that weighs entries by their value.
+	 */
+	private WeightedCache<String, Integer> create(long maxWeight, long expireAfterAccessMillis)
+	{
+		return new WeightedCache<String, Integer>(maxWeight, expireAfterAccessMillis) {
+			@Override
+			protected long weigh(String key, Integer value)
+			{
+				return value;
+			}
+
+			@Override
+			protected void removed(String key, Integer value)
+			{
+				removed.add(key);
+			}
+		};
+	}
+
+	@Test
+	public void should_evict_least_recently_used_entries_when_too_heavy()
+	{
+		this.cache.put("a", 3);
+		this.cache.put("b", 3);
+		this.cache.put("c", 3);
+		this.cache.get("a");
+		this.cache.put("d", 3);
+
+		assertEquals(Arrays.asList("b"), this.removed);
+		assertNull(this.cache.get("b"));
+		assertNotNull(this.cache.get("a"));
+		assertEquals(9, this.cache.getWeight());
+		assertEquals(1, this.cache.getEvictionCount());
+	}
+
+	@Test
+	public void should_evict_as_many_entries_as_needed()
+	{
+		this.cache.put("a", 2);
+		this.cache.put("b", 2);
+		this.cache.put("c", 2);
+		this.cache.put("d", 7);
+
+		assertEquals(Arrays.asList("a", "b"), this.removed);
+		assertEquals(9, this.cache.getWeight());
+	}
+
+	@Test
+	public void should_keep_most_recent_entry_even_if_too_heavy()
+	{
+		this.cache.put("a", 3);
+		this.cache.put("b", 20);
+
+		assertEquals(Arrays.asList("a"), this.removed);
+		assertEquals(1, this.cache.size());
+		assertEquals(Integer.valueOf(20), this.cache.get("b"));
+	}
+
+	@Test
+	public void replacing_an_entry_should_notify_and_update_weight()
+	{
+		this.cache.put("a", 3);
+		this.cache.put("a", 5);
+
+		assertEquals(Arrays.asList("a"), this.removed);
+		assertEquals(5, this.cache.getWeight());
+		assertEquals(1, this.cache.size());
+	}
+
+	@Test
+	public void lowering_max_weight_should_evict()
+	{
+		this.cache.put("a", 3);
+		this.cache.put("b", 3);
+		this.cache.put("c", 3);
+		this.cache.setMaxWeight(4);
+
+		assertEquals(Arrays.asList("a", "b"), this.removed);
+		assertEquals(3, this.cache.getWeight());
+	}
+
+	@Test
+	public void reweighing_an_entry_should_evict_without_counting_as_access()
+	{
+		final int[] weights = { 1, 1, 1, 4 };
+		this.cache = new WeightedCache<String, Integer>(10) {
+			@Override
+			protected long weigh(String key, Integer value)
+			{
+				return weights[value];
+			}
+
+			@Override
+			protected void removed(String key, Integer value)
+			{
+				removed.add(key);
+			}
+		};
+		this.cache.put("a", 0);
+		this.cache.put("b", 1);
+		this.cache.put("c", 2);
+		weights[0] = 5;
+		this.cache.reweigh("a");
+		assertEquals(7, this.cache.getWeight());
+		// "a" is still the least recently used entry
+		this.cache.put("d", 3);
+		assertEquals(Arrays.asList("a"), this.removed);
+
+		weights[1] = 9;
+		this.cache.reweigh("b");
+		assertEquals(Arrays.asList("a", "b"), this.removed);
+		assertEquals(5, this.cache.getWeight());
+	}
+
+	@Test
+	public void remove_if_and_clear_should_notify()
+	{
+		this.cache.put("a", 1);
+		this.cache.put("b", 2);
+		this.cache.put("c", 3);
+		this.cache.removeIf((key, value) -> value == 2);
+
+		assertEquals(Arrays.asList("b"), this.removed);
+		assertEquals(4, this.cache.getWeight());
+
+		this.cache.clear();
+		assertEquals(Arrays.asList("b", "a", "c"), this.removed);
+		assertEquals(0, this.cache.getWeight());
+		assertEquals(0, this.cache.size());
+	}
+
+	@Test
+	public void concurrent_lookups_and_puts_should_keep_the_weight_bounded() throws InterruptedException
+	{
+		final WeightedCache<String, Integer> cache = new WeightedCache<>(50);
+		final Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final Random rand = new Random(t);
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 20000; i++) {
+					final String key = String.valueOf(rand.nextInt(100));
+					if (cache.get(key) == null) {
+						cache.put(key, 1);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(50, cache.size());
+		assertEquals(50, cache.getWeight());
+		assertEquals(4 * 20000, cache.getHitCount() + cache.getMissCount());
+	}
+
+	@Test
+	public void should_count_hits_and_misses()
+	{
+		this.cache.put("a", 1);
+		this.cache.get("a");
+		this.cache.get("a");
+		this.cache.get("b");
+
+		assertEquals(2, this.cache.getHitCount());
+		assertEquals(1, this.cache.getMissCount());
+	}
+
+	@Test
+	public void entries_should_expire_after_last_access() throws InterruptedException
+	{
+		this.cache = this.create(10, 50);
+		this.cache.put("a", 1);
+		this.cache.put("b", 1);
+		Thread.sleep(30);
+		this.cache.get("a");
+		Thread.sleep(30);
+
+		assertNull(this.cache.get("b"));
+		assertNotNull(this.cache.get("a"));
+		assertEquals(Arrays.asList("b"), this.removed);
+		assertEquals(1, this.cache.getExpirationCount());
+		assertEquals(1, this.cache.getWeight());
+	}
+
+	@Test
+	public void put_should_remove_expired_entries() throws InterruptedException
+	{
+		this.cache = this.create(10, 20);
+		this.cache.put("a", 1);
+		this.cache.put("b", 1);
+		Thread.sleep(40);
+		this.cache.put("c", 1);
+
+		assertEquals(Arrays.asList("a", "b"), this.removed);
+		assertEquals(1, this.cache.size());
+		assertEquals(2, this.cache.getExpirationCount());
+	}
+}